@@ -0,0 +1,47 @@
+package model;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Making and undoing moves, judging the position after a move and reading
+ * moves in the standard notation.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoveBenchmark {
+
+	/**
+	 * every legal move of the position, made and undone
+	 */
+	@Benchmark
+	public void makeMoveUndo(Positions positions) {
+		Chess chess = positions.chess;
+		for (Move move : positions.moves) {
+			chess.makeMove(move);
+			chess.undoLastMove();
+		}
+	}
+
+	@Benchmark
+	public boolean checkMate(Positions positions) {
+		return positions.chess.checkMate(positions.chess.getWhoseTurn());
+	}
+
+	@Benchmark
+	public void interpreteMoveCommand(Positions positions, Blackhole blackhole) throws InvalidMoveException {
+		for (String command : positions.commands)
+			blackhole.consume(positions.chess.interpreteMoveCommand(command));
+	}
+}
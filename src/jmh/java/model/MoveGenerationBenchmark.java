@@ -0,0 +1,49 @@
+package model;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Attacks and moves of the pieces, asked for every square of the board.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoveGenerationBenchmark {
+
+	@Benchmark
+	public void isAttacked(Positions positions, Blackhole blackhole) {
+		Chess chess = positions.chess;
+		for (Square square : chess.getBoard()) {
+			blackhole.consume(chess.isAttacked(true, square));
+			blackhole.consume(chess.isAttacked(false, square));
+		}
+	}
+
+	@Benchmark
+	public void getMove(Positions positions, Blackhole blackhole) {
+		Chess chess = positions.chess;
+		Piece[] pieces = (chess.getWhoseTurn() ? chess.white : chess.black).toArray(new Piece[0]);
+		for (Piece piece : pieces)
+			for (Square square : chess.getBoard())
+				blackhole.consume(piece.getMove(square));
+	}
+
+	@Benchmark
+	public void getReachableSquares(Positions positions, Blackhole blackhole) {
+		Chess chess = positions.chess;
+		Piece[] pieces = (chess.getWhoseTurn() ? chess.white : chess.black).toArray(new Piece[0]);
+		for (Piece piece : pieces)
+			blackhole.consume(piece.getReachableSquares());
+	}
+}
@@ -0,0 +1,51 @@
+package model;
+
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * The positions the benchmarks run over: two middlegames and two endgames,
+ * each with a few moves in the standard notation that are legal in it.
+ */
+@State(Scope.Thread)
+public class Positions {
+	@Param({ "ruyLopez", "italian", "rookEnding", "pawnEnding" })
+	public String position;
+
+	public Chess chess;
+	public List<Move> moves;
+	public String[] commands;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		switch (position) {
+		case "ruyLopez":
+			set("r1bq1rk1/2p1bppp/p1np1n2/1p2p3/4P3/1BP2N1P/PP1P1PP1/RNBQR1K1 b - - 0 9", "Na5", "Bb7", "h6",
+					"Re8", "Nxe4");
+			break;
+		case "italian":
+			set("r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10", "Bxf6", "Nd5", "h3",
+					"Qe3", "Rad1");
+			break;
+		case "rookEnding":
+			set("8/5pk1/6p1/3R4/r5P1/5K2/8/8 w - - 0 45", "Rd7", "g5", "Ke3", "Rd8");
+			break;
+		case "pawnEnding":
+			set("8/8/4k3/3p1p2/3P1P2/4K3/8/8 w - - 0 50", "Ke2", "Kd3", "Kf3");
+			break;
+		default:
+			throw new IllegalArgumentException(position);
+		}
+	}
+
+	private void set(String fen, String... commands) {
+		this.chess = new Chess(fen);
+		this.moves = Perft.legalMoves(chess);
+		this.commands = commands;
+	}
+}
@@ -0,0 +1,101 @@
+package analysis;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.stream.IntStream;
+
+import archive.GameArchive;
+import model.Castling;
+import model.Chess;
+import model.Move;
+import model.MoveCode;
+import model.Promotion;
+
+/**
+ * Computes a {@link CorpusReport} over a {@link GameArchive}.
+ *
+ * The segments of the archive are shared out among the threads of the common
+ * fork/join pool. Every worker fills a report of its own, replaying the games
+ * of a segment with one chess that is {@link Chess#reset() reset} between
+ * games, and the reports are merged when the workers are done, so no lock is
+ * taken. Statistics that only need a column, like the results by opening, do
+ * not replay anything.
+ *
+ * <pre>
+ * java analysis.CorpusAnalytics games.archive
+ * </pre>
+ */
+public class CorpusAnalytics {
+	private static final ThreadLocal<Chess> CHESS = ThreadLocal.withInitial(Chess::new);
+
+	private final GameArchive archive;
+
+	public CorpusAnalytics(GameArchive archive) {
+		this.archive = archive;
+	}
+
+	/**
+	 * analyze all the segments in parallel
+	 *
+	 * @return the report over all the games
+	 * @throws IOException
+	 */
+	public CorpusReport run() throws IOException {
+		try {
+			return IntStream.range(0, archive.getSegmentCount()).parallel().mapToObj(segment -> {
+				try {
+					return analyze(segment, CHESS.get());
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}).collect(CorpusReport::new, CorpusReport::merge, CorpusReport::merge);
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 *
+	 * @param segment
+	 * @param chess
+	 *            the chess used to replay the games
+	 * @return the report over the games of the segment
+	 * @throws IOException
+	 */
+	CorpusReport analyze(int segment, Chess chess) throws IOException {
+		CorpusReport report = new CorpusReport();
+		GameArchive.Segment games = archive.getSegment(segment);
+		for (int game = 0; game < games.size(); game++) {
+			int plies = games.getPlyCount(game);
+			report.addGame(games.getResult(game), plies, games.getEco(game));
+			chess.reset();
+			for (int ply = 0; ply < plies; ply++) {
+				Move move = MoveCode.toMove(chess, games.getMove(game, ply));
+				if (move == null)
+					throw new IOException("Archived move " + MoveCode.toString(games.getMove(game, ply)) + " of game "
+							+ game + " in segment " + segment + " is not legal");
+				chess.replayMove(move);
+				if (move.getCapturedPiece() != null)
+					report.addCapture(move.getEnd());
+				if (move instanceof Promotion)
+					report.addPromotion();
+				else if (move instanceof Castling)
+					report.addCastling();
+			}
+		}
+		return report;
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length != 1) {
+			System.err.println("Usage: CorpusAnalytics <game archive>");
+			System.exit(1);
+		}
+		long start = System.nanoTime();
+		try (GameArchive archive = GameArchive.open(new File(args[0]))) {
+			System.out.print(new CorpusAnalytics(archive).run());
+		}
+		System.out.println("Time: " + (System.nanoTime() - start) / 1000000 + " ms");
+	}
+}
@@ -0,0 +1,174 @@
+package analysis;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+import model.Square;
+
+/**
+ * Statistics over a set of games. Reports over disjoint sets of games are
+ * added together with {@link #merge(CorpusReport)}, so every worker can fill
+ * a report of its own.
+ */
+public class CorpusReport {
+	private static final int WHITE_WINS = 0;
+	private static final int DRAWS = 1;
+	private static final int BLACK_WINS = 2;
+	private static final int UNKNOWN = 3;
+
+	private long games;
+	private long plies;
+	private final long[] results = new long[4];
+	// games, white wins, draws, black wins and unknown results by ECO code
+	private final Map<String, long[]> openings = new TreeMap<>();
+	private final long[] captures = new long[64];
+	private long promotions;
+	private long castlings;
+
+	/**
+	 * count a game
+	 *
+	 * @param result
+	 *            like {@link archive.PgnGame#getResultValue()}
+	 * @param plies
+	 * @param eco
+	 *            the ECO code of the opening, or null
+	 */
+	void addGame(int result, int plies, String eco) {
+		games++;
+		this.plies += plies;
+		int index = index(result);
+		results[index]++;
+		long[] opening = openings.computeIfAbsent(eco == null ? "?" : eco, k -> new long[5]);
+		opening[0]++;
+		opening[1 + index]++;
+	}
+
+	private static int index(int result) {
+		switch (result) {
+		case 1:
+			return WHITE_WINS;
+		case 0:
+			return DRAWS;
+		case -1:
+			return BLACK_WINS;
+		default:
+			return UNKNOWN;
+		}
+	}
+
+	void addCapture(Square square) {
+		captures[square.getIndex()]++;
+	}
+
+	void addPromotion() {
+		promotions++;
+	}
+
+	void addCastling() {
+		castlings++;
+	}
+
+	/**
+	 * add the counts of another report to this one
+	 *
+	 * @param other
+	 * @return this report
+	 */
+	public CorpusReport merge(CorpusReport other) {
+		games += other.games;
+		plies += other.plies;
+		for (int i = 0; i < results.length; i++)
+			results[i] += other.results[i];
+		for (Map.Entry<String, long[]> entry : other.openings.entrySet()) {
+			long[] opening = openings.computeIfAbsent(entry.getKey(), k -> new long[5]);
+			for (int i = 0; i < opening.length; i++)
+				opening[i] += entry.getValue()[i];
+		}
+		for (int i = 0; i < captures.length; i++)
+			captures[i] += other.captures[i];
+		promotions += other.promotions;
+		castlings += other.castlings;
+		return this;
+	}
+
+	public long getGames() {
+		return games;
+	}
+
+	public long getPlies() {
+		return plies;
+	}
+
+	/**
+	 *
+	 * @return the average number of plies of a game
+	 */
+	public double getAverageLength() {
+		return games == 0 ? 0 : (double) plies / games;
+	}
+
+	/**
+	 *
+	 * @param result
+	 *            1 for the white wins, 0 for the draws, -1 for the black wins
+	 * @return the share of the games with this result
+	 */
+	public double getResultRate(int result) {
+		return games == 0 ? 0 : (double) results[index(result)] / games;
+	}
+
+	/**
+	 *
+	 * @return for every ECO code ("?" if unknown), the number of games, white
+	 *         wins, draws, black wins and games without a known result
+	 */
+	public Map<String, long[]> getOpenings() {
+		return openings;
+	}
+
+	/**
+	 *
+	 * @param file
+	 * @param rank
+	 * @return how many captures were made on this square
+	 */
+	public long getCaptures(int file, int rank) {
+		return captures[(rank - 1) * 8 + file - 1];
+	}
+
+	public long getPromotions() {
+		return promotions;
+	}
+
+	public long getCastlings() {
+		return castlings;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format("Games: %d, average length %.1f plies%n", games, getAverageLength()));
+		sb.append(String.format("White wins %.1f%%, draws %.1f%%, black wins %.1f%%%n", 100 * getResultRate(1),
+				100 * getResultRate(0), 100 * getResultRate(-1)));
+		sb.append(String.format("Castlings: %d, promotions: %d%n", castlings, promotions));
+		sb.append(String.format("%nECO    games   white   draws   black%n"));
+		for (Map.Entry<String, long[]> entry : openings.entrySet()) {
+			long[] o = entry.getValue();
+			sb.append(String.format("%-4s %7d %6.1f%% %6.1f%% %6.1f%%%n", entry.getKey(), o[0], 100.0 * o[1] / o[0],
+					100.0 * o[2] / o[0], 100.0 * o[3] / o[0]));
+		}
+		sb.append(String.format("%nCaptures by square%n"));
+		for (int rank = 8; rank >= 1; rank--) {
+			sb.append(rank);
+			for (int file = 1; file <= 8; file++)
+				sb.append(String.format(" %6d", getCaptures(file, rank)));
+			sb.append(String.format("%n"));
+		}
+		sb.append(" ");
+		for (char file = 'a'; file <= 'h'; file++)
+			sb.append("      ").append(file);
+		sb.append(String.format("%n"));
+		return sb.toString();
+	}
+}
@@ -0,0 +1,170 @@
+package analysis;
+
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+
+/**
+ * A set of longs, like position keys, kept in an open-addressing hash table
+ * outside of the heap. A key takes 8 to 16 bytes and no object, so sets of
+ * tens of millions of keys do not burden the garbage collector.
+ *
+ * The table grows up to a maximum size given at construction. Once the set
+ * {@link #isFull() is full} new keys are refused, and the caller can spill
+ * the keys to disk, like {@link PositionCounter} does.
+ */
+public class LongHashSet {
+	private static final int MIN_CAPACITY = 1024;
+	/**
+	 * the most keys a set can hold: their table of 1 << 27 slots fills a
+	 * direct buffer of 1 GB, and a buffer cannot reach 2 GB
+	 */
+	public static final int MAX_SIZE = 3 << 25;
+
+	private final int maxSize;
+	private LongBuffer keys;
+	private int mask;
+	private int size;
+	// 0 marks the empty slots, so it is kept outside of the table
+	private boolean hasZero;
+
+	/**
+	 *
+	 * @param maxSize
+	 *            the number of keys the set can hold, at most
+	 *            {@link #MAX_SIZE}
+	 */
+	public LongHashSet(int maxSize) {
+		if (maxSize < 1 || maxSize > MAX_SIZE)
+			throw new IllegalArgumentException("Cannot hold " + maxSize + " keys");
+		this.maxSize = maxSize;
+		allocate(Math.min(MIN_CAPACITY, tableSize(maxSize)));
+	}
+
+	/**
+	 *
+	 * @return the smallest power of two keeping the load under 3/4
+	 */
+	static int tableSize(int size) {
+		return Integer.highestOneBit(Math.max(2, size + size / 3) * 2 - 1);
+	}
+
+	static int hash(long key) {
+		// the finalizer of MurmurHash3, as keys may share their high or low bits
+		key ^= key >>> 33;
+		key *= 0xFF51AFD7ED558CCDL;
+		key ^= key >>> 33;
+		key *= 0xC4CEB9FE1A85EC53L;
+		key ^= key >>> 33;
+		return (int) key;
+	}
+
+	private void allocate(int capacity) {
+		keys = ByteBuffer.allocateDirect(capacity * 8).asLongBuffer();
+		mask = capacity - 1;
+	}
+
+	/**
+	 *
+	 * @param key
+	 * @return true if the key was not in the set yet
+	 * @throws IllegalStateException
+	 *             if the key is new and the set is full
+	 */
+	public boolean add(long key) {
+		if (key == 0) {
+			if (hasZero)
+				return false;
+			checkNotFull();
+			hasZero = true;
+			size++;
+			return true;
+		}
+		int index = find(key);
+		if (keys.get(index) == key)
+			return false;
+		checkNotFull();
+		keys.put(index, key);
+		size++;
+		if (size + size / 3 > mask + 1)
+			grow();
+		return true;
+	}
+
+	public boolean contains(long key) {
+		if (key == 0)
+			return hasZero;
+		return keys.get(find(key)) == key;
+	}
+
+	/**
+	 *
+	 * @return the index of the slot holding this key, or of the empty slot
+	 *         where it belongs
+	 */
+	private int find(long key) {
+		int index = hash(key) & mask;
+		long slot;
+		while ((slot = keys.get(index)) != 0 && slot != key)
+			index = (index + 1) & mask;
+		return index;
+	}
+
+	private void checkNotFull() {
+		if (isFull())
+			throw new IllegalStateException("The set is full");
+	}
+
+	private void grow() {
+		LongBuffer old = keys;
+		allocate((mask + 1) * 2);
+		for (int i = 0; i < old.capacity(); i++) {
+			long key = old.get(i);
+			if (key != 0)
+				keys.put(find(key), key);
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 *
+	 * @return true if no new key can be added
+	 */
+	public boolean isFull() {
+		return size >= maxSize;
+	}
+
+	/**
+	 * remove all the keys, keeping the memory of the table
+	 */
+	public void clear() {
+		for (int i = 0; i < keys.capacity(); i++)
+			keys.put(i, 0);
+		hasZero = false;
+		size = 0;
+	}
+
+	/**
+	 * A callback for the keys of the set.
+	 */
+	public interface Visitor {
+		void visit(long key);
+	}
+
+	/**
+	 * call the visitor for every key, in no particular order
+	 *
+	 * @param visitor
+	 */
+	public void forEach(Visitor visitor) {
+		if (hasZero)
+			visitor.visit(0);
+		for (int i = 0; i < keys.capacity(); i++) {
+			long key = keys.get(i);
+			if (key != 0)
+				visitor.visit(key);
+		}
+	}
+}
@@ -0,0 +1,164 @@
+package analysis;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+
+/**
+ * A map from longs to int counters, like the number of times each position
+ * was reached. It works like {@link LongHashSet}: an open-addressing table
+ * outside of the heap, growing up to a maximum size.
+ */
+public class LongIntMap {
+	private static final int MIN_CAPACITY = 1024;
+
+	private final int maxSize;
+	private LongBuffer keys;
+	private IntBuffer values;
+	private int mask;
+	private int size;
+	private boolean hasZero;
+	private int zeroValue;
+
+	/**
+	 *
+	 * @param maxSize
+	 *            the number of keys the map can hold, at most
+	 *            {@link LongHashSet#MAX_SIZE}
+	 */
+	public LongIntMap(int maxSize) {
+		if (maxSize < 1 || maxSize > LongHashSet.MAX_SIZE)
+			throw new IllegalArgumentException("Cannot hold " + maxSize + " keys");
+		this.maxSize = maxSize;
+		allocate(Math.min(MIN_CAPACITY, LongHashSet.tableSize(maxSize)));
+	}
+
+	private void allocate(int capacity) {
+		keys = ByteBuffer.allocateDirect(capacity * 8).asLongBuffer();
+		values = ByteBuffer.allocateDirect(capacity * 4).asIntBuffer();
+		mask = capacity - 1;
+	}
+
+	/**
+	 * add to the counter of a key, which starts at 0
+	 *
+	 * @param key
+	 * @param delta
+	 * @return the new value of the counter
+	 * @throws IllegalStateException
+	 *             if the key is new and the map is full
+	 */
+	public int add(long key, int delta) {
+		if (key == 0) {
+			if (!hasZero) {
+				checkNotFull();
+				hasZero = true;
+				size++;
+			}
+			return zeroValue += delta;
+		}
+		int index = find(key);
+		if (keys.get(index) == key) {
+			int value = values.get(index) + delta;
+			values.put(index, value);
+			return value;
+		}
+		checkNotFull();
+		keys.put(index, key);
+		values.put(index, delta);
+		size++;
+		if (size + size / 3 > mask + 1)
+			grow();
+		return delta;
+	}
+
+	/**
+	 *
+	 * @param key
+	 * @return the counter of the key, 0 if it is not in the map
+	 */
+	public int get(long key) {
+		if (key == 0)
+			return zeroValue;
+		int index = find(key);
+		return keys.get(index) == key ? values.get(index) : 0;
+	}
+
+	public boolean containsKey(long key) {
+		if (key == 0)
+			return hasZero;
+		return keys.get(find(key)) == key;
+	}
+
+	private int find(long key) {
+		int index = LongHashSet.hash(key) & mask;
+		long slot;
+		while ((slot = keys.get(index)) != 0 && slot != key)
+			index = (index + 1) & mask;
+		return index;
+	}
+
+	private void checkNotFull() {
+		if (isFull())
+			throw new IllegalStateException("The map is full");
+	}
+
+	private void grow() {
+		LongBuffer oldKeys = keys;
+		IntBuffer oldValues = values;
+		allocate((mask + 1) * 2);
+		for (int i = 0; i < oldKeys.capacity(); i++) {
+			long key = oldKeys.get(i);
+			if (key != 0) {
+				int index = find(key);
+				keys.put(index, key);
+				values.put(index, oldValues.get(i));
+			}
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 *
+	 * @return true if no new key can be added
+	 */
+	public boolean isFull() {
+		return size >= maxSize;
+	}
+
+	/**
+	 * remove all the keys, keeping the memory of the table
+	 */
+	public void clear() {
+		for (int i = 0; i < keys.capacity(); i++)
+			keys.put(i, 0);
+		hasZero = false;
+		zeroValue = 0;
+		size = 0;
+	}
+
+	/**
+	 * A callback for the entries of the map.
+	 */
+	public interface Visitor {
+		void visit(long key, int value);
+	}
+
+	/**
+	 * call the visitor for every entry, in no particular order
+	 *
+	 * @param visitor
+	 */
+	public void forEach(Visitor visitor) {
+		if (hasZero)
+			visitor.visit(0, zeroValue);
+		for (int i = 0; i < keys.capacity(); i++) {
+			long key = keys.get(i);
+			if (key != 0)
+				visitor.visit(key, values.get(i));
+		}
+	}
+}
@@ -0,0 +1,116 @@
+package analysis;
+
+import java.io.File;
+import java.io.IOException;
+
+import archive.GameStore;
+import model.Chess;
+import model.Move;
+import model.MoveCode;
+import model.PositionKey;
+
+/**
+ * Replays all the games of a {@link GameStore} and counts the distinct
+ * positions they reach.
+ *
+ * <pre>
+ * java analysis.PositionCount games.store [keys in memory] [spill directory]
+ * </pre>
+ */
+public class PositionCount {
+	private final PositionCounter counter;
+	private long distinct;
+	private long unique;
+	private long mostFrequentKey;
+	private int mostFrequentCount;
+
+	public PositionCount(PositionCounter counter) {
+		this.counter = counter;
+	}
+
+	/**
+	 * count the start position and the position after every ply of every game
+	 *
+	 * @param store
+	 * @throws IOException
+	 */
+	public void addAll(GameStore store) throws IOException {
+		for (int game = 0; game < store.size(); game++) {
+			Chess chess = new Chess();
+			counter.add(PositionKey.of(chess));
+			int plies = store.getPlyCount(game);
+			for (int ply = 0; ply < plies; ply++) {
+				Move move = MoveCode.toMove(chess, store.getMove(game, ply));
+				if (move == null)
+					break;
+				chess.replayMove(move);
+				counter.add(PositionKey.of(chess));
+			}
+		}
+	}
+
+	/**
+	 * finish the counting
+	 *
+	 * @throws IOException
+	 */
+	public void finish() throws IOException {
+		counter.forEach((key, count) -> {
+			distinct++;
+			if (count == 1)
+				unique++;
+			if (count > mostFrequentCount) {
+				mostFrequentCount = count;
+				mostFrequentKey = key;
+			}
+		});
+	}
+
+	/**
+	 *
+	 * @return the number of different positions
+	 */
+	public long getDistinct() {
+		return distinct;
+	}
+
+	/**
+	 *
+	 * @return the number of positions reached only once
+	 */
+	public long getUnique() {
+		return unique;
+	}
+
+	public long getMostFrequentKey() {
+		return mostFrequentKey;
+	}
+
+	public int getMostFrequentCount() {
+		return mostFrequentCount;
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println("Usage: PositionCount <game store> [keys in memory] [spill directory]");
+			System.exit(1);
+		}
+		int maxInMemory = args.length > 1 ? Integer.parseInt(args[1]) : 1 << 24;
+		File spill = new File(args.length > 2 ? args[2] : System.getProperty("java.io.tmpdir"));
+		long start = System.nanoTime();
+		try (GameStore store = GameStore.open(new File(args[0]));
+				PositionCounter counter = new PositionCounter(maxInMemory, spill)) {
+			PositionCount count = new PositionCount(counter);
+			count.addAll(store);
+			count.finish();
+			System.out.println("Games:      " + store.size());
+			System.out.println("Positions:  " + counter.getTotal());
+			System.out.println("Distinct:   " + count.getDistinct());
+			System.out.println("Only once:  " + count.getUnique());
+			System.out.println("Most often: " + Long.toHexString(count.getMostFrequentKey()) + " ("
+					+ count.getMostFrequentCount() + " times)");
+			System.out.println("Spilled:    " + counter.hasSpilled());
+		}
+		System.out.println("Time:       " + (System.nanoTime() - start) / 1000000 + " ms");
+	}
+}
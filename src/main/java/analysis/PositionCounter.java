@@ -0,0 +1,216 @@
+package analysis;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Counts how many times each position key occurs, for more keys than fit in
+ * memory.
+ *
+ * The keys are counted in a {@link LongIntMap}. When the map is full, its
+ * entries are spilled to 64 partition files on disk, chosen by the top 6 bits
+ * of the key, and the map starts over. At the end each partition is counted
+ * on its own; a partition that still does not fit is split again on the next
+ * 6 bits. Keys are hashes, so the partitions come out about the same size.
+ */
+public class PositionCounter implements Closeable {
+	private static final int FANOUT = 64;
+	private static final int BITS = 6;
+
+	private final LongIntMap map;
+	private final File spillDirectory;
+	private File directory;
+	private DataOutputStream[] partitions;
+	private long total;
+	private boolean finished;
+
+	/**
+	 *
+	 * @param maxInMemory
+	 *            the number of distinct keys counted in memory at once
+	 * @param spillDirectory
+	 *            where the partition files are written if needed
+	 */
+	public PositionCounter(int maxInMemory, File spillDirectory) {
+		this.map = new LongIntMap(maxInMemory);
+		this.spillDirectory = spillDirectory;
+	}
+
+	/**
+	 * count one occurrence of a key
+	 *
+	 * @param key
+	 * @throws IOException
+	 */
+	public void add(long key) throws IOException {
+		if (finished)
+			throw new IllegalStateException("The counting is finished");
+		if (map.isFull() && !map.containsKey(key)) {
+			if (partitions == null) {
+				directory = Files.createTempDirectory(spillDirectory.toPath(), "positions").toFile();
+				partitions = openPartitions(0);
+			}
+			spill(map, partitions, 0);
+		}
+		map.add(key, 1);
+		total++;
+	}
+
+	/**
+	 *
+	 * @return the number of keys added
+	 */
+	public long getTotal() {
+		return total;
+	}
+
+	/**
+	 *
+	 * @return true if some keys had to be written to disk
+	 */
+	public boolean hasSpilled() {
+		return partitions != null;
+	}
+
+	/**
+	 * Finish the counting and call the visitor once for every distinct key
+	 * with its count, in no particular order. This can only be done once.
+	 *
+	 * @param visitor
+	 * @throws IOException
+	 */
+	public void forEach(LongIntMap.Visitor visitor) throws IOException {
+		if (finished)
+			throw new IllegalStateException("The counting is finished");
+		finished = true;
+		if (partitions == null) {
+			map.forEach(visitor);
+			return;
+		}
+		spill(map, partitions, 0);
+		for (DataOutputStream out : partitions)
+			out.close();
+		for (int i = 0; i < FANOUT; i++)
+			count(partitionFile(0, i), 0, visitor);
+	}
+
+	/**
+	 * Count the keys of a partition file, splitting it if needed, then delete
+	 * it.
+	 */
+	private void count(File file, int level, LongIntMap.Visitor visitor) throws IOException {
+		map.clear();
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+			while (true) {
+				long key;
+				int count;
+				try {
+					key = in.readLong();
+					count = in.readInt();
+				} catch (EOFException e) {
+					break;
+				}
+				if (map.isFull() && !map.containsKey(key)) {
+					split(in, key, count, level + 1, visitor);
+					file.delete();
+					return;
+				}
+				map.add(key, count);
+			}
+		}
+		file.delete();
+		map.forEach(visitor);
+	}
+
+	private void split(DataInputStream in, long key, int count, int level, LongIntMap.Visitor visitor)
+			throws IOException {
+		if ((level + 1) * BITS > Long.SIZE)
+			throw new IllegalStateException("Too many equal keys to split");
+		DataOutputStream[] outputs = openPartitions(level);
+		try {
+			spill(map, outputs, level);
+			write(outputs, level, key, count);
+			while (true) {
+				try {
+					key = in.readLong();
+					count = in.readInt();
+				} catch (EOFException e) {
+					break;
+				}
+				write(outputs, level, key, count);
+			}
+		} finally {
+			for (DataOutputStream out : outputs)
+				out.close();
+		}
+		for (int i = 0; i < FANOUT; i++)
+			count(partitionFile(level, i), level, visitor);
+	}
+
+	private DataOutputStream[] openPartitions(int level) throws IOException {
+		DataOutputStream[] outputs = new DataOutputStream[FANOUT];
+		for (int i = 0; i < FANOUT; i++)
+			outputs[i] = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(partitionFile(level, i)), 1 << 16));
+		return outputs;
+	}
+
+	private File partitionFile(int level, int partition) {
+		return new File(directory, level + "-" + partition + ".bin");
+	}
+
+	private static void spill(LongIntMap map, DataOutputStream[] outputs, int level) throws IOException {
+		try {
+			map.forEach((key, count) -> {
+				try {
+					write(outputs, level, key, count);
+				} catch (IOException e) {
+					throw new SpillException(e);
+				}
+			});
+		} catch (SpillException e) {
+			throw (IOException) e.getCause();
+		}
+		map.clear();
+	}
+
+	private static void write(DataOutputStream[] outputs, int level, long key, int count) throws IOException {
+		DataOutputStream out = outputs[(int) (key >>> (Long.SIZE - BITS * (level + 1))) & (FANOUT - 1)];
+		out.writeLong(key);
+		out.writeInt(count);
+	}
+
+	/**
+	 * carries an IOException out of a visitor
+	 */
+	private static class SpillException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		SpillException(IOException cause) {
+			super(cause);
+		}
+	}
+
+	/**
+	 * delete the files left on disk
+	 */
+	@Override
+	public void close() {
+		if (directory != null) {
+			File[] files = directory.listFiles();
+			if (files != null)
+				for (File file : files)
+					file.delete();
+			directory.delete();
+		}
+	}
+}
@@ -0,0 +1,551 @@
+package archive;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import model.Move;
+import model.MoveCode;
+import model.Record;
+
+/**
+ * An append-only file of finished games, stored by column.
+ *
+ * Games are collected in memory and written out in sealed segments once a
+ * segment grows past a size. A segment holds, for its games, one column per
+ * {@link Column}: the results, the numbers of plies, the moves as
+ * {@link MoveCode}s, the players, the start and end times and the ECO codes.
+ * Every column is compressed on its own, and its length is in the segment
+ * header, so reading a column does not read or inflate the others. The footer
+ * at the end of the file is the index of the segments.
+ *
+ * If the footer is missing, because the writer did not get to close the
+ * file, the segments are found by walking their headers from the start.
+ */
+public class GameArchive implements Closeable {
+	private static final int SEGMENT_MAGIC = 0x43485347;
+	private static final int FOOTER_MAGIC = 0x43484658;
+	private static final int TRAILER_SIZE = 16;
+
+	/**
+	 * The columns of a segment, in the order they are written.
+	 */
+	public enum Column {
+		/** a byte per game, like {@link PgnGame#getResultValue()} */
+		RESULT,
+		/** a char per game */
+		PLIES,
+		/** a char per move, the games one after the other */
+		MOVES,
+		/** a string per game */
+		WHITE,
+		/** a string per game */
+		BLACK,
+		/** a long per game, in milliseconds since the epoch */
+		STARTED,
+		/** a long per game, in milliseconds since the epoch */
+		ENDED,
+		/** a string per game, empty if the opening is unknown */
+		ECO;
+
+		private static final Column[] ALL = values();
+	}
+
+	private final RandomAccessFile file;
+	private final Index index;
+
+	private GameArchive(RandomAccessFile file, Index index) {
+		this.file = file;
+		this.index = index;
+	}
+
+	/**
+	 * open an archive to read it
+	 *
+	 * @param path
+	 * @return the archive
+	 * @throws IOException
+	 */
+	public static GameArchive open(File path) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(path, "r");
+		try {
+			return new GameArchive(file, Index.read(file));
+		} catch (IOException e) {
+			file.close();
+			throw e;
+		}
+	}
+
+	/**
+	 *
+	 * @return the number of games in the archive
+	 */
+	public int size() {
+		return index.games;
+	}
+
+	public int getSegmentCount() {
+		return index.segments;
+	}
+
+	/**
+	 * Read a segment. Its columns are read from the file when they are first
+	 * used.
+	 *
+	 * @param segment
+	 * @return the segment
+	 * @throws IOException
+	 */
+	public Segment getSegment(int segment) throws IOException {
+		if (segment < 0 || segment >= index.segments)
+			throw new IndexOutOfBoundsException("No segment " + segment);
+		long offset = index.offsets[segment];
+		ByteBuffer header = ByteBuffer.allocate(Segment.headerSize());
+		readFully(file.getChannel(), header, offset);
+		header.flip();
+		return new Segment(file.getChannel(), offset, header);
+	}
+
+	@Override
+	public void close() throws IOException {
+		file.close();
+	}
+
+	private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			int read = channel.read(buffer, position);
+			if (read < 0)
+				throw new EOFException();
+			position += read;
+		}
+	}
+
+	/**
+	 * The games of one segment.
+	 */
+	public static class Segment {
+		private final FileChannel channel;
+		private final int games;
+		private final long[] offsets;
+		private final int[] compressed;
+		private final int[] raw;
+		private final ByteBuffer[] columns;
+		private int[] firstMoves;
+		private String[][] strings;
+
+		private Segment(FileChannel channel, long offset, ByteBuffer header) throws IOException {
+			this.channel = channel;
+			if (header.getInt() != SEGMENT_MAGIC)
+				throw new IOException("Not a segment at " + offset);
+			this.games = header.getInt();
+			int count = Column.ALL.length;
+			this.offsets = new long[count];
+			this.compressed = new int[count];
+			this.raw = new int[count];
+			this.columns = new ByteBuffer[count];
+			this.strings = new String[count][];
+			long position = offset + headerSize();
+			for (int c = 0; c < count; c++) {
+				compressed[c] = header.getInt();
+				raw[c] = header.getInt();
+				offsets[c] = position;
+				position += compressed[c];
+			}
+		}
+
+		private static int headerSize() {
+			return 8 + 8 * Column.ALL.length;
+		}
+
+		/**
+		 *
+		 * @return the length of the whole segment in the file
+		 */
+		private long length() {
+			long length = headerSize();
+			for (int size : compressed)
+				length += size;
+			return length;
+		}
+
+		public int size() {
+			return games;
+		}
+
+		/**
+		 * read and inflate a column, if it is not yet
+		 *
+		 * @param column
+		 * @return the column, to be read with absolute positions
+		 * @throws IOException
+		 */
+		public synchronized ByteBuffer getColumn(Column column) throws IOException {
+			int c = column.ordinal();
+			if (columns[c] == null) {
+				ByteBuffer input = ByteBuffer.allocate(compressed[c]);
+				readFully(channel, input, offsets[c]);
+				Inflater inflater = new Inflater();
+				try {
+					inflater.setInput(input.array());
+					byte[] output = new byte[raw[c]];
+					int n = 0;
+					while (n < output.length && !inflater.finished()) {
+						int inflated = inflater.inflate(output, n, output.length - n);
+						if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+							throw new IOException("Column " + column + " is truncated");
+						n += inflated;
+					}
+					columns[c] = ByteBuffer.wrap(output);
+				} catch (DataFormatException e) {
+					throw new IOException("Column " + column + " is corrupted", e);
+				} finally {
+					inflater.end();
+				}
+			}
+			return columns[c];
+		}
+
+		public int getResult(int game) throws IOException {
+			return getColumn(Column.RESULT).get(game);
+		}
+
+		public int getPlyCount(int game) throws IOException {
+			return getColumn(Column.PLIES).getChar(2 * game);
+		}
+
+		/**
+		 *
+		 * @param game
+		 * @param ply
+		 * @return the {@link MoveCode} of the move
+		 * @throws IOException
+		 */
+		public int getMove(int game, int ply) throws IOException {
+			if (firstMoves == null) {
+				ByteBuffer plies = getColumn(Column.PLIES);
+				int[] first = new int[games + 1];
+				for (int g = 0; g < games; g++)
+					first[g + 1] = first[g] + plies.getChar(2 * g);
+				firstMoves = first;
+			}
+			return getColumn(Column.MOVES).getChar(2 * (firstMoves[game] + ply));
+		}
+
+		public String getWhite(int game) throws IOException {
+			return getString(Column.WHITE, game);
+		}
+
+		public String getBlack(int game) throws IOException {
+			return getString(Column.BLACK, game);
+		}
+
+		public long getStarted(int game) throws IOException {
+			return getColumn(Column.STARTED).getLong(8 * game);
+		}
+
+		public long getEnded(int game) throws IOException {
+			return getColumn(Column.ENDED).getLong(8 * game);
+		}
+
+		/**
+		 *
+		 * @param game
+		 * @return the ECO code of the opening, null if it is unknown
+		 * @throws IOException
+		 */
+		public String getEco(int game) throws IOException {
+			String eco = getString(Column.ECO, game);
+			return eco.isEmpty() ? null : eco;
+		}
+
+		private synchronized String getString(Column column, int game) throws IOException {
+			int c = column.ordinal();
+			if (strings[c] == null) {
+				ByteBuffer buffer = getColumn(column).duplicate();
+				String[] values = new String[games];
+				for (int g = 0; g < games; g++) {
+					byte[] bytes = new byte[buffer.getChar()];
+					buffer.get(bytes);
+					values[g] = new String(bytes, StandardCharsets.UTF_8);
+				}
+				strings[c] = values;
+			}
+			return strings[c][game];
+		}
+	}
+
+	/**
+	 * Where the segments of a file are.
+	 */
+	private static class Index {
+		private long[] offsets = new long[16];
+		private int[] sizes = new int[16];
+		private int segments;
+		private int games;
+		// where the next segment goes
+		private long end;
+
+		private void add(long offset, int size, long length) {
+			if (segments == offsets.length) {
+				offsets = Arrays.copyOf(offsets, segments * 2);
+				sizes = Arrays.copyOf(sizes, segments * 2);
+			}
+			offsets[segments] = offset;
+			sizes[segments++] = size;
+			games += size;
+			end = offset + length;
+		}
+
+		/**
+		 * read the footer, or walk the segments if there is none
+		 */
+		private static Index read(RandomAccessFile file) throws IOException {
+			Index index = new Index();
+			long length = file.length();
+			if (length >= TRAILER_SIZE) {
+				file.seek(length - TRAILER_SIZE);
+				long footer = file.readLong();
+				int segments = file.readInt();
+				if (file.readInt() == FOOTER_MAGIC && footer >= 0 && footer + 12L * segments == length - TRAILER_SIZE) {
+					file.seek(footer);
+					for (int s = 0; s < segments; s++) {
+						long offset = file.readLong();
+						index.add(offset, file.readInt(), 0);
+					}
+					index.end = footer;
+					return index;
+				}
+			}
+			long offset = 0;
+			ByteBuffer header = ByteBuffer.allocate(Segment.headerSize());
+			while (offset + header.capacity() <= length) {
+				header.clear();
+				readFully(file.getChannel(), header, offset);
+				header.flip();
+				if (header.getInt(0) != SEGMENT_MAGIC)
+					break;
+				Segment segment = new Segment(file.getChannel(), offset, header);
+				// a segment cut short by a crash is dropped
+				if (offset + segment.length() > length)
+					break;
+				index.add(offset, segment.size(), segment.length());
+				offset += segment.length();
+			}
+			index.end = offset;
+			return index;
+		}
+	}
+
+	/**
+	 * Appends finished games to an archive, creating it if needed.
+	 *
+	 * Games are kept in memory, a few bytes each, until the segment grows past
+	 * its size; then the segment is compressed and written. Closing the writer
+	 * seals the last segment and writes the footer. The writer is not thread
+	 * safe.
+	 */
+	public static class Writer implements Closeable {
+		private final RandomAccessFile file;
+		private final Index index;
+		private final int segmentSize;
+		private final ByteArrayOutputStream[] buffers;
+		private final DataOutputStream[] columns;
+		private int pending;
+		private Runnable sealListener;
+
+		/**
+		 * append to an archive, sealing segments at 1MB of raw data
+		 *
+		 * @param path
+		 * @throws IOException
+		 */
+		public Writer(File path) throws IOException {
+			this(path, 1 << 20);
+		}
+
+		/**
+		 *
+		 * @param path
+		 * @param segmentSize
+		 *            the number of raw bytes after which a segment is sealed
+		 * @throws IOException
+		 */
+		public Writer(File path, int segmentSize) throws IOException {
+			this.file = new RandomAccessFile(path, "rw");
+			try {
+				this.index = Index.read(file);
+			} catch (IOException e) {
+				file.close();
+				throw e;
+			}
+			// drop the footer, or a partly written segment
+			file.setLength(index.end);
+			this.segmentSize = segmentSize;
+			this.buffers = new ByteArrayOutputStream[Column.ALL.length];
+			this.columns = new DataOutputStream[Column.ALL.length];
+			for (int c = 0; c < columns.length; c++) {
+				buffers[c] = new ByteArrayOutputStream();
+				columns[c] = new DataOutputStream(buffers[c]);
+			}
+		}
+
+		/**
+		 *
+		 * @param listener
+		 *            told after every segment is sealed and forced to disk,
+		 *            with the games added before it, or null for none
+		 */
+		public void setSealListener(Runnable listener) {
+			this.sealListener = listener;
+		}
+
+		/**
+		 * append a finished game; it is only on disk once its segment is
+		 * sealed
+		 *
+		 * @param record
+		 *            the moves of the game
+		 * @param result
+		 *            like {@link PgnGame#getResultValue()}
+		 * @param white
+		 *            the white player, or null
+		 * @param black
+		 *            the black player, or null
+		 * @param started
+		 *            when the game started, in milliseconds
+		 * @param ended
+		 *            when the game ended, in milliseconds
+		 * @throws IOException
+		 */
+		public void add(Record record, int result, String white, String black, long started, long ended)
+				throws IOException {
+			if (record.size() > Character.MAX_VALUE)
+				throw new IOException("Game is too long to archive: " + record.size() + " plies");
+			column(Column.RESULT).writeByte(result);
+			column(Column.PLIES).writeChar(record.size());
+			DataOutputStream moves = column(Column.MOVES);
+			for (Move move : record)
+				moves.writeChar(MoveCode.encode(move));
+			writeString(column(Column.WHITE), white);
+			writeString(column(Column.BLACK), black);
+			column(Column.STARTED).writeLong(started);
+			column(Column.ENDED).writeLong(ended);
+			writeString(column(Column.ECO), record.getEco());
+			pending++;
+			int size = 0;
+			for (ByteArrayOutputStream buffer : buffers)
+				size += buffer.size();
+			if (size >= segmentSize)
+				seal();
+		}
+
+		private DataOutputStream column(Column column) {
+			return columns[column.ordinal()];
+		}
+
+		private static void writeString(DataOutputStream out, String value) throws IOException {
+			byte[] bytes = value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+			int length = Math.min(bytes.length, Character.MAX_VALUE);
+			out.writeChar(length);
+			out.write(bytes, 0, length);
+		}
+
+		/**
+		 * compress and write the games added since the last segment, and force
+		 * them to disk
+		 *
+		 * @throws IOException
+		 */
+		public void seal() throws IOException {
+			if (pending == 0)
+				return;
+			int count = Column.ALL.length;
+			byte[][] compressed = new byte[count][];
+			Deflater deflater = new Deflater();
+			try {
+				for (int c = 0; c < count; c++) {
+					deflater.reset();
+					deflater.setInput(buffers[c].toByteArray());
+					deflater.finish();
+					ByteArrayOutputStream out = new ByteArrayOutputStream(buffers[c].size() / 2 + 64);
+					byte[] chunk = new byte[1 << 14];
+					while (!deflater.finished())
+						out.write(chunk, 0, deflater.deflate(chunk));
+					compressed[c] = out.toByteArray();
+				}
+			} finally {
+				deflater.end();
+			}
+			ByteBuffer header = ByteBuffer.allocate(Segment.headerSize());
+			header.putInt(SEGMENT_MAGIC);
+			header.putInt(pending);
+			long length = header.capacity();
+			for (int c = 0; c < count; c++) {
+				header.putInt(compressed[c].length);
+				header.putInt(buffers[c].size());
+				length += compressed[c].length;
+			}
+			file.seek(index.end);
+			file.write(header.array());
+			for (byte[] column : compressed)
+				file.write(column);
+			file.getChannel().force(true);
+			index.add(index.end, pending, length);
+			for (ByteArrayOutputStream buffer : buffers)
+				buffer.reset();
+			pending = 0;
+			if (sealListener != null)
+				sealListener.run();
+		}
+
+		/**
+		 *
+		 * @return the number of games added since the last segment was sealed,
+		 *         not on disk yet
+		 */
+		public int getPending() {
+			return pending;
+		}
+
+		/**
+		 *
+		 * @return the number of games in the archive, sealed or not
+		 */
+		public int size() {
+			return index.games + pending;
+		}
+
+		/**
+		 * seal the last segment and write the footer
+		 */
+		@Override
+		public void close() throws IOException {
+			try {
+				seal();
+				file.seek(index.end);
+				ByteBuffer footer = ByteBuffer.allocate(12 * index.segments + TRAILER_SIZE);
+				for (int s = 0; s < index.segments; s++) {
+					footer.putLong(index.offsets[s]);
+					footer.putInt(index.sizes[s]);
+				}
+				footer.putLong(index.end);
+				footer.putInt(index.segments);
+				footer.putInt(FOOTER_MAGIC);
+				file.write(footer.array());
+			} finally {
+				file.close();
+			}
+		}
+	}
+}
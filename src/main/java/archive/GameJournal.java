@@ -0,0 +1,642 @@
+package archive;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+import model.Chess;
+import model.ChessCodec;
+import model.InvalidMoveException;
+import model.Move;
+
+/**
+ * A write-ahead log of the games of the open rooms, so a node that crashed
+ * can open its rooms again where they were.
+ *
+ * Every change of a game is appended as a record: a snapshot of the whole
+ * game packed by {@link ChessCodec}, a move, the end of the game, the draw
+ * rights, or the close of the room. A record is framed as
+ *
+ * <pre>
+ * int       the length of the rest of the record
+ * int       the CRC-32 of the rest of the record
+ * byte      the type
+ * short     the length of the name of the room in UTF-8, and the name
+ * ...       the chess, a short move code, or a byte end or draw rights
+ * </pre>
+ *
+ * The records go to numbered segment files. Appending only copies the record
+ * to a buffer; a writer thread writes out all the records buffered and
+ * forces them to disk at once, so many rooms share one fsync. A crash loses
+ * the records appended since the last fsync ended, which is the time of an
+ * fsync or two; {@link #sync()} waits until the records appended before are
+ * on disk. The server waits for it before it shows the players a change, so
+ * a crash only loses changes nobody saw.
+ *
+ * Once a segment grows past a size, the next one is started, and the rooms
+ * whose latest snapshot is two segments old are asked for a new one. A
+ * segment is deleted once no open room has its latest snapshot in it or
+ * before, so recovering a room replays one snapshot and the moves after it.
+ *
+ * Opening a journal recovers the rooms open in the segments there: the
+ * segments are read in parallel, and then the games in parallel.
+ */
+public class GameJournal implements Closeable {
+	private static final int MAGIC = 0x43484a4c;
+	private static final byte SNAPSHOT = 1;
+	private static final byte MOVE = 2;
+	private static final byte END = 3;
+	private static final byte DRAWS = 4;
+	private static final byte CLOSE = 5;
+	private static final String SUFFIX = ".journal";
+
+	private final File directory;
+	private final long segmentSize;
+	// the segment of the latest snapshot of every open room
+	private final Map<String, Long> snapshots = new ConcurrentHashMap<>();
+	private final Map<String, byte[]> recovered;
+	private final Thread writer;
+	private volatile Consumer<String> snapshotRequests;
+
+	// the records buffered, with the fields below guarded by the journal
+	private Buffer buffer = new Buffer();
+	private Buffer spare = new Buffer();
+	private long segment;
+	private long appended;
+	private long synced;
+	private IOException failure;
+	private boolean closed;
+
+	// used by the writer thread only
+	private FileChannel channel;
+
+	/**
+	 * open a journal, starting new segments at 64MB
+	 *
+	 * @param directory
+	 * @throws IOException
+	 */
+	public GameJournal(File directory) throws IOException {
+		this(directory, 64 << 20);
+	}
+
+	/**
+	 * Open a journal and recover the rooms open in it. The records go to a new
+	 * segment, after the ones there.
+	 *
+	 * @param directory
+	 *            where the segments are
+	 * @param segmentSize
+	 *            the number of bytes after which a new segment is started
+	 * @throws IOException
+	 */
+	public GameJournal(File directory, long segmentSize) throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs())
+			throw new IOException("Cannot make the journal directory " + directory);
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+		Recovery recovery = recover(directory, Runtime.getRuntime().availableProcessors());
+		this.recovered = Collections.unmodifiableMap(recovery.games);
+		this.snapshots.putAll(recovery.snapshots);
+		this.segment = recovery.last + 1;
+		this.channel = open(segment);
+		this.writer = new Thread(this::write, "journal-writer");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 *
+	 * @return the games of the rooms open when the journal was last used,
+	 *         packed by {@link ChessCodec}, by room
+	 */
+	public Map<String, byte[]> getRecovered() {
+		return recovered;
+	}
+
+	/**
+	 * @param requests
+	 *            told the rooms whose snapshot is old, on the writer thread;
+	 *            they should call {@link #snapshot(String, byte[])}, or
+	 *            {@link #close(String)} if they are not open any more
+	 */
+	public void setSnapshotRequests(Consumer<String> requests) {
+		this.snapshotRequests = requests;
+	}
+
+	/**
+	 * append the whole game of a room
+	 *
+	 * @param room
+	 * @param chess
+	 *            packed by {@link ChessCodec#encode(Chess)}
+	 */
+	public void snapshot(String room, byte[] chess) {
+		append(SNAPSHOT, room, chess);
+	}
+
+	/**
+	 * append a move
+	 *
+	 * @param room
+	 * @param code
+	 *            given by {@link ChessCodec#encodeMove(model.Move)}
+	 */
+	public void move(String room, int code) {
+		append(MOVE, room, new byte[] { (byte) (code >> 8), (byte) code });
+	}
+
+	/**
+	 * append the end of a game
+	 *
+	 * @param room
+	 * @param end
+	 *            given by {@link ChessCodec#encodeEnd(model.EndGame)}
+	 */
+	public void end(String room, int end) {
+		append(END, room, new byte[] { (byte) end });
+	}
+
+	/**
+	 * append the rights to offer a draw
+	 *
+	 * @param room
+	 * @param draws
+	 *            given by
+	 *            {@link ChessCodec#encodeDraws(controller.DrawManager)}
+	 */
+	public void draws(String room, int draws) {
+		append(DRAWS, room, new byte[] { (byte) draws });
+	}
+
+	/**
+	 * append the close of a room, which is not recovered any more
+	 *
+	 * @param room
+	 */
+	public void close(String room) {
+		append(CLOSE, room, new byte[0]);
+	}
+
+	private void append(byte type, String room, byte[] payload) {
+		byte[] name = room.getBytes(StandardCharsets.UTF_8);
+		ByteBuffer record = ByteBuffer.allocate(11 + name.length + payload.length);
+		record.position(8);
+		record.put(type).putShort((short) name.length).put(name).put(payload);
+		CRC32 crc = new CRC32();
+		crc.update(record.array(), 8, record.capacity() - 8);
+		record.putInt(0, record.capacity() - 8).putInt(4, (int) crc.getValue());
+		synchronized (this) {
+			if (closed)
+				return;
+			buffer.write(record.array(), 0, record.capacity());
+			appended++;
+			// known before the writer can take the record and start a new
+			// segment, which deletes the segments older than every snapshot
+			// known; the record may go to the new one, so this is the earliest
+			// it can be in
+			if (type == SNAPSHOT)
+				snapshots.put(room, segment);
+			else if (type == CLOSE)
+				snapshots.remove(room);
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Wait until the records appended before are on disk.
+	 *
+	 * @throws IOException
+	 *             if they could not be written
+	 */
+	public synchronized void sync() throws IOException {
+		long target = appended;
+		try {
+			while (synced < target && failure == null && writer.isAlive())
+				wait();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for the journal", e);
+		}
+		if (failure != null)
+			throw failure;
+		if (synced < target)
+			throw new IOException("The journal is closed");
+	}
+
+	private void write() {
+		try {
+			while (true) {
+				Buffer batch;
+				long upTo;
+				synchronized (this) {
+					while (buffer.size() == 0 && !closed)
+						wait();
+					if (buffer.size() == 0)
+						return;
+					batch = buffer;
+					buffer = spare;
+					spare = batch;
+					upTo = appended;
+				}
+				ByteBuffer bytes = batch.wrap();
+				while (bytes.hasRemaining())
+					channel.write(bytes);
+				channel.force(false);
+				batch.reset();
+				synchronized (this) {
+					synced = upTo;
+					notifyAll();
+				}
+				if (channel.size() >= segmentSize)
+					nextSegment();
+			}
+		} catch (IOException e) {
+			synchronized (this) {
+				failure = e;
+				notifyAll();
+			}
+			System.err.println("The journal failed: " + e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			try {
+				channel.close();
+			} catch (IOException e) {
+				System.err.println("Cannot close the journal: " + e);
+			}
+		}
+	}
+
+	private void nextSegment() throws IOException {
+		channel.close();
+		long next;
+		synchronized (this) {
+			next = ++segment;
+		}
+		channel = open(next);
+		long oldest = next;
+		List<String> old = new ArrayList<>();
+		for (Map.Entry<String, Long> entry : snapshots.entrySet()) {
+			oldest = Math.min(oldest, entry.getValue());
+			if (entry.getValue() < next - 1)
+				old.add(entry.getKey());
+		}
+		for (long number : numbers(directory))
+			if (number < oldest)
+				Files.deleteIfExists(file(directory, number).toPath());
+		Consumer<String> requests = snapshotRequests;
+		if (requests != null) {
+			for (String room : old) {
+				try {
+					requests.accept(room);
+				} catch (RuntimeException e) {
+					System.err.println("Cannot ask room " + room + " for a snapshot: " + e);
+				}
+			}
+		}
+	}
+
+	private FileChannel open(long number) throws IOException {
+		FileChannel opened = FileChannel.open(file(directory, number).toPath(), StandardOpenOption.CREATE_NEW,
+				StandardOpenOption.WRITE);
+		ByteBuffer header = ByteBuffer.allocate(4).putInt(0, MAGIC);
+		while (header.hasRemaining())
+			opened.write(header);
+		return opened;
+	}
+
+	/**
+	 *
+	 * @return the number of segment files in the directory
+	 */
+	public int getSegments() {
+		return numbers(directory).length;
+	}
+
+	/**
+	 * Write out the records appended and stop. The rooms are not closed, so
+	 * they are recovered the next time.
+	 */
+	@Override
+	public void close() throws IOException {
+		synchronized (this) {
+			closed = true;
+			notifyAll();
+		}
+		try {
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		synchronized (this) {
+			if (failure != null)
+				throw failure;
+		}
+	}
+
+	private static File file(File directory, long number) {
+		return new File(directory, String.format("%012d", number) + SUFFIX);
+	}
+
+	private static long[] numbers(File directory) {
+		String[] names = directory.list((dir, name) -> name.endsWith(SUFFIX));
+		if (names == null)
+			return new long[0];
+		long[] numbers = new long[names.length];
+		int count = 0;
+		for (String name : names) {
+			try {
+				numbers[count] = Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+				count++;
+			} catch (NumberFormatException e) {
+				// not a segment
+			}
+		}
+		numbers = Arrays.copyOf(numbers, count);
+		Arrays.sort(numbers);
+		return numbers;
+	}
+
+	/**
+	 * What is found in the segments of a journal.
+	 */
+	static class Recovery {
+		/** the games of the rooms open, packed by {@link ChessCodec} */
+		final Map<String, byte[]> games = new HashMap<>();
+		/** the segment of the latest snapshot of every room open */
+		final Map<String, Long> snapshots = new HashMap<>();
+		/** the number of the last segment, 0 if there is none */
+		long last;
+		/** the number of records read */
+		long records;
+	}
+
+	/**
+	 * The records of a room in a segment, or in the segments read so far.
+	 */
+	private static class RoomLog {
+		byte[] snapshot;
+		long snapshotSegment;
+		boolean closed;
+		// the type in the high bits, the move, end or draw rights in the low
+		int[] events = new int[4];
+		int size;
+
+		void add(int event) {
+			if (size == events.length)
+				events = Arrays.copyOf(events, size * 2);
+			events[size++] = event;
+		}
+
+		void addAll(RoomLog later) {
+			for (int i = 0; i < later.size; i++)
+				add(later.events[i]);
+		}
+	}
+
+	/**
+	 * Read the segments of a journal, each on a thread of its own, and replay
+	 * the games of the rooms still open on the same threads.
+	 *
+	 * @param directory
+	 * @param threads
+	 *            the number of threads
+	 * @return the rooms open
+	 * @throws IOException
+	 *             if a segment cannot be read
+	 */
+	static Recovery recover(File directory, int threads) throws IOException {
+		Recovery recovery = new Recovery();
+		long[] numbers = numbers(directory);
+		if (numbers.length == 0)
+			return recovery;
+		recovery.last = numbers[numbers.length - 1];
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			List<Callable<Map<String, RoomLog>>> reads = new ArrayList<>();
+			long[] counts = new long[numbers.length];
+			for (int i = 0; i < numbers.length; i++) {
+				int n = i;
+				reads.add(() -> {
+					long[] count = new long[1];
+					Map<String, RoomLog> rooms = read(file(directory, numbers[n]), numbers[n], count);
+					counts[n] = count[0];
+					return rooms;
+				});
+			}
+			// later segments go on from the earlier ones
+			Map<String, RoomLog> rooms = new HashMap<>();
+			for (Future<Map<String, RoomLog>> read : pool.invokeAll(reads)) {
+				for (Map.Entry<String, RoomLog> entry : get(read).entrySet()) {
+					RoomLog later = entry.getValue();
+					if (later.snapshot != null) {
+						rooms.put(entry.getKey(), later);
+					} else if (later.closed) {
+						rooms.remove(entry.getKey());
+					} else {
+						RoomLog earlier = rooms.get(entry.getKey());
+						if (earlier != null)
+							earlier.addAll(later);
+					}
+				}
+			}
+			for (long count : counts)
+				recovery.records += count;
+
+			List<String> names = new ArrayList<>(rooms.keySet());
+			List<Callable<byte[][]>> replays = new ArrayList<>();
+			int slice = (names.size() + threads - 1) / threads;
+			for (int from = 0; from < names.size(); from += slice) {
+				List<String> part = names.subList(from, Math.min(names.size(), from + slice));
+				replays.add(() -> {
+					byte[][] games = new byte[part.size()][];
+					for (int i = 0; i < games.length; i++)
+						games[i] = replay(part.get(i), rooms.get(part.get(i)));
+					return games;
+				});
+			}
+			int i = 0;
+			for (Future<byte[][]> replay : pool.invokeAll(replays)) {
+				for (byte[] game : get(replay)) {
+					String name = names.get(i++);
+					if (game != null) {
+						recovery.games.put(name, game);
+						recovery.snapshots.put(name, rooms.get(name).snapshotSegment);
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while recovering the journal", e);
+		} finally {
+			pool.shutdown();
+		}
+		return recovery;
+	}
+
+	private static <T> T get(Future<T> future) throws IOException, InterruptedException {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException)
+				throw (IOException) e.getCause();
+			throw new IOException(e.getCause());
+		}
+	}
+
+	/**
+	 * Read the records of a segment, up to the first one cut off or damaged
+	 * by a crash.
+	 */
+	private static Map<String, RoomLog> read(File file, long number, long[] count) throws IOException {
+		ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+		Map<String, RoomLog> rooms = new HashMap<>();
+		if (in.remaining() < 4 || in.getInt() != MAGIC)
+			throw new IOException("Not a journal segment: " + file);
+		CRC32 crc = new CRC32();
+		while (in.remaining() >= 8) {
+			int length = in.getInt();
+			int sum = in.getInt();
+			if (length < 3 || length > in.remaining())
+				break;
+			crc.reset();
+			crc.update(in.array(), in.position(), length);
+			if ((int) crc.getValue() != sum)
+				break;
+			int end = in.position() + length;
+			byte type = in.get();
+			byte[] name = new byte[in.getShort() & 0xFFFF];
+			in.get(name);
+			String room = new String(name, StandardCharsets.UTF_8);
+			RoomLog log = rooms.computeIfAbsent(room, r -> new RoomLog());
+			switch (type) {
+			case SNAPSHOT:
+				log.snapshot = Arrays.copyOfRange(in.array(), in.position(), end);
+				log.snapshotSegment = number;
+				log.closed = false;
+				log.size = 0;
+				break;
+			case CLOSE:
+				log.snapshot = null;
+				log.closed = true;
+				log.size = 0;
+				break;
+			case MOVE:
+				log.add(MOVE << 16 | in.getShort() & 0xFFFF);
+				break;
+			default:
+				log.add(type << 16 | in.get() & 0xFF);
+				break;
+			}
+			in.position(end);
+			count[0]++;
+		}
+		return rooms;
+	}
+
+	/**
+	 *
+	 * @return the game packed again, or null if the room cannot be replayed
+	 */
+	private static byte[] replay(String room, RoomLog log) {
+		if (log.snapshot == null)
+			return null;
+		if (log.size == 0)
+			return log.snapshot;
+		try {
+			Chess chess = ChessCodec.decode(log.snapshot);
+			for (int i = 0; i < log.size; i++) {
+				int value = log.events[i] & 0xFFFF;
+				switch (log.events[i] >>> 16) {
+				case MOVE:
+					ChessCodec.replay(chess, value);
+					break;
+				case END:
+					ChessCodec.replayEnd(chess, value);
+					break;
+				case DRAWS:
+					ChessCodec.replayDraws(chess, value);
+					break;
+				default:
+					break;
+				}
+			}
+			return ChessCodec.encode(chess);
+		} catch (IllegalArgumentException e) {
+			System.err.println("Cannot recover room " + room + ": " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Write a journal of rooms playing the same opening, each from a snapshot
+	 * a few plies in, and time its recovery.
+	 *
+	 * @param args
+	 *            the directory, which should be empty, and the number of rooms
+	 * @throws IOException
+	 * @throws InvalidMoveException
+	 */
+	public static void main(String[] args) throws IOException, InvalidMoveException {
+		File directory = new File(args.length > 0 ? args[0] : "journal");
+		int rooms = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+		// the first moves of a Ruy Lopez
+		String[] moves = { "e4", "e5", "Nf3", "Nc6", "Bb5", "a6", "Ba4", "Nf6", "O-O", "Be7", "Re1", "b5", "Bb3",
+				"d6", "c3", "O-O", "h3", "Na5", "Bc2", "c5" };
+		Chess chess = new Chess();
+		byte[][] snapshots = new byte[moves.length][];
+		int[] codes = new int[moves.length];
+		for (int i = 0; i < moves.length; i++) {
+			snapshots[i] = ChessCodec.encode(chess);
+			Move move = chess.interpreteMoveCommand(moves[i]);
+			chess.makeMove(move);
+			codes[i] = ChessCodec.encodeMove(move);
+		}
+		long start = System.nanoTime();
+		try (GameJournal journal = new GameJournal(directory)) {
+			for (int room = 0; room < rooms; room++)
+				journal.snapshot("room" + room, snapshots[room % 8]);
+			// the rooms take turns, as they do on a server
+			for (int ply = 0; ply < moves.length; ply++)
+				for (int room = 0; room < rooms; room++)
+					if (ply >= room % 8)
+						journal.move("room" + room, codes[ply]);
+		}
+		System.out.println("written in " + (System.nanoTime() - start) / 1000000 + " ms");
+		start = System.nanoTime();
+		Recovery recovery = recover(directory, Runtime.getRuntime().availableProcessors());
+		long elapsed = System.nanoTime() - start;
+		System.out.println("recovered " + recovery.games.size() + " rooms from " + recovery.records + " records in "
+				+ elapsed / 1000000 + " ms");
+	}
+
+	/**
+	 * A buffer whose bytes can be written out without a copy.
+	 */
+	private static class Buffer extends ByteArrayOutputStream {
+		ByteBuffer wrap() {
+			return ByteBuffer.wrap(buf, 0, count);
+		}
+	}
+}
@@ -0,0 +1,274 @@
+package archive;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import model.Chess;
+import model.InvalidMoveException;
+import model.Material;
+import model.Move;
+import model.MoveCode;
+import model.Record;
+
+/**
+ * A file of games that is read through a memory mapping, so searching it does
+ * not need to parse or load the games onto the heap.
+ *
+ * The file starts with a header (magic, version, number of games, offset of
+ * the index). Each game is stored as its result, its number of plies, its
+ * material spans and its moves as {@link MoveCode}s. A material span is a run
+ * of plies with the same {@link Material} signature; ply 0 is the start
+ * position. The index at the end holds the offset of every game.
+ *
+ * All the reads use absolute positions, so one store can be shared by many
+ * threads.
+ */
+public class GameStore implements Closeable {
+	private static final int MAGIC = 0x43485353;
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 20;
+	private static final int SPAN_SIZE = 12;
+
+	private final RandomAccessFile file;
+	private final ByteBuffer buffer;
+	private final int size;
+	private final int indexOffset;
+
+	private GameStore(RandomAccessFile file, ByteBuffer buffer) throws IOException {
+		this.file = file;
+		this.buffer = buffer;
+		if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION)
+			throw new IOException("Not a game store");
+		this.size = buffer.getInt(8);
+		this.indexOffset = (int) buffer.getLong(12);
+	}
+
+	/**
+	 * map a store written by {@link Writer}
+	 *
+	 * @param path
+	 * @return the store
+	 * @throws IOException
+	 */
+	public static GameStore open(File path) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(path, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			if (channel.size() > Integer.MAX_VALUE)
+				throw new IOException("A game store cannot be larger than 2GB, split the corpus: " + path);
+			return new GameStore(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		} catch (IOException e) {
+			file.close();
+			throw e;
+		}
+	}
+
+	/**
+	 *
+	 * @return the number of games in this store
+	 */
+	public int size() {
+		return size;
+	}
+
+	private int offset(int game) {
+		return (int) buffer.getLong(indexOffset + 8 * game);
+	}
+
+	/**
+	 *
+	 * @param game
+	 * @return the result of the game, like {@link PgnGame#getResultValue()}
+	 */
+	public int getResult(int game) {
+		return buffer.get(offset(game));
+	}
+
+	public int getPlyCount(int game) {
+		return buffer.getChar(offset(game) + 1);
+	}
+
+	public int getSpanCount(int game) {
+		return buffer.getChar(offset(game) + 3);
+	}
+
+	public long getSpanMaterial(int game, int span) {
+		return buffer.getLong(offset(game) + 5 + span * SPAN_SIZE);
+	}
+
+	public int getSpanFirstPly(int game, int span) {
+		return buffer.getChar(offset(game) + 5 + span * SPAN_SIZE + 8);
+	}
+
+	public int getSpanLastPly(int game, int span) {
+		return buffer.getChar(offset(game) + 5 + span * SPAN_SIZE + 10);
+	}
+
+	/**
+	 *
+	 * @param game
+	 * @param ply
+	 *            0 for the first move
+	 * @return the {@link MoveCode} of this move
+	 */
+	public int getMove(int game, int ply) {
+		int offset = offset(game);
+		int moves = offset + 5 + buffer.getChar(offset + 3) * SPAN_SIZE;
+		return buffer.getChar(moves + 2 * ply);
+	}
+
+	/**
+	 * Play the moves of a stored game from one ply up to another.
+	 *
+	 * @param game
+	 * @param chess
+	 *            a chess where the moves before fromPly have been played
+	 * @param fromPly
+	 *            the first move to play
+	 * @param toPly
+	 *            the number of moves played when this returns
+	 */
+	public void replay(int game, Chess chess, int fromPly, int toPly) {
+		for (int ply = fromPly; ply < toPly; ply++) {
+			int code = getMove(game, ply);
+			Move move = MoveCode.toMove(chess, code);
+			if (move == null)
+				throw new IllegalStateException("Stored move " + MoveCode.toString(code) + " of game " + game
+						+ " is not legal");
+			chess.replayMove(move);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		file.close();
+	}
+
+	/**
+	 * Convert PGN text to a store. Games with moves that are not legal are
+	 * left out.
+	 *
+	 * @param pgn
+	 * @param path
+	 *            the file to write
+	 * @return the number of games stored
+	 * @throws IOException
+	 */
+	public static int importPgn(Reader pgn, File path) throws IOException {
+		try (PgnReader reader = new PgnReader(pgn); Writer writer = new Writer(path)) {
+			PgnGame game;
+			while ((game = reader.next()) != null) {
+				Chess chess = new Chess();
+				try {
+					game.replay(chess);
+				} catch (InvalidMoveException e) {
+					continue;
+				}
+				writer.add(chess.getRecords(), game.getResultValue());
+			}
+			return writer.size();
+		}
+	}
+
+	/**
+	 * Appends games to a new store file.
+	 */
+	public static class Writer implements Closeable {
+		private final File path;
+		private final DataOutputStream out;
+		private long[] offsets;
+		private int size;
+
+		public Writer(File path) throws IOException {
+			this.path = path;
+			this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path), 1 << 16));
+			this.offsets = new long[1024];
+			out.write(new byte[HEADER_SIZE]);
+		}
+
+		/**
+		 * append a game
+		 *
+		 * @param record
+		 *            the moves of the game
+		 * @param result
+		 *            like {@link PgnGame#getResultValue()}
+		 * @throws IOException
+		 */
+		public void add(Record record, int result) throws IOException {
+			int plies = record.size();
+			if (plies > Character.MAX_VALUE)
+				throw new IOException("Game is too long to store: " + plies + " plies");
+			// material only changes with captures and promotions, so the
+			// spans can be found without replaying the game
+			long[] spans = new long[8];
+			int spanCount = 0;
+			long material = Material.START;
+			int first = 0;
+			for (int ply = 0; ply < plies; ply++) {
+				long next = Material.afterMove(material, record.get(ply));
+				if (next != material) {
+					spans = addSpan(spans, spanCount++, material, first, ply);
+					material = next;
+					first = ply + 1;
+				}
+			}
+			spans = addSpan(spans, spanCount++, material, first, plies);
+
+			if (size == offsets.length)
+				offsets = Arrays.copyOf(offsets, size * 2);
+			offsets[size++] = out.size();
+			out.writeByte(result);
+			out.writeChar(plies);
+			out.writeChar(spanCount);
+			for (int i = 0; i < spanCount; i++) {
+				out.writeLong(spans[2 * i]);
+				out.writeChar((int) (spans[2 * i + 1] >>> 16));
+				out.writeChar((int) (spans[2 * i + 1] & 0xFFFF));
+			}
+			for (Move move : record)
+				out.writeChar(MoveCode.encode(move));
+			if (out.size() == Integer.MAX_VALUE)
+				throw new IOException("A game store cannot be larger than 2GB, split the corpus: " + path);
+		}
+
+		private static long[] addSpan(long[] spans, int index, long material, int first, int last) {
+			if (2 * index + 1 >= spans.length)
+				spans = Arrays.copyOf(spans, spans.length * 2);
+			spans[2 * index] = material;
+			spans[2 * index + 1] = (long) first << 16 | last;
+			return spans;
+		}
+
+		/**
+		 *
+		 * @return the number of games added so far
+		 */
+		public int size() {
+			return size;
+		}
+
+		@Override
+		public void close() throws IOException {
+			long indexOffset = out.size();
+			for (int i = 0; i < size; i++)
+				out.writeLong(offsets[i]);
+			out.close();
+			try (RandomAccessFile file = new RandomAccessFile(path, "rw")) {
+				file.writeInt(MAGIC);
+				file.writeInt(VERSION);
+				file.writeInt(size);
+				file.writeLong(indexOffset);
+			}
+		}
+	}
+}
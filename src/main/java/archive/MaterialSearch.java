@@ -0,0 +1,190 @@
+package archive;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import model.Bitboards;
+import model.Chess;
+
+/**
+ * Searches a {@link GameStore} for games reaching a position that matches a
+ * {@link PositionQuery}.
+ *
+ * The material spans of each game are checked first, and only the games with
+ * an accepted material are replayed to look at the pieces. The store is
+ * split in batches of games that are searched by several threads, and the
+ * matches are handed out as they are found.
+ */
+public class MaterialSearch {
+	private static final int BATCH = 256;
+
+	private final GameStore store;
+	private final int threads;
+
+	public MaterialSearch(GameStore store) {
+		this(store, Runtime.getRuntime().availableProcessors());
+	}
+
+	public MaterialSearch(GameStore store, int threads) {
+		this.store = store;
+		this.threads = threads;
+	}
+
+	/**
+	 * Start a search. The matches come in no particular order, one for each
+	 * matching game.
+	 *
+	 * @param query
+	 * @return the matches, which should be closed if not read to the end
+	 */
+	public Results search(PositionQuery query) {
+		Results results = new Results(threads);
+		AtomicInteger next = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+			Thread thread = new Thread(r, "material-search");
+			thread.setDaemon(true);
+			return thread;
+		});
+		for (int t = 0; t < threads; t++) {
+			executor.execute(() -> {
+				Bitboards board = new Bitboards();
+				try {
+					int start;
+					while (!results.closed && (start = next.getAndAdd(BATCH)) < store.size()) {
+						int end = Math.min(start + BATCH, store.size());
+						for (int game = start; game < end; game++) {
+							int ply = match(game, query, board);
+							if (ply >= 0)
+								results.put(new SearchMatch(game, ply, store.getResult(game)));
+						}
+					}
+				} catch (Throwable e) {
+					results.failure = e;
+				} finally {
+					results.workerDone();
+				}
+			});
+		}
+		executor.shutdown();
+		return results;
+	}
+
+	/**
+	 *
+	 * @param query
+	 * @return the number of matching games
+	 */
+	public int count(PositionQuery query) {
+		int count = 0;
+		try (Results results = search(query)) {
+			while (results.hasNext()) {
+				results.next();
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 *
+	 * @return the first ply where the game matches, -1 if it never does
+	 */
+	int match(int game, PositionQuery query, Bitboards board) {
+		Chess chess = null;
+		int played = 0;
+		int spans = store.getSpanCount(game);
+		for (int span = 0; span < spans; span++) {
+			if (!query.acceptsMaterial(store.getSpanMaterial(game, span)))
+				continue;
+			int first = store.getSpanFirstPly(game, span);
+			if (!query.needsPosition())
+				return first;
+			if (chess == null)
+				chess = new Chess();
+			int last = store.getSpanLastPly(game, span);
+			for (int ply = first; ply <= last; ply++) {
+				store.replay(game, chess, played, ply);
+				played = ply;
+				board.update(chess);
+				if (query.acceptsPosition(board))
+					return ply;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * The matches of a running search.
+	 */
+	public static class Results implements Iterator<SearchMatch>, Closeable {
+		private static final SearchMatch END = new SearchMatch(-1, -1, 0);
+
+		private final BlockingQueue<SearchMatch> queue;
+		private final AtomicInteger running;
+		private volatile boolean closed;
+		private volatile Throwable failure;
+		private SearchMatch next;
+
+		private Results(int workers) {
+			this.queue = new ArrayBlockingQueue<>(1024);
+			this.running = new AtomicInteger(workers);
+		}
+
+		private void put(SearchMatch match) throws InterruptedException {
+			while (!closed && !queue.offer(match, 100, TimeUnit.MILLISECONDS))
+				;
+		}
+
+		private void workerDone() {
+			if (running.decrementAndGet() == 0) {
+				try {
+					put(END);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (next == null) {
+				try {
+					next = queue.take();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IllegalStateException(e);
+				}
+			}
+			if (next == END) {
+				if (failure != null)
+					throw new IllegalStateException("Search failed", failure);
+				return false;
+			}
+			return true;
+		}
+
+		@Override
+		public SearchMatch next() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+			SearchMatch match = next;
+			next = null;
+			return match;
+		}
+
+		/**
+		 * stop the search
+		 */
+		@Override
+		public void close() {
+			closed = true;
+		}
+	}
+}
@@ -0,0 +1,89 @@
+package archive;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import model.Chess;
+import model.InvalidMoveException;
+import model.Move;
+
+/**
+ * One game read from a PGN file: its tags, its moves in the notation of the
+ * file and its result.
+ */
+public class PgnGame {
+	public static final int UNKNOWN_RESULT = 2;
+
+	private final Map<String, String> tags;
+	private final List<String> moves;
+	private String result;
+
+	public PgnGame() {
+		this.tags = new LinkedHashMap<>();
+		this.moves = new ArrayList<>();
+		this.result = "*";
+	}
+
+	public Map<String, String> getTags() {
+		return tags;
+	}
+
+	public String getTag(String name) {
+		return tags.get(name);
+	}
+
+	public List<String> getMoves() {
+		return moves;
+	}
+
+	/**
+	 *
+	 * @return the result written after the moves, or in the Result tag if
+	 *         the moves have no result, like "1-0"
+	 */
+	public String getResult() {
+		if ("*".equals(result) && tags.containsKey("Result"))
+			return tags.get("Result");
+		return result;
+	}
+
+	void setResult(String result) {
+		this.result = result;
+	}
+
+	/**
+	 *
+	 * @return 1 if the white wins, -1 if the black wins, 0 if it is a draw,
+	 *         {@link #UNKNOWN_RESULT} otherwise, following
+	 *         {@link model.EndGame#getResult()}
+	 */
+	public int getResultValue() {
+		switch (getResult()) {
+		case "1-0":
+			return 1;
+		case "0-1":
+			return -1;
+		case "1/2-1/2":
+			return 0;
+		default:
+			return UNKNOWN_RESULT;
+		}
+	}
+
+	/**
+	 * perform all the moves of this game in the chess
+	 *
+	 * @param chess
+	 *            a chess at the start position
+	 * @throws InvalidMoveException
+	 *             if one of the moves is not legal
+	 */
+	public void replay(Chess chess) throws InvalidMoveException {
+		for (String moveStr : moves) {
+			Move move = chess.interpreteMoveCommand(moveStr);
+			chess.makeMove(move);
+		}
+	}
+}
@@ -0,0 +1,142 @@
+package archive;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads games one after another from PGN text, so a whole corpus never needs
+ * to be in memory at once.
+ *
+ * Comments, variations, numeric annotations and move numbers are skipped. A
+ * game ends with a result token, or with the tags of the next game.
+ */
+public class PgnReader implements Closeable {
+	private final BufferedReader in;
+	private String pending;
+	private int commentDepth;
+	private int variationDepth;
+
+	public PgnReader(Reader in) {
+		this.in = in instanceof BufferedReader ? (BufferedReader) in : new BufferedReader(in);
+	}
+
+	/**
+	 *
+	 * @return the next game, null if there is no more games
+	 * @throws IOException
+	 */
+	public PgnGame next() throws IOException {
+		PgnGame game = null;
+		String line;
+		while ((line = readLine()) != null) {
+			String trimmed = line.trim();
+			if (trimmed.isEmpty() || trimmed.startsWith("%"))
+				continue;
+			if (commentDepth == 0 && variationDepth == 0 && trimmed.startsWith("[")) {
+				if (game != null && !game.getMoves().isEmpty()) {
+					pending = line;
+					return game;
+				}
+				if (game == null)
+					game = new PgnGame();
+				readTag(game, trimmed);
+				continue;
+			}
+			if (game == null)
+				game = new PgnGame();
+			if (readMoves(game, trimmed))
+				return game;
+		}
+		return game;
+	}
+
+	private String readLine() throws IOException {
+		if (pending != null) {
+			String line = pending;
+			pending = null;
+			return line;
+		}
+		return in.readLine();
+	}
+
+	private static void readTag(PgnGame game, String line) {
+		int space = line.indexOf(' ');
+		int open = line.indexOf('"');
+		int close = line.lastIndexOf('"');
+		if (space < 0 || open < 0 || close <= open)
+			return;
+		game.getTags().put(line.substring(1, space), line.substring(open + 1, close));
+	}
+
+	/**
+	 * add the moves in this line to the game
+	 *
+	 * @return true if the game ended in this line
+	 */
+	private boolean readMoves(PgnGame game, String line) {
+		StringBuilder token = new StringBuilder();
+		for (int i = 0; i <= line.length(); i++) {
+			char c = i < line.length() ? line.charAt(i) : ' ';
+			if (commentDepth > 0) {
+				if (c == '}')
+					commentDepth = 0;
+				continue;
+			}
+			if (c == '{') {
+				commentDepth = 1;
+			} else if (c == '(') {
+				variationDepth++;
+			} else if (c == ')') {
+				variationDepth--;
+			} else if (c == ';' && variationDepth == 0) {
+				i = line.length() - 1;
+			} else if (!Character.isWhitespace(c)) {
+				token.append(c);
+				continue;
+			}
+			if (token.length() > 0 && variationDepth == 0 && addToken(game, token.toString())) {
+				// leave whatever follows the result for the next game
+				String rest = line.substring(Math.min(i + 1, line.length())).trim();
+				if (!rest.isEmpty())
+					pending = rest;
+				return true;
+			}
+			token.setLength(0);
+		}
+		return false;
+	}
+
+	/**
+	 *
+	 * @return true if the token is the result of the game
+	 */
+	private static boolean addToken(PgnGame game, String token) {
+		if (token.equals("1-0") || token.equals("0-1") || token.equals("1/2-1/2") || token.equals("*")) {
+			game.setResult(token);
+			return true;
+		}
+		if (token.startsWith("$"))
+			return false;
+		// move numbers, like 12. or 12... or 1.d4
+		int start = 0;
+		while (start < token.length() && Character.isDigit(token.charAt(start)))
+			start++;
+		if (start < token.length() && token.charAt(start) == '.') {
+			while (start < token.length() && token.charAt(start) == '.')
+				start++;
+		} else {
+			start = 0;
+		}
+		String move = token.substring(start).replace("e.p.", "");
+		if (!move.isEmpty())
+			game.getMoves().add(move);
+		return false;
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+}
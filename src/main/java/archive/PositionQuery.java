@@ -0,0 +1,130 @@
+package archive;
+
+import model.Bitboards;
+import model.Material;
+
+/**
+ * A question about a position, asked in two steps: first about the
+ * {@link Material} signature, which the {@link GameStore} answers without
+ * replaying the game, then about where the pieces are.
+ */
+public interface PositionQuery {
+
+	/**
+	 *
+	 * @param material
+	 *            a {@link Material} signature
+	 * @return true if positions with this material can match
+	 */
+	boolean acceptsMaterial(long material);
+
+	/**
+	 * Only called for positions whose material is accepted.
+	 *
+	 * @param board
+	 * @return true if the position matches
+	 */
+	boolean acceptsPosition(Bitboards board);
+
+	/**
+	 *
+	 * @return false if {@link #acceptsPosition(Bitboards)} always returns
+	 *         true, so matching games need not be replayed
+	 */
+	default boolean needsPosition() {
+		return true;
+	}
+
+	default PositionQuery and(PositionQuery other) {
+		PositionQuery self = this;
+		return new PositionQuery() {
+			@Override
+			public boolean acceptsMaterial(long material) {
+				return self.acceptsMaterial(material) && other.acceptsMaterial(material);
+			}
+
+			@Override
+			public boolean acceptsPosition(Bitboards board) {
+				return self.acceptsPosition(board) && other.acceptsPosition(board);
+			}
+
+			@Override
+			public boolean needsPosition() {
+				return self.needsPosition() || other.needsPosition();
+			}
+		};
+	}
+
+	/**
+	 *
+	 * @param text
+	 *            like "KQvKR"
+	 * @return positions with exactly this material, with either side being
+	 *         the white
+	 */
+	static PositionQuery material(String text) {
+		long material = Material.parse(text);
+		long flipped = Material.flip(material);
+		return new MaterialQuery() {
+			@Override
+			public boolean acceptsMaterial(long signature) {
+				return signature == material || signature == flipped;
+			}
+		};
+	}
+
+	/**
+	 *
+	 * @return positions where both sides have at least one rook, and
+	 *         nothing else besides the king and pawns
+	 */
+	static PositionQuery rookEndgame() {
+		return new MaterialQuery() {
+			@Override
+			public boolean acceptsMaterial(long signature) {
+				return onlyRooksAndPawns(signature, true) && onlyRooksAndPawns(signature, false);
+			}
+
+			private boolean onlyRooksAndPawns(long signature, boolean white) {
+				int rooks = Material.count(signature, white, 'R');
+				return rooks > 0 && Material.pieceCount(signature, white) == rooks
+						+ Material.count(signature, white, 'P');
+			}
+		};
+	}
+
+	/**
+	 *
+	 * @return positions with pawns, all of them on the queen side (files a to
+	 *         d) or all of them on the king side (files e to h)
+	 */
+	static PositionQuery pawnsOnOneWing() {
+		return new PositionQuery() {
+			@Override
+			public boolean acceptsMaterial(long material) {
+				return Material.count(material, true, 'P') + Material.count(material, false, 'P') > 0;
+			}
+
+			@Override
+			public boolean acceptsPosition(Bitboards board) {
+				long pawns = board.get('P');
+				return (pawns & Bitboards.KING_SIDE) == 0 || (pawns & Bitboards.QUEEN_SIDE) == 0;
+			}
+		};
+	}
+
+	/**
+	 * A query that only looks at the material.
+	 */
+	abstract class MaterialQuery implements PositionQuery {
+		@Override
+		public boolean acceptsPosition(Bitboards board) {
+			return true;
+		}
+
+		@Override
+		public boolean needsPosition() {
+			return false;
+		}
+	}
+}
@@ -0,0 +1,46 @@
+package archive;
+
+/**
+ * A game of a {@link GameStore} that reached a position matching a
+ * {@link PositionQuery}.
+ */
+public class SearchMatch {
+	private final int game;
+	private final int ply;
+	private final int result;
+
+	public SearchMatch(int game, int ply, int result) {
+		this.game = game;
+		this.ply = ply;
+		this.result = result;
+	}
+
+	/**
+	 *
+	 * @return the index of the game in the store
+	 */
+	public int getGame() {
+		return game;
+	}
+
+	/**
+	 *
+	 * @return how many moves were played when the position was first reached
+	 */
+	public int getPly() {
+		return ply;
+	}
+
+	/**
+	 *
+	 * @return the result of the game, like {@link PgnGame#getResultValue()}
+	 */
+	public int getResult() {
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return "game " + game + " ply " + ply;
+	}
+}
@@ -0,0 +1,308 @@
+package controller;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.CompletableFuture;
+
+import view.BoardDelta;
+import view.IChessViewer;
+import view.IChessViewerControl;
+
+/**
+ * Writes down the actions the views of a game send to their controller, so
+ * the game can be played again by an {@link ActionReplayer}.
+ *
+ * The recorder wraps the views before they are given to the controller: a
+ * wrapped view hands its own view a control that writes each action and
+ * passes it on. The log has one line for each action, with tab separated
+ * fields: the action, the side ("w" or "b"), the argument and the answers the
+ * views gave while the action was carried out, like
+ *
+ * <pre>
+ * click	w	e7	Q
+ * move	b	Nf6
+ * draw	w		no
+ * </pre>
+ *
+ * The answers are the promotions chosen and the draws accepted ("yes") or
+ * declined ("no"), in the order they were asked for. An answer may come after
+ * the action asking for it was carried out; the line is held back until it
+ * comes, or written without it when another action comes first.
+ */
+public class ActionRecorder implements Closeable {
+	static final String CLICK = "click";
+	static final String MOVE = "move";
+	static final String DRAW = "draw";
+	static final String RESIGN = "resign";
+	static final String UNDO = "undo";
+	static final String RESTART = "restart";
+
+	private final Writer log;
+	// the answers given during the action being carried out
+	private final StringBuilder answers = new StringBuilder();
+	// the line of the last action, held back until its answers come
+	private StringBuilder held;
+	private int unanswered;
+
+	public ActionRecorder(Writer log) {
+		this.log = log;
+	}
+
+	/**
+	 *
+	 * @param view
+	 * @return a view showing the same as this view, whose actions are
+	 *         recorded
+	 */
+	public IChessViewer record(IChessViewer view) {
+		return new RecordingView(view);
+	}
+
+	private synchronized <T> CompletableFuture<T> ask(CompletableFuture<T> asked) {
+		unanswered++;
+		return asked.whenComplete((answer, e) -> {
+			synchronized (ActionRecorder.this) {
+				if (unanswered == 0)
+					return; // the line was written without it
+				unanswered--;
+				if (e == null)
+					answer(answer instanceof Boolean ? (Boolean) answer ? "yes" : "no" : (String) answer);
+				if (unanswered == 0 && held != null)
+					release();
+			}
+		});
+	}
+
+	private void answer(String answer) {
+		if (answers.length() > 0)
+			answers.append(' ');
+		answers.append(answer);
+	}
+
+	private void write(String action, boolean white, String argument) {
+		if (held != null)
+			release();
+		held = new StringBuilder(action).append('\t').append(side(white)).append('\t');
+		if (argument != null)
+			held.append(argument.replace('\t', ' ').replace('\n', ' '));
+		if (unanswered == 0)
+			release();
+	}
+
+	// write the line held back with the answers given so far
+	private void release() {
+		StringBuilder line = held;
+		held = null;
+		unanswered = 0;
+		if (answers.length() > 0)
+			line.append('\t').append(answers);
+		answers.setLength(0);
+		try {
+			log.write(line.append('\n').toString());
+			log.flush();
+		} catch (IOException e) {
+			System.err.println("Cannot record the action " + line + ": " + e);
+		}
+	}
+
+	static String side(boolean white) {
+		return white ? "w" : "b";
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if (held != null)
+			release();
+		log.close();
+	}
+
+	private class RecordingView implements IChessViewer {
+		private final IChessViewer view;
+
+		RecordingView(IChessViewer view) {
+			this.view = view;
+		}
+
+		@Override
+		public void initializeViewController(IChessViewerControl controller) {
+			view.initializeViewController(new RecordingControl(controller));
+		}
+
+		@Override
+		public void printOut(String message) {
+			view.printOut(message);
+		}
+
+		@Override
+		public void printTemp(String temp) {
+			view.printTemp(temp);
+		}
+
+		@Override
+		public void cleanTemp() {
+			view.cleanTemp();
+		}
+
+		@Override
+		public void setStatusLabelText(String str) {
+			view.setStatusLabelText(str);
+		}
+
+		@Override
+		public void highLight(int file, int rank) {
+			view.highLight(file, rank);
+		}
+
+		@Override
+		public void deHighLightWholeBoard() {
+			view.deHighLightWholeBoard();
+		}
+
+		@Override
+		public void repaint() {
+			view.repaint();
+		}
+
+		@Override
+		public void upDatePiece(int file, int rank, char pieceType, boolean whiteOrBlack) {
+			view.upDatePiece(file, rank, pieceType, whiteOrBlack);
+		}
+
+		@Override
+		public void clearLabel(int file, int rank) {
+			view.clearLabel(file, rank);
+		}
+
+		@Override
+		public void upDateSquares(BoardDelta changes) {
+			view.upDateSquares(changes);
+		}
+
+		@Override
+		public void flush() {
+			view.flush();
+		}
+
+		@Override
+		public void setVersion(long version) {
+			view.setVersion(version);
+		}
+
+		@Override
+		public boolean askForDraw() {
+			boolean accepted = view.askForDraw();
+			answer(accepted ? "yes" : "no");
+			return accepted;
+		}
+
+		@Override
+		public String getPromoteTo() {
+			String promoteTo = view.getPromoteTo();
+			answer(promoteTo);
+			return promoteTo;
+		}
+
+		@Override
+		public CompletableFuture<Boolean> askForDrawAsync() {
+			return ask(view.askForDrawAsync());
+		}
+
+		@Override
+		public CompletableFuture<String> getPromoteToAsync() {
+			return ask(view.getPromoteToAsync());
+		}
+
+		@Override
+		public void hibernate() {
+			view.hibernate();
+			// the game woken up appends to the log with a recorder of its own
+			try {
+				ActionRecorder.this.close();
+			} catch (IOException e) {
+				System.err.println("Cannot close the action log: " + e);
+			}
+		}
+
+		@Override
+		public void close() {
+			view.close();
+			try {
+				ActionRecorder.this.close();
+			} catch (IOException e) {
+				System.err.println("Cannot close the action log: " + e);
+			}
+		}
+	}
+
+	/**
+	 * Carries out an action and writes it down, both while holding the
+	 * recorder, so the log has the actions in the order they were carried out.
+	 */
+	private class RecordingControl implements IChessViewerControl {
+		private final IChessViewerControl control;
+
+		RecordingControl(IChessViewerControl control) {
+			this.control = control;
+		}
+
+		@Override
+		public boolean hasEnd() {
+			return control.hasEnd();
+		}
+
+		@Override
+		public void click(int file, int rank, boolean whiteOrBlack) {
+			synchronized (ActionRecorder.this) {
+				control.click(file, rank, whiteOrBlack);
+				write(CLICK, whiteOrBlack, "" + (char) ('a' + file - 1) + rank);
+			}
+		}
+
+		@Override
+		public String getRecords() {
+			return control.getRecords();
+		}
+
+		@Override
+		public void restart() {
+			synchronized (ActionRecorder.this) {
+				control.restart();
+				write(RESTART, true, null);
+			}
+		}
+
+		@Override
+		public void resign(boolean isWhite) {
+			synchronized (ActionRecorder.this) {
+				control.resign(isWhite);
+				write(RESIGN, isWhite, null);
+			}
+		}
+
+		@Override
+		public void askForDraw(boolean isWhite) {
+			synchronized (ActionRecorder.this) {
+				control.askForDraw(isWhite);
+				write(DRAW, isWhite, null);
+			}
+		}
+
+		@Override
+		public void undo(boolean isWhite) {
+			synchronized (ActionRecorder.this) {
+				control.undo(isWhite);
+				write(UNDO, isWhite, null);
+			}
+		}
+
+		@Override
+		public boolean makeMove(boolean isWhite, String move) {
+			synchronized (ActionRecorder.this) {
+				boolean made = control.makeMove(isWhite, move);
+				write(MOVE, isWhite, move);
+				return made;
+			}
+		}
+	}
+}
@@ -0,0 +1,266 @@
+package controller;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+
+import view.CountingViewer;
+import view.IChessViewerControl;
+
+/**
+ * Plays the actions written down by an {@link ActionRecorder} again, through
+ * a {@link DualViewChessControl} with two {@link CountingViewer}s, and
+ * measures how long each action takes and how much the views are asked to
+ * draw. As the views only count, this measures the controller and the model
+ * from real traffic, without Firestore or Swing.
+ */
+public class ActionReplayer {
+	private final List<Action> actions;
+
+	/**
+	 *
+	 * @param log
+	 *            the lines of an action log
+	 * @throws IllegalArgumentException
+	 *             if a line is not an action
+	 */
+	public ActionReplayer(List<String> log) {
+		actions = new ArrayList<>();
+		for (String line : log)
+			if (!line.trim().isEmpty())
+				actions.add(new Action(line));
+	}
+
+	/**
+	 *
+	 * @param log
+	 *            an action log
+	 * @throws IOException
+	 */
+	public ActionReplayer(BufferedReader log) throws IOException {
+		this(readLines(log));
+	}
+
+	private static List<String> readLines(BufferedReader log) throws IOException {
+		List<String> lines = new ArrayList<>();
+		String line;
+		while ((line = log.readLine()) != null)
+			lines.add(line);
+		return lines;
+	}
+
+	/**
+	 *
+	 * @return the number of actions in the log
+	 */
+	public int size() {
+		return actions.size();
+	}
+
+	/**
+	 * Play the log in a new game.
+	 *
+	 * @return what it took
+	 */
+	public Report replay() {
+		Queue<String> answers = new ArrayDeque<>();
+		CountingViewer white = new CountingViewer(answers);
+		CountingViewer black = new CountingViewer(answers);
+		new DualViewChessControl(white, black);
+		long[] latencies = new long[actions.size()];
+		long begin = System.nanoTime();
+		for (int i = 0; i < actions.size(); i++) {
+			Action action = actions.get(i);
+			answers.clear();
+			Collections.addAll(answers, action.answers);
+			long start = System.nanoTime();
+			action.run((action.white ? white : black).getController());
+			latencies[i] = System.nanoTime() - start;
+		}
+		long nanos = System.nanoTime() - begin;
+		Report report = new Report(latencies, nanos);
+		report.count(white);
+		report.count(black);
+		return report;
+	}
+
+	/**
+	 * Play the log several times, each time in a new game.
+	 *
+	 * @param times
+	 * @return what it took, for all the times together
+	 */
+	public Report replay(int times) {
+		Report report = new Report(new long[0], 0);
+		for (int i = 0; i < times; i++)
+			report.add(replay());
+		return report;
+	}
+
+	private static class Action {
+		private final String type;
+		private final boolean white;
+		private final String argument;
+		private final String[] answers;
+
+		Action(String line) {
+			String[] fields = line.split("\t", -1);
+			type = fields[0];
+			white = fields.length < 2 || !fields[1].equals("b");
+			argument = fields.length > 2 ? fields[2] : "";
+			answers = fields.length > 3 && !fields[3].isEmpty() ? fields[3].split(" ") : new String[0];
+			boolean known = type.equals(ActionRecorder.CLICK) || type.equals(ActionRecorder.MOVE)
+					|| type.equals(ActionRecorder.DRAW) || type.equals(ActionRecorder.RESIGN)
+					|| type.equals(ActionRecorder.UNDO) || type.equals(ActionRecorder.RESTART);
+			if (!known || (type.equals(ActionRecorder.CLICK) && !argument.matches("[a-h][1-8]")))
+				throw new IllegalArgumentException("Not an action: " + line);
+		}
+
+		void run(IChessViewerControl control) {
+			switch (type) {
+			case ActionRecorder.CLICK:
+				control.click(argument.charAt(0) - 'a' + 1, argument.charAt(1) - '0', white);
+				break;
+			case ActionRecorder.MOVE:
+				control.makeMove(white, argument);
+				break;
+			case ActionRecorder.DRAW:
+				control.askForDraw(white);
+				break;
+			case ActionRecorder.RESIGN:
+				control.resign(white);
+				break;
+			case ActionRecorder.UNDO:
+				control.undo(white);
+				break;
+			default:
+				control.restart();
+				break;
+			}
+		}
+	}
+
+	/**
+	 * The time the actions took and the drawing they caused.
+	 */
+	public static class Report {
+		private long[] latencies;
+		private long nanos;
+		private long upDatePieces;
+		private long clearLabels;
+		private long repaints;
+		private long statusTexts;
+		private long printOuts;
+
+		private Report(long[] latencies, long nanos) {
+			this.latencies = latencies;
+			this.nanos = nanos;
+			Arrays.sort(this.latencies);
+		}
+
+		private void count(CountingViewer view) {
+			upDatePieces += view.getUpDatePieces();
+			clearLabels += view.getClearLabels();
+			repaints += view.getRepaints();
+			statusTexts += view.getStatusTexts();
+			printOuts += view.getPrintOuts();
+		}
+
+		private void add(Report other) {
+			long[] merged = Arrays.copyOf(latencies, latencies.length + other.latencies.length);
+			System.arraycopy(other.latencies, 0, merged, latencies.length, other.latencies.length);
+			Arrays.sort(merged);
+			latencies = merged;
+			nanos += other.nanos;
+			upDatePieces += other.upDatePieces;
+			clearLabels += other.clearLabels;
+			repaints += other.repaints;
+			statusTexts += other.statusTexts;
+			printOuts += other.printOuts;
+		}
+
+		public int getActions() {
+			return latencies.length;
+		}
+
+		public double getActionsPerSecond() {
+			return latencies.length * 1e9 / Math.max(1, nanos);
+		}
+
+		/**
+		 *
+		 * @param percent
+		 *            from 0 to 100
+		 * @return the time in nanoseconds this percent of the actions took at
+		 *         most
+		 */
+		public long getLatency(double percent) {
+			if (latencies.length == 0)
+				return 0;
+			int index = (int) Math.ceil(percent / 100 * latencies.length) - 1;
+			return latencies[Math.max(0, Math.min(latencies.length - 1, index))];
+		}
+
+		public long getUpDatePieces() {
+			return upDatePieces;
+		}
+
+		public long getClearLabels() {
+			return clearLabels;
+		}
+
+		public long getRepaints() {
+			return repaints;
+		}
+
+		public long getStatusTexts() {
+			return statusTexts;
+		}
+
+		public long getPrintOuts() {
+			return printOuts;
+		}
+
+		@Override
+		public String toString() {
+			return String.format(
+					"%d actions, %.0f actions/s%n" + "latency p50 %d us, p90 %d us, p99 %d us, max %d us%n"
+							+ "upDatePiece %d, clearLabel %d, repaint %d, status %d, printOut %d",
+					getActions(), getActionsPerSecond(), getLatency(50) / 1000, getLatency(90) / 1000,
+					getLatency(99) / 1000, getLatency(100) / 1000, upDatePieces, clearLabels, repaints, statusTexts,
+					printOuts);
+		}
+	}
+
+	/**
+	 * Replay action logs and print a report for each.
+	 *
+	 * @param args
+	 *            [-n times] log...
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		int times = 1;
+		int first = 0;
+		if (args.length > 1 && args[0].equals("-n")) {
+			times = Integer.parseInt(args[1]);
+			first = 2;
+		}
+		for (int i = first; i < args.length; i++) {
+			ActionReplayer replayer = new ActionReplayer(
+					Files.readAllLines(new File(args[i]).toPath(), StandardCharsets.UTF_8));
+			// the first time warms the code up
+			replayer.replay();
+			System.out.println(args[i] + ":");
+			System.out.println(replayer.replay(times));
+		}
+	}
+}
@@ -25,5 +25,13 @@ public class DrawManager {
 			blackCanDraw = false;
 		}
 	}
+
+	/**
+	 * Let both sides offer a draw again, as at the start.
+	 */
+	public void resetRightToRequestDraw() {
+		whiteCanDraw = true;
+		blackCanDraw = true;
+	}
 	
 }
@@ -34,6 +34,28 @@ public class DualViewChessControl extends ViewController {
 		updateChessBoard();
 		this.whiteView.setStatusLabelText("Welcome to our game. You are white");
 		this.blackView.setStatusLabelText("Welcome to our game. You are black");
+		flushViews();
+	}
+
+	/**
+	 * Go on with a game that was put to sleep, showing it on the views it had.
+	 * 
+	 * @param whiteView
+	 * @param blackView
+	 * @param snapshot
+	 *            the game, see {@link ViewController#getSnapshot()}
+	 */
+	public DualViewChessControl(IChessViewer whiteView, IChessViewer blackView, GameSnapshot snapshot) {
+		super();
+		this.whiteView = whiteView;
+		this.blackView = blackView;
+		this.whiteView.initializeViewController(this);
+		this.blackView.initializeViewController(this);
+		chess = snapshot.toChess();
+		// the highlights are not sent again
+		setChosen(null);
+		updateChessBoard();
+		flushViews();
 	}
 
 	public IChessViewer chooesView(boolean whiteOrBlack) {
@@ -41,11 +63,10 @@ public class DualViewChessControl extends ViewController {
 	}
 
 	protected void updateGuiAfterMove(Move previousMove) {
-		updateChessBoard();
+		updateSquares(previousMove);
 		IChessViewer pre = chooesView(previousMove.getWhoseTurn());
 		IChessViewer next = chooesView(!previousMove.getWhoseTurn());
 
-		updateStatusLabel();
 		pre.cleanTemp();
 		pre.printOut(chess.lastMoveOutPrint());
 		next.printOut(chess.lastMoveOutPrint());
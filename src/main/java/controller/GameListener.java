@@ -0,0 +1,38 @@
+package controller;
+
+/**
+ * Gets told about the life of the game of a {@link ViewController}.
+ */
+public interface GameListener {
+	/**
+	 * This method is called once when the game ends, by checkmate, stalemate,
+	 * resignation or draw, on the thread of the action that ended it.
+	 * 
+	 * @param controller
+	 *            the controller of the game
+	 */
+	void gameEnded(ViewController controller);
+
+	/**
+	 * This method is called after every change of the game: a move, an undo,
+	 * a restart, the end, or a change of the rights to offer a draw, on the
+	 * thread of the action, before {@link #gameEnded(ViewController)}. It can
+	 * also be called when nothing changed.
+	 * 
+	 * @param controller
+	 *            the controller of the game
+	 */
+	default void gameChanged(ViewController controller) {
+	}
+
+	/**
+	 * This method is called before the views are shown the changes of an
+	 * action, on the thread of the action, so the listener can hold them back
+	 * until the changes are kept somewhere safe.
+	 * 
+	 * @param controller
+	 *            the controller of the game
+	 */
+	default void beforeFlush(ViewController controller) {
+	}
+}
@@ -0,0 +1,101 @@
+package controller;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import model.Chess;
+import model.ChessCodec;
+
+/**
+ * What a game needs to go on after it was dropped from the heap: the chess
+ * packed by {@link ChessCodec}, with its moves, its end and its draw rights.
+ *
+ * On disk this is a magic number, the length of the packed chess and its
+ * bytes.
+ */
+public class GameSnapshot {
+	private static final int MAGIC = 0x43484753;
+
+	private final byte[] game;
+
+	/**
+	 *
+	 * @param game
+	 *            the chess packed by {@link ChessCodec#encode(Chess)}
+	 */
+	public GameSnapshot(byte[] game) {
+		this.game = game;
+	}
+
+	/**
+	 *
+	 * @param chess
+	 * @return the snapshot of the game
+	 */
+	public static GameSnapshot of(Chess chess) {
+		return new GameSnapshot(ChessCodec.encode(chess));
+	}
+
+	/**
+	 *
+	 * @return a new chess going on from the snapshot
+	 * @throws IllegalArgumentException
+	 *             if the snapshot is not a chess
+	 */
+	public Chess toChess() {
+		return ChessCodec.decode(game);
+	}
+
+	/**
+	 *
+	 * @return the chess packed by {@link ChessCodec}
+	 */
+	public byte[] getGame() {
+		return game;
+	}
+
+	/**
+	 * 
+	 * @return a hash of the packed chess, the same for the same game
+	 */
+	public long getVersion() {
+		// FNV-1a
+		long hash = 0xcbf29ce484222325L;
+		for (byte b : game) {
+			hash ^= b & 0xFF;
+			hash *= 0x100000001b3L;
+		}
+		return hash;
+	}
+
+	public void write(File file) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(game.length);
+			out.write(game);
+		}
+	}
+
+	/**
+	 *
+	 * @param file
+	 * @return the snapshot written there
+	 * @throws IOException
+	 *             if it cannot be read or is not a snapshot
+	 */
+	public static GameSnapshot read(File file) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != MAGIC)
+				throw new IOException("Not a game snapshot: " + file);
+			byte[] game = new byte[in.readInt()];
+			in.readFully(game);
+			return new GameSnapshot(game);
+		}
+	}
+}
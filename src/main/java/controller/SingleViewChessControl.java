@@ -27,6 +27,7 @@ public class SingleViewChessControl extends ViewController {
 		this.view.initializeViewController(this);
 		updateChessBoard();
 		this.view.setStatusLabelText("Welcome to our game.");
+		flushViews();
 	}
 
 	@Override
@@ -35,7 +36,7 @@ public class SingleViewChessControl extends ViewController {
 	}
 
 	protected void updateGuiAfterMove(Move previousMove) {
-		updateChessBoard();
+		updateSquares(previousMove);
 
 		view.cleanTemp();
 		view.printOut(chess.lastMoveOutPrint());
@@ -1,6 +1,12 @@
 package controller;
 
 import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import model.Chess;
 import model.Draw;
@@ -8,29 +14,54 @@ import model.InvalidMoveException;
 import model.Move;
 import model.Pawn;
 import model.Piece;
+import model.PositionKey;
 import model.Promotion;
+import model.Record;
 import model.Square;
 import model.Win;
+import view.BoardDelta;
 import view.IChessViewer;
 import view.IChessViewerControl;
 
 public abstract class ViewController implements IChessViewerControl {
 	protected Chess chess;
+	private volatile long positionKey;
+	// the version of the game given to the views, computed again at a flush
+	// once the game changed
+	private long version;
+	private boolean versionStale = true;
+	private GameListener listener;
+	private boolean endReported;
+	private final BoardDelta changes = new BoardDelta();
+	// the actions running in a batch, whose views are flushed at its end
+	private int batched;
+	// where the answers of the players are carried out
+	private Executor continuations = Runnable::run;
+	private long answerTimeout = 60000;
+	// the promotion or draw offer waiting for an answer, null if none
+	private Object awaiting;
 
 	public ViewController() {
 		chess = new Chess();
 		setChosen(null);
+		positionKey = PositionKey.of(chess);
 	}
 
 	public void restart() {
-		chess = new Chess();
-		setChosen(null);
-		IChessViewer white = chooesView(true);
-		IChessViewer black = chooesView(false);
-		restartView(white);
-		if (black != white)
-			restartView(black);
-		updateChessBoard();
+		try {
+			chess = new Chess();
+			endReported = false;
+			awaiting = null;
+			setChosen(null);
+			IChessViewer white = chooesView(true);
+			IChessViewer black = chooesView(false);
+			restartView(white);
+			if (black != white)
+				restartView(black);
+			updateChessBoard();
+		} finally {
+			flushViews();
+		}
 	}
 
 	private void restartView(IChessViewer view) {
@@ -56,16 +87,59 @@ public abstract class ViewController implements IChessViewerControl {
 	 * 
 	 */
 	public void undo(boolean isWhite) {
-		IChessViewer view = chooesView(isWhite);
-		clearHightLight(view);
-		if (!chess.undoLastMove())
-			view.printOut("It is already the start of Game");
-		else
+		try {
+			IChessViewer view = chooesView(isWhite);
+			clearHightLight(view);
+			declineOffer();
+			awaiting = null;
+			Move last = chess.lastMove();
+			if (!chess.undoLastMove()) {
+				view.printOut("It is already the start of Game");
+				refresh(view);
+				return;
+			}
 			view.printOut("Undo the Previous Move!");
-		repaintAll(view);
+			updateSquares(last);
+		} finally {
+			flushViews();
+		}
+	}
+
+	/**
+	 * send the squares a move changed, made or undone, to the views and update
+	 * the status
+	 * 
+	 * @param move
+	 */
+	protected void updateSquares(Move move) {
+		changes.clear();
+		for (Square sq : move.getChangedSquares(chess)) {
+			if (sq.isOccupied())
+				changes.add(sq.getX(), sq.getY(), sq.getPiece().getType(), sq.getPiece().getWhiteOrBlack());
+			else
+				changes.add(sq.getX(), sq.getY(), (char) 0, false);
+		}
+		IChessViewer white = chooesView(true);
+		IChessViewer black = chooesView(false);
+		white.upDateSquares(changes);
+		if (black != white)
+			black.upDateSquares(changes);
 		updateStatusLabel();
 	}
 
+	/**
+	 * show the highlights of this view, the pieces staying as they are
+	 * 
+	 * @param view
+	 */
+	private void refresh(IChessViewer view) {
+		changes.clear();
+		view.upDateSquares(changes);
+	}
+
+	/**
+	 * send the whole board to the views, like after a restart
+	 */
 	protected void updateChessBoard() {
 		IChessViewer white = chooesView(true);
 		IChessViewer black = chooesView(false);
@@ -76,46 +150,56 @@ public abstract class ViewController implements IChessViewerControl {
 	}
 
 	public void click(int file, int rank, boolean whiteOrBlack) {
-		IChessViewer clickedView = chooesView(whiteOrBlack);
-		if (chess.hasEnd()) {
-			clickedView.printOut("Game is already over! Type restart to start a new game");
-			return;
-		}
-		if (clickedView != chooesView(chess.getWhoseTurn())) {
-			clickedView.printOut("Please wait for your opponnet to finish");
-			return;
-		}
-		Square spot = chess.spotAt(file, rank);
-		if (getChosen() != null) {
-			Move move = getChosen().getMove(spot);
-			if (move == null) {
-				clickedView.cleanTemp();
-			} else {
-				if (move instanceof Promotion) {
-					Promotion promotion = (Promotion) move;
-					String promoteTo = clickedView.getPromoteTo();
-					promotion.setPromoteTo(Chess.getPieceClass(promoteTo.charAt(0)));
-				}
-				chess.makeMove(move);
-				updateGuiAfterMove(move);
+		try {
+			IChessViewer clickedView = chooesView(whiteOrBlack);
+			if (chess.hasEnd()) {
+				clickedView.printOut("Game is already over! Type restart to start a new game");
+				return;
+			}
+			if (clickedView != chooesView(chess.getWhoseTurn())) {
+				clickedView.printOut("Please wait for your opponnet to finish");
+				return;
 			}
-			clearHightLight(clickedView);
-		} else {
-			if (spot.occupiedBy(chess.getWhoseTurn())) {
-				setChosen(spot.getPiece());
-				ArrayList<Square> reachable = getChosen().getReachableSquares();
-				reachable.add(spot);
-				for (Square sqr : reachable) {
-					clickedView.highLight(sqr.getX(), sqr.getY());
+			if (awaiting instanceof Promotion) {
+				clickedView.printOut("Please choose the piece to promote to");
+				return;
+			}
+			Square spot = chess.spotAt(file, rank);
+			if (getChosen() != null) {
+				Move move = getChosen().getMove(spot);
+				clearHightLight(clickedView);
+				if (move == null) {
+					clickedView.cleanTemp();
+				} else {
+					declineOffer();
+					if (move instanceof Promotion) {
+						promote((Promotion) move, clickedView);
+						return;
+					}
+					chess.makeMove(move);
+					// the views are updated with the squares of the move
+					updateGuiAfterMove(move);
+					return;
 				}
+			} else {
+				if (spot.occupiedBy(chess.getWhoseTurn())) {
+					setChosen(spot.getPiece());
+					ArrayList<Square> reachable = getChosen().getReachableSquares();
+					reachable.add(spot);
+					for (Square sqr : reachable) {
+						clickedView.highLight(sqr.getX(), sqr.getY());
+					}
 
-				if (spot.getPiece().isType(Pawn.class))
-					clickedView.printTemp(spot.toString());
-				else
-					clickedView.printTemp(spot.getPiece().getType() + spot.toString());
-			}w
+					if (spot.getPiece().isType(Pawn.class))
+						clickedView.printTemp(spot.toString());
+					else
+						clickedView.printTemp(spot.getPiece().getType() + spot.toString());
+				}
+			}
+			refresh(clickedView);
+		} finally {
+			flushViews();
 		}
-		updateChessBoard();
 	}
 
 	public String getRecords() {
@@ -129,20 +213,27 @@ public abstract class ViewController implements IChessViewerControl {
 
 	@Override
 	public void resign(boolean isWhite) {
-		IChessViewer view = chooesView(isWhite);
-		clearHightLight(view);
-		Draw canClaimDraw = chess.canClaimDraw();
-		if (canClaimDraw != null) {
-			view.printOut("Actually, you can go with a draw!");
-			chess.endGame(canClaimDraw);
-			return;
-		}
-		if (chess.getWhoseTurn()) {
-			chess.endGame(Win.WHITERESIGN);
-		} else {
-			chess.endGame(Win.BLACKESIGN);
+		try {
+			IChessViewer view = chooesView(isWhite);
+			clearHightLight(view);
+			// the game ends: a promotion or a draw offer waiting for its answer is dropped
+			awaiting = null;
+			Draw canClaimDraw = chess.canClaimDraw();
+			if (canClaimDraw != null) {
+				view.printOut("Actually, you can go with a draw!");
+				chess.endGame(canClaimDraw);
+				updateStatusLabel();
+				return;
+			}
+			if (chess.getWhoseTurn()) {
+				chess.endGame(Win.WHITERESIGN);
+			} else {
+				chess.endGame(Win.BLACKESIGN);
+			}
+			updateStatusLabel();
+		} finally {
+			flushViews();
 		}
-		updateStatusLabel();
 	}
 
 	private void clearHightLight(IChessViewer view) {
@@ -150,26 +241,163 @@ public abstract class ViewController implements IChessViewerControl {
 		view.deHighLightWholeBoard();
 	}
 
+	/**
+	 * Ask the player to choose the piece to promote to, and make the promotion
+	 * once the answer comes, a queen if it does not come in time.
+	 */
+	private void promote(Promotion promotion, IChessViewer view) {
+		Chess asked = chess;
+		int played = chess.getRecords().size();
+		awaiting = promotion;
+		within(view.getPromoteToAsync(), "Q").thenAccept(promoteTo -> continuations.execute(() -> {
+			try {
+				// the game may have gone on, by an undo or a restart, or ended
+				if (awaiting != promotion || chess != asked || chess.getRecords().size() != played
+						|| chess.hasEnd())
+					return;
+				awaiting = null;
+				char type = promoteTo == null || promoteTo.isEmpty() ? 'Q' : promoteTo.charAt(0);
+				promotion.setPromoteTo(Chess.getPieceClass(type));
+				chess.makeMove(promotion);
+				updateGuiAfterMove(promotion);
+			} finally {
+				flushViews();
+			}
+		}));
+	}
+
 	public void askForDraw(boolean whiteOrBlack) {
-		Draw canClaimDraw = chess.canClaimDraw();
-		if (canClaimDraw == null) {
-			IChessViewer request = chooesView(whiteOrBlack);
-			IChessViewer response = chooesView(!whiteOrBlack);
-			if (this.chess.getDrawManager().canAskFordraw(whiteOrBlack)) {
-				response.printOut(side(whiteOrBlack) + " ask for draw, do you agreed?");
-				if (response.askForDraw()) {
-					chess.endGame(Draw.AGREEMENT);
+		try {
+			Draw canClaimDraw = chess.canClaimDraw();
+			if (canClaimDraw == null) {
+				IChessViewer request = chooesView(whiteOrBlack);
+				IChessViewer response = chooesView(!whiteOrBlack);
+				if (awaiting != null) {
+					request.printOut("Please wait for the answer.");
+				} else if (this.chess.getDrawManager().canAskFordraw(whiteOrBlack)) {
+					response.printOut(side(whiteOrBlack) + " ask for draw, do you agreed?");
+					offerDraw(whiteOrBlack, request, response);
+					return;
 				} else {
-					chess.getDrawManager().setRightToRequestDraw(whiteOrBlack);
-					request.printOut("Request declined");
+					request.printOut("You cannot request for draw again now.");
 				}
 			} else {
-				request.printOut("You cannot request for draw again now.");
+				awaiting = null;
+				chess.endGame(canClaimDraw);
 			}
-		} else {
-			chess.endGame(canClaimDraw);
+			updateStatusLabel();
+		} finally {
+			flushViews();
 		}
-		updateStatusLabel();
+	}
+
+	/**
+	 * Wait for the answer to a draw offer, which is declined if it does not
+	 * come in time. A move or an undo meanwhile declines it as well, and a
+	 * restart or the end of the game withdraws it.
+	 */
+	private void offerDraw(boolean whiteOrBlack, IChessViewer request, IChessViewer response) {
+		Chess asked = chess;
+		DrawOffer offer = new DrawOffer(whiteOrBlack, request);
+		awaiting = offer;
+		within(response.askForDrawAsync(), false).thenAccept(accepted -> continuations.execute(() -> {
+			try {
+				if (awaiting != offer)
+					return;
+				awaiting = null;
+				if (chess != asked || chess.hasEnd())
+					return;
+				if (Boolean.TRUE.equals(accepted)) {
+					chess.endGame(Draw.AGREEMENT);
+				} else {
+					decline(offer);
+				}
+				updateStatusLabel();
+			} finally {
+				flushViews();
+			}
+		}));
+	}
+
+	private void declineOffer() {
+		if (awaiting instanceof DrawOffer) {
+			decline((DrawOffer) awaiting);
+			awaiting = null;
+		}
+	}
+
+	private void decline(DrawOffer offer) {
+		chess.getDrawManager().setRightToRequestDraw(offer.whiteOrBlack);
+		versionStale = true;
+		offer.request.printOut("Request declined");
+	}
+
+	/**
+	 * a draw offer waiting for an answer
+	 */
+	private static class DrawOffer {
+		final boolean whiteOrBlack;
+		final IChessViewer request;
+
+		DrawOffer(boolean whiteOrBlack, IChessViewer request) {
+			this.whiteOrBlack = whiteOrBlack;
+			this.request = request;
+		}
+	}
+
+	/**
+	 * 
+	 * @param answer
+	 *            the answer of a player
+	 * @param otherwise
+	 *            the answer to take if it fails or does not come in time
+	 * @return the answer, completed in time
+	 */
+	private <T> CompletableFuture<T> within(CompletableFuture<T> answer, T otherwise) {
+		if (answer.isDone())
+			return answer.exceptionally(e -> otherwise);
+		CompletableFuture<T> result = new CompletableFuture<>();
+		ScheduledFuture<?> timeout = Timeouts.SCHEDULER.schedule(() -> result.complete(otherwise), answerTimeout,
+				TimeUnit.MILLISECONDS);
+		answer.whenComplete((value, e) -> {
+			timeout.cancel(false);
+			result.complete(e == null ? value : otherwise);
+		});
+		return result;
+	}
+
+	/**
+	 * the thread ending the waits for answers, only started when a view
+	 * answers later
+	 */
+	private static class Timeouts {
+		static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "answer-timeouts");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * The answers to draw offers and promotions may come later on another
+	 * thread; they are carried out by this executor, which by default runs
+	 * them right away. A game played by several threads gives the executor
+	 * of its actions, so the answers take their turn like any other action.
+	 * 
+	 * @param continuations
+	 */
+	public void setExecutor(Executor continuations) {
+		this.continuations = continuations;
+	}
+
+	/**
+	 * 
+	 * @param millis
+	 *            how long to wait for an answer before a draw offer is
+	 *            declined or a pawn promotes to a queen
+	 */
+	public void setAnswerTimeout(long millis) {
+		this.answerTimeout = millis;
 	}
 
 	/**
@@ -184,49 +412,106 @@ public abstract class ViewController implements IChessViewerControl {
 	 */
 	@Override
 	public boolean makeMove(boolean isWhite, String moveCommand) {
-		IChessViewer view = chooesView(isWhite);
-		clearHightLight(view);
-		Move move = null;
 		try {
-			move = chess.interpreteMoveCommand(moveCommand);
-			chess.makeMove(move);
-			updateGuiAfterMove(move);
-			updateChessBoard();
-			return true;
-		} catch (InvalidMoveException e) {
-			switch (e.type) {
-			case InvalidMoveException.invalidFormat:
-				view.printOut("The command is not in a valid format.");
-				break;
-			case InvalidMoveException.ambiguousMove:
-				view.printOut("Fail to guess move: There is ambiguity, multiple possible moves.");
-				break;
-			case InvalidMoveException.castleNotAllowed:
-				view.printOut("You cannot do castling, please check the rules for castling.");
-				break;
-			case InvalidMoveException.impossibleMove:
-				view.printOut("This is not a possible move.");
-				break;
-			case InvalidMoveException.incorrectPiece:
-				view.printOut("The chessman in the start Position is not correct! "
-						+ "\n R(Root), N(Knight), B(Bishop), Q(Queen), K(King), omission for pawn");
-				break;
-			case InvalidMoveException.pieceNotPresent:
-				view.printOut("There is no piece at the start position.");
-				break;
-			case InvalidMoveException.promotionTo:
-				view.printOut("You should specify what piece you want to promote to");
-				break;
-			default:
-				throw new RuntimeException(e);
+			IChessViewer view = chooesView(isWhite);
+			clearHightLight(view);
+			if (awaiting instanceof Promotion) {
+				view.printOut("Please choose the piece to promote to");
+				return false;
+			}
+			Move move = null;
+			try {
+				move = chess.interpreteMoveCommand(moveCommand);
+				chess.makeMove(move);
+				declineOffer();
+				updateGuiAfterMove(move);
+				return true;
+			} catch (InvalidMoveException e) {
+				switch (e.type) {
+				case InvalidMoveException.invalidFormat:
+					view.printOut("The command is not in a valid format.");
+					break;
+				case InvalidMoveException.ambiguousMove:
+					view.printOut("Fail to guess move: There is ambiguity, multiple possible moves.");
+					break;
+				case InvalidMoveException.castleNotAllowed:
+					view.printOut("You cannot do castling, please check the rules for castling.");
+					break;
+				case InvalidMoveException.impossibleMove:
+					view.printOut("This is not a possible move.");
+					break;
+				case InvalidMoveException.incorrectPiece:
+					view.printOut("The chessman in the start Position is not correct! "
+							+ "\n R(Root), N(Knight), B(Bishop), Q(Queen), K(King), omission for pawn");
+					break;
+				case InvalidMoveException.pieceNotPresent:
+					view.printOut("There is no piece at the start position.");
+					break;
+				case InvalidMoveException.promotionTo:
+					view.printOut("You should specify what piece you want to promote to");
+					break;
+				default:
+					throw new RuntimeException(e);
+				}
+				return false;
 			}
-			return false;
+		} finally {
+			flushViews();
 		}
 	}
 
 	public abstract IChessViewer chooesView(boolean whiteOrBlack);
 
+	/**
+	 * Carry out several actions, flushing the views once at the end instead
+	 * of after each action.
+	 * 
+	 * @param actions
+	 */
+	public void batch(Runnable actions) {
+		batched++;
+		try {
+			actions.run();
+		} finally {
+			batched--;
+			flushViews();
+		}
+	}
+
+	/**
+	 * Let the views send what they collected during an action, see
+	 * {@link IChessViewer#flush()}. Every action of the views ends with this.
+	 */
+	protected void flushViews() {
+		if (batched > 0)
+			return;
+		if (listener != null)
+			listener.beforeFlush(this);
+		IChessViewer white = chooesView(true);
+		IChessViewer black = chooesView(false);
+		if (versionStale) {
+			version = getSnapshot().getVersion();
+			versionStale = false;
+		}
+		white.setVersion(version);
+		white.flush();
+		if (black != white) {
+			black.setVersion(version);
+			black.flush();
+		}
+	}
+
 	public void updateStatusLabel() {
+		// the status is updated after every change of the game
+		positionKey = PositionKey.of(chess);
+		versionStale = true;
+		if (listener != null)
+			listener.gameChanged(this);
+		if (chess.hasEnd() && !endReported) {
+			endReported = true;
+			if (listener != null)
+				listener.gameEnded(this);
+		}
 		IChessViewer whiteView = chooesView(true);
 		IChessViewer blackView = chooesView(false);
 		whiteView.setStatusLabelText(chess.lastMoveDiscript());
@@ -235,7 +520,8 @@ public abstract class ViewController implements IChessViewerControl {
 	}
 
 	/**
-	 * print messages and update GUI when this move just get accomplished
+	 * print messages and update GUI when this move just get accomplished, with
+	 * {@link #updateSquares(Move)}
 	 * 
 	 * @param move
 	 */
@@ -250,11 +536,70 @@ public abstract class ViewController implements IChessViewerControl {
 		chooesView(true).close();
 	}
 
+	/**
+	 * 
+	 * @return true if the game can be put to sleep: it has not ended and no
+	 *         answer is waited for
+	 */
+	public boolean canHibernate() {
+		return awaiting == null && !chess.hasEnd();
+	}
+
+	/**
+	 * 
+	 * @return what the game needs to go on, see {@link GameSnapshot}
+	 */
+	public GameSnapshot getSnapshot() {
+		return GameSnapshot.of(chess);
+	}
+
+	/**
+	 * Tell the views the game is put to sleep; this controller is not used
+	 * any more, a new one goes on from {@link #getSnapshot()}.
+	 */
+	public void hibernate() {
+		IChessViewer white = chooesView(true);
+		IChessViewer black = chooesView(false);
+		white.hibernate();
+		if (black != white)
+			black.hibernate();
+	}
+
+	public void setGameListener(GameListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * 
+	 * @return the moves and the end of the game
+	 */
+	public Record getRecord() {
+		return chess.getRecords();
+	}
+
+	/**
+	 * This method can be called from any thread.
+	 * 
+	 * @return the {@link PositionKey} of the current position
+	 */
+	public long getPositionKey() {
+		return positionKey;
+	}
+
+	/**
+	 * 
+	 * @return who may offer a draw
+	 */
+	public DrawManager getDrawManager() {
+		return chess.getDrawManager();
+	}
+
 	public Piece getChosen() {
 		return chess.getChosen();
 	}
 
 	public void setChosen(Piece chosen) {
 		this.chess.setChosen(chosen);
+		versionStale = true;
 	}
 }
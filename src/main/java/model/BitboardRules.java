@@ -0,0 +1,468 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * The rules of chess worked out on 64-bit masks, one for each side and type
+ * of piece as in {@link Bitboards}, without the {@link Piece} and
+ * {@link Square} objects of {@link Chess}. A position is read from a FEN and
+ * moves are given and returned as {@link MoveCode}s.
+ *
+ * Sliding pieces walk their rays square by square; the knight, king and pawn
+ * attacks come from tables. A move is legal when the own king is not
+ * attacked after making it on a copy. {@link RulesDifferential} plays random
+ * games with these rules and with {@link Chess} side by side to show that the
+ * two agree.
+ */
+public class BitboardRules {
+	public static final String START = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+	private static final String TYPES = "PNBRQK";
+	private static final String CASTLINGS = "KQkq";
+	private static final int PAWN = 0;
+	private static final int KNIGHT = 1;
+	private static final int BISHOP = 2;
+	private static final int ROOK = 3;
+	private static final int QUEEN = 4;
+	private static final int KING = 5;
+	// the offset of the black masks
+	private static final int BLACK = 6;
+	private static final long FILE_H = Bitboards.file(8);
+
+	private static final long[] KNIGHT_ATTACKS = new long[64];
+	private static final long[] KING_ATTACKS = new long[64];
+	// the squares a white pawn and a black pawn on a square attack
+	private static final long[][] PAWN_ATTACKS = new long[2][64];
+	private static final int[][] ROOK_DIRECTIONS = { { 1, 0 }, { -1, 0 }, { 0, 1 }, { 0, -1 } };
+	private static final int[][] BISHOP_DIRECTIONS = { { 1, 1 }, { 1, -1 }, { -1, 1 }, { -1, -1 } };
+
+	static {
+		int[][] knight = { { 1, 2 }, { 2, 1 }, { 2, -1 }, { 1, -2 }, { -1, -2 }, { -2, -1 }, { -2, 1 }, { -1, 2 } };
+		int[][] king = { { 1, 0 }, { 1, 1 }, { 0, 1 }, { -1, 1 }, { -1, 0 }, { -1, -1 }, { 0, -1 }, { 1, -1 } };
+		for (int square = 0; square < 64; square++) {
+			KNIGHT_ATTACKS[square] = steps(square, knight);
+			KING_ATTACKS[square] = steps(square, king);
+			PAWN_ATTACKS[0][square] = steps(square, new int[][] { { -1, 1 }, { 1, 1 } });
+			PAWN_ATTACKS[1][square] = steps(square, new int[][] { { -1, -1 }, { 1, -1 } });
+		}
+	}
+
+	private final long[] pieces = new long[12];
+	private boolean whiteToMove;
+	// bit i is set for the castling CASTLINGS.charAt(i), as in Chess
+	private int castlingRights;
+	// the square a pawn just passed moving two squares, -1 if none
+	private int enPassant;
+	private int halfmoveClock;
+	private int round;
+
+	/**
+	 * the starting position
+	 */
+	public BitboardRules() {
+		this(START);
+	}
+
+	/**
+	 *
+	 * @param fen
+	 *            a position in the Forsyth-Edwards Notation
+	 * @throws IllegalArgumentException
+	 *             if this is not a FEN with one king for each side
+	 */
+	public BitboardRules(String fen) {
+		String[] fields = fen.trim().split("\\s+");
+		if (fields.length != 6)
+			throw notAFEN(fen);
+		String[] ranks = fields[0].split("/", -1);
+		if (ranks.length != 8)
+			throw notAFEN(fen);
+		for (int r = 0; r < 8; r++) {
+			int x = 0;
+			for (char c : ranks[r].toCharArray()) {
+				if (c >= '1' && c <= '8') {
+					x += c - '0';
+					continue;
+				}
+				int type = TYPES.indexOf(Character.toUpperCase(c));
+				if (type < 0 || x > 7)
+					throw notAFEN(fen);
+				pieces[(Character.isUpperCase(c) ? 0 : BLACK) + type] |= 1L << (7 - r) * 8 + x++;
+			}
+			if (x != 8)
+				throw notAFEN(fen);
+		}
+		if (Long.bitCount(pieces[KING]) != 1 || Long.bitCount(pieces[BLACK + KING]) != 1)
+			throw notAFEN(fen);
+		if (!fields[1].equals("w") && !fields[1].equals("b"))
+			throw notAFEN(fen);
+		whiteToMove = fields[1].equals("w");
+		if (!fields[2].equals("-")) {
+			for (char c : fields[2].toCharArray()) {
+				int right = CASTLINGS.indexOf(c);
+				if (right < 0)
+					throw notAFEN(fen);
+				castlingRights |= 1 << right;
+			}
+		}
+		enPassant = -1;
+		if (!fields[3].equals("-")) {
+			if (!fields[3].matches("[a-h][36]"))
+				throw notAFEN(fen);
+			enPassant = (fields[3].charAt(1) - '1') * 8 + fields[3].charAt(0) - 'a';
+		}
+		try {
+			halfmoveClock = Integer.parseInt(fields[4]);
+			round = Integer.parseInt(fields[5]);
+		} catch (NumberFormatException e) {
+			throw notAFEN(fen);
+		}
+	}
+
+	/**
+	 * a copy of the position, which can be played on without changing the
+	 * original
+	 *
+	 * @param other
+	 */
+	public BitboardRules(BitboardRules other) {
+		System.arraycopy(other.pieces, 0, pieces, 0, pieces.length);
+		whiteToMove = other.whiteToMove;
+		castlingRights = other.castlingRights;
+		enPassant = other.enPassant;
+		halfmoveClock = other.halfmoveClock;
+		round = other.round;
+	}
+
+	private static IllegalArgumentException notAFEN(String fen) {
+		return new IllegalArgumentException("Not a FEN: " + fen);
+	}
+
+	private static long steps(int square, int[][] steps) {
+		long mask = 0;
+		for (int[] step : steps) {
+			int x = square % 8 + step[0];
+			int y = square / 8 + step[1];
+			if (x >= 0 && x < 8 && y >= 0 && y < 8)
+				mask |= 1L << y * 8 + x;
+		}
+		return mask;
+	}
+
+	private static long slide(int square, long occupied, int[][] directions) {
+		long mask = 0;
+		for (int[] direction : directions) {
+			int x = square % 8 + direction[0];
+			int y = square / 8 + direction[1];
+			while (x >= 0 && x < 8 && y >= 0 && y < 8) {
+				long bit = 1L << y * 8 + x;
+				mask |= bit;
+				if ((occupied & bit) != 0)
+					break;
+				x += direction[0];
+				y += direction[1];
+			}
+		}
+		return mask;
+	}
+
+	public boolean getWhoseTurn() {
+		return whiteToMove;
+	}
+
+	/**
+	 *
+	 * @param square
+	 *            the index of the square, see {@link Square#getIndex()}
+	 * @return the piece on the square, upper case for white and lower case for
+	 *         black like in a FEN, 0 if the square is empty
+	 */
+	public char pieceAt(int square) {
+		for (int i = 0; i < pieces.length; i++)
+			if ((pieces[i] & 1L << square) != 0) {
+				char type = TYPES.charAt(i % BLACK);
+				return i < BLACK ? type : Character.toLowerCase(type);
+			}
+		return 0;
+	}
+
+	private long occupied(boolean white) {
+		int base = white ? 0 : BLACK;
+		return pieces[base] | pieces[base + 1] | pieces[base + 2] | pieces[base + 3] | pieces[base + 4]
+				| pieces[base + 5];
+	}
+
+	private int king(boolean white) {
+		return Long.numberOfTrailingZeros(pieces[(white ? 0 : BLACK) + KING]);
+	}
+
+	/**
+	 *
+	 * @param square
+	 *            the index of the square
+	 * @param byWhite
+	 *            the side attacking
+	 * @return true if a piece of this side attacks the square
+	 */
+	public boolean isAttacked(int square, boolean byWhite) {
+		int side = byWhite ? 0 : BLACK;
+		long occupied = occupied(true) | occupied(false);
+		// a white pawn attacks the square from where a black pawn on it would attack
+		return (PAWN_ATTACKS[byWhite ? 1 : 0][square] & pieces[side + PAWN]) != 0
+				|| (KNIGHT_ATTACKS[square] & pieces[side + KNIGHT]) != 0
+				|| (KING_ATTACKS[square] & pieces[side + KING]) != 0
+				|| (slide(square, occupied, BISHOP_DIRECTIONS) & (pieces[side + BISHOP] | pieces[side + QUEEN])) != 0
+				|| (slide(square, occupied, ROOK_DIRECTIONS) & (pieces[side + ROOK] | pieces[side + QUEEN])) != 0;
+	}
+
+	/**
+	 *
+	 * @return true if the side to move is in check
+	 */
+	public boolean isCheck() {
+		return isAttacked(king(whiteToMove), !whiteToMove);
+	}
+
+	public boolean isCheckMate() {
+		return isCheck() && legalMoves().length == 0;
+	}
+
+	public boolean isStaleMate() {
+		return !isCheck() && legalMoves().length == 0;
+	}
+
+	/**
+	 *
+	 * @return true if the side that just moved is not in check, so the
+	 *         position can be reached
+	 */
+	boolean isLegalPosition() {
+		return !isAttacked(king(!whiteToMove), whiteToMove);
+	}
+
+	/**
+	 *
+	 * @return the legal moves of the side to move as {@link MoveCode}s, with one
+	 *         move for each piece a pawn can promote to
+	 */
+	public int[] legalMoves() {
+		int[] moves = new int[256];
+		int count = 0;
+		int pseudo = generate(moves);
+		for (int i = 0; i < pseudo; i++) {
+			BitboardRules next = new BitboardRules(this);
+			next.play(moves[i]);
+			if (next.isLegalPosition())
+				moves[count++] = moves[i];
+		}
+		return Arrays.copyOf(moves, count);
+	}
+
+	// the moves that follow the rules, except that the own king may be left in check
+	private int generate(int[] moves) {
+		int us = whiteToMove ? 0 : BLACK;
+		long own = occupied(whiteToMove);
+		long enemy = occupied(!whiteToMove);
+		long occupied = own | enemy;
+		int count = 0;
+		int forward = whiteToMove ? 8 : -8;
+		for (long pawns = pieces[us + PAWN]; pawns != 0; pawns &= pawns - 1) {
+			int from = Long.numberOfTrailingZeros(pawns);
+			int to = from + forward;
+			if (to < 0 || to > 63)
+				continue;
+			if ((occupied & 1L << to) == 0) {
+				count = addPawnMove(moves, count, from, to);
+				int first = whiteToMove ? 1 : 6;
+				if (from / 8 == first && (occupied & 1L << to + forward) == 0)
+					moves[count++] = MoveCode.encode(from, to + forward, (char) 0);
+			}
+			long targets = enemy;
+			if (enPassant >= 0)
+				targets |= 1L << enPassant;
+			for (targets &= PAWN_ATTACKS[whiteToMove ? 0 : 1][from]; targets != 0; targets &= targets - 1)
+				count = addPawnMove(moves, count, from, Long.numberOfTrailingZeros(targets));
+		}
+		for (int type = KNIGHT; type <= KING; type++) {
+			for (long movers = pieces[us + type]; movers != 0; movers &= movers - 1) {
+				int from = Long.numberOfTrailingZeros(movers);
+				for (long targets = attacks(type, from, occupied) & ~own; targets != 0; targets &= targets - 1)
+					moves[count++] = MoveCode.encode(from, Long.numberOfTrailingZeros(targets), (char) 0);
+			}
+		}
+		int e = whiteToMove ? 4 : 60;
+		int right = whiteToMove ? 0 : 2;
+		if (pieces[us + KING] == 1L << e && !isAttacked(e, !whiteToMove)) {
+			if ((castlingRights & 1 << right) != 0 && (pieces[us + ROOK] & 1L << e + 3) != 0
+					&& (occupied & 3L << e + 1) == 0 && !isAttacked(e + 1, !whiteToMove)
+					&& !isAttacked(e + 2, !whiteToMove))
+				moves[count++] = MoveCode.encode(e, e + 2, (char) 0);
+			if ((castlingRights & 2 << right) != 0 && (pieces[us + ROOK] & 1L << e - 4) != 0
+					&& (occupied & 7L << e - 3) == 0 && !isAttacked(e - 1, !whiteToMove)
+					&& !isAttacked(e - 2, !whiteToMove))
+				moves[count++] = MoveCode.encode(e, e - 2, (char) 0);
+		}
+		return count;
+	}
+
+	private static int addPawnMove(int[] moves, int count, int from, int to) {
+		if (to / 8 != 0 && to / 8 != 7) {
+			moves[count++] = MoveCode.encode(from, to, (char) 0);
+			return count;
+		}
+		for (char type : "QRBN".toCharArray())
+			moves[count++] = MoveCode.encode(from, to, type);
+		return count;
+	}
+
+	private static long attacks(int type, int square, long occupied) {
+		switch (type) {
+		case KNIGHT:
+			return KNIGHT_ATTACKS[square];
+		case BISHOP:
+			return slide(square, occupied, BISHOP_DIRECTIONS);
+		case ROOK:
+			return slide(square, occupied, ROOK_DIRECTIONS);
+		case QUEEN:
+			return slide(square, occupied, BISHOP_DIRECTIONS) | slide(square, occupied, ROOK_DIRECTIONS);
+		default:
+			return KING_ATTACKS[square];
+		}
+	}
+
+	/**
+	 * Make a move, which is not checked to be legal.
+	 *
+	 * @param code
+	 *            the {@link MoveCode} of a legal move
+	 */
+	public void play(int code) {
+		int from = MoveCode.getStart(code);
+		int to = MoveCode.getEnd(code);
+		int us = whiteToMove ? 0 : BLACK;
+		int them = BLACK - us;
+		int type = 0;
+		while (type < KING && (pieces[us + type] & 1L << from) == 0)
+			type++;
+		boolean capture = false;
+		for (int i = them; i < them + BLACK; i++) {
+			if ((pieces[i] & 1L << to) != 0) {
+				pieces[i] &= ~(1L << to);
+				capture = true;
+			}
+		}
+		if (type == PAWN && to == enPassant) {
+			pieces[them + PAWN] &= ~(1L << to + (whiteToMove ? -8 : 8));
+			capture = true;
+		}
+		char promotion = MoveCode.getPromotion(code);
+		pieces[us + type] &= ~(1L << from);
+		pieces[us + (promotion == 0 ? type : TYPES.indexOf(promotion))] |= 1L << to;
+		if (type == KING && Math.abs(to - from) == 2) {
+			int rookFrom = to > from ? from + 3 : from - 4;
+			int rookTo = (from + to) / 2;
+			pieces[us + ROOK] = pieces[us + ROOK] & ~(1L << rookFrom) | 1L << rookTo;
+		}
+		castlingRights &= ~(rightsLost(from) | rightsLost(to));
+		enPassant = type == PAWN && Math.abs(to - from) == 16 ? (from + to) / 2 : -1;
+		halfmoveClock = type == PAWN || capture ? 0 : halfmoveClock + 1;
+		if (!whiteToMove)
+			round++;
+		whiteToMove = !whiteToMove;
+	}
+
+	/**
+	 *
+	 * @param move
+	 *            a legal move in coordinate notation, like e2e4
+	 */
+	public void play(String move) {
+		play(MoveCode.parse(move));
+	}
+
+	// the castling rights lost when a piece leaves or is taken on the square
+	private static int rightsLost(int square) {
+		switch (square) {
+		case 4:
+			return 3;
+		case 7:
+			return 1;
+		case 0:
+			return 2;
+		case 60:
+			return 12;
+		case 63:
+			return 4;
+		case 56:
+			return 8;
+		default:
+			return 0;
+		}
+	}
+
+	/**
+	 * Take a piece other than a king off the board, with the castling rights
+	 * it held.
+	 *
+	 * @param square
+	 * @return false if there is no such piece on the square
+	 */
+	boolean remove(int square) {
+		char piece = pieceAt(square);
+		if (piece == 0 || Character.toUpperCase(piece) == 'K')
+			return false;
+		for (int i = 0; i < pieces.length; i++)
+			pieces[i] &= ~(1L << square);
+		castlingRights &= ~rightsLost(square);
+		if (enPassant >= 0 && square == enPassant + (whiteToMove ? -8 : 8))
+			enPassant = -1;
+		return true;
+	}
+
+	/**
+	 *
+	 * @return the position in the Forsyth-Edwards Notation, written like
+	 *         {@link Chess#toFEN()} does: the En Passant square is only given
+	 *         if a pawn can take on it
+	 */
+	public String toFEN() {
+		StringBuilder sb = new StringBuilder();
+		for (int y = 7; y >= 0; y--) {
+			int empty = 0;
+			for (int x = 0; x < 8; x++) {
+				char piece = pieceAt(y * 8 + x);
+				if (piece == 0) {
+					empty++;
+					continue;
+				}
+				if (empty > 0)
+					sb.append(empty);
+				empty = 0;
+				sb.append(piece);
+			}
+			if (empty > 0)
+				sb.append(empty);
+			if (y > 0)
+				sb.append('/');
+		}
+		sb.append(whiteToMove ? " w " : " b ");
+		if (castlingRights == 0)
+			sb.append('-');
+		for (int i = 0; i < CASTLINGS.length(); i++)
+			if ((castlingRights & 1 << i) != 0)
+				sb.append(CASTLINGS.charAt(i));
+		long pawn = enPassant < 0 ? 0 : 1L << enPassant + (whiteToMove ? -8 : 8);
+		long takers = (pawn << 1 & ~Bitboards.FILE_A | pawn >>> 1 & ~FILE_H) & pieces[(whiteToMove ? 0 : BLACK) + PAWN];
+		if (takers == 0)
+			sb.append(" -");
+		else
+			sb.append(' ').append((char) ('a' + enPassant % 8)).append((char) ('1' + enPassant / 8));
+		sb.append(' ').append(halfmoveClock).append(' ').append(round);
+		return sb.toString();
+	}
+
+	@Override
+	public String toString() {
+		return toFEN();
+	}
+}
@@ -0,0 +1,102 @@
+package model;
+
+/**
+ * The pieces of a position as one 64-bit mask per side and piece type. Bit i
+ * is set when the square with index i (see {@link Square#getIndex()}) holds
+ * such a piece.
+ *
+ * An instance can be refilled with {@link #update(Chess)} again and again, so
+ * scanning many positions does not allocate.
+ */
+public class Bitboards {
+	public static final long FILE_A = 0x0101010101010101L;
+	public static final long RANK_1 = 0xFFL;
+	public static final long QUEEN_SIDE = FILE_A * 0x0F;
+	public static final long KING_SIDE = FILE_A * 0xF0;
+
+	private static final String TYPES = "PNBRQK";
+
+	private final long[] pieces = new long[12];
+
+	/**
+	 * fill the masks with the current position of the chess
+	 *
+	 * @param chess
+	 */
+	public void update(Chess chess) {
+		for (int i = 0; i < pieces.length; i++)
+			pieces[i] = 0;
+		for (int i = 0; i < chess.white.size(); i++)
+			put(chess.white.get(i));
+		for (int i = 0; i < chess.black.size(); i++)
+			put(chess.black.get(i));
+	}
+
+	private void put(Piece piece) {
+		pieces[index(piece.getWhiteOrBlack(), piece.getType())] |= 1L << piece.getSpot().getIndex();
+	}
+
+	/**
+	 *
+	 * @param white
+	 *            which side
+	 * @param type
+	 *            the type of the piece, like 'P'
+	 * @return the squares holding this kind of piece
+	 */
+	public long get(boolean white, char type) {
+		return pieces[index(white, type)];
+	}
+
+	/**
+	 *
+	 * @param type
+	 * @return the squares holding this type of piece of either side
+	 */
+	public long get(char type) {
+		return get(true, type) | get(false, type);
+	}
+
+	/**
+	 *
+	 * @param white
+	 * @return the squares occupied by this side
+	 */
+	public long occupied(boolean white) {
+		int base = white ? 0 : 6;
+		long all = 0;
+		for (int i = base; i < base + 6; i++)
+			all |= pieces[i];
+		return all;
+	}
+
+	public long occupied() {
+		return occupied(true) | occupied(false);
+	}
+
+	/**
+	 *
+	 * @param file
+	 *            1 for the a-file, 8 for the h-file
+	 * @return the mask of this file
+	 */
+	public static long file(int file) {
+		return FILE_A << (file - 1);
+	}
+
+	/**
+	 *
+	 * @param rank
+	 * @return the mask of this rank
+	 */
+	public static long rank(int rank) {
+		return RANK_1 << (8 * (rank - 1));
+	}
+
+	private static int index(boolean white, char type) {
+		int i = TYPES.indexOf(type);
+		if (i < 0)
+			throw new IllegalArgumentException("Unknown piece " + type);
+		return (white ? 0 : 6) + i;
+	}
+}
@@ -54,6 +54,16 @@ public class Board implements Iterable<Square> {
 		return spots[x - 1][8 - y];
 	}
 
+	/**
+	 * 
+	 * @param index
+	 *            the index of the square, see {@link Square#getIndex()}
+	 * @return the square with this index
+	 */
+	public Square squareAt(int index) {
+		return spotAt(index % 8 + 1, index / 8 + 1);
+	}
+
 	@Override
 	public String toString() {
 		StringBuilder sb = new StringBuilder();
@@ -60,6 +60,13 @@ public class Castling extends Move {
 		return false;
 	}
 
+	@Override
+	public Square[] getChangedSquares(Chess chess) {
+		int y = startPosition.getY();
+		return new Square[] { startPosition, lastPosition, chess.spotAt(longOrShort ? 1 : 8, y),
+				chess.spotAt(longOrShort ? 4 : 6, y) };
+	}
+
 	public String getDescript() {
 		String s = "";
 		if (this.isWhite)
@@ -5,6 +5,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.Map;
 
 /**
  * It is the system for a chess game. It has fields to store the condition of
@@ -14,7 +15,19 @@ import java.util.Iterator;
  *
  */
 public class Chess {
+	private static final String CASTLINGS = "KQkq";
+
 	private int time;
+	// the time of the first move, not 0 if the chess was set up from a FEN
+	private int start;
+	// the castlings allowed when the chess was set up, one bit for each of KQkq
+	private int castlingRights;
+	// the En Passant target square given by a FEN, for the first move only
+	private Square enPassant;
+	// the plies since the last capture or pawn move when the chess was set up
+	private int startClock;
+	// the FEN the chess was set up from, null for the start position
+	private String setup;
 	private Board board;
 	ArrayList<Piece> white;
 	ArrayList<Piece> black;
@@ -31,13 +44,24 @@ public class Chess {
 	 * 
 	 */
 	public Chess() {
+		this(Openings.getDefault());
+	}
+
+	/**
+	 * construct a default chess with start setting, whose record classifies
+	 * the opening with this table
+	 * 
+	 * @param openings
+	 */
+	Chess(Openings openings) {
 		time = 0;
-		records = new Record();
+		records = new Record(openings);
 		drawManager = new DrawManager();
 		board = new Board();
 		white = new ArrayList<Piece>();
 		black = new ArrayList<Piece>();
 		list = new ArrayList<Square>();
+		castlingRights = (1 << CASTLINGS.length()) - 1;
 
 		for (int i = 1; i <= 8; i++) {
 			for (int j = 1; j <= 8; j++) {
@@ -59,6 +83,81 @@ public class Chess {
 		Collections.sort(black);
 	}
 
+	/**
+	 * construct a chess set up in a position given in the Forsyth-Edwards
+	 * Notation, like "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1".
+	 * The opening of such a game is not classified.
+	 * 
+	 * @param fen
+	 * @throws IllegalArgumentException
+	 *             if the text is not a valid FEN
+	 */
+	public Chess(String fen) {
+		setup = fen;
+		records = new Record(Openings.EMPTY);
+		drawManager = new DrawManager();
+		board = new Board();
+		white = new ArrayList<Piece>();
+		black = new ArrayList<Piece>();
+		list = new ArrayList<Square>();
+		for (Square t : board)
+			list.add(t);
+
+		String[] fields = fen.trim().split("\\s+");
+		if (fields.length < 4)
+			throw new IllegalArgumentException("Not a FEN: " + fen);
+		int x = 1;
+		int y = 8;
+		for (char c : fields[0].toCharArray()) {
+			if (c == '/') {
+				if (x != 9 || --y < 1)
+					throw new IllegalArgumentException("Not a FEN: " + fen);
+				x = 1;
+			} else if (c >= '1' && c <= '8') {
+				x += c - '0';
+			} else {
+				Piece piece = x <= 8 ? fenSet(c, board.spotAt(x, y)) : null;
+				if (piece == null)
+					throw new IllegalArgumentException("Not a FEN: " + fen);
+				if (piece.getWhiteOrBlack())
+					white.add(piece);
+				else
+					black.add(piece);
+				x++;
+			}
+		}
+		if (x != 9 || y != 1 || countKings(white) != 1 || countKings(black) != 1)
+			throw new IllegalArgumentException("Not a FEN: " + fen);
+		Collections.sort(white);
+		Collections.sort(black);
+
+		if (!fields[1].equals("w") && !fields[1].equals("b"))
+			throw new IllegalArgumentException("Not a FEN: " + fen);
+		if (!fields[2].equals("-")) {
+			for (char c : fields[2].toCharArray()) {
+				int i = CASTLINGS.indexOf(c);
+				if (i < 0)
+					throw new IllegalArgumentException("Not a FEN: " + fen);
+				castlingRights |= 1 << i;
+			}
+		}
+		if (!fields[3].equals("-")) {
+			enPassant = board.getSquare(fields[3]);
+			if (enPassant == null || enPassant.getY() != (fields[1].equals("w") ? 6 : 3))
+				throw new IllegalArgumentException("Not a FEN: " + fen);
+		}
+		try {
+			startClock = fields.length > 4 ? Integer.parseInt(fields[4]) : 0;
+			int round = fields.length > 5 ? Integer.parseInt(fields[5]) : 1;
+			if (startClock < 0 || round < 1)
+				throw new IllegalArgumentException("Not a FEN: " + fen);
+			start = 2 * (round - 1) + (fields[1].equals("w") ? 0 : 1);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Not a FEN: " + fen, e);
+		}
+		time = start;
+	}
+
 	/**
 	 * 
 	 * @param x
@@ -84,6 +183,42 @@ public class Chess {
 			return null;
 	}
 
+	/**
+	 * 
+	 * @param c
+	 *            a piece in the FEN, upper case for the white
+	 * @param p
+	 *            the square of this piece
+	 * @return the new piece, null if the letter is not a piece
+	 */
+	private Piece fenSet(char c, Square p) {
+		boolean white = Character.isUpperCase(c);
+		switch (Character.toUpperCase(c)) {
+		case 'P':
+			return new Pawn(white, p, this);
+		case 'N':
+			return new Knight(white, p, this);
+		case 'B':
+			return new Bishop(white, p, this);
+		case 'R':
+			return new Rook(white, p, this);
+		case 'Q':
+			return new Queen(white, p, this);
+		case 'K':
+			return new King(white, p, this);
+		default:
+			return null;
+		}
+	}
+
+	private static int countKings(ArrayList<Piece> pieces) {
+		int kings = 0;
+		for (Piece piece : pieces)
+			if (piece.isType(King.class))
+				kings++;
+		return kings;
+	}
+
 	// ---------------------------------------------------------------------------
 	// Accessors
 
@@ -132,6 +267,59 @@ public class Chess {
 		return board.toString();
 	}
 
+	/**
+	 * 
+	 * @return the current position in the Forsyth-Edwards Notation. The En
+	 *         Passant square is only given if a pawn can take on it.
+	 */
+	public String toFEN() {
+		StringBuilder sb = new StringBuilder();
+		for (int y = 8; y >= 1; y--) {
+			int empty = 0;
+			for (int x = 1; x <= 8; x++) {
+				Piece piece = spotAt(x, y).getPiece();
+				if (piece == null) {
+					empty++;
+					continue;
+				}
+				if (empty > 0)
+					sb.append(empty);
+				empty = 0;
+				sb.append(piece.getWhiteOrBlack() ? piece.getType() : Character.toLowerCase(piece.getType()));
+			}
+			if (empty > 0)
+				sb.append(empty);
+			if (y > 1)
+				sb.append('/');
+		}
+		sb.append(getWhoseTurn() ? " w " : " b ");
+		int castlings = sb.length();
+		for (int i = 0; i < CASTLINGS.length(); i++)
+			if (hasCastlingRight(i < 2, i % 2 == 0))
+				sb.append(CASTLINGS.charAt(i));
+		if (sb.length() == castlings)
+			sb.append('-');
+		int file = getEnPassantFile();
+		if (file == 0)
+			sb.append(" -");
+		else
+			sb.append(' ').append((char) ('a' + file - 1)).append(getWhoseTurn() ? '6' : '3');
+		sb.append(' ').append(getHalfmoveClock()).append(' ').append(getRound());
+		return sb.toString();
+	}
+
+	/**
+	 * 
+	 * @return the number of plies since the last capture or pawn move
+	 */
+	public int getHalfmoveClock() {
+		int played = time - start;
+		for (int i = played - 1; i >= 0; i--)
+			if (records.get(i).notQuiet())
+				return played - 1 - i;
+		return startClock + played;
+	}
+
 	/**
 	 * 
 	 * @param type
@@ -148,9 +336,10 @@ public class Chess {
 		else
 			set = black;
 
+		int kind = PieceKind.of(type);
 		for (int j = 0; j < set.size(); j++) {
 			Piece i = set.get(j);
-			if (i.isType(type) && i.canGo(end))
+			if (i.isKind(kind) && i.canGo(end))
 				possible.add(i);
 		}
 		return possible;
@@ -207,7 +396,7 @@ public class Chess {
 
 		for (int j = 0; j < attacker.size(); j++) {
 			Piece i = attacker.get(j);
-			if (i.canAttack(square) != null)
+			if (i.attacks(square))
 				return true;
 		}
 		return false;
@@ -340,8 +529,9 @@ public class Chess {
 	}
 
 	private boolean isFiftySilentMove() {
-		if (time > 50) {
-			for (int i = time - 50; i < time; i++) {
+		int played = time - start;
+		if (played > 50) {
+			for (int i = played - 50; i < played; i++) {
 				if (records.get(i).notQuiet()) {
 					return false;
 				}
@@ -366,7 +556,7 @@ public class Chess {
 	public boolean canEnPassant(Square end) {
 		Move move = lastMove();
 		if (move == null)
-			return false;
+			return enPassant != null && enPassant.equals(end);
 		return move.canEnPassant(end);
 	}
 
@@ -399,17 +589,61 @@ public class Chess {
 				spotAt(1, k.getY()), getRound());
 	}
 
+	/**
+	 * 
+	 * @param white
+	 *            which side
+	 * @param kingSide
+	 *            true for the short castling, false for the long castling
+	 * @return true if neither the king nor the rook of this castling has
+	 *         moved, whether or not the castling can be made right now
+	 */
+	public boolean hasCastlingRight(boolean white, boolean kingSide) {
+		int y = white ? 1 : 8;
+		return (castlingRights & 1 << (white ? 0 : 2) + (kingSide ? 0 : 1)) != 0
+				&& !records.hasMoved(spotAt(5, y), King.class, time - start)
+				&& !records.hasMoved(spotAt(kingSide ? 8 : 1, y), Rook.class, time - start);
+	}
+
+	/**
+	 * 
+	 * @return the file (1 to 8) of the pawn that just moved two squares, if a
+	 *         pawn of the side to move can take it En Passant, 0 otherwise
+	 */
+	public int getEnPassantFile() {
+		Move move = lastMove();
+		int x;
+		if (move != null) {
+			if (!move.getMovedPiece().isKind(PieceKind.PAWN)
+					|| Math.abs(move.getEnd().getY() - move.getStart().getY()) != 2)
+				return 0;
+			x = move.getEnd().getX();
+		} else if (enPassant != null) {
+			x = enPassant.getX();
+		} else {
+			return 0;
+		}
+		int y = getWhoseTurn() ? 5 : 4;
+		for (int dx = -1; dx <= 1; dx += 2) {
+			if (x + dx < 1 || x + dx > 8)
+				continue;
+			Piece piece = spotAt(x + dx, y).getPiece();
+			if (piece != null && piece.isKind(PieceKind.PAWN) && piece.getWhiteOrBlack() == getWhoseTurn())
+				return x;
+		}
+		return 0;
+	}
+
 	private boolean canNotLongCastling(int y, boolean attack) {
-		return spotAt(2, y).isOccupied() || spotAt(3, y).isOccupied() || spotAt(4, y).isOccupied()
-				|| isAttacked(attack, spotAt(5, y)) || isAttacked(attack, spotAt(3, y))
-				|| isAttacked(attack, spotAt(4, y)) || records.hasMoved(spotAt(1, y), Rook.class, time)
-				|| records.hasMoved(spotAt(5, y), King.class, time);
+		return y != (attack ? 8 : 1) || !hasCastlingRight(!attack, false) || spotAt(2, y).isOccupied()
+				|| spotAt(3, y).isOccupied() || spotAt(4, y).isOccupied() || isAttacked(attack, spotAt(5, y))
+				|| isAttacked(attack, spotAt(3, y)) || isAttacked(attack, spotAt(4, y));
 	}
 
 	private boolean canNotShortCastling(int y, boolean attack) {
-		return spotAt(6, y).isOccupied() || spotAt(7, y).isOccupied() || isAttacked(attack, spotAt(5, y))
-				|| isAttacked(attack, spotAt(6, y)) || isAttacked(attack, spotAt(7, y))
-				|| records.hasMoved(spotAt(8, y), Rook.class, time) || records.hasMoved(spotAt(5, y), King.class, time);
+		return y != (attack ? 8 : 1) || !hasCastlingRight(!attack, true) || spotAt(6, y).isOccupied()
+				|| spotAt(7, y).isOccupied() || isAttacked(attack, spotAt(5, y)) || isAttacked(attack, spotAt(6, y))
+				|| isAttacked(attack, spotAt(7, y));
 	}
 
 	/**
@@ -439,9 +673,9 @@ public class Chess {
 	}
 
 	public Move lastMove() {
-		if (time == 0)
+		if (time == start)
 			return null;
-		return records.get(time - 1);
+		return records.get(time - start - 1);
 	}
 
 	// modifiers
@@ -499,6 +733,19 @@ public class Chess {
 		return true;
 	}
 
+	/**
+	 * Go back to the start of the game by undoing every move, so the same
+	 * pieces and squares can be used for another game without creating a new
+	 * chess.
+	 */
+	public void reset() {
+		while (undoLastMove())
+			;
+		records.endGame(null);
+		drawManager = new DrawManager();
+		chosen = null;
+	}
+
 	// ----------------------------------------------------------------------------------------------------------
 	// Methods to deal with the commands and requested moves by the user.
 
@@ -534,6 +781,7 @@ public class Chess {
 
 		// update time
 		time++;
+		records.findTransposition(this);
 
 		// check end game situations
 		if (checkOrNot(!getWhoseTurn())) {
@@ -554,6 +802,39 @@ public class Chess {
 		}
 	}
 
+	/**
+	 * Apply a move that is already known to be legal, like a move read back
+	 * from a stored game, without looking for check, checkmate or stalemate.
+	 * 
+	 * @param move
+	 */
+	public void replayMove(Move move) {
+		move.performMove(this);
+		records.add(move);
+		time++;
+		records.findTransposition(this);
+	}
+
+	/**
+	 * 
+	 * @param depth
+	 * @return the number of move sequences of this many plies from the current
+	 *         position, see {@link Perft}
+	 */
+	public long perft(int depth) {
+		return new Perft().count(this, depth);
+	}
+
+	/**
+	 * 
+	 * @param depth
+	 * @return for each legal move, the number of move sequences of this many
+	 *         plies starting with it, see {@link Perft}
+	 */
+	public Map<String, Long> divide(int depth) {
+		return new Perft().divide(this, depth);
+	}
+
 	/**
 	 * record end game information and send message to control
 	 * 
@@ -582,9 +863,10 @@ public class Chess {
 			} else {
 				king = (King) black.get(0);
 			}
-			if (moveCommand.equals("O-O")) {
+			String castling = moveCommand.replaceAll("[+#!?]+$", "");
+			if (castling.equals("O-O")) {
 				move = canShortCastling(king);
-			} else if (moveCommand.equals("O-O-O")) {
+			} else if (castling.equals("O-O-O")) {
 				move = canLongCastling(king);
 			} else {
 				throw new InvalidMoveException(moveCommand, InvalidMoveException.invalidFormat);
@@ -614,6 +896,15 @@ public class Chess {
 				move = movedPiece.getMove(end);
 			} else {
 				ArrayList<Piece> possible = possibleMovers(type, end);
+				// only the file or the rank of the start square is given, like Nbd7
+				if (m.getGroup(2) != null || m.getGroup(3) != null) {
+					for (int i = possible.size() - 1; i >= 0; i--) {
+						String from = possible.get(i).getSpot().toString();
+						if ((m.getGroup(2) != null && from.charAt(0) != m.getGroup(2).charAt(0))
+								|| (m.getGroup(3) != null && from.charAt(1) != m.getGroup(3).charAt(0)))
+							possible.remove(i);
+					}
+				}
 				if (possible.size() == 0) {
 					throw new InvalidMoveException(moveCommand, InvalidMoveException.impossibleMove);
 				} else if (possible.size() == 1) {
@@ -674,6 +965,15 @@ public class Chess {
 		return chosen;
 	}
 
+	/**
+	 * 
+	 * @return the FEN this chess was set up from, null if it started from the
+	 *         start position
+	 */
+	String getSetup() {
+		return setup;
+	}
+
 	public void setChosen(Piece chosen) {
 		this.chosen = chosen;
 	}
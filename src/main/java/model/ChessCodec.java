@@ -0,0 +1,206 @@
+package model;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import controller.DrawManager;
+
+/**
+ * Packs a {@link Chess} into a few bytes and back, for storing a game, moving
+ * it to another node or caching it, without the text of the records that
+ * would have to be read back move by move.
+ *
+ * The layout is:
+ *
+ * <pre>
+ * byte      version
+ * byte      flags: 1 white may offer a draw, 2 black may, 4 set up from a FEN
+ * byte      the end of the game, 0 if it goes on, see ENDS
+ * byte      the index of the square of the chosen piece + 1, 0 if none
+ * [short    length of the FEN in UTF-8, and the FEN]
+ * short     the number of moves
+ * short     each move: its {@link MoveCode}, with bit 15 set if it checks
+ * </pre>
+ *
+ * A game of 100 plies takes 206 bytes. Decoding replays the moves without
+ * looking for check, checkmate or stalemate again, as the notes and the end
+ * are stored.
+ */
+public final class ChessCodec {
+	private static final int VERSION = 1;
+	private static final int WHITE_DRAW = 1;
+	private static final int BLACK_DRAW = 2;
+	private static final int SETUP = 4;
+	private static final int CHECK = 1 << 15;
+	/**
+	 * the ends of a game, at the index stored
+	 */
+	private static final EndGame[] ENDS = { null, Win.WHITECHECKMATE, Win.BLACKCHECKMATE, Win.WHITERESIGN,
+			Win.BLACKESIGN, Draw.STALEMATE, Draw.FIFTY_MOVE, Draw.REPETITION, Draw.AGREEMENT };
+
+	private ChessCodec() {
+	}
+
+	/**
+	 *
+	 * @param chess
+	 * @return the bytes of the chess
+	 */
+	public static byte[] encode(Chess chess) {
+		Record records = chess.getRecords();
+		byte[] setup = chess.getSetup() == null ? null : chess.getSetup().getBytes(StandardCharsets.UTF_8);
+		ByteBuffer out = ByteBuffer.allocate(6 + (setup == null ? 0 : 2 + setup.length) + 2 * records.size());
+		out.put((byte) VERSION);
+		out.put((byte) (encodeDraws(chess.getDrawManager()) | (setup == null ? 0 : SETUP)));
+		out.put((byte) encodeEnd(records.getEndGame()));
+		Piece chosen = chess.getChosen();
+		out.put((byte) (chosen == null ? 0 : chosen.getSpot().getIndex() + 1));
+		if (setup != null) {
+			out.putShort((short) setup.length);
+			out.put(setup);
+		}
+		out.putShort((short) records.size());
+		for (Move move : records)
+			out.putShort((short) encodeMove(move));
+		return out.array();
+	}
+
+	/**
+	 *
+	 * @param move
+	 *            a move made
+	 * @return its {@link MoveCode}, with bit 15 set if it checks
+	 */
+	public static int encodeMove(Move move) {
+		int code = MoveCode.encode(move);
+		if (move.note == MoveNote.CHECK || move.note == MoveNote.CHECKMATE)
+			code |= CHECK;
+		return code;
+	}
+
+	/**
+	 * Make a move encoded by {@link #encodeMove(Move)}, without looking for
+	 * check, checkmate or stalemate.
+	 *
+	 * @param chess
+	 * @param code
+	 * @return the move made
+	 * @throws IllegalArgumentException
+	 *             if the move is not legal
+	 */
+	public static Move replay(Chess chess, int code) {
+		Move move = MoveCode.toMove(chess, code & ~CHECK);
+		if (move == null)
+			throw new IllegalArgumentException("Not a legal move: " + MoveCode.toString(code & ~CHECK));
+		chess.replayMove(move);
+		if ((code & CHECK) != 0)
+			move.note = MoveNote.CHECK;
+		return move;
+	}
+
+	/**
+	 *
+	 * @param end
+	 *            the end of a game, or null
+	 * @return the number of the end, 0 for null
+	 */
+	public static int encodeEnd(EndGame end) {
+		for (int i = 1; i < ENDS.length; i++)
+			if (ENDS[i] == end)
+				return i;
+		return 0;
+	}
+
+	/**
+	 *
+	 * @param bytes
+	 *            made by {@link #encode(Chess)}
+	 * @return true if the game packed has ended, read without decoding it
+	 */
+	public static boolean hasEnd(byte[] bytes) {
+		return bytes.length > 2 && bytes[2] != 0;
+	}
+
+	/**
+	 * End a game replayed by {@link #replay(Chess, int)}.
+	 *
+	 * @param chess
+	 * @param end
+	 *            the number of the end given by {@link #encodeEnd(EndGame)}
+	 * @throws IllegalArgumentException
+	 *             if this is not the number of an end
+	 */
+	public static void replayEnd(Chess chess, int end) {
+		if (end <= 0 || end >= ENDS.length)
+			throw new IllegalArgumentException("Not an end of a game: " + end);
+		Move last = chess.lastMove();
+		if (last != null && (ENDS[end] == Win.WHITECHECKMATE || ENDS[end] == Win.BLACKCHECKMATE))
+			last.note = MoveNote.CHECKMATE;
+		chess.endGame(ENDS[end]);
+	}
+
+	/**
+	 *
+	 * @param draws
+	 * @return 1 if white may offer a draw, plus 2 if black may
+	 */
+	public static int encodeDraws(DrawManager draws) {
+		return (draws.canAskFordraw(true) ? WHITE_DRAW : 0) | (draws.canAskFordraw(false) ? BLACK_DRAW : 0);
+	}
+
+	/**
+	 *
+	 * @param chess
+	 * @param draws
+	 *            given by {@link #encodeDraws(DrawManager)}
+	 */
+	public static void replayDraws(Chess chess, int draws) {
+		if ((draws & WHITE_DRAW) == 0)
+			chess.getDrawManager().setRightToRequestDraw(true);
+		else if ((draws & BLACK_DRAW) == 0)
+			chess.getDrawManager().setRightToRequestDraw(false);
+		else
+			chess.getDrawManager().resetRightToRequestDraw();
+	}
+
+	/**
+	 *
+	 * @param bytes
+	 *            made by {@link #encode(Chess)}
+	 * @return a new chess in the same state
+	 * @throws IllegalArgumentException
+	 *             if the bytes are not a chess, or a move is not legal
+	 */
+	public static Chess decode(byte[] bytes) {
+		try {
+			ByteBuffer in = ByteBuffer.wrap(bytes);
+			if (in.get() != VERSION)
+				throw new IllegalArgumentException("Unknown version of an encoded chess: " + bytes[0]);
+			int flags = in.get();
+			int end = in.get() & 0xFF;
+			int chosen = in.get() & 0xFF;
+			if (end >= ENDS.length || chosen > 64)
+				throw new IllegalArgumentException("Not an encoded chess");
+			Chess chess;
+			if ((flags & SETUP) != 0) {
+				byte[] setup = new byte[in.getShort() & 0xFFFF];
+				in.get(setup);
+				chess = new Chess(new String(setup, StandardCharsets.UTF_8));
+			} else {
+				chess = new Chess();
+			}
+			int moves = in.getShort() & 0xFFFF;
+			for (int i = 0; i < moves; i++)
+				replay(chess, in.getShort() & 0xFFFF);
+			if (end != 0)
+				replayEnd(chess, end);
+			replayDraws(chess, flags);
+			if (chosen != 0)
+				chess.setChosen(chess.getBoard().squareAt(chosen - 1).getPiece());
+			return chess;
+		} catch (BufferUnderflowException e) {
+			throw new IllegalArgumentException("Not an encoded chess", e);
+		}
+	}
+}
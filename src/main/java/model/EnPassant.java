@@ -35,6 +35,11 @@ public class EnPassant extends Move {
 		return s;
 	}
 
+	@Override
+	public Square[] getChangedSquares(Chess chess) {
+		return new Square[] { startPosition, lastPosition, pawnPos };
+	}
+
 	public void undo(Chess chess) {
 		movedPiece.moveTo(startPosition);
 		if (capturedPiece != null) {
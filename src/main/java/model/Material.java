@@ -0,0 +1,151 @@
+package model;
+
+/**
+ * The material signature of a position: how many pawns, knights, bishops,
+ * rooks and queens each side has. Kings are implied.
+ *
+ * A signature is packed in a long with one 4-bit count per side and piece
+ * type, so two positions have the same material exactly when their
+ * signatures are equal. The text form is like "KRPPvKR".
+ */
+public final class Material {
+	private static final String TYPES = "PNBRQ";
+	private static final String ORDER = "QRBNP";
+
+	/**
+	 * the material of both sides at the start of a game
+	 */
+	public static final long START = parse("KQRRBBNNPPPPPPPPvKQRRBBNNPPPPPPPP");
+
+	private Material() {
+	}
+
+	/**
+	 *
+	 * @param chess
+	 * @return the material signature of the current position
+	 */
+	public static long of(Chess chess) {
+		long signature = 0;
+		for (int i = 0; i < chess.white.size(); i++)
+			signature = add(signature, true, chess.white.get(i).getType(), 1);
+		for (int i = 0; i < chess.black.size(); i++)
+			signature = add(signature, false, chess.black.get(i).getType(), 1);
+		return signature;
+	}
+
+	/**
+	 * Update the signature for a move without looking at the board. Only
+	 * captures and promotions change it.
+	 *
+	 * @param signature
+	 *            the signature before the move
+	 * @param move
+	 * @return the signature after the move
+	 */
+	public static long afterMove(long signature, Move move) {
+		Piece captured = move.getCapturedPiece();
+		if (captured != null)
+			signature = add(signature, captured.getWhiteOrBlack(), captured.getType(), -1);
+		if (move instanceof Promotion) {
+			Piece promotedTo = ((Promotion) move).getPromotedTo();
+			if (promotedTo != null) {
+				signature = add(signature, move.getWhoseTurn(), 'P', -1);
+				signature = add(signature, move.getWhoseTurn(), promotedTo.getType(), 1);
+			}
+		}
+		return signature;
+	}
+
+	/**
+	 *
+	 * @param signature
+	 * @param white
+	 *            which side
+	 * @param type
+	 *            the type of the piece, like 'R'
+	 * @return how many pieces of this type this side has
+	 */
+	public static int count(long signature, boolean white, char type) {
+		if (type == 'K')
+			return 1;
+		return (int) (signature >>> shift(white, type) & 15);
+	}
+
+	/**
+	 *
+	 * @param signature
+	 * @param white
+	 * @return the number of pieces this side has besides the king
+	 */
+	public static int pieceCount(long signature, boolean white) {
+		int sum = 0;
+		for (int i = 0; i < TYPES.length(); i++)
+			sum += count(signature, white, TYPES.charAt(i));
+		return sum;
+	}
+
+	/**
+	 *
+	 * @param signature
+	 * @return a new signature with white and black exchanged
+	 */
+	public static long flip(long signature) {
+		return (signature & 0xFFFFF) << 20 | signature >>> 20;
+	}
+
+	/**
+	 * parse signatures like "KQvKR" or "KRPPvKRP". The order of the pieces
+	 * does not matter, and the kings can be left out.
+	 *
+	 * @param text
+	 * @return the signature
+	 */
+	public static long parse(String text) {
+		int split = text.indexOf('v');
+		if (split < 0)
+			throw new IllegalArgumentException("Material should be written like KQvKR: " + text);
+		long signature = 0;
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (i == split || c == 'K')
+				continue;
+			if (TYPES.indexOf(c) < 0)
+				throw new IllegalArgumentException("Unknown piece " + c + " in " + text);
+			signature = add(signature, i < split, c, 1);
+		}
+		return signature;
+	}
+
+	/**
+	 *
+	 * @param signature
+	 * @return the text form of this signature, like "KRPPvKR"
+	 */
+	public static String toString(long signature) {
+		StringBuilder sb = new StringBuilder();
+		append(sb, signature, true);
+		sb.append('v');
+		append(sb, signature, false);
+		return sb.toString();
+	}
+
+	private static void append(StringBuilder sb, long signature, boolean white) {
+		sb.append('K');
+		for (int i = 0; i < ORDER.length(); i++) {
+			char type = ORDER.charAt(i);
+			for (int n = count(signature, white, type); n > 0; n--)
+				sb.append(type);
+		}
+	}
+
+	private static long add(long signature, boolean white, char type, int n) {
+		if (type == 'K')
+			return signature;
+		return signature + ((long) n << shift(white, type));
+	}
+
+	private static int shift(boolean white, char type) {
+		return ((white ? 0 : 5) + TYPES.indexOf(type)) * 4;
+	}
+}
@@ -48,6 +48,41 @@ public abstract class Move {
 		return startPosition;
 	}
 
+	/**
+	 * 
+	 * @return end square
+	 */
+	public Square getEnd() {
+		return lastPosition;
+	}
+
+	/**
+	 * 
+	 * @return the piece moved
+	 */
+	public Piece getMovedPiece() {
+		return movedPiece;
+	}
+
+	/**
+	 * 
+	 * @return the piece captured by this move, null if nothing is captured
+	 */
+	public Piece getCapturedPiece() {
+		return capturedPiece;
+	}
+
+	/**
+	 * 
+	 * @param chess
+	 *            the chess of this move
+	 * @return the squares whose piece changes when this move is made or
+	 *         undone
+	 */
+	public Square[] getChangedSquares(Chess chess) {
+		return new Square[] { startPosition, lastPosition };
+	}
+
 	/**
 	 * called when the program needs to find out whether it is legal to make a
 	 * castling.
@@ -57,7 +92,7 @@ public abstract class Move {
 	 *         castling
 	 */
 	public boolean canEnPassant(Square p) {
-		return movedPiece.isType(Pawn.class) && (startPosition.getX() == p.getX() && lastPosition.getX() == p.getX()
+		return movedPiece.isKind(PieceKind.PAWN) && (startPosition.getX() == p.getX() && lastPosition.getX() == p.getX()
 				&& (startPosition.getY() + lastPosition.getY()) == (p.getY() * 2));
 	}
 
@@ -69,6 +104,15 @@ public abstract class Move {
 		return isWhite;
 	}
 
+	/**
+	 * 
+	 * @return whether this move gives check or checkmate, known once the move
+	 *         is made
+	 */
+	public MoveNote getNote() {
+		return note;
+	}
+
 	/**
 	 * @return the documentation in standard chess convention
 	 */
@@ -100,7 +144,7 @@ public abstract class Move {
 	 * @return true if this move can be redo over and over again later.
 	 */
 	public boolean notQuiet() {
-		return capturedPiece != null || movedPiece.isType(Pawn.class);
+		return capturedPiece != null || movedPiece.isKind(PieceKind.PAWN);
 	}
 
 	public abstract String getDescript();
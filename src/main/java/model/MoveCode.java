@@ -0,0 +1,146 @@
+package model;
+
+/**
+ * Packs a move into 16 bits, so games can be stored and compared without
+ * keeping {@link Move} objects around.
+ *
+ * The layout is the one used by Polyglot opening books: bits 0-5 hold the end
+ * square, bits 6-11 the start square (see {@link Square#getIndex()}) and bits
+ * 12-14 the piece a pawn promotes to (0 none, 1 knight, 2 bishop, 3 rook, 4
+ * queen). Castling is stored as the two-square move of the king.
+ */
+public final class MoveCode {
+	/**
+	 * a1-a1 is never a legal move, so 0 can be used as "no move"
+	 */
+	public static final int NONE = 0;
+
+	private static final String PROMOTIONS = " NBRQ";
+
+	private MoveCode() {
+	}
+
+	/**
+	 *
+	 * @param start
+	 *            index of the start square
+	 * @param end
+	 *            index of the end square
+	 * @param promotion
+	 *            type of the piece to promote to, like 'Q', 0 if this is not
+	 *            a promotion
+	 * @return the code of this move
+	 */
+	public static int encode(int start, int end, char promotion) {
+		int promote = promotion == 0 ? 0 : PROMOTIONS.indexOf(Character.toUpperCase(promotion));
+		if (promote < 0)
+			throw new IllegalArgumentException("Invalid type of piece to promote to: " + promotion);
+		return promote << 12 | start << 6 | end;
+	}
+
+	/**
+	 *
+	 * @param move
+	 * @return the code of this move
+	 */
+	public static int encode(Move move) {
+		char promotion = 0;
+		if (move instanceof Promotion) {
+			Piece promotedTo = ((Promotion) move).getPromotedTo();
+			if (promotedTo != null)
+				promotion = promotedTo.getType();
+		}
+		return encode(move.getStart().getIndex(), move.getEnd().getIndex(), promotion);
+	}
+
+	public static int getStart(int code) {
+		return code >> 6 & 63;
+	}
+
+	public static int getEnd(int code) {
+		return code & 63;
+	}
+
+	/**
+	 *
+	 * @param code
+	 * @return the type of the piece to promote to, 0 if this is not a promotion
+	 */
+	public static char getPromotion(int code) {
+		int promote = code >> 12 & 7;
+		return promote == 0 ? 0 : PROMOTIONS.charAt(promote);
+	}
+
+	/**
+	 * Find the legal move in this chess that matches the code.
+	 *
+	 * @param chess
+	 * @param code
+	 * @return the legal move, null if the code does not describe a legal move
+	 *         for the side to move
+	 */
+	public static Move toMove(Chess chess, int code) {
+		Board board = chess.getBoard();
+		Piece piece = board.squareAt(getStart(code)).getPiece();
+		if (piece == null || piece.getWhiteOrBlack() != chess.getWhoseTurn())
+			return null;
+		Move move = piece.getMove(board.squareAt(getEnd(code)));
+		if (move instanceof Promotion) {
+			char promotion = getPromotion(code);
+			if (promotion == 0)
+				return null;
+			((Promotion) move).setPromoteTo(Chess.getPieceClass(promotion));
+		}
+		return move;
+	}
+
+	/**
+	 *
+	 * @param code
+	 * @return the move in coordinate notation, like e2e4 or e7e8q
+	 */
+	public static String toString(int code) {
+		StringBuilder sb = new StringBuilder(5);
+		appendSquare(sb, getStart(code));
+		appendSquare(sb, getEnd(code));
+		char promotion = getPromotion(code);
+		if (promotion != 0)
+			sb.append(Character.toLowerCase(promotion));
+		return sb.toString();
+	}
+
+	/**
+	 *
+	 * @param move
+	 *            a move in coordinate notation, like e2e4 or e7e8q
+	 * @return the code of the move
+	 * @throws IllegalArgumentException
+	 *             if the text is not a move in coordinate notation
+	 */
+	public static int parse(String move) {
+		if (move.length() < 4 || move.length() > 5)
+			throw new IllegalArgumentException("Not a move: " + move);
+		int start = parseSquare(move, 0);
+		int end = parseSquare(move, 2);
+		char promotion = 0;
+		if (move.length() == 5) {
+			promotion = Character.toUpperCase(move.charAt(4));
+			if (promotion == ' ' || PROMOTIONS.indexOf(promotion) < 0)
+				throw new IllegalArgumentException("Not a move: " + move);
+		}
+		return encode(start, end, promotion);
+	}
+
+	private static int parseSquare(String move, int at) {
+		int file = move.charAt(at) - 'a';
+		int rank = move.charAt(at + 1) - '1';
+		if (file < 0 || file > 7 || rank < 0 || rank > 7)
+			throw new IllegalArgumentException("Not a move: " + move);
+		return rank * 8 + file;
+	}
+
+	private static void appendSquare(StringBuilder sb, int index) {
+		sb.append((char) ('a' + index % 8));
+		sb.append((char) ('1' + index / 8));
+	}
+}
@@ -0,0 +1,257 @@
+package model;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The ECO classification of openings, as a trie of move sequences.
+ *
+ * Every node of the trie is a position reached by a sequence of moves, and
+ * knows the most specific opening classifying it. Nodes are numbers into
+ * plain arrays, so following a move is a short scan of the children of a
+ * node. A {@link Record} keeps the node of each ply and classifies a game
+ * while it is played. A game leaving the trie can come back by a
+ * transposition, which is found by the {@link PositionKey} of the position.
+ *
+ * The default table is read once from the resource eco.tsv.
+ */
+public final class Openings {
+	public static final int NONE = -1;
+	public static final int ROOT = 0;
+
+	/**
+	 * the table without any opening
+	 */
+	static final Openings EMPTY = new Openings();
+
+	private final String[] ecos;
+	private final String[] names;
+	private int[] firstChild;
+	private int[] nextSibling;
+	private char[] moves;
+	private int[] openings;
+	private int size;
+	private int maxDepth;
+	// the keys of the positions of the nodes, sorted, and their nodes
+	private long[] keys;
+	private int[] keyNodes;
+
+	private Openings() {
+		this(new String[0], new String[0], new int[] { NONE }, new int[] { NONE }, new char[1], new int[] { NONE },
+				1, 0, new long[0], new int[0]);
+	}
+
+	private Openings(String[] ecos, String[] names, int[] firstChild, int[] nextSibling, char[] moves,
+			int[] openings, int size, int maxDepth, long[] keys, int[] keyNodes) {
+		this.ecos = ecos;
+		this.names = names;
+		this.firstChild = firstChild;
+		this.nextSibling = nextSibling;
+		this.moves = moves;
+		this.openings = openings;
+		this.size = size;
+		this.maxDepth = maxDepth;
+		this.keys = keys;
+		this.keyNodes = keyNodes;
+	}
+
+	private static class Default {
+		static final Openings INSTANCE = loadDefault();
+	}
+
+	/**
+	 *
+	 * @return the table read from the resource eco.tsv
+	 */
+	public static Openings getDefault() {
+		return Default.INSTANCE;
+	}
+
+	private static Openings loadDefault() {
+		try (InputStream in = Openings.class.getResourceAsStream("eco.tsv")) {
+			if (in == null)
+				return EMPTY;
+			return load(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)));
+		} catch (IOException e) {
+			throw new IllegalStateException("Cannot read the openings", e);
+		}
+	}
+
+	/**
+	 * Read a table of openings. Every line holds an ECO code, a name and the
+	 * moves in the standard notation, separated by tabs; lines starting with
+	 * # are skipped.
+	 *
+	 * @param in
+	 * @return the table
+	 * @throws IOException
+	 *             if the table cannot be read or holds an illegal move
+	 */
+	public static Openings load(BufferedReader in) throws IOException {
+		List<String> ecos = new ArrayList<>();
+		List<String> names = new ArrayList<>();
+		Openings trie = new Openings(new String[0], new String[0], new int[64], new int[64], new char[64],
+				new int[64], 1, 0, null, null);
+		trie.firstChild[ROOT] = NONE;
+		trie.openings[ROOT] = NONE;
+		int[] parents = new int[64];
+		boolean[] named = new boolean[64];
+		Map<Long, Integer> keys = new HashMap<>();
+		String line;
+		while ((line = in.readLine()) != null) {
+			if (line.isEmpty() || line.startsWith("#"))
+				continue;
+			String[] fields = line.split("\t");
+			if (fields.length != 3)
+				throw new IOException("Not an opening: " + line);
+			// the table itself is not classified while it is built
+			Chess chess = new Chess(EMPTY);
+			int node = ROOT;
+			String[] sequence = fields[2].trim().split("\\s+");
+			for (String command : sequence) {
+				Move move;
+				try {
+					move = chess.interpreteMoveCommand(command.replaceAll("[+#]$", ""));
+				} catch (InvalidMoveException e) {
+					throw new IOException("Illegal move " + command + " in " + line);
+				}
+				int code = MoveCode.encode(move);
+				int child = trie.child(node, code);
+				if (child == NONE) {
+					child = trie.addChild(node, code);
+					if (child >= parents.length) {
+						parents = Arrays.copyOf(parents, parents.length * 2);
+						named = Arrays.copyOf(named, named.length * 2);
+					}
+					parents[child] = node;
+				}
+				node = child;
+				chess.replayMove(move);
+				keys.putIfAbsent(PositionKey.of(chess), node);
+			}
+			if (!named[node]) {
+				named[node] = true;
+				trie.openings[node] = ecos.size();
+				ecos.add(fields[0]);
+				names.add(fields[1]);
+				keys.put(PositionKey.of(chess), node);
+			}
+			trie.maxDepth = Math.max(trie.maxDepth, sequence.length);
+		}
+		// a position without an opening of its own is classified by the
+		// closest position before it, and nodes come after their parents
+		for (int node = 1; node < trie.size; node++)
+			if (!named[node])
+				trie.openings[node] = trie.openings[parents[node]];
+
+		long[] sortedKeys = new long[keys.size()];
+		int n = 0;
+		for (long key : keys.keySet())
+			sortedKeys[n++] = key;
+		Arrays.sort(sortedKeys);
+		int[] keyNodes = new int[sortedKeys.length];
+		for (int i = 0; i < sortedKeys.length; i++)
+			keyNodes[i] = keys.get(sortedKeys[i]);
+
+		int size = trie.size;
+		return new Openings(ecos.toArray(new String[0]), names.toArray(new String[0]),
+				Arrays.copyOf(trie.firstChild, size), Arrays.copyOf(trie.nextSibling, size),
+				Arrays.copyOf(trie.moves, size), Arrays.copyOf(trie.openings, size), size, trie.maxDepth,
+				sortedKeys, keyNodes);
+	}
+
+	private int addChild(int parent, int move) {
+		if (size == moves.length) {
+			firstChild = Arrays.copyOf(firstChild, size * 2);
+			nextSibling = Arrays.copyOf(nextSibling, size * 2);
+			moves = Arrays.copyOf(moves, size * 2);
+			openings = Arrays.copyOf(openings, size * 2);
+		}
+		int node = size++;
+		moves[node] = (char) move;
+		firstChild[node] = NONE;
+		openings[node] = NONE;
+		nextSibling[node] = firstChild[parent];
+		firstChild[parent] = node;
+		return node;
+	}
+
+	/**
+	 *
+	 * @param node
+	 * @param move
+	 *            a {@link MoveCode}
+	 * @return the node reached by playing this move, {@link #NONE} if the
+	 *         sequence is not in the table
+	 */
+	public int child(int node, int move) {
+		for (int child = firstChild[node]; child != NONE; child = nextSibling[child])
+			if (moves[child] == move)
+				return child;
+		return NONE;
+	}
+
+	/**
+	 *
+	 * @param key
+	 *            a {@link PositionKey}
+	 * @return the node of this position, {@link #NONE} if the position is not
+	 *         in the table
+	 */
+	public int find(long key) {
+		int i = Arrays.binarySearch(keys, key);
+		return i < 0 ? NONE : keyNodes[i];
+	}
+
+	/**
+	 *
+	 * @param node
+	 * @return the opening classifying the node, {@link #NONE} if there is
+	 *         none
+	 */
+	public int getOpening(int node) {
+		return openings[node];
+	}
+
+	/**
+	 *
+	 * @return the number of plies of the longest sequence in the table
+	 */
+	public int getMaxDepth() {
+		return maxDepth;
+	}
+
+	/**
+	 *
+	 * @return the number of nodes
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 *
+	 * @param opening
+	 * @return the ECO code of the opening, like "C60"
+	 */
+	public String getEco(int opening) {
+		return ecos[opening];
+	}
+
+	/**
+	 *
+	 * @param opening
+	 * @return the name of the opening, like "Ruy Lopez"
+	 */
+	public String getName(int opening) {
+		return names[opening];
+	}
+}
@@ -0,0 +1,328 @@
+package model;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts the leaf nodes of the tree of legal moves to a given depth. The
+ * counts of well known positions are published, so they check the move
+ * generation, and the time they take measures its speed.
+ *
+ * Subtree counts are remembered in a hash table keyed by the
+ * {@link PositionKey} and the depth, so a position reached by several orders
+ * of moves is only counted once. The table is shared by the threads without
+ * locks: an entry holds the key xor the count next to the count, so an entry
+ * torn by two threads writing at once never matches. The moves at the root
+ * are split among the threads, each playing on its own chess set up from the
+ * FEN of the root, as a chess cannot be used by two threads.
+ */
+public class Perft {
+	private static final char[] UNDER_PROMOTIONS = { 'R', 'B', 'N' };
+
+	private final int threads;
+	// two longs for each entry, null if counts are not remembered
+	private final AtomicLongArray table;
+	private final int mask;
+
+	/**
+	 * a perft using all the processors and a table of a million entries
+	 */
+	public Perft() {
+		this(Runtime.getRuntime().availableProcessors(), 1 << 20);
+	}
+
+	/**
+	 *
+	 * @param threads
+	 *            how many threads share the moves at the root
+	 * @param tableSize
+	 *            how many counts can be remembered, 0 to remember none
+	 */
+	public Perft(int threads, int tableSize) {
+		this.threads = Math.max(1, threads);
+		if (tableSize > 0) {
+			int entries = Integer.highestOneBit(Math.min(tableSize, 1 << 28) * 2 - 1);
+			this.table = new AtomicLongArray(entries * 2);
+			this.mask = entries - 1;
+		} else {
+			this.table = null;
+			this.mask = 0;
+		}
+	}
+
+	/**
+	 *
+	 * @param chess
+	 * @param depth
+	 * @return the number of move sequences of this many plies from the current
+	 *         position
+	 */
+	public long count(Chess chess, int depth) {
+		if (depth <= 1 || threads == 1)
+			return nodes(chess, depth);
+		long count = 0;
+		for (long nodes : divide(chess, depth).values())
+			count += nodes;
+		return count;
+	}
+
+	/**
+	 *
+	 * @param chess
+	 * @param depth
+	 *            at least 1
+	 * @return for each legal move, in the {@link MoveCode} text like "e2e4",
+	 *         the number of leaf nodes below it
+	 */
+	public Map<String, Long> divide(Chess chess, int depth) {
+		if (depth < 1)
+			throw new IllegalArgumentException("The depth must be at least 1: " + depth);
+		List<Move> moves = legalMoves(chess);
+		int[] codes = new int[moves.size()];
+		long[] counts = new long[moves.size()];
+		for (int i = 0; i < codes.length; i++)
+			codes[i] = MoveCode.encode(moves.get(i));
+		if (threads == 1 || depth == 1 || codes.length < 2) {
+			for (int i = 0; i < codes.length; i++) {
+				chess.replayMove(moves.get(i));
+				counts[i] = nodes(chess, depth - 1);
+				chess.undoLastMove();
+			}
+		} else {
+			split(chess.toFEN(), depth, codes, counts);
+		}
+		Map<String, Long> divide = new LinkedHashMap<>();
+		for (int i = 0; i < codes.length; i++)
+			divide.put(MoveCode.toString(codes[i]), counts[i]);
+		return divide;
+	}
+
+	private void split(String fen, int depth, int[] codes, long[] counts) {
+		int workers = Math.min(threads, codes.length);
+		AtomicInteger next = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(workers, r -> {
+			Thread thread = new Thread(r, "perft");
+			thread.setDaemon(true);
+			return thread;
+		});
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int t = 0; t < workers; t++) {
+				futures.add(executor.submit(() -> {
+					Chess chess = new Chess(fen);
+					int i;
+					while ((i = next.getAndIncrement()) < codes.length) {
+						chess.replayMove(MoveCode.toMove(chess, codes[i]));
+						counts[i] = nodes(chess, depth - 1);
+						chess.undoLastMove();
+					}
+				}));
+			}
+			for (Future<?> future : futures)
+				future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Perft failed", e.getCause());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	long nodes(Chess chess, int depth) {
+		if (depth == 0)
+			return 1;
+		long key = 0;
+		int entry = 0;
+		if (table != null) {
+			key = PositionKey.of(chess) ^ depth * 0x9E3779B97F4A7C15L;
+			entry = ((int) key & mask) * 2;
+			long count = table.get(entry + 1);
+			if (count != 0 && (table.get(entry) ^ count) == key)
+				return count;
+		}
+		List<Move> moves = legalMoves(chess);
+		long count;
+		if (depth == 1) {
+			count = moves.size();
+		} else {
+			count = 0;
+			for (Move move : moves) {
+				chess.replayMove(move);
+				count += nodes(chess, depth - 1);
+				chess.undoLastMove();
+			}
+		}
+		if (table != null) {
+			table.set(entry, key ^ count);
+			table.set(entry + 1, count);
+		}
+		return count;
+	}
+
+	/**
+	 *
+	 * @param chess
+	 * @return the legal moves of the side to move, with one move for each
+	 *         piece a pawn can promote to
+	 */
+	public static List<Move> legalMoves(Chess chess) {
+		List<Move> moves = new ArrayList<>();
+		// pieces taken and put back change the order of the list
+		Piece[] pieces = (chess.getWhoseTurn() ? chess.white : chess.black).toArray(new Piece[0]);
+		for (Piece piece : pieces) {
+			for (Square end : chess.getBoard()) {
+				Move move = piece.getMove(end);
+				if (move == null)
+					continue;
+				if (move instanceof Promotion) {
+					((Promotion) move).setPromoteTo(Queen.class);
+					moves.add(move);
+					for (char type : UNDER_PROMOTIONS) {
+						Promotion promotion = new Promotion(piece, piece.getSpot(), end.getPiece(), end,
+								chess.getRound());
+						promotion.setPromoteTo(Chess.getPieceClass(type));
+						moves.add(promotion);
+					}
+				} else {
+					moves.add(move);
+				}
+			}
+		}
+		return moves;
+	}
+
+	/**
+	 * A position with its published counts.
+	 */
+	public static class Reference {
+		private final String fen;
+		private final long[] counts;
+
+		public Reference(String fen, long[] counts) {
+			this.fen = fen;
+			this.counts = counts;
+		}
+
+		public String getFen() {
+			return fen;
+		}
+
+		/**
+		 *
+		 * @return the deepest depth with a known count
+		 */
+		public int getMaxDepth() {
+			return counts.length;
+		}
+
+		/**
+		 *
+		 * @param depth
+		 *            from 1 to {@link #getMaxDepth()}
+		 * @return the number of leaf nodes at this depth
+		 */
+		public long getCount(int depth) {
+			return counts[depth - 1];
+		}
+	}
+
+	/**
+	 *
+	 * @return the reference positions read from the resource perft.txt
+	 */
+	public static List<Reference> getSuite() {
+		try (InputStream in = Perft.class.getResourceAsStream("perft.txt")) {
+			if (in == null)
+				throw new IllegalStateException("No perft.txt");
+			return readSuite(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)));
+		} catch (IOException e) {
+			throw new IllegalStateException("Cannot read the reference positions", e);
+		}
+	}
+
+	/**
+	 * Read reference positions. Every line holds a FEN and the counts from
+	 * depth 1, like "...;D1 20;D2 400"; lines starting with # are skipped.
+	 *
+	 * @param in
+	 * @return the positions
+	 * @throws IOException
+	 */
+	public static List<Reference> readSuite(BufferedReader in) throws IOException {
+		List<Reference> suite = new ArrayList<>();
+		String line;
+		while ((line = in.readLine()) != null) {
+			if (line.trim().isEmpty() || line.startsWith("#"))
+				continue;
+			String[] fields = line.split(";");
+			long[] counts = new long[fields.length - 1];
+			for (int i = 1; i < fields.length; i++) {
+				String field = fields[i].trim();
+				if (!field.startsWith("D" + i + " "))
+					throw new IOException("Not a count for depth " + i + ": " + line);
+				counts[i - 1] = Long.parseLong(field.substring(field.indexOf(' ') + 1).trim());
+			}
+			suite.add(new Reference(fields[0].trim(), counts));
+		}
+		return suite;
+	}
+
+	/**
+	 * Without a FEN, check the reference positions up to the depth (3 by
+	 * default), printing the speed; with a FEN, print the divide of that
+	 * position.
+	 *
+	 * @param args
+	 *            [depth [FEN]]
+	 */
+	public static void main(String[] args) {
+		int depth = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+		Perft perft = new Perft();
+		if (args.length > 1) {
+			String fen = String.join(" ", Arrays.copyOfRange(args, 1, args.length));
+			long begin = System.nanoTime();
+			long total = 0;
+			for (Map.Entry<String, Long> entry : perft.divide(new Chess(fen), depth).entrySet()) {
+				System.out.println(entry.getKey() + ": " + entry.getValue());
+				total += entry.getValue();
+			}
+			print(total, System.nanoTime() - begin);
+			return;
+		}
+		boolean failed = false;
+		for (Reference reference : getSuite()) {
+			for (int d = 1; d <= Math.min(depth, reference.getMaxDepth()); d++) {
+				// a fresh table, so the time is not spent on earlier depths
+				perft = new Perft();
+				long begin = System.nanoTime();
+				long count = perft.count(new Chess(reference.getFen()), d);
+				boolean ok = count == reference.getCount(d);
+				failed |= !ok;
+				System.out.print((ok ? "ok     " : "FAILED ") + reference.getFen() + " depth " + d + ": ");
+				print(count, System.nanoTime() - begin);
+			}
+		}
+		if (failed)
+			System.exit(1);
+	}
+
+	private static void print(long nodes, long nanos) {
+		System.out.printf("%d nodes in %.3f s, %.0f nodes/s%n", nodes, nanos / 1e9, nodes * 1e9 / Math.max(1, nanos));
+	}
+}
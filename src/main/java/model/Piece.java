@@ -5,6 +5,10 @@ import java.util.ArrayList;
 /**
  * The super class for all different kinds of pieces.
  * 
+ * How a piece moves is decided by its {@link PieceKind}, in this class
+ * alone, so the calls {@link Chess} makes for every piece of a side stay
+ * monomorphic. The subclasses only name the kind.
+ * 
  * @author zhangq2
  *
  */
@@ -12,6 +16,7 @@ public abstract class Piece implements Comparable<Piece> {
 	protected Chess chess;
 	protected boolean isWhite;
 	protected Square spot;
+	protected final int kind;
 
 	/**
 	 * 
@@ -22,6 +27,26 @@ public abstract class Piece implements Comparable<Piece> {
 	 * @param chess
 	 */
 	public Piece(boolean c, Square p, Chess chess) {
+		this.kind = PieceKind.of(getClass());
+		if (kind < 0)
+			throw new IllegalArgumentException("Not a kind of piece: " + getClass());
+		this.chess = chess;
+		this.isWhite = c;
+		moveTo(p);
+	}
+
+	/**
+	 * 
+	 * @param kind
+	 *            the {@link PieceKind} of this piece
+	 * @param c
+	 *            whether this piece is white or black
+	 * @param p
+	 *            the square this piece is at initially.
+	 * @param chess
+	 */
+	protected Piece(int kind, boolean c, Square p, Chess chess) {
+		this.kind = kind;
 		this.chess = chess;
 		this.isWhite = c;
 		moveTo(p);
@@ -49,11 +74,21 @@ public abstract class Piece implements Comparable<Piece> {
 		return this.isWhite;
 	}
 
+	/**
+	 * 
+	 * @return the {@link PieceKind} of this piece
+	 */
+	public int getKind() {
+		return kind;
+	}
+
 	/**
 	 * 
 	 * @return the single character that represents this piece
 	 */
-	public abstract char getType();
+	public char getType() {
+		return PieceKind.getType(kind);
+	}
 	
 	/**
 	 * white is uppercase, while black is lowercase
@@ -72,7 +107,17 @@ public abstract class Piece implements Comparable<Piece> {
 	 * @return true if this piece is of this type
 	 */
 	public boolean isType(Class<? extends Piece> type) {
-		return getClass() == type;
+		return kind == PieceKind.of(type);
+	}
+
+	/**
+	 * 
+	 * @param kind
+	 *            a {@link PieceKind}
+	 * @return true if this piece is of this kind
+	 */
+	public boolean isKind(int kind) {
+		return this.kind == kind;
 	}
 
 	/**
@@ -80,7 +125,9 @@ public abstract class Piece implements Comparable<Piece> {
 	 * 
 	 * @return the value or power of this piece
 	 */
-	public abstract int getValue();
+	public int getValue() {
+		return PieceKind.getValue(kind);
+	}
 
 	/**
 	 * this method is implemented for the sort method in the constructor of
@@ -135,9 +182,8 @@ public abstract class Piece implements Comparable<Piece> {
 	}
 
 	/**
-	 * This method gets a legitimate move to the end Square if one exists. This
-	 * method is overridden by {@link King} and {@link Pawn}, because they have
-	 * special rules
+	 * This method gets a legitimate move to the end Square if one exists. King
+	 * and Pawn have special rules for castling, capturing and En Passant.
 	 * 
 	 * For pieces except King and Pawn, @{link {@link Piece#legalPosition}
 	 * capture all possible moves
@@ -148,13 +194,65 @@ public abstract class Piece implements Comparable<Piece> {
 	 *         if this move is illegal
 	 */
 	public Move getMove(Square end) {
-		// cannot move to own piece
-		if (end.occupiedBy(this.isWhite))
+		switch (kind) {
+		case PieceKind.PAWN:
+			return getPawnMove(end);
+		case PieceKind.KING:
+			return getKingMove(end);
+		default:
+			// cannot move to own piece
+			if (end.occupiedBy(this.isWhite))
+				return null;
+			Move legalMove = legalPosition(end);
+			if (legalMove == null)
+				return null;
+			// check if this move is giving away the king
+			if (chess.giveAwayKing(legalMove))
+				return null;
+			return legalMove;
+		}
+	}
+
+	private Move getPawnMove(Square end) {
+		Move move = legalPosition(end);
+		if (move != null) {
+			if (chess.giveAwayKing(move))
+				return null;
+			return move;
+		}
+		move = canAttack(end);
+		if (move == null)
+			return null;
+
+		if (end.occupiedBy(!isWhite)) {
+			if (chess.giveAwayKing(move))
+				return null;
+			return move;
+		}
+		if (!chess.canEnPassant(end))
+			return null;
+		move = new EnPassant(this, spot, chess.spotAt(end.getX(), spot.getY()).getPiece(), end, chess.getRound());
+		if (chess.giveAwayKing(move))
 			return null;
+		return move;
+	}
+
+	private Move getKingMove(Square end) {
+		if (end.occupiedBy(isWhite))
+			return null;
+
 		Move legalMove = legalPosition(end);
-		if (legalMove == null)
+		if (legalMove == null) {
+			if (getX() == 5 && getY() == end.getY()) {
+				if (end.getX() == 3) {
+					return chess.canLongCastling((King) this);
+				} else if (end.getX() == 7) {
+					return chess.canShortCastling((King) this);
+				}
+			}
 			return null;
-		// check if this move is giving away the king
+		}
+
 		if (chess.giveAwayKing(legalMove))
 			return null;
 		return legalMove;
@@ -174,20 +272,34 @@ public abstract class Piece implements Comparable<Piece> {
 	}
 
 	/**
-	 * This method is overridden by Pawn because it has special rule for
-	 * attacking
-	 * 
-	 * For other pieces, the all legal position they can move to are the spots
-	 * they can attack
+	 * A pawn attacks the squares diagonally in front of it. For other pieces,
+	 * the all legal position they can move to are the spots they can attack
 	 * 
 	 * @param end
 	 *            the spot to attack
 	 * @return true if this piece can attack this spot
 	 */
 	public Move canAttack(Square end) {
-		if (spot == null)
+		if (!attacks(end))
 			return null;
-		return legalPosition(end);
+		return newMove(end);
+	}
+
+	/**
+	 * Like {@link #canAttack(Square)}, without making the move.
+	 * 
+	 * @param end
+	 *            the spot to attack
+	 * @return true if this piece can attack this spot
+	 */
+	public boolean attacks(Square end) {
+		return spot != null && PieceKind.attacks(kind, spot, end, chess, isWhite);
+	}
+
+	private Move newMove(Square end) {
+		if (kind == PieceKind.PAWN && PieceKind.promotes(end, isWhite))
+			return new Promotion(this, spot, end.getPiece(), end, chess.getRound());
+		return new RegularMove(this, spot, end.getPiece(), end);
 	}
 
 	/**
@@ -203,7 +315,11 @@ public abstract class Piece implements Comparable<Piece> {
 	 * @return true if it is legal to move this piece to the end, regardless of
 	 *         the piece at the end position
 	 */
-	public abstract Move legalPosition(Square end);
+	public Move legalPosition(Square end) {
+		if (!PieceKind.reaches(kind, spot, end, chess, isWhite))
+			return null;
+		return newMove(end);
+	}
 
 	public String toString() {
 		return getName() + " at " + getSpot();
@@ -0,0 +1,193 @@
+package model;
+
+/**
+ * The kinds of pieces as small numbers, with the way each kind moves as
+ * static routines that switch on the kind.
+ *
+ * {@link Chess} asks every piece of a side whether it attacks a square or can
+ * go to one, many times for each move. Asking through methods overridden in
+ * six subclasses makes those calls megamorphic, so the JIT cannot inline
+ * them; a switch on the kind is one call site it can.
+ */
+public final class PieceKind {
+	public static final int PAWN = 0;
+	public static final int KNIGHT = 1;
+	public static final int BISHOP = 2;
+	public static final int ROOK = 3;
+	public static final int QUEEN = 4;
+	public static final int KING = 5;
+
+	/**
+	 * the character of each kind, at the index of the kind
+	 */
+	public static final String TYPES = "PNBRQK";
+	private static final int[] VALUES = { 1, 3, 4, 5, 10, 100 };
+
+	private PieceKind() {
+	}
+
+	/**
+	 *
+	 * @param type
+	 *            the character of the piece, like 'N'
+	 * @return the kind, -1 if this is not a piece
+	 */
+	public static int of(char type) {
+		return TYPES.indexOf(type);
+	}
+
+	/**
+	 *
+	 * @param type
+	 *            the class of the piece, like {@link Knight}
+	 * @return the kind, -1 if this is not the class of a kind of piece
+	 */
+	public static int of(Class<? extends Piece> type) {
+		if (type == Pawn.class)
+			return PAWN;
+		if (type == Knight.class)
+			return KNIGHT;
+		if (type == Bishop.class)
+			return BISHOP;
+		if (type == Rook.class)
+			return ROOK;
+		if (type == Queen.class)
+			return QUEEN;
+		if (type == King.class)
+			return KING;
+		return -1;
+	}
+
+	public static char getType(int kind) {
+		return TYPES.charAt(kind);
+	}
+
+	/**
+	 *
+	 * @param kind
+	 * @return the value of a piece of this kind, see {@link Piece#getValue()}
+	 */
+	public static int getValue(int kind) {
+		return VALUES[kind];
+	}
+
+	/**
+	 * Whether a piece of this kind can move from the start to the end by the
+	 * way it moves, regardless of the piece at the end. Only the steps forward
+	 * count for a pawn.
+	 *
+	 * @param kind
+	 * @param start
+	 * @param end
+	 * @param chess
+	 * @param isWhite
+	 *            the side of the piece
+	 * @return true if the move follows the way this kind moves
+	 */
+	public static boolean reaches(int kind, Square start, Square end, Chess chess, boolean isWhite) {
+		switch (kind) {
+		case PAWN:
+			return pawnStep(start, end, chess, isWhite);
+		case KNIGHT:
+			return knightJump(start, end);
+		case BISHOP:
+			return diagonal(start, end, chess);
+		case ROOK:
+			return straight(start, end, chess);
+		case QUEEN:
+			return diagonal(start, end, chess) || straight(start, end, chess);
+		case KING:
+			return kingStep(start, end);
+		default:
+			throw new IllegalArgumentException("Not a kind of piece: " + kind);
+		}
+	}
+
+	/**
+	 * Whether a piece of this kind on the start attacks the end. A pawn
+	 * attacks the squares diagonally in front of it, the other kinds the
+	 * squares they reach.
+	 *
+	 * @param kind
+	 * @param start
+	 * @param end
+	 * @param chess
+	 * @param isWhite
+	 *            the side of the piece
+	 * @return true if the end is attacked
+	 */
+	public static boolean attacks(int kind, Square start, Square end, Chess chess, boolean isWhite) {
+		if (kind == PAWN)
+			return pawnCapture(start, end, isWhite);
+		return reaches(kind, start, end, chess, isWhite);
+	}
+
+	static boolean pawnStep(Square start, Square end, Chess chess, boolean isWhite) {
+		if (end.isOccupied() || start == null || start.getX() != end.getX())
+			return false;
+		if (isWhite)
+			return end.getY() - start.getY() == 1
+					|| end.getY() == 4 && start.getY() == 2 && !chess.spotAt(start.getX(), 3).isOccupied();
+		return end.getY() - start.getY() == -1
+				|| end.getY() == 5 && start.getY() == 7 && !chess.spotAt(start.getX(), 6).isOccupied();
+	}
+
+	static boolean pawnCapture(Square start, Square end, boolean isWhite) {
+		return Math.abs(end.getX() - start.getX()) == 1 && end.getY() - start.getY() == (isWhite ? 1 : -1);
+	}
+
+	/**
+	 *
+	 * @param end
+	 * @param isWhite
+	 * @return true if a pawn of this side promotes on the end
+	 */
+	static boolean promotes(Square end, boolean isWhite) {
+		return end.getY() == (isWhite ? 8 : 1);
+	}
+
+	private static boolean knightJump(Square start, Square end) {
+		int a = Math.abs(start.getX() - end.getX());
+		int b = Math.abs(start.getY() - end.getY());
+		return a + b == 3 && a != 0 && b != 0;
+	}
+
+	private static boolean kingStep(Square start, Square end) {
+		int a = Math.abs(start.getX() - end.getX());
+		int b = Math.abs(start.getY() - end.getY());
+		return a <= 1 && b <= 1 && a + b > 0;
+	}
+
+	static boolean diagonal(Square start, Square end, Chess chess) {
+		int dx = end.getX() - start.getX();
+		int dy = end.getY() - start.getY();
+		if (dx == 0 || Math.abs(dx) != Math.abs(dy))
+			return false;
+		int k = Integer.signum(dx);
+		int l = Integer.signum(dy);
+		for (int i = start.getX() + k, j = start.getY() + l; i != end.getX(); i += k, j += l)
+			if (chess.spotAt(i, j).isOccupied())
+				return false;
+		return true;
+	}
+
+	static boolean straight(Square start, Square end, Chess chess) {
+		if (start.equals(end))
+			return false;
+		if (end.getX() == start.getX()) {
+			int k = Integer.signum(end.getY() - start.getY());
+			for (int i = start.getY() + k; i != end.getY(); i += k)
+				if (chess.spotAt(start.getX(), i).isOccupied())
+					return false;
+			return true;
+		}
+		if (end.getY() == start.getY()) {
+			int k = Integer.signum(end.getX() - start.getX());
+			for (int i = start.getX() + k; i != end.getX(); i += k)
+				if (chess.spotAt(i, start.getY()).isOccupied())
+					return false;
+			return true;
+		}
+		return false;
+	}
+}
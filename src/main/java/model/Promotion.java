@@ -72,8 +72,20 @@ public class Promotion extends Move {
 		}
 	}
 
+	/**
+	 * 
+	 * @return the piece the pawn promotes to, null if not specified yet
+	 */
+	public Piece getPromotedTo() {
+		return promotedTo;
+	}
+
 	public void setPromoteTo(Class<? extends Piece> promotToClass) {
+		// a new piece puts itself on its square, but this one only gets there
+		// when the move is made
+		Piece occupant = lastPosition.getPiece();
 		promotedTo = getPromotedPiece(promotToClass);
+		lastPosition.setOccupied(occupant);
 	}
 
 	private Piece getPromotedPiece(Class<? extends Piece> promotToClass) {
@@ -1,22 +1,38 @@
 package model;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 
 /**
  * The magical class that keeps track of move history It tracks a list of played
  * in the chess, and can be used to query the history or undo steps
  * 
+ * It also classifies the opening of the game: for every move it keeps the node
+ * of the {@link Openings} trie reached, so adding or removing a move updates
+ * the ECO code with a single step in the trie.
+ * 
  * @author zhang
  *
  */
 public class Record implements Iterable<Move> {
 	private ArrayList<Move> list;
 	private EndGame endgame;
+	private final Openings openings;
+	// the trie node and the opening after each move
+	private int[] nodes;
+	private int[] classified;
 
 	public Record() {
+		this(Openings.getDefault());
+	}
+
+	Record(Openings openings) {
 		list = new ArrayList<>();
 		endgame = null;
+		this.openings = openings;
+		nodes = new int[16];
+		classified = new int[16];
 	}
 
 	public int size() {
@@ -37,9 +53,69 @@ public class Record implements Iterable<Move> {
 	 * @param move
 	 */
 	public void add(Move move) {
+		int node = currentNode();
+		int opening = currentOpening();
+		if (node != Openings.NONE) {
+			node = openings.child(node, MoveCode.encode(move));
+			if (node != Openings.NONE)
+				opening = openings.getOpening(node);
+		}
+		if (size() == nodes.length) {
+			nodes = Arrays.copyOf(nodes, size() * 2);
+			classified = Arrays.copyOf(classified, size() * 2);
+		}
+		nodes[size()] = node;
+		classified[size()] = opening;
 		list.add(move);
 	}
 
+	/**
+	 * If the last move left the openings, look for the position among them, in
+	 * case it was reached by another order of moves.
+	 * 
+	 * @param chess
+	 *            the chess after the last move
+	 */
+	void findTransposition(Chess chess) {
+		int last = size() - 1;
+		if (last < 0 || nodes[last] != Openings.NONE || last >= openings.getMaxDepth())
+			return;
+		int node = openings.find(PositionKey.of(chess));
+		if (node != Openings.NONE) {
+			nodes[last] = node;
+			if (openings.getOpening(node) != Openings.NONE)
+				classified[last] = openings.getOpening(node);
+		}
+	}
+
+	private int currentNode() {
+		return isEmpty() ? Openings.ROOT : nodes[size() - 1];
+	}
+
+	private int currentOpening() {
+		return isEmpty() ? Openings.NONE : classified[size() - 1];
+	}
+
+	/**
+	 * 
+	 * @return the ECO code of the opening played, like "C60", null if the
+	 *         moves are not a known opening
+	 */
+	public String getEco() {
+		int opening = currentOpening();
+		return opening == Openings.NONE ? null : openings.getEco(opening);
+	}
+
+	/**
+	 * 
+	 * @return the name of the opening played, like "Ruy Lopez", null if the
+	 *         moves are not a known opening
+	 */
+	public String getOpeningName() {
+		int opening = currentOpening();
+		return opening == Openings.NONE ? null : openings.getName(opening);
+	}
+
 	/**
 	 * remove the last move in the record. Used mostly for undoing steps
 	 */
@@ -104,7 +180,8 @@ public class Record implements Iterable<Move> {
 		if (!original.isOccupied() || !original.getPiece().isType(type))
 			return true;
 		for (int t = 0; t < time; t++) {
-			if (original.equals(get(t).getStart()))
+			// a piece taken on its square leaves it occupied by another piece
+			if (original.equals(get(t).getStart()) || original.equals(get(t).getEnd()))
 				return true;
 		}
 		return false;
@@ -0,0 +1,353 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Plays random games with {@link Chess} and with {@link BitboardRules} side
+ * by side and compares them at every ply: the FEN, the set of legal moves, and
+ * whether the side to move is in check, checkmated or stalemated.
+ *
+ * The first difference found is shrunk to a small reproducer: the game is cut
+ * to the shortest tail that still shows a difference of the same kind from
+ * the FEN it starts at, and then pieces are taken off that FEN one by one as
+ * long as the difference stays. The games are shared by the threads like the
+ * root moves in {@link Perft}, each game on its own chess.
+ */
+public class RulesDifferential {
+	private final int threads;
+	private final int maxPlies;
+	private final Function<String, ? extends BitboardRules> rules;
+	private final List<String> starts = new ArrayList<>();
+
+	/**
+	 * compare {@link BitboardRules} on all the processors, in games of at most
+	 * 300 plies
+	 */
+	public RulesDifferential() {
+		this(Runtime.getRuntime().availableProcessors(), 300, BitboardRules::new);
+	}
+
+	/**
+	 *
+	 * @param threads
+	 *            how many threads share the games
+	 * @param maxPlies
+	 *            how long a game is played at most
+	 * @param rules
+	 *            makes the rules compared with {@link Chess} from a FEN
+	 */
+	public RulesDifferential(int threads, int maxPlies, Function<String, ? extends BitboardRules> rules) {
+		this.threads = Math.max(1, threads);
+		this.maxPlies = maxPlies;
+		this.rules = rules;
+		// the reference positions of the perft are full of castlings, En Passant and promotions
+		for (Perft.Reference reference : Perft.getSuite())
+			starts.add(reference.getFen());
+	}
+
+	/**
+	 * Play games until one shows a difference.
+	 *
+	 * @param games
+	 *            how many games to play, starting from the positions of
+	 *            {@link Perft#getSuite()} in turn
+	 * @param seed
+	 *            game i is played with the seed + i
+	 * @return what was played and the difference found, if any
+	 */
+	public Report run(int games, long seed) {
+		AtomicInteger next = new AtomicInteger();
+		AtomicInteger played = new AtomicInteger();
+		AtomicLong plies = new AtomicLong();
+		AtomicReference<Mismatch> mismatch = new AtomicReference<>();
+		long begin = System.nanoTime();
+		ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+			Thread thread = new Thread(r, "differential");
+			thread.setDaemon(true);
+			return thread;
+		});
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int t = 0; t < threads; t++) {
+				futures.add(executor.submit(() -> {
+					int i;
+					while (mismatch.get() == null && (i = next.getAndIncrement()) < games) {
+						Mismatch found = play(starts.get(i % starts.size()), seed + i, plies);
+						played.incrementAndGet();
+						if (found != null)
+							mismatch.compareAndSet(null, found);
+					}
+				}));
+			}
+			for (Future<?> future : futures)
+				future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Differential failed", e.getCause());
+		} finally {
+			executor.shutdown();
+		}
+		return new Report(played.get(), plies.get(), System.nanoTime() - begin, mismatch.get());
+	}
+
+	/**
+	 * Play one random game.
+	 *
+	 * @param fen
+	 *            where the game starts
+	 * @param seed
+	 * @param plies
+	 *            counts the plies played
+	 * @return the shrunk difference, null if the rules agreed all the game
+	 */
+	Mismatch play(String fen, long seed, AtomicLong plies) {
+		Random random = new Random(seed);
+		Chess chess = legacy(fen);
+		BitboardRules bitboard = rules.apply(fen);
+		List<String> moves = new ArrayList<>();
+		for (int ply = 0;; ply++) {
+			String difference = compare(chess, bitboard);
+			if (difference != null)
+				return shrink(fen, moves, difference);
+			List<Move> legal = Perft.legalMoves(chess);
+			if (ply == maxPlies || legal.isEmpty() || chess.getHalfmoveClock() >= 100)
+				return null;
+			Move move = legal.get(random.nextInt(legal.size()));
+			int code = MoveCode.encode(move);
+			chess.replayMove(move);
+			bitboard.play(code);
+			moves.add(MoveCode.toString(code));
+			plies.incrementAndGet();
+		}
+	}
+
+	private static Chess legacy(String fen) {
+		return fen.equals(BitboardRules.START) ? new Chess() : new Chess(fen);
+	}
+
+	/**
+	 *
+	 * @param chess
+	 * @param bitboard
+	 * @return how the two differ in the current position, starting with the
+	 *         kind of difference like "moves:", null if they agree
+	 */
+	static String compare(Chess chess, BitboardRules bitboard) {
+		try {
+			String fen = chess.toFEN();
+			if (!fen.equals(bitboard.toFEN()))
+				return "FEN: legacy " + fen + ", bitboard " + bitboard.toFEN();
+			Set<String> legacyOnly = new TreeSet<>();
+			for (Move move : Perft.legalMoves(chess))
+				legacyOnly.add(MoveCode.toString(MoveCode.encode(move)));
+			Set<String> bitboardOnly = new TreeSet<>();
+			for (int code : bitboard.legalMoves())
+				if (!legacyOnly.remove(MoveCode.toString(code)))
+					bitboardOnly.add(MoveCode.toString(code));
+			if (!legacyOnly.isEmpty() || !bitboardOnly.isEmpty())
+				return "moves: only legacy " + legacyOnly + ", only bitboard " + bitboardOnly;
+			boolean check = chess.checkOrNot(!chess.getWhoseTurn());
+			if (check != bitboard.isCheck())
+				return "check: legacy " + check + ", bitboard " + bitboard.isCheck();
+			boolean noMove = chess.checkMate(chess.getWhoseTurn());
+			if (check && noMove != bitboard.isCheckMate())
+				return "checkmate: legacy " + noMove + ", bitboard " + bitboard.isCheckMate();
+			if (!check && noMove != bitboard.isStaleMate())
+				return "stalemate: legacy " + noMove + ", bitboard " + bitboard.isStaleMate();
+			return null;
+		} catch (RuntimeException e) {
+			return "exception: " + e;
+		}
+	}
+
+	private static String kind(String difference) {
+		return difference.substring(0, difference.indexOf(':'));
+	}
+
+	/**
+	 *
+	 * @param fen
+	 * @param moves
+	 * @return the difference after playing the moves from the FEN with both
+	 *         rules, null if they agree all the way or a move is not legal
+	 */
+	private String reproduce(String fen, List<String> moves) {
+		Chess chess;
+		BitboardRules bitboard;
+		try {
+			chess = legacy(fen);
+			bitboard = rules.apply(fen);
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+		for (String move : moves) {
+			String difference = compare(chess, bitboard);
+			if (difference != null)
+				return difference;
+			Move legal = MoveCode.toMove(chess, MoveCode.parse(move));
+			if (legal == null)
+				return null;
+			chess.replayMove(legal);
+			bitboard.play(move);
+		}
+		return compare(chess, bitboard);
+	}
+
+	/**
+	 *
+	 * @param fen
+	 *            where the game started
+	 * @param moves
+	 *            the moves played before the difference showed
+	 * @param difference
+	 * @return the smallest reproducer found
+	 */
+	Mismatch shrink(String fen, List<String> moves, String difference) {
+		String kind = kind(difference);
+		// the shortest tail of the game that shows the difference on its own
+		Chess chess = legacy(fen);
+		List<String> fens = new ArrayList<>();
+		fens.add(fen);
+		for (String move : moves) {
+			chess.replayMove(MoveCode.toMove(chess, MoveCode.parse(move)));
+			fens.add(chess.toFEN());
+		}
+		for (int k = moves.size(); k > 0; k--) {
+			List<String> tail = moves.subList(k, moves.size());
+			String found = reproduce(fens.get(k), tail);
+			if (found != null && kind(found).equals(kind))
+				return shrinkPieces(fens.get(k), new ArrayList<>(tail), found);
+		}
+		return shrinkPieces(fen, moves, difference);
+	}
+
+	// take off the pieces one by one while the difference stays
+	private Mismatch shrinkPieces(String fen, List<String> moves, String difference) {
+		String kind = kind(difference);
+		boolean shrunk = true;
+		while (shrunk) {
+			shrunk = false;
+			for (int square = 0; square < 64 && !shrunk; square++) {
+				BitboardRules smaller = new BitboardRules(fen);
+				if (!smaller.remove(square) || !smaller.isLegalPosition())
+					continue;
+				String candidate = smaller.toFEN();
+				String found = reproduce(candidate, moves);
+				if (found != null && kind(found).equals(kind)) {
+					fen = candidate;
+					difference = found;
+					shrunk = true;
+				}
+			}
+		}
+		return new Mismatch(fen, moves, difference);
+	}
+
+	/**
+	 * A position and moves from it after which the rules differ.
+	 */
+	public static class Mismatch {
+		private final String fen;
+		private final List<String> moves;
+		private final String difference;
+
+		Mismatch(String fen, List<String> moves, String difference) {
+			this.fen = fen;
+			this.moves = moves;
+			this.difference = difference;
+		}
+
+		public String getFen() {
+			return fen;
+		}
+
+		/**
+		 *
+		 * @return the moves in coordinate notation to play from the FEN, often
+		 *         none
+		 */
+		public List<String> getMoves() {
+			return moves;
+		}
+
+		public String getDifference() {
+			return difference;
+		}
+
+		@Override
+		public String toString() {
+			return "position " + fen + (moves.isEmpty() ? "" : " moves " + String.join(" ", moves)) + "\n"
+					+ difference;
+		}
+	}
+
+	/**
+	 * What was played and the difference found.
+	 */
+	public static class Report {
+		private final int games;
+		private final long plies;
+		private final long nanos;
+		private final Mismatch mismatch;
+
+		Report(int games, long plies, long nanos, Mismatch mismatch) {
+			this.games = games;
+			this.plies = plies;
+			this.nanos = nanos;
+			this.mismatch = mismatch;
+		}
+
+		public int getGames() {
+			return games;
+		}
+
+		public long getPlies() {
+			return plies;
+		}
+
+		/**
+		 *
+		 * @return the first difference found, null if the rules always agreed
+		 */
+		public Mismatch getMismatch() {
+			return mismatch;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d games, %d plies in %.1f s, %.0f plies/s%n%s", games, plies, nanos / 1e9,
+					plies * 1e9 / Math.max(1, nanos), mismatch == null ? "no difference" : "difference at " + mismatch);
+		}
+	}
+
+	/**
+	 * Play random games and print the first difference.
+	 *
+	 * @param args
+	 *            [games [seed [threads]]], a million games by default
+	 */
+	public static void main(String[] args) {
+		int games = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+		long seed = args.length > 1 ? Long.parseLong(args[1]) : System.nanoTime();
+		int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		System.out.println("seed " + seed);
+		Report report = new RulesDifferential(threads, 300, BitboardRules::new).run(games, seed);
+		System.out.println(report);
+		if (report.getMismatch() != null)
+			System.exit(1);
+	}
+}
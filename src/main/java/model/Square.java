@@ -48,6 +48,16 @@ public class Square {
 		return y;
 	}
 
+	/**
+	 * Squares are indexed rank by rank from a1 (0) to h8 (63), the order used
+	 * by {@link MoveCode} and {@link Bitboards}.
+	 * 
+	 * @return the index of this square
+	 */
+	public int getIndex() {
+		return (y - 1) * 8 + x - 1;
+	}
+
 	/**
 	 * 
 	 * @return the piece at that square
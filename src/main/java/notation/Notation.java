@@ -0,0 +1,28 @@
+package notation;
+
+import model.MoveCode;
+
+/**
+ * The ways a move can be written.
+ */
+public enum Notation {
+	/** standard algebraic notation, like Nbd7, exd5, e8=Q+ or O-O */
+	SAN,
+	/**
+	 * the long notation of {@link model.Move#getDoc()}, like Nb8-d7, e4xd5,
+	 * e7-e8(Q) or O-O, with + for check and ++ for checkmate
+	 */
+	LONG,
+	/** coordinate notation, like b8d7, e4d5, e7e8q or e1g1 */
+	UCI,
+	/** a {@link MoveCode} */
+	BINARY;
+
+	/**
+	 *
+	 * @return true if moves written this way tell whether they give check
+	 */
+	boolean showsCheck() {
+		return this == SAN || this == LONG;
+	}
+}
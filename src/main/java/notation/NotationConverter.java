@@ -0,0 +1,307 @@
+package notation;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import model.Castling;
+import model.Chess;
+import model.InvalidMoveException;
+import model.Move;
+import model.MoveCode;
+import model.MoveNote;
+import model.Pawn;
+import model.Piece;
+import model.Promotion;
+
+/**
+ * Converts the moves of whole games from one {@link Notation} to another.
+ *
+ * A game is replayed once, so every move is read in its position and written
+ * with what only the position tells: the disambiguation of SAN, the captures
+ * and the check and checkmate suffixes. Checks are only looked for when the
+ * target notation shows them. A converter reuses one chess for all the games
+ * it converts and is not thread safe.
+ *
+ * As a program, it converts a stream of games, one game at a time:
+ *
+ * <pre>
+ * java notation.NotationConverter SAN UCI &lt; games.txt &gt; games.uci
+ * </pre>
+ *
+ * Text games are written one per line, the moves separated by spaces; move
+ * numbers and results are skipped. A binary game is the number of its plies
+ * as a char, then its moves as chars.
+ */
+public class NotationConverter {
+	private final Chess chess = new Chess();
+
+	/**
+	 * convert the moves of a game, starting from the start position
+	 *
+	 * @param moves
+	 * @param from
+	 *            the notation of the moves, not {@link Notation#BINARY}
+	 * @param to
+	 *            the notation wanted, not {@link Notation#BINARY}
+	 * @return the moves in the notation wanted
+	 * @throws InvalidMoveException
+	 *             if a move cannot be read or is not legal
+	 */
+	public List<String> convert(List<String> moves, Notation from, Notation to) throws InvalidMoveException {
+		List<String> converted = new ArrayList<>(moves.size());
+		chess.reset();
+		for (String text : moves)
+			converted.add(write(play(read(text, from), to.showsCheck()), to));
+		return converted;
+	}
+
+	/**
+	 *
+	 * @param moves
+	 * @param from
+	 *            the notation of the moves, not {@link Notation#BINARY}
+	 * @return the {@link MoveCode}s of the moves
+	 * @throws InvalidMoveException
+	 *             if a move cannot be read or is not legal
+	 */
+	public int[] toBinary(List<String> moves, Notation from) throws InvalidMoveException {
+		int[] codes = new int[moves.size()];
+		chess.reset();
+		for (int i = 0; i < codes.length; i++)
+			codes[i] = MoveCode.encode(play(read(moves.get(i), from), false));
+		return codes;
+	}
+
+	/**
+	 *
+	 * @param codes
+	 *            the {@link MoveCode}s of the moves
+	 * @param to
+	 *            the notation wanted, not {@link Notation#BINARY}
+	 * @return the moves in the notation wanted
+	 * @throws InvalidMoveException
+	 *             if a move is not legal
+	 */
+	public List<String> fromBinary(int[] codes, Notation to) throws InvalidMoveException {
+		List<String> converted = new ArrayList<>(codes.length);
+		chess.reset();
+		for (int code : codes)
+			converted.add(write(play(read(code), to.showsCheck()), to));
+		return converted;
+	}
+
+	private Move read(String text, Notation from) throws InvalidMoveException {
+		switch (from) {
+		case SAN:
+			return chess.interpreteMoveCommand(text);
+		case LONG:
+			// e7-e8+(Q) is read as e7-e8=Q
+			String command = text.replaceAll("[+#!?]+", "").replaceFirst("\\(([QRBN])\\)$", "=$1");
+			return chess.interpreteMoveCommand(command);
+		case UCI:
+			try {
+				return read(MoveCode.parse(text));
+			} catch (IllegalArgumentException e) {
+				throw new InvalidMoveException(text, InvalidMoveException.invalidFormat);
+			}
+		default:
+			throw new IllegalArgumentException("Moves in " + from + " are not text");
+		}
+	}
+
+	private Move read(int code) throws InvalidMoveException {
+		Move move = MoveCode.toMove(chess, code);
+		if (move == null)
+			throw new InvalidMoveException(MoveCode.toString(code), InvalidMoveException.impossibleMove);
+		return move;
+	}
+
+	/**
+	 * make the move, with its note if the check is wanted
+	 */
+	private Move play(Move move, boolean check) throws InvalidMoveException {
+		if (chess.hasEnd())
+			throw new InvalidMoveException(move.getDoc(), InvalidMoveException.impossibleMove);
+		if (check)
+			chess.makeMove(move);
+		else
+			chess.replayMove(move);
+		return move;
+	}
+
+	/**
+	 * write a move that was just played
+	 */
+	private String write(Move move, Notation to) {
+		switch (to) {
+		case SAN:
+			return san(move);
+		case LONG:
+			return move.getDoc();
+		case UCI:
+			return MoveCode.toString(MoveCode.encode(move));
+		default:
+			throw new IllegalArgumentException("Moves in " + to + " are not text");
+		}
+	}
+
+	private String san(Move move) {
+		StringBuilder san = new StringBuilder(8);
+		if (move instanceof Castling) {
+			san.append(move.getEnd().getX() == 7 ? "O-O" : "O-O-O");
+		} else {
+			Piece piece = move.getMovedPiece();
+			String start = move.getStart().toString();
+			if (piece.isType(Pawn.class)) {
+				if (move.getCapturedPiece() != null)
+					san.append(start.charAt(0));
+			} else {
+				san.append(piece.getType());
+				disambiguate(san, move, start);
+			}
+			if (move.getCapturedPiece() != null)
+				san.append('x');
+			san.append(move.getEnd().toString());
+			if (move instanceof Promotion)
+				san.append('=').append(((Promotion) move).getPromotedTo().getType());
+		}
+		if (move.getNote() == MoveNote.CHECKMATE)
+			san.append('#');
+		else if (move.getNote() == MoveNote.CHECK)
+			san.append('+');
+		return san.toString();
+	}
+
+	/**
+	 * add the file, the rank or both of the start square, if another piece of
+	 * the same type could have moved to the same square
+	 */
+	private void disambiguate(StringBuilder san, Move move, String start) {
+		// the move is already made, so look at the position before it
+		chess.undoLastMove();
+		boolean other = false;
+		boolean sameFile = false;
+		boolean sameRank = false;
+		for (Piece piece : chess.possibleMovers(move.getMovedPiece().getClass(), move.getEnd())) {
+			String square = piece.getSpot().toString();
+			if (square.equals(start))
+				continue;
+			other = true;
+			sameFile |= square.charAt(0) == start.charAt(0);
+			sameRank |= square.charAt(1) == start.charAt(1);
+		}
+		chess.replayMove(move);
+		if (!other)
+			return;
+		if (!sameFile)
+			san.append(start.charAt(0));
+		else if (!sameRank)
+			san.append(start.charAt(1));
+		else
+			san.append(start);
+	}
+
+	/**
+	 * Convert a stream of games. A game that cannot be converted is reported on
+	 * the standard error and written as an empty game.
+	 *
+	 * @param in
+	 * @param from
+	 * @param out
+	 * @param to
+	 * @return the number of games converted
+	 * @throws IOException
+	 */
+	public int convert(InputStream in, Notation from, OutputStream out, Notation to) throws IOException {
+		int games = 0;
+		DataInputStream binaryIn = from == Notation.BINARY ? new DataInputStream(in) : null;
+		BufferedReader textIn = from == Notation.BINARY ? null
+				: new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+		DataOutputStream binaryOut = to == Notation.BINARY ? new DataOutputStream(out) : null;
+		Writer textOut = to == Notation.BINARY ? null
+				: new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+		while (true) {
+			int[] codes = null;
+			List<String> moves = null;
+			if (binaryIn != null) {
+				int plies;
+				try {
+					plies = binaryIn.readChar();
+				} catch (EOFException e) {
+					break;
+				}
+				codes = new int[plies];
+				for (int i = 0; i < plies; i++)
+					codes[i] = binaryIn.readChar();
+			} else {
+				String line = textIn.readLine();
+				if (line == null)
+					break;
+				moves = tokens(line);
+			}
+			games++;
+			try {
+				if (binaryOut != null) {
+					if (codes == null)
+						codes = toBinary(moves, from);
+					binaryOut.writeChar(codes.length);
+					for (int code : codes)
+						binaryOut.writeChar(code);
+				} else {
+					List<String> converted = codes != null ? fromBinary(codes, to) : convert(moves, from, to);
+					textOut.write(String.join(" ", converted));
+					textOut.write('\n');
+				}
+			} catch (InvalidMoveException e) {
+				System.err.println("Game " + games + ": " + e.getMessage());
+				if (binaryOut != null)
+					binaryOut.writeChar(0);
+				else
+					textOut.write('\n');
+			}
+		}
+		if (binaryOut != null)
+			binaryOut.flush();
+		else
+			textOut.flush();
+		return games;
+	}
+
+	/**
+	 *
+	 * @return the moves of a line, without move numbers and results
+	 */
+	static List<String> tokens(String line) {
+		List<String> moves = new ArrayList<>();
+		for (String token : line.trim().split("\\s+")) {
+			token = token.replaceFirst("^\\d+\\.+", "");
+			if (token.isEmpty() || token.equals("1-0") || token.equals("0-1") || token.equals("1/2-1/2")
+					|| token.equals("*"))
+				continue;
+			moves.add(token);
+		}
+		return moves;
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2) {
+			System.err.println("Usage: NotationConverter <from> <to>, with SAN, LONG, UCI or BINARY");
+			System.exit(1);
+		}
+		Notation from = Notation.valueOf(args[0].toUpperCase());
+		Notation to = Notation.valueOf(args[1].toUpperCase());
+		new NotationConverter().convert(System.in, from, System.out, to);
+	}
+}
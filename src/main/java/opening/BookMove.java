@@ -0,0 +1,44 @@
+package opening;
+
+import model.MoveCode;
+
+/**
+ * A move found in an {@link OpeningBook} for a position.
+ */
+public class BookMove {
+	private final int move;
+	private final int weight;
+	private final int learn;
+
+	public BookMove(int move, int weight, int learn) {
+		this.move = move;
+		this.weight = weight;
+		this.learn = learn;
+	}
+
+	/**
+	 *
+	 * @return the {@link MoveCode} of this move
+	 */
+	public int getMove() {
+		return move;
+	}
+
+	/**
+	 *
+	 * @return how good the move is, twice the wins plus the draws of the
+	 *         side playing it
+	 */
+	public int getWeight() {
+		return weight;
+	}
+
+	public int getLearn() {
+		return learn;
+	}
+
+	@Override
+	public String toString() {
+		return MoveCode.toString(move) + " " + weight;
+	}
+}
@@ -0,0 +1,66 @@
+package opening;
+
+import model.MoveCode;
+
+/**
+ * How often a move was played in a position, and how the games went on for
+ * the side playing it.
+ */
+public class MoveStatistics {
+	private final int move;
+	private final int games;
+	private final int wins;
+	private final int draws;
+	private final int losses;
+
+	public MoveStatistics(int move, int games, int wins, int draws, int losses) {
+		this.move = move;
+		this.games = games;
+		this.wins = wins;
+		this.draws = draws;
+		this.losses = losses;
+	}
+
+	/**
+	 *
+	 * @return the {@link MoveCode} of this move
+	 */
+	public int getMove() {
+		return move;
+	}
+
+	/**
+	 *
+	 * @return the number of games, including the ones without a known result
+	 */
+	public int getGames() {
+		return games;
+	}
+
+	public int getWins() {
+		return wins;
+	}
+
+	public int getDraws() {
+		return draws;
+	}
+
+	public int getLosses() {
+		return losses;
+	}
+
+	/**
+	 *
+	 * @return the score of the side playing this move, from 0 to 1, or NaN if
+	 *         no game has a known result
+	 */
+	public double getScore() {
+		int decided = wins + draws + losses;
+		return decided == 0 ? Double.NaN : (wins + draws / 2.0) / decided;
+	}
+
+	@Override
+	public String toString() {
+		return MoveCode.toString(move) + " " + games + " (+" + wins + " =" + draws + " -" + losses + ")";
+	}
+}
@@ -0,0 +1,165 @@
+package opening;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import model.Castling;
+import model.Chess;
+import model.Move;
+import model.MoveCode;
+import model.Piece;
+import model.PositionKey;
+
+/**
+ * An opening book in the Polyglot format, probed through a memory mapping.
+ *
+ * The file is a list of 16-byte big-endian entries sorted by key: the
+ * {@link PositionKey} (8 bytes), the move (2 bytes), its weight (2 bytes)
+ * and a learn value (4 bytes). Moves use the {@link MoveCode} layout, except
+ * that castling is written as the king taking its own rook, as Polyglot
+ * does. Looking up a position is a binary search in the mapping, so the book
+ * is never loaded onto the heap.
+ */
+public class OpeningBook implements Closeable {
+	static final int ENTRY_SIZE = 16;
+
+	private final RandomAccessFile file;
+	private final ByteBuffer buffer;
+	private final int size;
+
+	private OpeningBook(RandomAccessFile file, ByteBuffer buffer) {
+		this.file = file;
+		this.buffer = buffer;
+		this.size = buffer.capacity() / ENTRY_SIZE;
+	}
+
+	/**
+	 * map a book file
+	 *
+	 * @param path
+	 * @return the book
+	 * @throws IOException
+	 */
+	public static OpeningBook open(File path) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(path, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			if (channel.size() > Integer.MAX_VALUE)
+				throw new IOException("An opening book cannot be larger than 2GB: " + path);
+			return new OpeningBook(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		} catch (IOException e) {
+			file.close();
+			throw e;
+		}
+	}
+
+	/**
+	 *
+	 * @return the number of entries in the book
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 *
+	 * @param chess
+	 * @return the book moves for the current position, as {@link MoveCode}s
+	 */
+	public List<BookMove> getMoves(Chess chess) {
+		long key = PositionKey.of(chess);
+		List<BookMove> moves = new ArrayList<>();
+		for (int i = firstEntry(key); i < size && buffer.getLong(i * ENTRY_SIZE) == key; i++) {
+			int offset = i * ENTRY_SIZE;
+			int move = fromBookMove(chess, buffer.getChar(offset + 8));
+			moves.add(new BookMove(move, buffer.getChar(offset + 10), buffer.getInt(offset + 12)));
+		}
+		return moves;
+	}
+
+	/**
+	 * Pick one of the book moves, the better ones more often.
+	 *
+	 * @param chess
+	 * @param random
+	 * @return a legal move from the book, null if the position is not in the
+	 *         book
+	 */
+	public Move pickMove(Chess chess, Random random) {
+		List<BookMove> moves = getMoves(chess);
+		int total = 0;
+		for (BookMove move : moves)
+			total += move.getWeight();
+		if (total == 0)
+			return null;
+		int pick = random.nextInt(total);
+		for (BookMove move : moves) {
+			pick -= move.getWeight();
+			if (pick < 0)
+				return MoveCode.toMove(chess, move.getMove());
+		}
+		return null;
+	}
+
+	/**
+	 *
+	 * @return the first entry whose key is not smaller than this key
+	 */
+	private int firstEntry(long key) {
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (Long.compareUnsigned(buffer.getLong(mid * ENTRY_SIZE), key) < 0)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
+	}
+
+	/**
+	 *
+	 * @param move
+	 * @return the move as it is written in the book
+	 */
+	static int toBookMove(Move move) {
+		int code = MoveCode.encode(move);
+		if (move instanceof Castling) {
+			int start = MoveCode.getStart(code);
+			int rook = MoveCode.getEnd(code) > start ? start + 3 : start - 4;
+			return MoveCode.encode(start, rook, (char) 0);
+		}
+		return code;
+	}
+
+	/**
+	 *
+	 * @param chess
+	 * @param move
+	 *            a move as it is written in the book
+	 * @return the {@link MoveCode} of this move
+	 */
+	static int fromBookMove(Chess chess, int move) {
+		int start = MoveCode.getStart(move);
+		int end = MoveCode.getEnd(move);
+		Piece piece = chess.getBoard().squareAt(start).getPiece();
+		Piece target = chess.getBoard().squareAt(end).getPiece();
+		if (piece != null && piece.getType() == 'K' && target != null && target.getType() == 'R'
+				&& target.getWhiteOrBlack() == piece.getWhiteOrBlack())
+			return MoveCode.encode(start, end > start ? start + 2 : start - 2, (char) 0);
+		return move;
+	}
+
+	@Override
+	public void close() throws IOException {
+		file.close();
+	}
+}
@@ -0,0 +1,280 @@
+package opening;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+
+import archive.PgnGame;
+import archive.PgnReader;
+import model.Chess;
+import model.InvalidMoveException;
+import model.Move;
+import model.MoveCode;
+import model.PositionKey;
+
+/**
+ * Builds an {@link OpeningBook} from games.
+ *
+ * For the first plies of every game, the builder counts how often each move
+ * was played in each position and how the games ended. The counts live in an
+ * open-addressing hash table outside of the heap, so a large corpus does not
+ * put pressure on the garbage collector.
+ *
+ * Besides the book, the counts can be written as a statistics table for the
+ * {@link OpeningExplorer}.
+ */
+public class OpeningBookBuilder {
+	// key, book move, move, games, wins, draws, losses and padding
+	static final int SLOT_SIZE = 32;
+	static final int BOOK_MOVE = 8;
+	static final int MOVE = 10;
+	static final int GAMES = 12;
+	static final int WINS = 16;
+	static final int DRAWS = 20;
+	static final int LOSSES = 24;
+
+	private final int maxPlies;
+	private ByteBuffer table;
+	private int mask;
+	private int size;
+
+	/**
+	 *
+	 * @param maxPlies
+	 *            how many plies of each game go into the book
+	 */
+	public OpeningBookBuilder(int maxPlies) {
+		this(maxPlies, 1 << 16);
+	}
+
+	/**
+	 *
+	 * @param maxPlies
+	 *            how many plies of each game go into the book
+	 * @param capacity
+	 *            the expected number of different (position, move) pairs
+	 */
+	public OpeningBookBuilder(int maxPlies, int capacity) {
+		this.maxPlies = maxPlies;
+		int slots = Integer.highestOneBit(Math.max(16, capacity) * 2 - 1);
+		this.table = ByteBuffer.allocateDirect(slots * SLOT_SIZE);
+		this.mask = slots - 1;
+	}
+
+	/**
+	 * read all the games of a PGN corpus
+	 *
+	 * @param pgn
+	 * @return the number of games added
+	 * @throws IOException
+	 */
+	public int addAll(Reader pgn) throws IOException {
+		int count = 0;
+		PgnReader reader = new PgnReader(pgn);
+		PgnGame game;
+		while ((game = reader.next()) != null) {
+			if (add(game))
+				count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Count the first moves of a game. If a move is not legal, the moves
+	 * before it are still counted.
+	 *
+	 * @param game
+	 * @return true if all the moves counted were legal
+	 */
+	public boolean add(PgnGame game) {
+		int result = game.getResultValue();
+		List<String> moves = game.getMoves();
+		Chess chess = new Chess();
+		try {
+			for (int ply = 0; ply < maxPlies && ply < moves.size(); ply++) {
+				Move move = chess.interpreteMoveCommand(moves.get(ply));
+				add(PositionKey.of(chess), move, result, chess.getWhoseTurn());
+				chess.makeMove(move);
+			}
+		} catch (InvalidMoveException e) {
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * count one move
+	 *
+	 * @param key
+	 *            the position the move was played in
+	 * @param move
+	 * @param result
+	 *            the result of the game, like {@link PgnGame#getResultValue()}
+	 * @param white
+	 *            true if the white played this move
+	 */
+	public void add(long key, Move move, int result, boolean white) {
+		int bookMove = OpeningBook.toBookMove(move);
+		int slot = find(key, bookMove);
+		if (table.getInt(slot + GAMES) == 0) {
+			table.putLong(slot, key);
+			table.putChar(slot + BOOK_MOVE, (char) bookMove);
+			table.putChar(slot + MOVE, (char) MoveCode.encode(move));
+			size++;
+		}
+		increment(slot + GAMES);
+		if (result == 0)
+			increment(slot + DRAWS);
+		else if (result == 1)
+			increment(slot + (white ? WINS : LOSSES));
+		else if (result == -1)
+			increment(slot + (white ? LOSSES : WINS));
+		if (size * 10 > (mask + 1) * 7)
+			grow();
+	}
+
+	/**
+	 *
+	 * @return the number of different (position, move) pairs counted
+	 */
+	public int size() {
+		return size;
+	}
+
+	private void increment(int offset) {
+		table.putInt(offset, table.getInt(offset) + 1);
+	}
+
+	/**
+	 *
+	 * @return the offset of the slot holding this pair, or of the empty slot
+	 *         where it belongs
+	 */
+	private int find(long key, int bookMove) {
+		long hash = key ^ bookMove * 0x9E3779B97F4A7C15L;
+		int index = (int) (hash ^ hash >>> 32) & mask;
+		while (true) {
+			int slot = index * SLOT_SIZE;
+			if (table.getInt(slot + GAMES) == 0
+					|| (table.getLong(slot) == key && table.getChar(slot + BOOK_MOVE) == bookMove))
+				return slot;
+			index = (index + 1) & mask;
+		}
+	}
+
+	private void grow() {
+		ByteBuffer old = this.table;
+		int slots = (mask + 1) * 2;
+		if ((long) slots * SLOT_SIZE > Integer.MAX_VALUE)
+			throw new IllegalStateException("Too many positions for one book");
+		this.table = ByteBuffer.allocateDirect(slots * SLOT_SIZE);
+		this.mask = slots - 1;
+		for (int slot = 0; slot < old.capacity(); slot += SLOT_SIZE) {
+			if (old.getInt(slot + GAMES) == 0)
+				continue;
+			int to = find(old.getLong(slot), old.getChar(slot + BOOK_MOVE));
+			for (int i = 0; i < SLOT_SIZE; i += 4)
+				table.putInt(to + i, old.getInt(slot + i));
+		}
+	}
+
+	/**
+	 *
+	 * @return the offsets of the used slots, sorted by key and move
+	 */
+	int[] sortedSlots() {
+		int[] slots = new int[size];
+		int n = 0;
+		for (int slot = 0; slot < table.capacity(); slot += SLOT_SIZE)
+			if (table.getInt(slot + GAMES) != 0)
+				slots[n++] = slot;
+		sort(slots, 0, n - 1);
+		return slots;
+	}
+
+	private int compare(int a, int b) {
+		int c = Long.compareUnsigned(table.getLong(a), table.getLong(b));
+		return c != 0 ? c : Integer.compare(table.getChar(a + BOOK_MOVE), table.getChar(b + BOOK_MOVE));
+	}
+
+	private void sort(int[] slots, int low, int high) {
+		while (low < high) {
+			int pivot = slots[(low + high) >>> 1];
+			int i = low;
+			int j = high;
+			while (i <= j) {
+				while (compare(slots[i], pivot) < 0)
+					i++;
+				while (compare(slots[j], pivot) > 0)
+					j--;
+				if (i <= j) {
+					int t = slots[i];
+					slots[i++] = slots[j];
+					slots[j--] = t;
+				}
+			}
+			// recurse into the smaller half to keep the stack short
+			if (j - low < high - i) {
+				sort(slots, low, j);
+				low = i;
+			} else {
+				sort(slots, i, high);
+				high = j;
+			}
+		}
+	}
+
+	/**
+	 * Write the book. The weight of a move is twice its wins plus its draws,
+	 * capped at 65535.
+	 *
+	 * @param path
+	 * @throws IOException
+	 */
+	public void write(File path) throws IOException {
+		try (FileChannel out = new FileOutputStream(path).getChannel()) {
+			ByteBuffer buffer = ByteBuffer.allocate(OpeningBook.ENTRY_SIZE * 4096);
+			for (int slot : sortedSlots()) {
+				long weight = 2L * table.getInt(slot + WINS) + table.getInt(slot + DRAWS);
+				buffer.putLong(table.getLong(slot));
+				buffer.putChar(table.getChar(slot + BOOK_MOVE));
+				buffer.putChar((char) Math.min(weight, Character.MAX_VALUE));
+				buffer.putInt(0);
+				if (!buffer.hasRemaining())
+					flush(out, buffer);
+			}
+			flush(out, buffer);
+		}
+	}
+
+	/**
+	 * Write the counts as a statistics table for the {@link OpeningExplorer}:
+	 * the slots of the table, sorted by key.
+	 *
+	 * @param path
+	 * @throws IOException
+	 */
+	public void writeStatistics(File path) throws IOException {
+		try (FileChannel out = new FileOutputStream(path).getChannel()) {
+			ByteBuffer buffer = ByteBuffer.allocate(SLOT_SIZE * 4096);
+			for (int slot : sortedSlots()) {
+				for (int i = 0; i < SLOT_SIZE; i += 4)
+					buffer.putInt(table.getInt(slot + i));
+				if (!buffer.hasRemaining())
+					flush(out, buffer);
+			}
+			flush(out, buffer);
+		}
+	}
+
+	private static void flush(FileChannel out, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining())
+			out.write(buffer);
+		buffer.clear();
+	}
+}
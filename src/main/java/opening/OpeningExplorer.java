@@ -0,0 +1,189 @@
+package opening;
+
+import static opening.OpeningBookBuilder.DRAWS;
+import static opening.OpeningBookBuilder.GAMES;
+import static opening.OpeningBookBuilder.LOSSES;
+import static opening.OpeningBookBuilder.MOVE;
+import static opening.OpeningBookBuilder.SLOT_SIZE;
+import static opening.OpeningBookBuilder.WINS;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import model.MoveCode;
+
+/**
+ * Looks up the moves played in a position and how they scored, in a
+ * statistics table written by {@link OpeningBookBuilder#writeStatistics(File)}.
+ *
+ * The table is probed through a memory mapping like an {@link OpeningBook}.
+ * Answers are encoded as JSON once and kept in a bounded LRU cache, so the
+ * positions asked for again and again, which are mostly the first plies of a
+ * game, cost a map lookup.
+ */
+public class OpeningExplorer implements Closeable {
+	private final RandomAccessFile file;
+	private final ByteBuffer buffer;
+	private final int size;
+	private final Map<Long, ByteBuffer> cache;
+
+	private OpeningExplorer(RandomAccessFile file, ByteBuffer buffer, int cacheSize) {
+		this.file = file;
+		this.buffer = buffer;
+		this.size = buffer.capacity() / SLOT_SIZE;
+		this.cache = new LinkedHashMap<Long, ByteBuffer>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, ByteBuffer> eldest) {
+				return size() > cacheSize;
+			}
+		};
+	}
+
+	/**
+	 * map a statistics table, caching the answers for 4096 positions
+	 *
+	 * @param path
+	 * @return the explorer
+	 * @throws IOException
+	 */
+	public static OpeningExplorer open(File path) throws IOException {
+		return open(path, 4096);
+	}
+
+	/**
+	 * map a statistics table
+	 *
+	 * @param path
+	 * @param cacheSize
+	 *            the number of positions whose answers are kept
+	 * @return the explorer
+	 * @throws IOException
+	 */
+	public static OpeningExplorer open(File path, int cacheSize) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(path, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			if (channel.size() > Integer.MAX_VALUE)
+				throw new IOException("A statistics table cannot be larger than 2GB: " + path);
+			return new OpeningExplorer(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()),
+					cacheSize);
+		} catch (IOException e) {
+			file.close();
+			throw e;
+		}
+	}
+
+	/**
+	 *
+	 * @return the number of (position, move) pairs in the table
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 *
+	 * @param key
+	 *            a {@link model.PositionKey}
+	 * @return the moves played in this position, the most played first
+	 */
+	public List<MoveStatistics> getMoves(long key) {
+		List<MoveStatistics> moves = new ArrayList<>();
+		for (int i = firstEntry(key); i < size && buffer.getLong(i * SLOT_SIZE) == key; i++) {
+			int offset = i * SLOT_SIZE;
+			moves.add(new MoveStatistics(buffer.getChar(offset + MOVE), buffer.getInt(offset + GAMES),
+					buffer.getInt(offset + WINS), buffer.getInt(offset + DRAWS), buffer.getInt(offset + LOSSES)));
+		}
+		moves.sort((a, b) -> Integer.compare(b.getGames(), a.getGames()));
+		return moves;
+	}
+
+	/**
+	 * The answer for a position, as UTF-8 JSON:
+	 *
+	 * <pre>
+	 * {"games":3,"moves":[{"move":"e2e4","games":2,"wins":1,"draws":1,"losses":0,"score":0.75},...]}
+	 * </pre>
+	 *
+	 * The score is null if no game has a known result.
+	 *
+	 * @param key
+	 *            a {@link model.PositionKey}
+	 * @return a buffer of its own over the encoded answer
+	 */
+	public ByteBuffer lookup(long key) {
+		ByteBuffer answer;
+		synchronized (cache) {
+			answer = cache.get(key);
+		}
+		if (answer == null) {
+			answer = ByteBuffer.wrap(toJson(getMoves(key)).getBytes(StandardCharsets.UTF_8));
+			synchronized (cache) {
+				cache.put(key, answer);
+			}
+		}
+		return answer.duplicate();
+	}
+
+	static String toJson(List<MoveStatistics> moves) {
+		int games = 0;
+		StringBuilder json = new StringBuilder(64 + 96 * moves.size());
+		json.append("{\"games\":");
+		int total = json.length();
+		json.append(",\"moves\":[");
+		for (int i = 0; i < moves.size(); i++) {
+			MoveStatistics move = moves.get(i);
+			games += move.getGames();
+			if (i > 0)
+				json.append(',');
+			json.append("{\"move\":\"").append(MoveCode.toString(move.getMove()));
+			json.append("\",\"games\":").append(move.getGames());
+			json.append(",\"wins\":").append(move.getWins());
+			json.append(",\"draws\":").append(move.getDraws());
+			json.append(",\"losses\":").append(move.getLosses());
+			json.append(",\"score\":");
+			double score = move.getScore();
+			if (Double.isNaN(score))
+				json.append("null");
+			else
+				json.append(Math.round(score * 1000) / 1000.0);
+			json.append('}');
+		}
+		json.append("]}");
+		json.insert(total, games);
+		return json.toString();
+	}
+
+	/**
+	 *
+	 * @return the first entry whose key is not smaller than this key
+	 */
+	private int firstEntry(long key) {
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (Long.compareUnsigned(buffer.getLong(mid * SLOT_SIZE), key) < 0)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
+	}
+
+	@Override
+	public void close() throws IOException {
+		file.close();
+	}
+}
@@ -0,0 +1,72 @@
+package view;
+
+/**
+ * The squares of the board that changed, with what is on them now, sent to a
+ * view with {@link IChessViewer#upDateSquares(BoardDelta)} instead of all 64
+ * squares. A controller keeps one and clears it for every change, so nothing
+ * is allocated.
+ */
+public class BoardDelta {
+	private final int[] files = new int[64];
+	private final int[] ranks = new int[64];
+	private final char[] types = new char[64];
+	private final boolean[] whites = new boolean[64];
+	private int size;
+
+	public void clear() {
+		size = 0;
+	}
+
+	/**
+	 *
+	 * @param file
+	 * @param rank
+	 * @param pieceType
+	 *            the type of the piece now on the square, 0 if it is empty
+	 * @param whiteOrBlack
+	 *            the side of the piece
+	 */
+	public void add(int file, int rank, char pieceType, boolean whiteOrBlack) {
+		for (int i = 0; i < size; i++) {
+			if (files[i] == file && ranks[i] == rank) {
+				types[i] = pieceType;
+				whites[i] = whiteOrBlack;
+				return;
+			}
+		}
+		files[size] = file;
+		ranks[size] = rank;
+		types[size] = pieceType;
+		whites[size] = whiteOrBlack;
+		size++;
+	}
+
+	/**
+	 *
+	 * @return the number of squares that changed
+	 */
+	public int size() {
+		return size;
+	}
+
+	public int getFile(int i) {
+		return files[i];
+	}
+
+	public int getRank(int i) {
+		return ranks[i];
+	}
+
+	/**
+	 *
+	 * @param i
+	 * @return the type of the piece on the i-th square, 0 if it is empty
+	 */
+	public char getType(int i) {
+		return types[i];
+	}
+
+	public boolean isWhite(int i) {
+		return whites[i];
+	}
+}
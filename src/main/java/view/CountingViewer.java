@@ -0,0 +1,136 @@
+package view;
+
+import java.util.Queue;
+
+/**
+ * A view without a screen: it only counts what the controller asks it to
+ * show. The answers to draw offers and promotions are taken from a queue, so
+ * a recorded game can be played without anybody answering.
+ */
+public class CountingViewer implements IChessViewer {
+	private final Queue<String> answers;
+	private IChessViewerControl controller;
+	private long printOuts;
+	private long statusTexts;
+	private long highLights;
+	private long repaints;
+	private long upDatePieces;
+	private long clearLabels;
+	private long flushes;
+
+	/**
+	 *
+	 * @param answers
+	 *            the answers to give, "yes" or "no" for a draw offer and the
+	 *            piece for a promotion; when it is empty, draws are declined
+	 *            and pawns promote to queens
+	 */
+	public CountingViewer(Queue<String> answers) {
+		this.answers = answers;
+	}
+
+	@Override
+	public void initializeViewController(IChessViewerControl controller) {
+		this.controller = controller;
+	}
+
+	/**
+	 *
+	 * @return the controller, to send the actions to
+	 */
+	public IChessViewerControl getController() {
+		return controller;
+	}
+
+	@Override
+	public void printOut(String message) {
+		printOuts++;
+	}
+
+	@Override
+	public void printTemp(String temp) {
+		printOuts++;
+	}
+
+	@Override
+	public void cleanTemp() {
+	}
+
+	@Override
+	public void setStatusLabelText(String str) {
+		statusTexts++;
+	}
+
+	@Override
+	public void highLight(int file, int rank) {
+		highLights++;
+	}
+
+	@Override
+	public void deHighLightWholeBoard() {
+	}
+
+	@Override
+	public void repaint() {
+		repaints++;
+	}
+
+	@Override
+	public void upDatePiece(int file, int rank, char pieceType, boolean whiteOrBlack) {
+		upDatePieces++;
+	}
+
+	@Override
+	public void clearLabel(int file, int rank) {
+		clearLabels++;
+	}
+
+	@Override
+	public boolean askForDraw() {
+		String answer = answers.poll();
+		return "yes".equals(answer);
+	}
+
+	@Override
+	public String getPromoteTo() {
+		String answer = answers.poll();
+		return answer == null ? "Q" : answer;
+	}
+
+	@Override
+	public void flush() {
+		flushes++;
+	}
+
+	@Override
+	public void close() {
+	}
+
+	public long getPrintOuts() {
+		return printOuts;
+	}
+
+	public long getStatusTexts() {
+		return statusTexts;
+	}
+
+	public long getHighLights() {
+		return highLights;
+	}
+
+	public long getRepaints() {
+		return repaints;
+	}
+
+	public long getUpDatePieces() {
+		return upDatePieces;
+	}
+
+	public long getClearLabels() {
+		return clearLabels;
+	}
+
+	public long getFlushes() {
+		return flushes;
+	}
+}
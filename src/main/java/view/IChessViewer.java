@@ -1,5 +1,7 @@
 package view;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Interface for a ChessView that is compatible with ViewController
  * 
@@ -79,6 +81,25 @@ public interface IChessViewer {
 	 */
 	void clearLabel(int file, int rank);
 
+	/**
+	 * update the squares that changed, the others staying as they are, and
+	 * refresh the UI. This is called after every move and click instead of
+	 * updating the whole board, so a view that sends its board somewhere can
+	 * send only what changed; the highlights may have changed as well.
+	 * 
+	 * @param changes
+	 *            the squares that changed, maybe none
+	 */
+	default void upDateSquares(BoardDelta changes) {
+		for (int i = 0; i < changes.size(); i++) {
+			if (changes.getType(i) == 0)
+				clearLabel(changes.getFile(i), changes.getRank(i));
+			else
+				upDatePiece(changes.getFile(i), changes.getRank(i), changes.getType(i), changes.isWhite(i));
+		}
+		repaint();
+	}
+
 	/**
 	 * 
 	 * @return
@@ -91,6 +112,59 @@ public interface IChessViewer {
 	 */
 	String getPromoteTo();
 
+	/**
+	 * Ask for the answer to a draw offer without waiting for it. The
+	 * controller carries on when the answer comes, so a view that waits for
+	 * a player somewhere else holds no thread meanwhile. By default this
+	 * answers at once with {@link #askForDraw()}.
+	 * 
+	 * @return true once the player agrees, false once the player declines
+	 */
+	default CompletableFuture<Boolean> askForDrawAsync() {
+		return CompletableFuture.completedFuture(askForDraw());
+	}
+
+	/**
+	 * Ask for the piece to promote to without waiting for it, like
+	 * {@link #askForDrawAsync()}. By default this answers at once with
+	 * {@link #getPromoteTo()}.
+	 * 
+	 * @return the type of the piece chosen, like "Q"
+	 */
+	default CompletableFuture<String> getPromoteToAsync() {
+		return CompletableFuture.completedFuture(getPromoteTo());
+	}
+
+	/**
+	 * Send at once what was changed since the last flush. The controller
+	 * calls this at the end of every action, so a view that sends its changes
+	 * somewhere can collect them during the action, keeping only the last
+	 * value of each, and send them together. A view that shows each change
+	 * right away does nothing.
+	 */
+	default void flush() {
+	}
+
+	/**
+	 * The controller calls this before every {@link #flush()} with the
+	 * version of the game the view shows once flushed, a hash of its
+	 * {@link controller.GameSnapshot}. A view whose board outlives the server,
+	 * like a stored document, can keep it to tell later whether the board is
+	 * still current.
+	 * 
+	 * @param version
+	 */
+	default void setVersion(long version) {
+	}
+
+	/**
+	 * The game is put to sleep and its controller dropped: let go of the
+	 * controller and of what can be made again. When the game wakes up, a new
+	 * controller initializes the view again and sends it the whole board.
+	 */
+	default void hibernate() {
+	}
+
 	void close();
 
 }
\ No newline at end of file
@@ -0,0 +1,108 @@
+package viewServer;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import controller.ViewController;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import model.PositionKey;
+import opening.OpeningExplorer;
+
+/**
+ * Answers <code>GET /explorer?fen=...</code> and <code>GET /explorer?room=...</code>
+ * with the moves played in the position, as given by an {@link OpeningExplorer}.
+ */
+public class ExplorerHandler implements HttpHandler {
+
+  private final Server server;
+  private final OpeningExplorer explorer;
+
+  public ExplorerHandler(Server server, OpeningExplorer explorer) {
+    this.server = server;
+    this.explorer = explorer;
+  }
+
+  /**
+   * Start serving the explorer on its own port.
+   *
+   * @return the started HTTP server
+   */
+  public static HttpServer start(Server server, OpeningExplorer explorer, int port)
+      throws IOException {
+    HttpServer http = HttpServer.create(new InetSocketAddress(port), 256);
+    http.createContext("/explorer", new ExplorerHandler(server, explorer));
+    http.setExecutor(Executors.newFixedThreadPool(2 * Runtime.getRuntime().availableProcessors()));
+    http.start();
+    return http;
+  }
+
+  @Override
+  public void handle(HttpExchange exchange) throws IOException {
+    try {
+      if (!"GET".equals(exchange.getRequestMethod())) {
+        send(exchange, 405, "Only GET is supported");
+        return;
+      }
+      String fen = parameter(exchange, "fen");
+      String room = parameter(exchange, "room");
+      long key;
+      if (fen != null) {
+        try {
+          key = PositionKey.ofFEN(fen);
+        } catch (IllegalArgumentException e) {
+          send(exchange, 400, e.getMessage());
+          return;
+        }
+      } else if (room != null) {
+        ViewController game = server.getGame(room);
+        if (game == null) {
+          send(exchange, 404, "No room " + room);
+          return;
+        }
+        key = game.getPositionKey();
+      } else {
+        send(exchange, 400, "Give a fen or a room");
+        return;
+      }
+      ByteBuffer answer = explorer.lookup(key);
+      exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+      exchange.sendResponseHeaders(200, answer.remaining());
+      try (OutputStream out = exchange.getResponseBody()) {
+        Channels.newChannel(out).write(answer);
+      }
+    } finally {
+      exchange.close();
+    }
+  }
+
+  private static String parameter(HttpExchange exchange, String name)
+      throws UnsupportedEncodingException {
+    String query = exchange.getRequestURI().getRawQuery();
+    if (query == null) {
+      return null;
+    }
+    for (String pair : query.split("&")) {
+      if (pair.startsWith(name + "=")) {
+        return URLDecoder.decode(pair.substring(name.length() + 1), "UTF-8");
+      }
+    }
+    return null;
+  }
+
+  private static void send(HttpExchange exchange, int status, String message) throws IOException {
+    byte[] body = message.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+    exchange.sendResponseHeaders(status, body.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(body);
+    }
+  }
+}
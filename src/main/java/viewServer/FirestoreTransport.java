@@ -0,0 +1,133 @@
+package viewServer;
+
+import com.google.api.core.ApiFuture;
+import com.google.cloud.firestore.CollectionReference;
+import com.google.cloud.firestore.DocumentChange;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.ListenerRegistration;
+import com.google.cloud.firestore.QueryDocumentSnapshot;
+import com.google.cloud.firestore.SetOptions;
+import com.google.common.collect.ImmutableMap;
+import com.google.firebase.cloud.FirestoreClient;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * The rooms are the documents of the collection "rooms", with the players in "owner" and
+ * "invite". The board of each player is the document "display/white" or "display/black" of the
+ * room, whose collection "action" gets the actions of the player and "request" the questions.
+ */
+public class FirestoreTransport implements GameTransport {
+  private final Firestore firestore;
+  private ListenerRegistration rooms;
+
+  public FirestoreTransport() {
+    this(FirestoreClient.getFirestore());
+  }
+
+  public FirestoreTransport(Firestore firestore) {
+    this.firestore = firestore;
+  }
+
+  @Override
+  public synchronized void listen(RoomListener listener) {
+    rooms = firestore.collection("rooms").addSnapshotListener((snapshots, error) -> {
+      if (error != null) {
+        System.err.println("Listen failed: " + error);
+        return;
+      }
+      for (DocumentChange dc : snapshots.getDocumentChanges()) {
+        switch (dc.getType()) {
+          case ADDED:
+            QueryDocumentSnapshot document = dc.getDocument();
+            Map<String, Object> data = document.getData();
+            String roomLoc = document.getId();
+            System.out.println("Room " + data.toString() + " added");
+            listener.roomAdded(roomLoc, (String) data.get("owner"), (String) data.get("invite"));
+            if (!roomLoc.equals(data.get("$key"))) {
+              firestore.collection("rooms").document(roomLoc).update("$key", roomLoc);
+            }
+            break;
+          case REMOVED:
+            listener.roomRemoved(dc.getDocument().getId());
+            break;
+          default:
+            break;
+        }
+      }
+    });
+    System.err.println("Listener added");
+  }
+
+  @Override
+  public Display display(String roomLoc, boolean whiteOrBlack) {
+    return new FirestoreDisplay(firestore.collection("rooms").document(roomLoc)
+        .collection("display").document(whiteOrBlack ? "white" : "black"));
+  }
+
+  @Override
+  public synchronized void close() {
+    if (rooms != null) {
+      rooms.remove();
+      rooms = null;
+    }
+  }
+
+  private static class FirestoreDisplay implements Display {
+    private final DocumentReference ref;
+
+    FirestoreDisplay(DocumentReference ref) {
+      this.ref = ref;
+    }
+
+    @Override
+    public void write(Map<String, Object> fields) {
+      // the client serializes the fields here
+      ref.set(fields, SetOptions.merge());
+    }
+
+    @Override
+    public CompletableFuture<Map<String, Object>> read() {
+      CompletableFuture<Map<String, Object>> read = new CompletableFuture<>();
+      ApiFuture<DocumentSnapshot> stored = ref.get();
+      stored.addListener(() -> {
+        try {
+          DocumentSnapshot document = stored.get();
+          read.complete(document.exists() ? document.getData() : null);
+        } catch (InterruptedException | ExecutionException e) {
+          read.completeExceptionally(e);
+        }
+      }, Runnable::run);
+      return read;
+    }
+
+    @Override
+    public Registration listen(Consumer<ActionData> actions) {
+      CollectionReference actionRef = ref.collection("action");
+      ListenerRegistration registration = actionRef.addSnapshotListener((value, error) -> {
+        if (value == null) {
+          return;
+        }
+        for (DocumentChange documentChange : value.getDocumentChanges()) {
+          if (documentChange.getType() == DocumentChange.Type.ADDED) {
+            ActionData data = documentChange.getDocument().toObject(ActionData.class);
+            if (data != null) {
+              actions.accept(data);
+            }
+            actionRef.document(documentChange.getDocument().getId()).delete();
+          }
+        }
+      });
+      return registration::remove;
+    }
+
+    @Override
+    public void ask(String question) {
+      ref.collection("request").add(ImmutableMap.of(question, true));
+    }
+  }
+}
@@ -0,0 +1,314 @@
+package viewServer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import controller.GameSnapshot;
+import controller.ViewController;
+import view.IChessViewer;
+
+/**
+ * The mailbox of a room: the actions of both players are queued here and carried out one after
+ * the other on a thread of a pool shared by all the rooms, so the game of a room is only ever used
+ * by one thread at a time and the number of threads does not grow with the events.
+ *
+ * <p>The actions waiting when the room gets a thread are carried out as one batch, and the views
+ * are flushed once after the batch, so a burst of clicks costs one write per view. The answers to
+ * a draw offer or a promotion are carried out here too, as the room is the executor of its game:
+ * no thread waits for them.
+ *
+ * <p>A room left idle can be put to sleep: its game is written to a {@link GameSnapshot} file, or
+ * kept packed on the heap, and dropped, and only the mailbox and the views, which listen for the
+ * players, stay. The next action
+ * wakes the game up on the room thread before it is carried out. A room can also start asleep, so
+ * the rooms found when a server starts cost no game until they are played in.
+ */
+public class GameRoom implements Executor {
+  private static final int MAX_BATCH = 64;
+
+  private final Executor threads;
+  private final Queue<Runnable> mailbox = new ConcurrentLinkedQueue<>();
+  // set while a drain is scheduled or running, so there is never more than one
+  private final AtomicBoolean scheduled = new AtomicBoolean();
+  private volatile ViewController game;
+  private volatile boolean closed;
+  // makes the game again from its snapshot, null if the room cannot sleep
+  private Waker waker;
+  // the views of the sleeping game, null while it is awake
+  private IChessViewer[] sleepingViews;
+  private volatile boolean asleep;
+  // the file of the game put to sleep, null while it is awake or if it started asleep
+  private volatile File snapshot;
+  // the game of a room started asleep or put to sleep on the heap, null for a new game
+  private GameSnapshot resting;
+  // when an action was last posted, in milliseconds
+  private volatile long lastActivity = System.currentTimeMillis();
+
+  /**
+   * @param threads the pool shared by the rooms
+   */
+  public GameRoom(Executor threads) {
+    this.threads = threads;
+  }
+
+  /**
+   * Start carrying out the actions, the ones posted before as well.
+   *
+   * @param game the game of the room
+   */
+  public void start(ViewController game) {
+    this.game = game;
+    game.setExecutor(this);
+    schedule();
+  }
+
+  /**
+   * Start carrying out the actions with the game asleep: the waker makes it on the first action, or
+   * on {@link #wakeUp()}. The waker has to be set first.
+   *
+   * @param views the views of the game, which listen for the players meanwhile
+   * @param snapshot the game to go on with, null for a new one
+   */
+  public synchronized void startAsleep(IChessViewer[] views, GameSnapshot snapshot) {
+    sleepingViews = views;
+    resting = snapshot;
+    asleep = true;
+    schedule();
+  }
+
+  /**
+   * Make the game of a sleeping room on the room thread, without an action of a player.
+   */
+  public void wakeUp() {
+    if (closed) {
+      return;
+    }
+    mailbox.add(() -> {
+    });
+    schedule();
+  }
+
+  /**
+   * Makes the game of a room again when it wakes up.
+   */
+  public interface Waker {
+    /**
+     * @param snapshot the game when it was put to sleep, null for a new game
+     * @return a new game going on from the snapshot, shown on the same views
+     */
+    ViewController wake(GameSnapshot snapshot);
+  }
+
+  /**
+   * @param waker makes the game again, null to keep the room awake
+   */
+  public void setWaker(Waker waker) {
+    this.waker = waker;
+  }
+
+  /**
+   * Put the game to sleep on the room thread, unless an action comes first, the game has ended or
+   * waits for an answer.
+   *
+   * @param file where the snapshot goes, null to keep it on the heap
+   */
+  public void hibernate(File file) {
+    if (closed || waker == null) {
+      return;
+    }
+    // not an action of a player, so it does not count as activity
+    mailbox.add(() -> sleep(file));
+    schedule();
+  }
+
+  private void sleep(File file) {
+    ViewController current = game;
+    if (current == null || closed || !mailbox.isEmpty() || !current.canHibernate()) {
+      return;
+    }
+    if (file == null) {
+      resting = current.getSnapshot();
+    } else {
+      try {
+        current.getSnapshot().write(file);
+      } catch (IOException e) {
+        System.err.println("Cannot put the room to sleep: " + e);
+        file.delete();
+        return;
+      }
+    }
+    sleepingViews = new IChessViewer[] {current.chooesView(true), current.chooesView(false)};
+    current.hibernate();
+    snapshot = file;
+    asleep = true;
+    game = null;
+  }
+
+  private ViewController wake() {
+    File file = snapshot;
+    try {
+      ViewController woken = waker.wake(file == null ? resting : GameSnapshot.read(file));
+      woken.setExecutor(this);
+      sleepingViews = null;
+      snapshot = null;
+      resting = null;
+      asleep = false;
+      game = woken;
+      if (file != null) {
+        file.delete();
+      }
+      return woken;
+    } catch (IOException | RuntimeException e) {
+      System.err.println("Cannot wake the room up from " + (file == null ? "the heap" : file) + ": "
+          + e);
+      return null;
+    }
+  }
+
+  /**
+   * Take a snapshot of the game on the room thread, or from its file while it sleeps, without
+   * waking it up. Nothing is taken once the room is closed.
+   *
+   * @param into told the snapshot
+   */
+  public void snapshot(Consumer<GameSnapshot> into) {
+    if (closed) {
+      return;
+    }
+    // no drain meanwhile, so the game does not wake up or fall asleep
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      if (asleep) {
+        if (snapshot == null) {
+          // a new game has nothing to go on from
+          if (resting != null) {
+            into.accept(resting);
+          }
+          return;
+        }
+        try {
+          into.accept(GameSnapshot.read(snapshot));
+        } catch (IOException e) {
+          System.err.println("Cannot read the sleeping room " + snapshot + ": " + e);
+        }
+        return;
+      }
+    }
+    // not an action of a player, and a room with it waiting does not fall asleep
+    mailbox.add(() -> {
+      ViewController current = game;
+      if (current != null && !closed) {
+        into.accept(current.getSnapshot());
+      }
+    });
+    schedule();
+  }
+
+  /**
+   * @return whether the game is asleep, on disk or not made yet
+   */
+  public boolean isHibernating() {
+    return asleep;
+  }
+
+  /**
+   * Queue an action of a player.
+   */
+  @Override
+  public void execute(Runnable action) {
+    if (closed) {
+      return;
+    }
+    lastActivity = System.currentTimeMillis();
+    mailbox.add(action);
+    schedule();
+  }
+
+  /**
+   * Drop the actions still waiting and the ones posted from now on. The views of a sleeping game
+   * are closed here, the game of an awake room by its owner.
+   */
+  public void close() {
+    closed = true;
+    mailbox.clear();
+    // after a drain, so the game does not wake up meanwhile
+    synchronized (this) {
+      if (asleep) {
+        for (IChessViewer view : sleepingViews) {
+          view.close();
+        }
+        if (snapshot != null) {
+          snapshot.delete();
+        }
+        snapshot = null;
+        resting = null;
+        sleepingViews = null;
+        asleep = false;
+      }
+    }
+  }
+
+  /**
+   * @return the game of the room, null until the room is started and while it sleeps
+   */
+  public ViewController getGame() {
+    return game;
+  }
+
+  /**
+   * @return when an action was last posted or the room was opened, in milliseconds
+   */
+  public long getLastActivity() {
+    return lastActivity;
+  }
+
+  public boolean isClosed() {
+    return closed;
+  }
+
+  /**
+   * @return the number of actions waiting
+   */
+  public int getWaiting() {
+    return mailbox.size();
+  }
+
+  private void schedule() {
+    if ((game != null || asleep) && !mailbox.isEmpty()
+        && scheduled.compareAndSet(false, true)) {
+      threads.execute(this::drain);
+    }
+  }
+
+  private synchronized void drain() {
+    try {
+      ViewController current = game != null ? game : closed ? null : wake();
+      if (current == null) {
+        mailbox.clear();
+        return;
+      }
+      current.batch(() -> {
+        Runnable action;
+        // an action put the game to sleep: the next ones wake it up again
+        for (int i = 0; i < MAX_BATCH && game == current && (action = mailbox.poll()) != null; i++) {
+          try {
+            action.run();
+          } catch (RuntimeException e) {
+            System.err.println("Action failed: " + e);
+          }
+        }
+      });
+    } finally {
+      scheduled.set(false);
+      // actions posted while the last one ran
+      schedule();
+    }
+  }
+}
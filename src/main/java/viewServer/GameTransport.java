@@ -0,0 +1,82 @@
+package viewServer;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * How a {@link Server} hears of its rooms and of the actions of the players, and shows the players
+ * their boards. {@link FirestoreTransport} goes through Firestore; {@link InMemoryTransport} keeps
+ * it all in the process, to load the whole server on one machine.
+ *
+ * <p>The events are told on the threads of the transport, which should not wait on the rooms.
+ */
+public interface GameTransport {
+
+  /**
+   * Start telling the rooms there are now, and then the ones added and removed.
+   */
+  void listen(RoomListener listener);
+
+  /**
+   * @return the board of one player of a room, and the way to that player
+   */
+  Display display(String roomLoc, boolean whiteOrBlack);
+
+  /**
+   * Stop telling the rooms.
+   */
+  void close();
+
+  /**
+   * Hears of the rooms.
+   */
+  interface RoomListener {
+    /**
+     * @param white the player who opened the room
+     * @param black the player invited
+     */
+    void roomAdded(String roomLoc, String white, String black);
+
+    void roomRemoved(String roomLoc);
+  }
+
+  /**
+   * The board of a player: fields like the pieces and the status, the actions the player sends and
+   * the questions the player is asked.
+   */
+  interface Display {
+    /**
+     * Merge the fields into the board, making it if there is none yet; a map is merged key by key
+     * into the map already there. The values are taken as they are now, so the caller may change
+     * them afterwards.
+     */
+    void write(Map<String, Object> fields);
+
+    /**
+     * @return the fields of the board, null if there is none
+     */
+    CompletableFuture<Map<String, Object>> read();
+
+    /**
+     * Start telling the actions of the player, each once, the ones sent before as well.
+     *
+     * @return what stops it
+     */
+    Registration listen(Consumer<ActionData> actions);
+
+    /**
+     * Ask the player something, answered by an action.
+     *
+     * @param question like "askForDraw" or "promotionTo"
+     */
+    void ask(String question);
+  }
+
+  /**
+   * A listener started.
+   */
+  interface Registration {
+    void remove();
+  }
+}
@@ -0,0 +1,275 @@
+package viewServer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * A transport that keeps the rooms, the boards and the queues of actions in the process, for
+ * loading, measuring and profiling the whole server on one machine.
+ *
+ * <p>The players are played by calling {@link #addRoom}, {@link #act} and {@link #removeRoom}.
+ * Like the listener thread of a Firestore client, one thread tells the server the rooms and the
+ * actions, in the order they were sent; the actions sent before the server listens wait for it.
+ * The boards are copied when they are written, as a Firestore client serializes them.
+ */
+public class InMemoryTransport implements GameTransport {
+  private final ExecutorService events = Executors.newSingleThreadExecutor(r -> {
+    Thread thread = new Thread(r, "transport-events");
+    thread.setDaemon(true);
+    return thread;
+  });
+  private final Map<String, String[]> rooms = new ConcurrentHashMap<>();
+  private final Map<String, MemoryDisplay> displays = new ConcurrentHashMap<>();
+  private final AtomicLong writes = new AtomicLong();
+  private final AtomicLong actions = new AtomicLong();
+  private RoomListener listener;
+
+  @Override
+  public void listen(RoomListener listener) {
+    events.execute(() -> {
+      this.listener = listener;
+      for (Map.Entry<String, String[]> room : rooms.entrySet()) {
+        listener.roomAdded(room.getKey(), room.getValue()[0], room.getValue()[1]);
+      }
+    });
+  }
+
+  @Override
+  public Display display(String roomLoc, boolean whiteOrBlack) {
+    return displays.computeIfAbsent(key(roomLoc, whiteOrBlack), key -> new MemoryDisplay());
+  }
+
+  @Override
+  public void close() {
+    events.execute(() -> listener = null);
+  }
+
+  private static String key(String roomLoc, boolean whiteOrBlack) {
+    return roomLoc + (whiteOrBlack ? "/white" : "/black");
+  }
+
+  /**
+   * Add a room, as a player does who opens one.
+   *
+   * @param white the player who opens it
+   * @param black the player invited
+   */
+  public void addRoom(String roomLoc, String white, String black) {
+    events.execute(() -> {
+      if (rooms.putIfAbsent(roomLoc, new String[] {white, black}) == null && listener != null) {
+        listener.roomAdded(roomLoc, white, black);
+      }
+    });
+  }
+
+  /**
+   * Remove a room and its boards.
+   */
+  public void removeRoom(String roomLoc) {
+    events.execute(() -> {
+      if (rooms.remove(roomLoc) != null) {
+        displays.remove(key(roomLoc, true));
+        displays.remove(key(roomLoc, false));
+        if (listener != null) {
+          listener.roomRemoved(roomLoc);
+        }
+      }
+    });
+  }
+
+  /**
+   * Send an action of a player.
+   */
+  public void act(String roomLoc, boolean whiteOrBlack, ActionData action) {
+    MemoryDisplay display = (MemoryDisplay) display(roomLoc, whiteOrBlack);
+    actions.incrementAndGet();
+    events.execute(() -> display.send(action));
+  }
+
+  /**
+   * Click a square, as seen by the player.
+   *
+   * @param i the row from the top of the board of the player
+   * @param j the column from the left of the board of the player
+   */
+  public void click(String roomLoc, boolean whiteOrBlack, int i, int j) {
+    ActionData action = new ActionData();
+    action.click = new ActionData.ClickData();
+    action.click.i = i;
+    action.click.j = j;
+    act(roomLoc, whiteOrBlack, action);
+  }
+
+  /**
+   * @return a copy of the board of the player, null if it was never written
+   */
+  public Map<String, Object> getBoard(String roomLoc, boolean whiteOrBlack) {
+    MemoryDisplay display = displays.get(key(roomLoc, whiteOrBlack));
+    return display == null ? null : display.board();
+  }
+
+  /**
+   * @return a copy of the fields of the last write to the board of the player, null if none
+   */
+  public Map<String, Object> getLastWrite(String roomLoc, boolean whiteOrBlack) {
+    MemoryDisplay display = displays.get(key(roomLoc, whiteOrBlack));
+    Map<String, Object> last = display == null ? null : display.lastWrite();
+    return last == null ? null : new HashMap<>(last);
+  }
+
+  /**
+   * @return the oldest question the player was not answered yet, null if none
+   */
+  public String pollQuestion(String roomLoc, boolean whiteOrBlack) {
+    MemoryDisplay display = displays.get(key(roomLoc, whiteOrBlack));
+    return display == null ? null : display.questions.poll();
+  }
+
+  /**
+   * Wait until the rooms and the actions sent before are told to the server; the actions may still
+   * wait in the mailboxes of the rooms.
+   *
+   * @return false if this took too long
+   */
+  public boolean awaitDelivered(long timeout, TimeUnit unit) throws InterruptedException {
+    CountDownLatch delivered = new CountDownLatch(1);
+    events.execute(delivered::countDown);
+    return delivered.await(timeout, unit);
+  }
+
+  /**
+   * @return the number of writes to the boards since the start
+   */
+  public long getWrites() {
+    return writes.get();
+  }
+
+  /**
+   * @return the number of actions sent since the start
+   */
+  public long getActions() {
+    return actions.get();
+  }
+
+  private class MemoryDisplay implements Display {
+    private Map<String, Object> board;
+    private Map<String, Object> last;
+    // the actions sent while nobody listens
+    private final List<ActionData> waiting = new ArrayList<>();
+    private Consumer<ActionData> receiver;
+    private final Queue<String> questions = new ConcurrentLinkedQueue<>();
+
+    @Override
+    public void write(Map<String, Object> fields) {
+      Map<String, Object> copied = new HashMap<>();
+      for (Map.Entry<String, Object> field : fields.entrySet()) {
+        copied.put(field.getKey(), copy(field.getValue()));
+      }
+      synchronized (this) {
+        if (board == null) {
+          board = new HashMap<>();
+        }
+        merge(board, copied);
+        last = copied;
+      }
+      writes.incrementAndGet();
+    }
+
+    synchronized Map<String, Object> lastWrite() {
+      return last;
+    }
+
+    synchronized Map<String, Object> board() {
+      return board == null ? null : new HashMap<>(board);
+    }
+
+    @Override
+    public CompletableFuture<Map<String, Object>> read() {
+      return CompletableFuture.completedFuture(board());
+    }
+
+    @Override
+    public Registration listen(Consumer<ActionData> actions) {
+      events.execute(() -> {
+        receiver = actions;
+        for (ActionData action : waiting) {
+          actions.accept(action);
+        }
+        waiting.clear();
+      });
+      return () -> events.execute(() -> {
+        if (receiver == actions) {
+          receiver = null;
+        }
+      });
+    }
+
+    // on the events thread
+    void send(ActionData action) {
+      if (receiver == null) {
+        waiting.add(action);
+      } else {
+        receiver.accept(action);
+      }
+    }
+
+    @Override
+    public void ask(String question) {
+      questions.add(question);
+    }
+  }
+
+  /**
+   * Merge the fields like Firestore does: the maps key by key, the other values replaced.
+   */
+  @SuppressWarnings("unchecked")
+  private static void merge(Map<String, Object> into, Map<String, Object> fields) {
+    for (Map.Entry<String, Object> field : fields.entrySet()) {
+      Object there = into.get(field.getKey());
+      if (field.getValue() instanceof Map && there instanceof Map) {
+        Map<String, Object> merged = new HashMap<>((Map<String, Object>) there);
+        merge(merged, (Map<String, Object>) field.getValue());
+        into.put(field.getKey(), merged);
+      } else {
+        into.put(field.getKey(), field.getValue());
+      }
+    }
+  }
+
+  /**
+   * @return the value as it is now, the maps and the pieces copied one by one
+   */
+  private static Object copy(Object value) {
+    if (value instanceof Map) {
+      Map<String, Object> copied = new HashMap<>();
+      for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+        copied.put((String) entry.getKey(), copy(entry.getValue()));
+      }
+      return copied;
+    }
+    if (value instanceof List) {
+      List<Object> copied = new ArrayList<>();
+      for (Object element : (List<?>) value) {
+        copied.add(copy(element));
+      }
+      return copied;
+    }
+    if (value instanceof PieceData) {
+      PieceData piece = (PieceData) value;
+      return new PieceData(piece.getType(), piece.isWhite(), piece.isHightLight());
+    }
+    return value;
+  }
+}
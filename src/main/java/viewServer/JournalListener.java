@@ -0,0 +1,114 @@
+package viewServer;
+
+import java.io.IOException;
+
+import archive.GameJournal;
+import controller.GameListener;
+import controller.ViewController;
+import model.ChessCodec;
+import model.Record;
+
+/**
+ * Appends the changes of the game of a room to the {@link GameJournal}: a move when one ply was
+ * added, a snapshot of the whole game after an undo or a restart, and the end and the draw rights
+ * when they change. The end is passed on to the next listener.
+ *
+ * <p>Nothing is appended until the game first changes: a room without a record in the journal
+ * starts a new game when it is recovered, which is what it had.
+ *
+ * <p>Before the views show the changes of an action, the listener waits until its records are on
+ * disk, so a player never sees a move that a crash would take back. The rooms that wait at the same
+ * time share one fsync of the journal.
+ */
+class JournalListener implements GameListener {
+  // a snapshot after this many records, so a busy room is replayed from a recent one
+  private static final int SNAPSHOT_EVERY = 256;
+
+  private final GameJournal journal;
+  private final String roomLoc;
+  private final GameListener next;
+  // what the journal has of the game, null before the first snapshot
+  private Record record;
+  private int plies;
+  private int end;
+  private int draws;
+  private int since;
+  // records were appended since the views were last flushed
+  private boolean unsynced;
+
+  /**
+   * @param next told the end of the game, or null
+   */
+  JournalListener(GameJournal journal, String roomLoc, GameListener next) {
+    this.journal = journal;
+    this.roomLoc = roomLoc;
+    this.next = next;
+  }
+
+  @Override
+  public void gameChanged(ViewController controller) {
+    Record current = controller.getRecord();
+    if (current != record || current.size() != plies && current.size() != plies + 1) {
+      snapshot(controller);
+      return;
+    }
+    if (current.size() == plies + 1) {
+      journal.move(roomLoc, ChessCodec.encodeMove(current.getLastMove()));
+      plies++;
+      since++;
+      unsynced = true;
+    }
+    int nowEnd = ChessCodec.encodeEnd(current.getEndGame());
+    if (nowEnd != end) {
+      if (nowEnd == 0) {
+        snapshot(controller);
+        return;
+      }
+      journal.end(roomLoc, nowEnd);
+      end = nowEnd;
+      since++;
+      unsynced = true;
+    }
+    int nowDraws = ChessCodec.encodeDraws(controller.getDrawManager());
+    if (nowDraws != draws) {
+      journal.draws(roomLoc, nowDraws);
+      draws = nowDraws;
+      since++;
+      unsynced = true;
+    }
+    if (since >= SNAPSHOT_EVERY) {
+      snapshot(controller);
+    }
+  }
+
+  private void snapshot(ViewController controller) {
+    record = controller.getRecord();
+    plies = record.size();
+    end = ChessCodec.encodeEnd(record.getEndGame());
+    draws = ChessCodec.encodeDraws(controller.getDrawManager());
+    since = 0;
+    journal.snapshot(roomLoc, controller.getSnapshot().getGame());
+    unsynced = true;
+  }
+
+  @Override
+  public void beforeFlush(ViewController controller) {
+    if (!unsynced) {
+      return;
+    }
+    unsynced = false;
+    try {
+      journal.sync();
+    } catch (IOException e) {
+      // the players still see the game, which a crash may take back
+      System.err.println("Cannot sync the journal of room " + roomLoc + ": " + e);
+    }
+  }
+
+  @Override
+  public void gameEnded(ViewController controller) {
+    if (next != null) {
+      next.gameEnded(controller);
+    }
+  }
+}
@@ -0,0 +1,221 @@
+package viewServer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import view.BoardDelta;
+import view.IChessViewer;
+import view.IChessViewerControl;
+
+/**
+ * A view shaped like {@link ServerChessView} that keeps its document in memory instead of
+ * writing it to Firestore: the board data, and the status and a copy of the board as written by
+ * each flush, like the copy the Firestore client serializes. It declines draws and promotes to
+ * queens.
+ */
+public class MemoryChessView implements IChessViewer {
+
+  private final boolean whiteOrBlack;
+  private final String player;
+  private BoardData board;
+  private BoardData written;
+  private String status;
+  private String pendingStatus;
+  private boolean pendingPieces;
+  private volatile int writes;
+  private volatile long version;
+  private long pendingVersion;
+  private IChessViewerControl controller;
+  private boolean closed;
+
+  public MemoryChessView(String player, boolean whiteOrBlack) {
+    this.whiteOrBlack = whiteOrBlack;
+    this.player = player;
+    this.board = newBoard();
+    // the document is created
+    repaint();
+    flush();
+  }
+
+  @Override
+  public void initializeViewController(IChessViewerControl controller) {
+    this.controller = controller;
+    if (board == null) {
+      board = newBoard();
+    }
+  }
+
+  private BoardData newBoard() {
+    BoardData board = new BoardData();
+    board.whiteOrBlack = whiteOrBlack;
+    board.player = player;
+    return board;
+  }
+
+  /**
+   * The copy written stands for the document in Firestore, which is not on the heap of a server,
+   * so it goes too; the game woken up writes the whole board again.
+   */
+  @Override
+  public void hibernate() {
+    controller = null;
+    board = null;
+    written = null;
+  }
+
+  /**
+   * @return whether the view let go of its board and controller
+   */
+  public boolean isHibernating() {
+    return board == null;
+  }
+
+  /**
+   * @return the controller, to send the actions to
+   */
+  public IChessViewerControl getController() {
+    return controller;
+  }
+
+  @Override
+  public void printOut(String message) {
+  }
+
+  @Override
+  public void printTemp(String temp) {
+  }
+
+  @Override
+  public void cleanTemp() {
+  }
+
+  @Override
+  public void setStatusLabelText(String status) {
+    this.pendingStatus = status;
+  }
+
+  /**
+   * @return the last status written
+   */
+  public String getStatus() {
+    return status;
+  }
+
+  @Override
+  public void highLight(int file, int rank) {
+    board.highLight(getI(rank), getJ(file));
+  }
+
+  @Override
+  public void deHighLightWholeBoard() {
+    board.deHighLightWholeBoard();
+  }
+
+  @Override
+  public void repaint() {
+    pendingPieces = true;
+  }
+
+  @Override
+  public void upDateSquares(BoardDelta changes) {
+    for (int i = 0; i < changes.size(); i++) {
+      if (changes.getType(i) == 0) {
+        clearLabel(changes.getFile(i), changes.getRank(i));
+      } else {
+        upDatePiece(changes.getFile(i), changes.getRank(i), changes.getType(i), changes.isWhite(i));
+      }
+    }
+    pendingPieces = true;
+  }
+
+  @Override
+  public void setVersion(long version) {
+    this.pendingVersion = version;
+  }
+
+  /**
+   * @return the version of the game at the last flush that wrote something
+   */
+  public long getVersion() {
+    return version;
+  }
+
+  @Override
+  public void flush() {
+    if (pendingStatus == null && !pendingPieces) {
+      return;
+    }
+    if (pendingStatus != null) {
+      status = pendingStatus;
+      pendingStatus = null;
+    }
+    if (pendingPieces) {
+      write();
+      pendingPieces = false;
+    }
+    // last, so that a thread which sees the version or the count sees what was written
+    version = pendingVersion;
+    writes++;
+  }
+
+  /**
+   * @return how many times the document was written
+   */
+  public int getWrites() {
+    return writes;
+  }
+
+  private void write() {
+    List<PieceData> pieces = new ArrayList<>(board.pieces.size());
+    for (PieceData piece : board.pieces) {
+      pieces.add(new PieceData(piece.getType(), piece.isWhite(), piece.isHightLight()));
+    }
+    written = new BoardData(pieces);
+    written.whiteOrBlack = board.whiteOrBlack;
+    written.player = board.player;
+  }
+
+  /**
+   * @return the board as it was at the last flush
+   */
+  public BoardData getWritten() {
+    return written;
+  }
+
+  @Override
+  public void upDatePiece(int file, int rank, char pieceType, boolean whiteOrBlack) {
+    board.updatePiece(getI(rank), getJ(file), pieceType, whiteOrBlack);
+  }
+
+  @Override
+  public void clearLabel(int file, int rank) {
+    board.clearPiece(getI(rank), getJ(file));
+  }
+
+  private int getI(int rank) {
+    return whiteOrBlack ? 8 - rank : rank - 1;
+  }
+
+  private int getJ(int file) {
+    return whiteOrBlack ? file - 1 : 8 - file;
+  }
+
+  @Override
+  public boolean askForDraw() {
+    return false;
+  }
+
+  @Override
+  public String getPromoteTo() {
+    return "Q";
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+  }
+
+  public boolean isClosed() {
+    return closed;
+  }
+}
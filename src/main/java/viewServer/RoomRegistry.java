@@ -0,0 +1,260 @@
+package viewServer;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import controller.ViewController;
+
+/**
+ * The open rooms of a server, used by the listener threads of Firestore, the room threads and the
+ * explorer threads at once.
+ *
+ * <p>A sweeper closes the rooms whose game has ended once they have been left for a while, so the
+ * players still see the end, and puts to sleep the games of the other rooms left idle for a longer
+ * time, see {@link GameRoom#hibernate(File)}. A room asleep keeps its mailbox and its views, so its
+ * players can come back to it: only the finished games and the rooms removed are closed. Without
+ * the sweeper a room simply abandoned would keep its game on the heap forever. The counts are there
+ * for monitoring.
+ *
+ * <p>Without a directory, the games put to sleep are kept packed on the heap. Given one, they go to
+ * files there, after a shorter idle time, so the players who stepped away cost a file instead of a
+ * game.
+ */
+public class RoomRegistry {
+  private final Map<String, GameRoom> rooms = new ConcurrentHashMap<>();
+  private final long idleMillis;
+  private final long finishedMillis;
+  private final AtomicLong opened = new AtomicLong();
+  private final AtomicLong closed = new AtomicLong();
+  private final AtomicLong evicted = new AtomicLong();
+  private ScheduledExecutorService sweeper;
+  private volatile File hibernation;
+  private volatile long hibernateMillis;
+  private volatile Consumer<String> closeListener;
+
+  /**
+   * @param idleMillis how long a room may go without an action before its game is put to sleep on
+   *     the heap, when the games do not go to a directory
+   * @param finishedMillis how long a room whose game has ended may go without an action
+   */
+  public RoomRegistry(long idleMillis, long finishedMillis) {
+    this.idleMillis = idleMillis;
+    this.finishedMillis = finishedMillis;
+  }
+
+  /**
+   * @param directory where the games put to sleep go, null to keep them all on the heap
+   * @param idleMillis how long a room may go without an action before its game is put to sleep
+   */
+  public void setHibernation(File directory, long idleMillis) {
+    this.hibernateMillis = idleMillis;
+    this.hibernation = directory;
+  }
+
+  /**
+   * @param listener told the name of every room closed, by the sweeper or not, null for none
+   */
+  public void setCloseListener(Consumer<String> listener) {
+    this.closeListener = listener;
+  }
+
+  /**
+   * Add a started room.
+   *
+   * @return false if there is already a room there, which is kept
+   */
+  public boolean open(String roomLoc, GameRoom room) {
+    if (rooms.putIfAbsent(roomLoc, room) != null) {
+      return false;
+    }
+    opened.incrementAndGet();
+    return true;
+  }
+
+  /**
+   * @return the room, null if there is no such room
+   */
+  public GameRoom get(String roomLoc) {
+    return rooms.get(roomLoc);
+  }
+
+  /**
+   * @return the game of the room, null if there is no such room
+   */
+  public ViewController getGame(String roomLoc) {
+    GameRoom room = rooms.get(roomLoc);
+    return room == null ? null : room.getGame();
+  }
+
+  /**
+   * Close a room and its game.
+   *
+   * @return false if there was no such room
+   */
+  public boolean close(String roomLoc) {
+    GameRoom room = rooms.remove(roomLoc);
+    if (room == null) {
+      return false;
+    }
+    shut(roomLoc, room);
+    return true;
+  }
+
+  private void shut(String roomLoc, GameRoom room) {
+    closed.incrementAndGet();
+    room.close();
+    // after the room, which waits for its last action, so the listener hears of no more change
+    Consumer<String> listener = closeListener;
+    if (listener != null) {
+      listener.accept(roomLoc);
+    }
+    ViewController game = room.getGame();
+    if (game != null) {
+      game.close();
+    }
+  }
+
+  /**
+   * Close the finished rooms left idle, and put to sleep the games of the other rooms left idle. A
+   * game waiting for an answer is put to sleep at a later sweep.
+   *
+   * @param now the time in milliseconds
+   * @return the number of rooms closed
+   */
+  public int sweep(long now) {
+    File directory = hibernation;
+    long sleepMillis = directory == null ? idleMillis : hibernateMillis;
+    int swept = 0;
+    for (Map.Entry<String, GameRoom> entry : rooms.entrySet()) {
+      GameRoom room = entry.getValue();
+      ViewController game = room.getGame();
+      long idle = now - room.getLastActivity();
+      if (game != null && game.hasEnd() && idle >= finishedMillis
+          // a room opened again under the same name stays
+          && rooms.remove(entry.getKey(), room)) {
+        shut(entry.getKey(), room);
+        evicted.incrementAndGet();
+        swept++;
+      } else if (game != null && idle >= sleepMillis && game.canHibernate()) {
+        // its players can still wake it up
+        room.hibernate(directory == null ? null : new File(directory, entry.getKey() + ".game"));
+      }
+    }
+    return swept;
+  }
+
+  /**
+   * Sweep the rooms on a daemon thread from now on.
+   *
+   * @param periodMillis the time between two sweeps
+   */
+  public synchronized void startSweeper(long periodMillis) {
+    if (sweeper != null) {
+      return;
+    }
+    sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread thread = new Thread(r, "room-sweeper");
+      thread.setDaemon(true);
+      return thread;
+    });
+    sweeper.scheduleWithFixedDelay(() -> {
+      try {
+        sweep(System.currentTimeMillis());
+      } catch (RuntimeException e) {
+        System.err.println("Sweep failed: " + e);
+      }
+    }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+  }
+
+  public synchronized void stopSweeper() {
+    if (sweeper != null) {
+      sweeper.shutdownNow();
+      sweeper = null;
+    }
+  }
+
+  /**
+   * @return the number of rooms open now
+   */
+  public int size() {
+    return rooms.size();
+  }
+
+  /**
+   * @return the number of open rooms whose game has ended
+   */
+  public int getFinished() {
+    int finished = 0;
+    for (GameRoom room : rooms.values()) {
+      ViewController game = room.getGame();
+      if (game != null && game.hasEnd()) {
+        finished++;
+      }
+    }
+    return finished;
+  }
+
+  /**
+   * @return the number of open rooms whose game is asleep
+   */
+  public int getHibernating() {
+    int hibernating = 0;
+    for (GameRoom room : rooms.values()) {
+      if (room.isHibernating()) {
+        hibernating++;
+      }
+    }
+    return hibernating;
+  }
+
+  /**
+   * @return the number of rooms opened since the start
+   */
+  public long getOpened() {
+    return opened.get();
+  }
+
+  /**
+   * @return the number of rooms closed since the start, by the sweeper or not
+   */
+  public long getClosed() {
+    return closed.get();
+  }
+
+  /**
+   * @return the number of rooms closed by the sweeper since the start
+   */
+  public long getEvicted() {
+    return evicted.get();
+  }
+
+  /**
+   * @return a copy of the games of the open rooms
+   */
+  public Map<String, ViewController> getGames() {
+    Map<String, ViewController> games = new HashMap<>();
+    for (Map.Entry<String, GameRoom> entry : rooms.entrySet()) {
+      ViewController game = entry.getValue().getGame();
+      if (game != null) {
+        games.put(entry.getKey(), game);
+      }
+    }
+    return games;
+  }
+
+  /**
+   * @return the counts, one key=value a line
+   */
+  @Override
+  public String toString() {
+    return "open=" + size() + "\nfinished=" + getFinished() + "\nhibernating=" + getHibernating()
+        + "\nopened=" + getOpened() + "\nclosed=" + getClosed() + "\nevicted=" + getEvicted() + "\n";
+  }
+}
@@ -0,0 +1,288 @@
+package viewServer;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import archive.GameArchive;
+import controller.ViewController;
+
+/**
+ * Opens, plays, finishes and closes rooms through the room code of the {@link Server}, with
+ * {@link MemoryChessView}s in place of the Firestore views, and measures the heap they keep.
+ *
+ * The report gives the heap held by each active game, by each finished game still in its room
+ * and by each room after it was closed, which should be nothing. Then rooms are churned in cycles
+ * and the heap after each cycle is fitted by a line: a slope well above zero is a leak.
+ *
+ * Given a directory to put the games to sleep in, the active games are put to sleep before they
+ * are finished, and the report also gives the heap held by each sleeping room and the time to wake
+ * one up.
+ */
+public class RoomSoak {
+  // the first moves of a Ruy Lopez, so the games hold realistic records
+  private static final String[] MOVES = {"e4", "e5", "Nf3", "Nc6", "Bb5", "a6", "Ba4", "Nf6", "O-O",
+      "Be7", "Re1", "b5", "Bb3", "d6", "c3", "O-O", "h3", "Na5", "Bc2", "c5"};
+
+  private final Server server;
+  private final int rooms;
+  private final int cycles;
+  private File hibernation;
+
+  /**
+   * @param archive where the finished games go, or null to keep them in their rooms
+   * @param rooms how many rooms are open at once
+   * @param cycles how many times the rooms are churned
+   */
+  public RoomSoak(GameArchive.Writer archive, int rooms, int cycles) {
+    this.server = new Server(archive);
+    this.rooms = rooms;
+    this.cycles = cycles;
+  }
+
+  /**
+   * @param directory where the games are put to sleep, null to keep them awake
+   */
+  public void setHibernation(File directory) {
+    this.hibernation = directory;
+  }
+
+  /**
+   * @return the heap measured
+   */
+  public Report run() {
+    Report report = new Report(rooms, cycles);
+    report.baseline = usedHeap();
+    openAndPlay(0);
+    report.activeGame = (usedHeap() - report.baseline) / rooms;
+    if (hibernation != null) {
+      sleepAndWake(report);
+    }
+    finish(0);
+    report.finishedGame = (usedHeap() - report.baseline) / rooms;
+    close(0);
+    report.closedRoom = (usedHeap() - report.baseline) / rooms;
+    for (int cycle = 1; cycle <= cycles; cycle++) {
+      openAndPlay(cycle);
+      finish(cycle);
+      close(cycle);
+      report.cycleHeap[cycle - 1] = usedHeap();
+    }
+    report.openRooms = server.getRooms().size();
+    return report;
+  }
+
+  private static String roomLoc(int cycle, int room) {
+    return "soak-" + cycle + "-" + room;
+  }
+
+  /**
+   * Carry out an action on the game of every room of a cycle, on the room threads like the actions
+   * of the players, and wait until they are all done.
+   */
+  private void inRooms(int cycle, Consumer<ViewController> action) {
+    CountDownLatch done = new CountDownLatch(rooms);
+    for (int room = 0; room < rooms; room++) {
+      GameRoom gameRoom = server.getRoom(roomLoc(cycle, room));
+      gameRoom.execute(() -> {
+        try {
+          action.accept(gameRoom.getGame());
+        } finally {
+          done.countDown();
+        }
+      });
+    }
+    try {
+      if (!done.await(10, TimeUnit.MINUTES)) {
+        throw new IllegalStateException("The rooms are stuck");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private void openAndPlay(int cycle) {
+    for (int room = 0; room < rooms; room++) {
+      server.openRoom(roomLoc(cycle, room), new MemoryChessView("white" + room, true),
+          new MemoryChessView("black" + room, false), "white" + room, "black" + room);
+    }
+    inRooms(cycle, game -> {
+      for (int i = 0; i < MOVES.length; i++) {
+        game.makeMove(i % 2 == 0, MOVES[i]);
+      }
+    });
+  }
+
+  private void sleepAndWake(Report report) {
+    RoomRegistry registry = server.getRooms();
+    registry.setHibernation(hibernation, 0);
+    registry.sweep(System.currentTimeMillis());
+    registry.setHibernation(null, 0);
+    // the games go to sleep on the room threads
+    long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(10);
+    while (registry.getHibernating() < rooms) {
+      if (System.nanoTime() > deadline) {
+        throw new IllegalStateException(
+            "Only " + registry.getHibernating() + " of " + rooms + " rooms went to sleep");
+      }
+      Thread.yield();
+    }
+    report.sleepingRoom = (usedHeap() - report.baseline) / rooms;
+    long begin = System.nanoTime();
+    inRooms(0, game -> {
+    });
+    report.wakeMicros = (System.nanoTime() - begin) / 1000 / rooms;
+  }
+
+  private void finish(int cycle) {
+    inRooms(cycle, game -> game.resign(true));
+  }
+
+  private void close(int cycle) {
+    for (int room = 0; room < rooms; room++) {
+      server.closeRoom(roomLoc(cycle, room));
+    }
+  }
+
+  /**
+   * @return the heap used after a full collection, as far as one can be asked for
+   */
+  static long usedHeap() {
+    MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    long used = Long.MAX_VALUE;
+    for (int i = 0; i < 5; i++) {
+      System.gc();
+      used = Math.min(used, memory.getHeapMemoryUsage().getUsed());
+    }
+    return used;
+  }
+
+  /**
+   * The heap kept by the rooms, in bytes.
+   */
+  public static class Report {
+    private final int rooms;
+    private long baseline;
+    private long activeGame;
+    private long sleepingRoom;
+    private long wakeMicros;
+    private long finishedGame;
+    private long closedRoom;
+    private final long[] cycleHeap;
+    private int openRooms;
+
+    private Report(int rooms, int cycles) {
+      this.rooms = rooms;
+      this.cycleHeap = new long[cycles];
+    }
+
+    public long getActiveGame() {
+      return activeGame;
+    }
+
+    /**
+     * @return the heap held by a room whose game sleeps, 0 if the games were kept awake
+     */
+    public long getSleepingRoom() {
+      return sleepingRoom;
+    }
+
+    /**
+     * @return the time to wake up the game of a room, in microseconds, with the room threads
+     *     waking up several at once
+     */
+    public long getWakeMicros() {
+      return wakeMicros;
+    }
+
+    public long getFinishedGame() {
+      return finishedGame;
+    }
+
+    public long getClosedRoom() {
+      return closedRoom;
+    }
+
+    /**
+     * @return the heap after each churn cycle
+     */
+    public long[] getCycleHeap() {
+      return cycleHeap.clone();
+    }
+
+    /**
+     * @return the slope of the line fitted to the heap after each cycle, in bytes per cycle
+     */
+    public long getGrowthPerCycle() {
+      int n = cycleHeap.length;
+      if (n < 2) {
+        return 0;
+      }
+      double meanX = (n - 1) / 2.0;
+      double meanY = 0;
+      for (long heap : cycleHeap) {
+        meanY += heap / (double) n;
+      }
+      double covariance = 0;
+      double variance = 0;
+      for (int i = 0; i < n; i++) {
+        covariance += (i - meanX) * (cycleHeap[i] - meanY);
+        variance += (i - meanX) * (i - meanX);
+      }
+      return Math.round(covariance / variance);
+    }
+
+    /**
+     * @return the rooms still open at the end, which should be none
+     */
+    public int getOpenRooms() {
+      return openRooms;
+    }
+
+    /**
+     * @return the report as lines of name=value, easy to compare between releases
+     */
+    @Override
+    public String toString() {
+      return "rooms=" + rooms + "\n"
+          + "cycles=" + cycleHeap.length + "\n"
+          + "baselineHeap=" + baseline + "\n"
+          + "bytesPerActiveGame=" + activeGame + "\n"
+          + "bytesPerSleepingRoom=" + sleepingRoom + "\n"
+          + "wakeMicrosPerRoom=" + wakeMicros + "\n"
+          + "bytesPerFinishedGame=" + finishedGame + "\n"
+          + "bytesPerClosedRoom=" + closedRoom + "\n"
+          + "growthPerCycle=" + getGrowthPerCycle() + "\n"
+          + "openRoomsAtEnd=" + openRooms;
+    }
+  }
+
+  /**
+   * @param args [rooms [cycles [archive file]]]; the games are put to sleep in the directory
+   *     given by chess.hibernation, if any
+   */
+  public static void main(String[] args) throws IOException {
+    int rooms = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+    int cycles = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+    GameArchive.Writer archive = args.length > 2 ? new GameArchive.Writer(new File(args[2])) : null;
+    try {
+      RoomSoak soak = new RoomSoak(archive, rooms, cycles);
+      String hibernation = System.getProperty("chess.hibernation");
+      if (hibernation != null) {
+        File directory = new File(hibernation);
+        directory.mkdirs();
+        soak.setHibernation(directory);
+      }
+      System.out.println(soak.run());
+    } finally {
+      if (archive != null) {
+        archive.close();
+      }
+    }
+  }
+}
@@ -1,97 +1,431 @@
 package viewServer;
 
-import com.google.cloud.firestore.DocumentChange;
-import com.google.cloud.firestore.EventListener;
-import com.google.cloud.firestore.FirestoreException;
-import com.google.cloud.firestore.QueryDocumentSnapshot;
-import com.google.cloud.firestore.QuerySnapshot;
-import com.google.firebase.cloud.FirestoreClient;
-import java.util.HashMap;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import com.google.firebase.database.ChildEventListener;
-import com.google.firebase.database.DataSnapshot;
-import com.google.firebase.database.DatabaseError;
-import com.google.firebase.database.DatabaseReference;
-import com.google.firebase.database.FirebaseDatabase;
-
+import archive.GameArchive;
+import archive.GameJournal;
+import controller.ActionRecorder;
 import controller.DualViewChessControl;
+import controller.GameListener;
+import controller.GameSnapshot;
 import controller.ViewController;
-import javax.annotation.Nullable;
+import model.Chess;
+import model.ChessCodec;
+import model.Record;
+import view.IChessViewer;
 
 public class Server {
+  // the version of the board of a new game, see GameSnapshot#getVersion()
+  private static final long NEW_GAME = GameSnapshot.of(new Chess()).getVersion();
 
-  private DatabaseReference ref;
-  private RootListener rootListener;
-  private Map<String, ViewController> games = new HashMap<>();
+  private final GameTransport transport;
+  // also read by the explorer threads
+  private final RoomRegistry rooms = newRegistry();
+  // the threads carrying out the actions of all the rooms
+  private final ExecutorService roomThreads = newRoomThreads();
+  private GameArchive.Writer archive;
+  private final GameJournal journal;
+  // the games found in the journal, until their rooms are opened again
+  private final Map<String, byte[]> recovered = new ConcurrentHashMap<>();
+  // the finished games the archive has not sealed on disk yet, whose rooms stay in the journal
+  private final Map<String, byte[]> unsealed = new ConcurrentHashMap<>();
+  private volatile File actionLogs;
+  private volatile boolean squareDeltas;
 
-  public Server(FirebaseDatabase data) {
-    this.ref = data.getReference();
-    this.rootListener = new RootListener();
-    FirestoreClient.getFirestore().collection("rooms").addSnapshotListener(rootListener);
-    System.err.println("Listener added");
+  /**
+   * @param transport where the rooms and the players are, like {@link FirestoreTransport}
+   */
+  public Server(GameTransport transport) {
+    this(transport, null);
   }
 
-  private class RootListener implements ChildEventListener, EventListener<QuerySnapshot> {
+  /**
+   * @param archive where finished games go, or null to keep them in the rooms
+   */
+  public Server(GameTransport transport, GameArchive.Writer archive) {
+    this(transport, archive, null);
+  }
 
-    @Override
-    public void onCancelled(DatabaseError arg0) {
-      throw new RuntimeException();
+  /**
+   * @param archive where finished games go, or null to keep them in the rooms
+   * @param journal where the changes of the games go, so the rooms open in it when the server
+   *     stopped go on where they were when the transport adds them again; null for none
+   */
+  public Server(GameTransport transport, GameArchive.Writer archive, GameJournal journal) {
+    this.transport = transport;
+    this.archive = archive;
+    this.journal = journal;
+    useJournal();
+    transport.listen(new RootListener());
+    rooms.startSweeper(60 * 1000);
+  }
+
+  /**
+   * A server without a transport: rooms are only opened and closed by calling {@link #openRoom}
+   * and {@link #closeRoom}.
+   */
+  Server(GameArchive.Writer archive) {
+    this(archive, null);
+  }
+
+  Server(GameArchive.Writer archive, GameJournal journal) {
+    this.transport = null;
+    this.archive = archive;
+    this.journal = journal;
+    useJournal();
+  }
+
+  private void useJournal() {
+    if (journal == null) {
+      return;
+    }
+    recovered.putAll(journal.getRecovered());
+    journal.setSnapshotRequests(this::snapshotRoom);
+    rooms.setCloseListener(roomLoc -> {
+      if (!unsealed.containsKey(roomLoc)) {
+        journal.close(roomLoc);
+      }
+    });
+    if (archive != null) {
+      archive.setSealListener(this::archiveSealed);
     }
+  }
 
-    @Override
-    public void onEvent(@Nullable QuerySnapshot snapshots, @Nullable FirestoreException error) {
-      if (error != null) {
-        System.err.println("Listen failed: " + error);
+  /**
+   * Append a new snapshot of a room to the journal, so its old segments can go.
+   */
+  private void snapshotRoom(String roomLoc) {
+    GameRoom room = rooms.get(roomLoc);
+    if (room != null) {
+      room.snapshot(snapshot -> journal.snapshot(roomLoc, snapshot.getGame()));
+      return;
+    }
+    synchronized (unsealed) {
+      byte[] archived = unsealed.get(roomLoc);
+      if (archived != null) {
+        journal.snapshot(roomLoc, archived);
         return;
       }
-      for (DocumentChange dc : snapshots.getDocumentChanges()) {
-        switch (dc.getType()) {
-          case ADDED:
-            final QueryDocumentSnapshot document = dc.getDocument();
-            final Map<String, Object> data = document.getData();
-            String roomLoc = document.getId();
-            ServerChessView whiteview = ServerChessView
-                .newInstance(FirestoreClient.getFirestore().collection("rooms").document(roomLoc)
-                    .collection("display")
-                    .document("white"), (String) data.get("owner"), true);
-            ServerChessView blackview = ServerChessView
-                .newInstance(FirestoreClient.getFirestore().collection("rooms").document(roomLoc)
-                    .collection("display")
-                    .document("black"), (String) data.get("invite") , false);
-            System.out.println("Room " + data.toString() + " added");
-            games.put(roomLoc, new DualViewChessControl(whiteview, blackview));
-            FirestoreClient.getFirestore().collection("rooms").document(roomLoc)
-                .update("$key", roomLoc);
-            break;
-          default:
-            break;
-        }
-      }
     }
+    byte[] game = recovered.remove(roomLoc);
+    if (game != null) {
+      // not added again since the start: it was deleted while the server was down
+      System.err.println("Room " + roomLoc + " was not opened again, dropping its game");
+    }
+    journal.close(roomLoc);
+  }
+
+  /**
+   * No room keeps a thread while it waits for a player, so there is one thread a processor; set
+   * chess.roomThreads to change their number.
+   */
+  private static ExecutorService newRoomThreads() {
+    int count = Integer.getInteger("chess.roomThreads", Runtime.getRuntime().availableProcessors());
+    AtomicInteger created = new AtomicInteger();
+    return Executors.newFixedThreadPool(count, r -> {
+      Thread thread = new Thread(r, "room-" + created.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * The games are put to sleep on the heap after two hours without an action, and the rooms closed
+   * ten minutes after the game has ended; set chess.roomIdleMinutes and chess.finishedRoomMinutes
+   * to change this.
+   */
+  private static RoomRegistry newRegistry() {
+    long minute = 60 * 1000;
+    return new RoomRegistry(Long.getLong("chess.roomIdleMinutes", 120) * minute,
+        Long.getLong("chess.finishedRoomMinutes", 10) * minute);
+  }
+
+  private class RootListener implements GameTransport.RoomListener {
 
     @Override
-    public void onChildAdded(DataSnapshot data, String arg1) {
+    public void roomAdded(String roomLoc, String white, String black) {
+      if (rooms.get(roomLoc) != null) {
+        return;
+      }
+      ServerChessView whiteview =
+          ServerChessView.newInstance(transport.display(roomLoc, true), white, true);
+      ServerChessView blackview =
+          ServerChessView.newInstance(transport.display(roomLoc, false), black, false);
+      whiteview.setSquareDeltas(squareDeltas);
+      blackview.setSquareDeltas(squareDeltas);
+      // at a start every room is added: the games are only made when played in
+      openRoomAsleep(roomLoc, whiteview, blackview, white, black);
     }
 
     @Override
-    public void onChildChanged(DataSnapshot arg0, String arg1) {
+    public void roomRemoved(String roomLoc) {
+      // without this, the rooms deleted would stay open until swept
+      closeRoom(roomLoc);
     }
+  }
 
-    @Override
-    public void onChildMoved(DataSnapshot arg0, String arg1) {
+  /**
+   * Open a room whose game is only made on its first action, going on from the journal if it has
+   * the room. The boards of the views are read, and only written again if they do not show that
+   * game.
+   *
+   * <p>A finished game found in the journal was archived before the server stopped, maybe not on
+   * disk: it is archived again and the room, closed then, is not opened.
+   *
+   * @return the room, null if it was open already or its game archived
+   */
+  GameRoom openRoomAsleep(String roomLoc, IChessViewer whiteview, IChessViewer blackview,
+      String white, String black) {
+    reopened(roomLoc);
+    byte[] ended = recovered.get(roomLoc);
+    if (ended != null && ChessCodec.hasEnd(ended) && archiveRecovered(roomLoc, ended, white, black)) {
+      recovered.remove(roomLoc);
+      return null;
+    }
+    GameRoom room = new GameRoom(roomThreads);
+    IChessViewer[] views = {whiteview, blackview};
+    for (IChessViewer view : views) {
+      if (view instanceof ServerChessView) {
+        ((ServerChessView) view).setMailbox(room);
+      }
     }
+    long started = System.currentTimeMillis();
+    room.setWaker(
+        snapshot -> newGame(roomLoc, whiteview, blackview, white, black, started, snapshot));
+    if (!rooms.open(roomLoc, room)) {
+      return null;
+    }
+    byte[] recoveredGame = recovered.remove(roomLoc);
+    GameSnapshot snapshot = recoveredGame == null ? null : new GameSnapshot(recoveredGame);
+    room.startAsleep(views, snapshot);
+    long version = snapshot == null ? NEW_GAME : snapshot.getVersion();
+    for (IChessViewer view : views) {
+      if (view instanceof ServerChessView) {
+        ((ServerChessView) view).listen();
+        ((ServerChessView) view).whenStale(version, room::wakeUp);
+      }
+    }
+    return room;
+  }
 
-    @Override
-    public void onChildRemoved(DataSnapshot data) {
-      String roomLoc = data.getKey();
+  /**
+   * Start the game of a new room.
+   *
+   * @return the controller of the game
+   */
+  ViewController openRoom(String roomLoc, IChessViewer whiteview, IChessViewer blackview,
+      String white, String black) {
+    reopened(roomLoc);
+    // the views may hear of actions while the game is set up; they wait in the mailbox
+    GameRoom room = new GameRoom(roomThreads);
+    for (IChessViewer view : new IChessViewer[] {whiteview, blackview}) {
+      if (view instanceof ServerChessView) {
+        ((ServerChessView) view).setMailbox(room);
+      }
+    }
+    long started = System.currentTimeMillis();
+    byte[] recoveredGame = recovered.remove(roomLoc);
+    ViewController game = newGame(roomLoc, whiteview, blackview, white, black, started,
+        recoveredGame == null ? null : new GameSnapshot(recoveredGame));
+    room.setWaker(
+        snapshot -> newGame(roomLoc, whiteview, blackview, white, black, started, snapshot));
+    room.start(game);
+    if (!rooms.open(roomLoc, room)) {
+      // opened meanwhile by another event
+      room.close();
+      game.close();
+      return rooms.getGame(roomLoc);
+    }
+    return game;
+  }
+
+  /**
+   * @param snapshot the game to go on with, null for a new one
+   */
+  private ViewController newGame(String roomLoc, IChessViewer whiteview, IChessViewer blackview,
+      String white, String black, long started, GameSnapshot snapshot) {
+    ActionRecorder recorder = newRecorder(roomLoc);
+    if (recorder != null) {
+      whiteview = recorder.record(whiteview);
+      blackview = recorder.record(blackview);
+    }
+    DualViewChessControl game = snapshot == null ? new DualViewChessControl(whiteview, blackview)
+        : new DualViewChessControl(whiteview, blackview, snapshot);
+    GameListener archiving = archive == null ? null
+        : controller -> archiveGame(roomLoc, controller, white, black, started);
+    if (journal != null) {
+      game.setGameListener(new JournalListener(journal, roomLoc, archiving));
+    } else if (archiving != null) {
+      game.setGameListener(archiving);
+    }
+    return game;
+  }
+
+  /**
+   * @return the mailbox of the room, null if there is no such room
+   */
+  GameRoom getRoom(String roomLoc) {
+    return rooms.get(roomLoc);
+  }
+
+  /**
+   * @return the game of the room, null if there is no such room
+   */
+  public ViewController getGame(String roomLoc) {
+    return rooms.getGame(roomLoc);
+  }
+
+  /**
+   * Let go of a room that was deleted.
+   */
+  void closeRoom(String roomLoc) {
+    // an archived game has already been closed
+    if (!rooms.close(roomLoc) && journal != null && recovered.remove(roomLoc) != null) {
+      journal.close(roomLoc);
+    }
+  }
+
+  /**
+   * Move a finished game from the heap to the archive, and let go of its room.
+   */
+  private void archiveGame(String roomLoc, ViewController controller, String white, String black,
+      long started) {
+    synchronized (archive) {
+      // in the lock, so no seal lets the journal go of the room before the room is closed
+      if (archive(roomLoc, controller.getRecord(), white, black, started,
+          controller.getSnapshot().getGame())) {
+        rooms.close(roomLoc);
+      }
+    }
+  }
+
+  /**
+   * Archive again a finished game found in the journal. The journal has no times, so it started
+   * and ended now.
+   *
+   * @return false if it could not be archived
+   */
+  private boolean archiveRecovered(String roomLoc, byte[] game, String white, String black) {
+    if (archive == null) {
+      return false;
+    }
+    Record record = ChessCodec.decode(game).getRecords();
+    synchronized (archive) {
+      if (!archive(roomLoc, record, white, black, System.currentTimeMillis(), game)) {
+        return false;
+      }
+      if (!unsealed.containsKey(roomLoc)) {
+        journal.close(roomLoc);
+      }
+      return true;
+    }
+  }
 
-      ViewController viewControl = games.remove(roomLoc);
-      viewControl.close();
+  /**
+   * Add a finished game to the archive, holding its lock. Until the archive seals the game on
+   * disk, its room stays in the journal, so a crash loses neither.
+   *
+   * @param game the game packed, kept for the journal meanwhile
+   * @return false if it could not be archived
+   */
+  private boolean archive(String roomLoc, Record record, String white, String black, long started,
+      byte[] game) {
+    try {
+      archive.add(record, record.getEndGame().getResult(), white, black, started,
+          System.currentTimeMillis());
+    } catch (IOException e) {
+      System.err.println("Cannot archive room " + roomLoc + ": " + e);
+      return false;
+    }
+    if (journal != null && archive.getPending() > 0) {
+      unsealed.put(roomLoc, game);
     }
+    return true;
   }
 
+  /**
+   * The games archived are on disk: let the journal go of their rooms. Called by the archive,
+   * holding its lock.
+   */
+  private void archiveSealed() {
+    synchronized (unsealed) {
+      for (String roomLoc : unsealed.keySet()) {
+        journal.close(roomLoc);
+      }
+      unsealed.clear();
+    }
+  }
+
+  /**
+   * A room opened again under the name of an archived one goes on in the journal under that name.
+   */
+  private void reopened(String roomLoc) {
+    synchronized (unsealed) {
+      unsealed.remove(roomLoc);
+    }
+  }
+
+  /**
+   * Record the actions of every new room in a file of this directory, named after the room.
+   *
+   * @param directory the directory, or null to stop recording
+   */
+  public void setActionLogs(File directory) {
+    this.actionLogs = directory;
+  }
+
+  /**
+   * Write only the squares changed to the boards of the rooms added from now on, see
+   * {@link ServerChessView#setSquareDeltas(boolean)}.
+   */
+  public void setSquareDeltas(boolean squareDeltas) {
+    this.squareDeltas = squareDeltas;
+  }
+
+  /**
+   * Put the games of the rooms idle for a while to sleep in files of this directory, named after
+   * the rooms, until their next action.
+   *
+   * @param directory the directory, or null to keep the games on the heap
+   * @param idleMillis how long a room may go without an action before its game is put to sleep
+   */
+  public void setHibernation(File directory, long idleMillis) {
+    rooms.setHibernation(directory, idleMillis);
+  }
+
+  private ActionRecorder newRecorder(String roomLoc) {
+    if (actionLogs == null) {
+      return null;
+    }
+    try {
+      return new ActionRecorder(new OutputStreamWriter(
+          new FileOutputStream(new File(actionLogs, roomLoc + ".log"), true), StandardCharsets.UTF_8));
+    } catch (IOException e) {
+      System.err.println("Cannot record room " + roomLoc + ": " + e);
+      return null;
+    }
+  }
+
+  /**
+   * @return a copy of the games of the open rooms
+   */
   public Map<String, ViewController> getGames() {
-    return games;
+    return rooms.getGames();
+  }
+
+  /**
+   * @return the open rooms, with their counts
+   */
+  public RoomRegistry getRooms() {
+    return rooms;
   }
 }
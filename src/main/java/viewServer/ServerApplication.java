@@ -1,18 +1,21 @@
 package viewServer;
 
+import archive.GameArchive;
+import archive.GameJournal;
 import com.google.auth.oauth2.GoogleCredentials;
 import com.google.firebase.FirebaseOptions.Builder;
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileNotFoundException;
 
 import com.google.firebase.FirebaseApp;
 import com.google.firebase.FirebaseOptions;
-import com.google.firebase.database.FirebaseDatabase;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.ServerSocket;
 import java.net.Socket;
+import opening.OpeningExplorer;
 
 public class ServerApplication {
 
@@ -32,14 +35,80 @@ public class ServerApplication {
       throw new RuntimeException(e);
     }
     System.out.println("Starting server");
-    Server server = new Server(FirebaseDatabase.getInstance());
+    GameArchive.Writer archive = null;
+    String archiveFile = System.getProperty("chess.archive");
+    if (archiveFile != null) {
+      try {
+        archive = new GameArchive.Writer(new File(archiveFile));
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+    GameJournal journal = null;
+    String journalDirectory = System.getProperty("chess.journal");
+    if (journalDirectory != null) {
+      try {
+        long start = System.nanoTime();
+        journal = new GameJournal(new File(journalDirectory));
+        System.out.println("Recovered " + journal.getRecovered().size() + " rooms in "
+            + (System.nanoTime() - start) / 1000000 + " ms");
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+    GameArchive.Writer writer = archive;
+    GameJournal opened = journal;
+    // the archive first: its last segment lets the journal go of the games in it
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+      if (writer != null) {
+        synchronized (writer) {
+          try {
+            writer.close();
+          } catch (IOException e) {
+            e.printStackTrace();
+          }
+        }
+      }
+      if (opened != null) {
+        try {
+          opened.close();
+        } catch (IOException e) {
+          e.printStackTrace();
+        }
+      }
+    }));
+    Server server = new Server(new FirestoreTransport(), archive, journal);
+    String actionLogs = System.getProperty("chess.actions");
+    if (actionLogs != null) {
+      File directory = new File(actionLogs);
+      directory.mkdirs();
+      server.setActionLogs(directory);
+    }
+    // for the clients that read the board as a map of the squares
+    server.setSquareDeltas(Boolean.getBoolean("chess.squareDeltas"));
+    String hibernation = System.getProperty("chess.hibernation");
+    if (hibernation != null) {
+      File directory = new File(hibernation);
+      directory.mkdirs();
+      server.setHibernation(directory, Long.getLong("chess.hibernateMinutes", 5) * 60 * 1000);
+    }
+    String explorerTable = System.getProperty("chess.explorer");
+    if (explorerTable != null) {
+      try {
+        int port = Integer.getInteger("chess.explorer.port", 8081);
+        ExplorerHandler.start(server, OpeningExplorer.open(new File(explorerTable)), port);
+        System.out.println("Opening explorer on port " + port);
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
     try {
       ServerSocket serverSocket = new ServerSocket(8080);
       System.out.println("Listening for connection on port 8080 ....");
       while (true) {
         Socket clientSocket = null;
         clientSocket = serverSocket.accept();
-        clientSocket.getOutputStream().write(server.getGames().toString().getBytes());
+        clientSocket.getOutputStream().write(server.getRooms().toString().getBytes());
         clientSocket.close();
       }
     } catch (IOException e) {
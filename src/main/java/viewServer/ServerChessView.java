@@ -1,53 +1,71 @@
 package viewServer;
 
-import com.google.api.core.ApiFuture;
-import com.google.cloud.firestore.CollectionReference;
-import com.google.cloud.firestore.DocumentChange;
-import com.google.cloud.firestore.DocumentChange.Type;
-import com.google.cloud.firestore.DocumentReference;
-import com.google.cloud.firestore.DocumentSnapshot;
-import com.google.cloud.firestore.EventListener;
-import com.google.cloud.firestore.FirestoreException;
-import com.google.cloud.firestore.QuerySnapshot;
-import com.google.cloud.firestore.WriteResult;
-import com.google.common.collect.ImmutableMap;
-import com.google.firebase.database.DataSnapshot;
-import com.google.firebase.database.DatabaseError;
-import com.google.firebase.database.DatabaseReference;
-import com.google.firebase.database.ValueEventListener;
-
-import java.util.concurrent.ExecutionException;
-import javax.annotation.Nullable;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import view.BoardDelta;
 import view.IChessViewer;
 import view.IChessViewerControl;
 
 public class ServerChessView implements IChessViewer {
 
   private boolean whiteOrBlack;
+  private String player;
   private BoardData board;
 
-  private DocumentReference ref;
+  private GameTransport.Display display;
   private IChessViewerControl controller;
-  private ActionEventListener actionListener;
-  private ActionData action;
-  private CollectionReference requestRef;
+  private GameTransport.Registration actionListener;
+  // the answer the player is asked for, completed when it comes
+  private CompletableFuture<ActionData> answer;
+  // until the view is given the mailbox of its room, each action gets its own thread
+  private volatile Executor mailbox = action -> new Thread(action).start();
+  // the fields changed during the current action, written together by flush()
+  private final Map<String, Object> pending = new HashMap<>();
+  // the version of the game shown once the pending fields are written
+  private long version;
+  // write the board as a map of the squares, only the changed ones
+  private boolean squareDeltas;
+  // with square deltas, copies of the pieces as last written; null writes them all
+  private PieceData[] shown;
 
   public ServerChessView() {
   }
 
-  public static ServerChessView newInstance(DocumentReference firebaseReference,
+  /**
+   * Nothing is written yet: the document is made or brought up to date by the first flush of the
+   * game, and the board is only made when a controller initializes the view.
+   */
+  public static ServerChessView newInstance(GameTransport.Display display,
       String player,
       boolean whiteOrBlack) {
     ServerChessView p = new ServerChessView();
-    p.board = new BoardData();
-    p.ref = firebaseReference;
+    p.display = display;
     p.whiteOrBlack = whiteOrBlack;
-    p.board.whiteOrBlack = whiteOrBlack;
-    p.board.player = player;
-    p.ref.set(p.board);
+    p.player = player;
     return p;
   }
 
+  /**
+   * Write the board as the field "squares", a map from the index of a square in the list of pieces
+   * to its piece, instead of the list "pieces". Only the squares changed since the last write are
+   * merged into it, where the list is written whole, as an element of a list cannot be written
+   * alone. The clients have to read the map.
+   */
+  public void setSquareDeltas(boolean squareDeltas) {
+    this.squareDeltas = squareDeltas;
+  }
+
+  private BoardData newBoard() {
+    BoardData board = new BoardData();
+    board.whiteOrBlack = whiteOrBlack;
+    board.player = player;
+    return board;
+  }
+
   @Override
   public void printOut(String message) {
     // System.out.println("[printOut]: "+message);
@@ -65,7 +83,9 @@ public class ServerChessView implements IChessViewer {
 
   @Override
   public void setStatusLabelText(String status) {
-    this.ref.update("status", status);
+    synchronized (pending) {
+      pending.put("status", status);
+    }
   }
 
   @Override
@@ -80,11 +100,15 @@ public class ServerChessView implements IChessViewer {
 
   @Override
   public void repaint() {
-    this.ref.set(this.board);
+    synchronized (pending) {
+      // the whole board, whatever the document shows
+      shown = null;
+      pending.put("pieces", this.board.pieces);
+      pending.put("whiteOrBlack", this.board.whiteOrBlack);
+      pending.put("player", this.board.player);
+    }
   }
 
-  private CollectionReference actionRef;
-
   @Override
   public void upDatePiece(int file, int rank, char pieceType, boolean whiteOrBlack) {
     this.board.updatePiece(getI(file, rank), getJ(file, rank), pieceType, whiteOrBlack);
@@ -123,81 +147,209 @@ public class ServerChessView implements IChessViewer {
     this.board.clearPiece(getI(file, rank), getJ(file, rank));
   }
 
+  /**
+   * Only the pieces, which hold the highlights too, are written instead of the whole document; with
+   * square deltas, only the squares changed.
+   */
+  @Override
+  public void upDateSquares(BoardDelta changes) {
+    for (int i = 0; i < changes.size(); i++) {
+      if (changes.getType(i) == 0) {
+        clearLabel(changes.getFile(i), changes.getRank(i));
+      } else {
+        upDatePiece(changes.getFile(i), changes.getRank(i), changes.getType(i), changes.isWhite(i));
+      }
+    }
+    synchronized (pending) {
+      pending.put("pieces", this.board.pieces);
+    }
+  }
+
+  @Override
+  public void setVersion(long version) {
+    synchronized (pending) {
+      this.version = version;
+    }
+  }
+
+  /**
+   * Writes the fields changed during the action in one merge, which makes the document if there is
+   * none yet, with the version of the game they show.
+   */
+  @Override
+  public void flush() {
+    Map<String, Object> fields;
+    synchronized (pending) {
+      if (pending.isEmpty()) {
+        return;
+      }
+      fields = new HashMap<>(pending);
+      pending.clear();
+      if (squareDeltas && fields.remove("pieces") != null) {
+        Map<String, Object> squares = changedSquares();
+        if (!squares.isEmpty()) {
+          fields.put("squares", squares);
+        }
+      }
+      if (fields.isEmpty()) {
+        // a click that changed nothing
+        return;
+      }
+      fields.put("version", version);
+    }
+    display.write(fields);
+  }
+
+  /**
+   * @return the squares whose piece or highlight changed since they were last written, by their
+   *     index in the list of pieces
+   */
+  private Map<String, Object> changedSquares() {
+    List<PieceData> pieces = board.pieces;
+    if (shown == null) {
+      shown = new PieceData[pieces.size()];
+    }
+    Map<String, Object> squares = new HashMap<>();
+    for (int i = 0; i < shown.length; i++) {
+      PieceData piece = pieces.get(i);
+      PieceData before = shown[i];
+      if (before == null || !Objects.equals(piece.getType(), before.getType())
+          || piece.isWhite() != before.isWhite() || piece.isHightLight() != before.isHightLight()) {
+        shown[i] = new PieceData(piece.getType(), piece.isWhite(), piece.isHightLight());
+        squares.put(Integer.toString(i), shown[i]);
+      }
+    }
+    return squares;
+  }
+
   @Override
   public void initializeViewController(IChessViewerControl controller) {
     this.controller = controller;
-    this.actionListener = new ActionEventListener(ref.collection("action"));
-    this.requestRef = ref.collection("request");
-  }
-
-  private class ActionEventListener implements EventListener<QuerySnapshot> {
-
-    public ActionEventListener(CollectionReference actionRef) {
-      ServerChessView.this.actionRef = actionRef;
-      actionRef.addSnapshotListener(this);
-    }
-
-    @Override
-    public void onEvent(@Nullable QuerySnapshot value, @Nullable FirestoreException error) {
-      (new Thread(() -> {
-        for (DocumentChange documentChange : value.getDocumentChanges()) {
-          if (documentChange.getType() == Type.ADDED) {
-            action = documentChange.getDocument().toObject(ActionData.class);
-            if (action == null) {
-              return;
-            }
-            if (action.click != null) {
-              int i = (int) action.click.i;
-              int j = (int) action.click.j;
-              controller.click(getFile(i, j), getRank(i, j), whiteOrBlack);
-            }
-            if (action.requestDraw == true) {
-              controller.askForDraw(whiteOrBlack);
-            }
-            if (action.resign == true) {
-              controller.resign(whiteOrBlack);
-            }
-            if (action.agreeDraw == true) {
-              synchronized (ServerChessView.this) {
-                ServerChessView.this.notifyAll();
-              }
-            }
-            if (action.promotionTo != null) {
-              synchronized (ServerChessView.this) {
-                ServerChessView.this.notifyAll();
-              }
-            }
-            actionRef.document(documentChange.getDocument().getId()).delete();
-          }
+    if (board == null) {
+      // new or woken up: the new controller sends the whole board
+      board = newBoard();
+    }
+    listen();
+  }
+
+  /**
+   * Listen for the actions of the player before there is a controller, for a room whose game is
+   * only made on its first action. The listener stays while the game sleeps, to hear the action
+   * that wakes it up. Called both by the server and when the game is made, so it only listens once.
+   */
+  public synchronized void listen() {
+    if (actionListener == null) {
+      actionListener = display.listen(data -> {
+        if (data.click != null || data.requestDraw || data.resign) {
+          mailbox.execute(() -> act(data));
+        } else {
+          // an answer, also a declined draw; the game carries on in the mailbox of the room
+          answer(data);
         }
-      })).start();
+      });
     }
   }
 
+  /**
+   * Read the document, and tell if it does not show this version of the game for this player, so
+   * that it needs the whole board again. Nothing is written.
+   *
+   * @param version the version of the game, see {@link #setVersion(long)}
+   * @param stale told on a thread of the transport if the document is missing, cannot be read or
+   *     shows something else
+   */
+  public void whenStale(long version, Runnable stale) {
+    display.read().whenComplete((document, error) -> {
+      if (error != null) {
+        System.err.println("Cannot read the board of " + player + ": " + error);
+        stale.run();
+        return;
+      }
+      Object shown = document == null ? null : document.get("version");
+      if (!(shown instanceof Number) || ((Number) shown).longValue() != version
+          || !Boolean.valueOf(whiteOrBlack).equals(document.get("whiteOrBlack"))
+          || player != null && !player.equals(document.get("player"))) {
+        stale.run();
+      }
+    });
+  }
+
+  /**
+   * The document stays as it is, so the board is only dropped from the heap.
+   */
   @Override
-  public synchronized boolean askForDraw() {
-    this.requestRef.add(ImmutableMap.of("askForDraw", true));
-    try {
-      wait();
-    } catch (InterruptedException e) {
-      throw new RuntimeException(e);
+  public void hibernate() {
+    controller = null;
+    board = null;
+    shown = null;
+  }
+
+  private void act(ActionData data) {
+    if (data.click != null) {
+      int i = (int) data.click.i;
+      int j = (int) data.click.j;
+      controller.click(getFile(i, j), getRank(i, j), whiteOrBlack);
+    }
+    if (data.requestDraw) {
+      controller.askForDraw(whiteOrBlack);
+    }
+    if (data.resign) {
+      controller.resign(whiteOrBlack);
     }
-    return action.agreeDraw;
   }
 
-  @Override
-  public synchronized String getPromoteTo() {
-    this.requestRef.add(ImmutableMap.of("promotionTo", true));
-    try {
-      wait();
-    } catch (InterruptedException e) {
-      throw new RuntimeException(e);
+  private synchronized void answer(ActionData data) {
+    if (answer != null) {
+      answer.complete(data);
+      answer = null;
+    }
+  }
+
+  private synchronized CompletableFuture<ActionData> ask(String question) {
+    // show the player what is asked about
+    flush();
+    if (answer != null) {
+      // the question before is not answered any more
+      answer.cancel(false);
     }
-    return this.action.promotionTo;
+    CompletableFuture<ActionData> asked = new CompletableFuture<>();
+    answer = asked;
+    display.ask(question);
+    return asked;
+  }
+
+  /**
+   * @param mailbox where the actions of the player go, the mailbox of the room
+   */
+  public void setMailbox(Executor mailbox) {
+    this.mailbox = mailbox;
   }
 
   @Override
-  public void close() {
-    // this.ref.rem(this.actionListener);
+  public boolean askForDraw() {
+    return askForDrawAsync().join();
+  }
+
+  @Override
+  public CompletableFuture<Boolean> askForDrawAsync() {
+    return ask("askForDraw").thenApply(data -> data.agreeDraw);
+  }
+
+  @Override
+  public String getPromoteTo() {
+    return getPromoteToAsync().join();
+  }
+
+  @Override
+  public CompletableFuture<String> getPromoteToAsync() {
+    return ask("promotionTo").thenApply(data -> data.promotionTo);
+  }
+
+  @Override
+  public synchronized void close() {
+    // stop listening, so that nothing holds on to the finished game
+    if (actionListener != null) {
+      actionListener.remove();
+    }
   }
 }
@@ -0,0 +1,139 @@
+package viewServer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import archive.GameJournal;
+import controller.ViewController;
+
+/**
+ * Plays rooms through an {@link InMemoryTransport} against a whole {@link Server}: the views, the
+ * mailboxes, the room threads and, given a directory, the journal, with no network. All the rooms
+ * play the same opening by clicks at once, and the report gives the time to open them, the time
+ * to play, the actions carried out a second and the writes to the boards.
+ */
+public class TransportLoad {
+  // a Ruy Lopez, castling by moving the king
+  private static final String[] MOVES = {"e2e4", "e7e5", "g1f3", "b8c6", "f1b5", "a7a6", "b5a4",
+      "g8f6", "e1g1", "f8e7", "f1e1", "b7b5", "a4b3", "d7d6", "c2c3", "e8g8", "h2h3", "c6a5", "b3c2",
+      "c7c5"};
+
+  private final InMemoryTransport transport = new InMemoryTransport();
+  private final Server server;
+  private final int rooms;
+
+  /**
+   * @param journal where the changes of the games go, or null for no journal
+   * @param rooms how many rooms play at once
+   */
+  public TransportLoad(GameJournal journal, int rooms) {
+    this.server = new Server(transport, null, journal);
+    this.rooms = rooms;
+  }
+
+  /**
+   * @return what was measured
+   */
+  public Report run() throws InterruptedException {
+    Report report = new Report(rooms);
+    long start = System.nanoTime();
+    for (int room = 0; room < rooms; room++) {
+      transport.addRoom("room" + room, "white" + room, "black" + room);
+    }
+    await();
+    report.openMillis = (System.nanoTime() - start) / 1000000;
+    long writes = transport.getWrites();
+    long actions = transport.getActions();
+
+    start = System.nanoTime();
+    for (int ply = 0; ply < MOVES.length; ply++) {
+      boolean white = ply % 2 == 0;
+      for (int room = 0; room < rooms; room++) {
+        click("room" + room, white, MOVES[ply].substring(0, 2));
+        click("room" + room, white, MOVES[ply].substring(2));
+      }
+    }
+    await();
+    report.playMillis = (System.nanoTime() - start) / 1000000;
+    report.actions = transport.getActions() - actions;
+    report.writes = transport.getWrites() - writes;
+    for (int room = 0; room < rooms; room++) {
+      ViewController game = server.getGame("room" + room);
+      if (game != null && game.getRecord().size() == MOVES.length) {
+        report.played++;
+      }
+    }
+    return report;
+  }
+
+  private void click(String roomLoc, boolean white, String square) {
+    int file = square.charAt(0) - 'a' + 1;
+    int rank = square.charAt(1) - '0';
+    if (white) {
+      transport.click(roomLoc, true, 8 - rank, file - 1);
+    } else {
+      transport.click(roomLoc, false, rank - 1, 8 - file);
+    }
+  }
+
+  /**
+   * Wait until the transport told everything, and every room carried it out; the writes of the
+   * last batches may still be on their way.
+   */
+  private void await() throws InterruptedException {
+    if (!transport.awaitDelivered(10, TimeUnit.MINUTES)) {
+      throw new IllegalStateException("The transport is stuck");
+    }
+    CountDownLatch done = new CountDownLatch(rooms);
+    for (int room = 0; room < rooms; room++) {
+      server.getRoom("room" + room).execute(done::countDown);
+    }
+    if (!done.await(10, TimeUnit.MINUTES)) {
+      throw new IllegalStateException("The rooms are stuck");
+    }
+  }
+
+  /**
+   * What a load measured.
+   */
+  public static class Report {
+    public final int rooms;
+    public long openMillis;
+    public long playMillis;
+    public long actions;
+    public long writes;
+    public int played;
+
+    Report(int rooms) {
+      this.rooms = rooms;
+    }
+
+    /**
+     * @return the actions carried out a second while the rooms played
+     */
+    public long getActionsPerSecond() {
+      return playMillis == 0 ? actions * 1000 : actions * 1000 / playMillis;
+    }
+
+    @Override
+    public String toString() {
+      return "rooms=" + rooms + "\nopenMillis=" + openMillis + "\nplayMillis=" + playMillis
+          + "\nactions=" + actions + "\nactionsPerSecond=" + getActionsPerSecond() + "\nwrites="
+          + writes + "\nplayed=" + played + "\n";
+    }
+  }
+
+  /**
+   * @param args the number of rooms, and a directory for the journal
+   */
+  public static void main(String[] args) throws IOException, InterruptedException {
+    int rooms = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+    GameJournal journal = args.length > 1 ? new GameJournal(new File(args[1])) : null;
+    System.out.print(new TransportLoad(journal, rooms).run());
+    if (journal != null) {
+      journal.close();
+    }
+  }
+}
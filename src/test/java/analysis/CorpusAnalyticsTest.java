@@ -0,0 +1,95 @@
+package analysis;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import archive.GameArchive;
+import model.Chess;
+import model.Move;
+import model.Record;
+import utility.TestUtility;
+
+public class CorpusAnalyticsTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static final String[] GAMES = { "FiftyMoveDraw", "ImpossibleCheckmate", "Stalemate",
+			"White_Checkmate", "ThreeFoldRepetition", "Knight_promotion_1" };
+
+	private List<Record> records = new ArrayList<>();
+	private File file;
+
+	@Before
+	public void archiveGames() throws Exception {
+		file = folder.newFile("games.archive");
+		try (GameArchive.Writer writer = new GameArchive.Writer(file, 256)) {
+			for (int i = 0; i < GAMES.length; i++) {
+				Chess chess = new Chess();
+				TestUtility.performRecordMoves(chess, "sampleGames/" + GAMES[i] + ".txt");
+				records.add(chess.getRecords());
+				writer.add(chess.getRecords(), i % 2 == 0 ? 0 : 1, null, null, 0, 0);
+			}
+		}
+	}
+
+	@Test
+	public void testReport() throws IOException {
+		CorpusReport report;
+		try (GameArchive archive = GameArchive.open(file)) {
+			assertTrue(archive.getSegmentCount() > 1);
+			report = new CorpusAnalytics(archive).run();
+		}
+
+		int plies = 0;
+		int captures = 0;
+		for (Record record : records) {
+			plies += record.size();
+			for (Move move : record)
+				if (move.getCapturedPiece() != null)
+					captures++;
+		}
+		assertEquals(GAMES.length, report.getGames());
+		assertEquals(plies, report.getPlies());
+		assertEquals((double) plies / GAMES.length, report.getAverageLength(), 1e-9);
+		assertEquals(0.5, report.getResultRate(0), 1e-9);
+		assertEquals(0.5, report.getResultRate(1), 1e-9);
+		assertEquals(0, report.getResultRate(-1), 1e-9);
+
+		long counted = 0;
+		for (int file = 1; file <= 8; file++)
+			for (int rank = 1; rank <= 8; rank++)
+				counted += report.getCaptures(file, rank);
+		assertEquals(captures, counted);
+		assertTrue(report.getPromotions() > 0);
+		assertTrue(report.getCastlings() > 0);
+
+		// FiftyMoveDraw and Stalemate, both drawn
+		long[] nimzo = report.getOpenings().get("E40");
+		assertEquals(2, nimzo[0]);
+		assertEquals(2, nimzo[2]);
+		assertTrue(report.toString().contains("E40"));
+	}
+
+	@Test
+	public void testSameAsOneSegment() throws IOException {
+		File single = folder.newFile("single.archive");
+		try (GameArchive.Writer writer = new GameArchive.Writer(single)) {
+			for (int i = 0; i < records.size(); i++)
+				writer.add(records.get(i), i % 2 == 0 ? 0 : 1, null, null, 0, 0);
+		}
+		try (GameArchive parallel = GameArchive.open(file); GameArchive sequential = GameArchive.open(single)) {
+			assertEquals(1, sequential.getSegmentCount());
+			assertEquals(new CorpusAnalytics(sequential).run().toString(),
+					new CorpusAnalytics(parallel).run().toString());
+		}
+	}
+}
@@ -0,0 +1,76 @@
+package analysis;
+
+import static org.junit.Assert.*;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class LongHashSetTest {
+
+	@Test
+	public void testAdd() {
+		LongHashSet set = new LongHashSet(100000);
+		Set<Long> expected = new HashSet<>();
+		Random random = new Random(29);
+		for (int i = 0; i < 50000; i++) {
+			// few bits, so that keys repeat
+			long key = random.nextInt(40000) * 0x100000001L;
+			assertEquals(expected.add(key), set.add(key));
+		}
+		assertEquals(expected.size(), set.size());
+		for (long key : expected)
+			assertTrue(set.contains(key));
+		assertFalse(set.contains(-1));
+
+		Set<Long> visited = new HashSet<>();
+		set.forEach(visited::add);
+		assertEquals(expected, visited);
+	}
+
+	@Test
+	public void testZero() {
+		LongHashSet set = new LongHashSet(10);
+		assertFalse(set.contains(0));
+		assertTrue(set.add(0));
+		assertFalse(set.add(0));
+		assertTrue(set.contains(0));
+		assertEquals(1, set.size());
+	}
+
+	@Test
+	public void testMaxSize() {
+		int max = LongHashSet.MAX_SIZE;
+		// the full table still fits a direct buffer, without growing once more
+		assertTrue((long) LongHashSet.tableSize(max) * 8 <= Integer.MAX_VALUE);
+		assertTrue(max + max / 3 <= LongHashSet.tableSize(max));
+		assertFalse(new LongHashSet(max).isFull());
+		try {
+			new LongHashSet(max + 1);
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	@Test
+	public void testFull() {
+		LongHashSet set = new LongHashSet(3);
+		set.add(1);
+		set.add(2);
+		set.add(3);
+		assertTrue(set.isFull());
+		assertFalse(set.add(2));
+		try {
+			set.add(4);
+			fail();
+		} catch (IllegalStateException e) {
+		}
+
+		set.clear();
+		assertEquals(0, set.size());
+		assertFalse(set.contains(2));
+		assertTrue(set.add(4));
+	}
+}
@@ -0,0 +1,54 @@
+package analysis;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class LongIntMapTest {
+
+	@Test
+	public void testAdd() {
+		LongIntMap map = new LongIntMap(1 << 16);
+		Map<Long, Integer> expected = new HashMap<>();
+		Random random = new Random(29);
+		for (int i = 0; i < 100000; i++) {
+			long key = random.nextInt(20000) - 10000;
+			assertEquals((int) expected.merge(key, 2, Integer::sum), map.add(key, 2));
+		}
+		assertEquals(expected.size(), map.size());
+		for (Map.Entry<Long, Integer> entry : expected.entrySet())
+			assertEquals((int) entry.getValue(), map.get(entry.getKey()));
+		assertEquals(0, map.get(20000));
+		assertFalse(map.containsKey(20000));
+
+		Map<Long, Integer> visited = new HashMap<>();
+		map.forEach(visited::put);
+		assertEquals(expected, visited);
+	}
+
+	@Test
+	public void testFull() {
+		LongIntMap map = new LongIntMap(2);
+		map.add(0, 1);
+		map.add(7, 1);
+		assertTrue(map.isFull());
+		assertEquals(3, map.add(0, 2));
+		try {
+			map.add(8, 1);
+			fail();
+		} catch (IllegalStateException e) {
+		}
+		map.clear();
+		assertFalse(map.containsKey(0));
+		assertEquals(1, map.add(8, 1));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMaxSize() {
+		new LongIntMap(LongHashSet.MAX_SIZE + 1);
+	}
+}
@@ -0,0 +1,96 @@
+package analysis;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import archive.GameStore;
+
+public class PositionCounterTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Map<Long, Integer> count(PositionCounter counter) throws IOException {
+		Map<Long, Integer> counts = new HashMap<>();
+		counter.forEach((key, count) -> assertNull(counts.put(key, count)));
+		return counts;
+	}
+
+	@Test
+	public void testInMemory() throws IOException {
+		try (PositionCounter counter = new PositionCounter(100, folder.getRoot())) {
+			counter.add(5);
+			counter.add(-5);
+			counter.add(5);
+
+			Map<Long, Integer> counts = count(counter);
+			assertFalse(counter.hasSpilled());
+			assertEquals(2, counts.size());
+			assertEquals(2, (int) counts.get(5L));
+			assertEquals(3, counter.getTotal());
+		}
+	}
+
+	@Test
+	public void testSpill() throws IOException {
+		Map<Long, Integer> expected = new HashMap<>();
+		Random random = new Random(29);
+		try (PositionCounter counter = new PositionCounter(1000, folder.getRoot())) {
+			for (int i = 0; i < 100000; i++) {
+				long key = random.nextLong() | 0xFFL;
+				// half of the keys share their top bits, so that their
+				// partition has to be split again
+				if (i % 2 == 0)
+					key = key & 0x03FF_FFFF_FFFF_FFFFL;
+				key = key & ~0xFF00L | (random.nextInt(40) << 8);
+				expected.merge(key, 1, Integer::sum);
+				counter.add(key);
+			}
+			assertEquals(expected, count(counter));
+			assertTrue(counter.hasSpilled());
+		}
+		assertEquals(0, folder.getRoot().list().length);
+	}
+
+	@Test
+	public void testSampleGames() throws IOException {
+		StringBuilder pgn = new StringBuilder();
+		for (String name : new String[] { "FiftyMoveDraw", "ThreeFoldRepetition" }) {
+			pgn.append(new String(Files.readAllBytes(Paths.get("sampleGames/" + name + ".txt"))));
+			pgn.append("\n\n");
+		}
+		File storeFile = folder.newFile("games.store");
+		GameStore.importPgn(new StringReader(pgn.toString()), storeFile);
+
+		try (GameStore store = GameStore.open(storeFile);
+				PositionCounter small = new PositionCounter(64, folder.newFolder("spill"));
+				PositionCounter large = new PositionCounter(1 << 16, folder.getRoot())) {
+			PositionCount spilled = new PositionCount(small);
+			spilled.addAll(store);
+			spilled.finish();
+			PositionCount inMemory = new PositionCount(large);
+			inMemory.addAll(store);
+			inMemory.finish();
+
+			assertTrue(small.hasSpilled());
+			assertFalse(large.hasSpilled());
+			assertEquals(2 + store.getPlyCount(0) + store.getPlyCount(1), small.getTotal());
+			assertEquals(inMemory.getDistinct(), spilled.getDistinct());
+			assertEquals(inMemory.getUnique(), spilled.getUnique());
+			// one of the games ends with a threefold repetition
+			assertEquals(3, spilled.getMostFrequentCount());
+			assertTrue(spilled.getDistinct() < small.getTotal() - 3);
+		}
+	}
+}
@@ -0,0 +1,145 @@
+package archive;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import model.Chess;
+import model.MoveCode;
+import model.Record;
+import utility.TestUtility;
+
+public class GameArchiveTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static final String[] GAMES = { "FiftyMoveDraw", "ImpossibleCheckmate", "Stalemate",
+			"White_Checkmate", "ThreeFoldRepetition" };
+
+	private List<Record> records = new ArrayList<>();
+	private File file;
+
+	@Before
+	public void playGames() throws Exception {
+		for (String name : GAMES) {
+			Chess chess = new Chess();
+			TestUtility.performRecordMoves(chess, "sampleGames/" + name + ".txt");
+			records.add(chess.getRecords());
+		}
+		file = new File(folder.getRoot(), "games.archive");
+	}
+
+	private void write(int from, int to, int segmentSize) throws IOException {
+		try (GameArchive.Writer writer = new GameArchive.Writer(file, segmentSize)) {
+			for (int i = from; i < to; i++)
+				writer.add(records.get(i), i % 3 - 1, "white" + i, i == 0 ? null : "black" + i, 1000L * i,
+						1000L * i + 500);
+			assertEquals(to, writer.size());
+		}
+	}
+
+	private void check(GameArchive archive) throws IOException {
+		int game = 0;
+		for (int s = 0; s < archive.getSegmentCount(); s++) {
+			GameArchive.Segment segment = archive.getSegment(s);
+			for (int g = 0; g < segment.size(); g++, game++) {
+				Record record = records.get(game);
+				assertEquals(game % 3 - 1, segment.getResult(g));
+				assertEquals(record.size(), segment.getPlyCount(g));
+				for (int ply = 0; ply < record.size(); ply++)
+					assertEquals(MoveCode.encode(record.get(ply)), segment.getMove(g, ply));
+				assertEquals("white" + game, segment.getWhite(g));
+				assertEquals(game == 0 ? "" : "black" + game, segment.getBlack(g));
+				assertEquals(1000L * game, segment.getStarted(g));
+				assertEquals(1000L * game + 500, segment.getEnded(g));
+				assertEquals(record.getEco(), segment.getEco(g));
+			}
+		}
+		assertEquals(archive.size(), game);
+	}
+
+	@Test
+	public void testWriteAndRead() throws IOException {
+		// small segments, so that every game is sealed on its own
+		write(0, GAMES.length, 64);
+		try (GameArchive archive = GameArchive.open(file)) {
+			assertEquals(GAMES.length, archive.size());
+			assertEquals(GAMES.length, archive.getSegmentCount());
+			check(archive);
+			assertEquals("E40", archive.getSegment(2).getEco(0));
+		}
+	}
+
+	@Test
+	public void testSealListener() throws IOException {
+		int[] sealed = new int[1];
+		try (GameArchive.Writer writer = new GameArchive.Writer(file, 1 << 20)) {
+			writer.setSealListener(() -> sealed[0]++);
+			writer.add(records.get(0), 1, "white", "black", 0, 500);
+			// still in the buffer
+			assertEquals(0, sealed[0]);
+			writer.seal();
+			assertEquals(1, sealed[0]);
+			writer.seal();
+			assertEquals(1, sealed[0]);
+			writer.add(records.get(1), 1, "white", "black", 0, 500);
+		}
+		// sealed by the close
+		assertEquals(2, sealed[0]);
+	}
+
+	@Test
+	public void testOneSegment() throws IOException {
+		write(0, GAMES.length, 1 << 20);
+		try (GameArchive archive = GameArchive.open(file)) {
+			assertEquals(1, archive.getSegmentCount());
+			check(archive);
+			// the columns are compressed: a game takes at least 40 raw bytes
+			// besides its moves
+			int plies = 0;
+			for (Record record : records)
+				plies += record.size();
+			assertTrue(file.length() < 2 * plies + 40 * GAMES.length);
+		}
+	}
+
+	@Test
+	public void testAppend() throws IOException {
+		write(0, 2, 1 << 20);
+		write(2, GAMES.length, 1 << 20);
+		try (GameArchive archive = GameArchive.open(file)) {
+			assertEquals(2, archive.getSegmentCount());
+			check(archive);
+		}
+	}
+
+	@Test
+	public void testMissingFooter() throws IOException {
+		write(0, GAMES.length, 64);
+		// the footer is lost, and a segment is cut short
+		long footer;
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.seek(raf.length() - 16);
+			footer = raf.readLong();
+			raf.setLength(footer - 10);
+		}
+		try (GameArchive archive = GameArchive.open(file)) {
+			assertEquals(GAMES.length - 1, archive.getSegmentCount());
+			check(archive);
+		}
+		write(GAMES.length - 1, GAMES.length, 64);
+		try (GameArchive archive = GameArchive.open(file)) {
+			assertEquals(GAMES.length, archive.size());
+			check(archive);
+		}
+	}
+}
@@ -0,0 +1,137 @@
+package archive;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import model.Chess;
+import model.ChessCodec;
+import model.InvalidMoveException;
+import model.Move;
+import model.Win;
+
+public class GameJournalTest {
+	private File directory;
+	private final List<GameJournal> journals = new ArrayList<>();
+
+	@Before
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("journal").toFile();
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		for (GameJournal journal : journals)
+			journal.close();
+		for (File file : directory.listFiles())
+			file.delete();
+		directory.delete();
+	}
+
+	private GameJournal open(long segmentSize) throws IOException {
+		GameJournal journal = new GameJournal(directory, segmentSize);
+		journals.add(journal);
+		return journal;
+	}
+
+	/**
+	 * make the moves, and append them to the journal
+	 */
+	private static void play(GameJournal journal, String room, Chess chess, String... moves)
+			throws InvalidMoveException {
+		for (String command : moves) {
+			Move move = chess.interpreteMoveCommand(command);
+			chess.makeMove(move);
+			journal.move(room, ChessCodec.encodeMove(move));
+		}
+	}
+
+	@Test
+	public void testRecoverAfterCrash() throws IOException, InvalidMoveException {
+		GameJournal journal = open(1 << 20);
+		Chess playing = new Chess();
+		journal.snapshot("playing", ChessCodec.encode(playing));
+		play(journal, "playing", playing, "e4", "e5", "Bc4", "Nc6", "Qh5", "Nf6");
+		playing.getDrawManager().setRightToRequestDraw(true);
+		journal.draws("playing", ChessCodec.encodeDraws(playing.getDrawManager()));
+
+		Chess mated = new Chess();
+		journal.snapshot("mated", ChessCodec.encode(mated));
+		play(journal, "mated", mated, "e4", "e5", "Bc4", "Nc6", "Qh5", "Nf6", "Qxf7#");
+		journal.end("mated", ChessCodec.encodeEnd(mated.getRecords().getEndGame()));
+
+		journal.snapshot("closed", ChessCodec.encode(new Chess()));
+		journal.close("closed");
+		journal.sync();
+
+		// the journal is not closed, as after a crash
+		GameJournal again = open(1 << 20);
+		assertEquals(2, again.getRecovered().size());
+		assertArrayEquals(ChessCodec.encode(playing), again.getRecovered().get("playing"));
+		Chess recovered = ChessCodec.decode(again.getRecovered().get("playing"));
+		assertFalse(recovered.getDrawManager().canAskFordraw(true));
+		assertEquals(Win.WHITECHECKMATE, ChessCodec.decode(again.getRecovered().get("mated")).getRecords().getEndGame());
+		assertNull(again.getRecovered().get("closed"));
+	}
+
+	@Test
+	public void testTornRecordIsDropped() throws IOException, InvalidMoveException {
+		GameJournal journal = open(1 << 20);
+		Chess chess = new Chess();
+		journal.snapshot("room", ChessCodec.encode(chess));
+		play(journal, "room", chess, "d4", "d5");
+		journal.sync();
+		byte[] before = ChessCodec.encode(chess);
+		play(journal, "room", chess, "c4");
+		journal.close();
+
+		File[] segments = directory.listFiles();
+		assertEquals(1, segments.length);
+		try (RandomAccessFile file = new RandomAccessFile(segments[0], "rw")) {
+			// the last record was cut off by the crash
+			file.setLength(file.length() - 1);
+		}
+		assertArrayEquals(before, open(1 << 20).getRecovered().get("room"));
+	}
+
+	@Test
+	public void testOldSegmentsAreDeleted() throws IOException, InvalidMoveException {
+		GameJournal journal = open(512);
+		Chess[] games = new Chess[8];
+		for (int i = 0; i < games.length; i++) {
+			games[i] = new Chess();
+			journal.snapshot("room" + i, ChessCodec.encode(games[i]));
+		}
+		// answered between the moves, as a room answers on its own thread
+		Queue<String> requests = new ConcurrentLinkedQueue<>();
+		journal.setSnapshotRequests(requests::add);
+		String[] moves = { "Nf3", "Nf6", "Ng1", "Ng8" };
+		for (int round = 0; round < 40; round++) {
+			for (int i = 0; i < games.length; i++)
+				play(journal, "room" + i, games[i], moves[round % moves.length]);
+			journal.sync();
+			String room;
+			while ((room = requests.poll()) != null)
+				journal.snapshot(room, ChessCodec.encode(games[Integer.parseInt(room.substring(4))]));
+		}
+		journal.close();
+		// rotated many times, but only the last few segments are kept
+		assertTrue(journal.getSegments() <= 4);
+
+		GameJournal again = open(512);
+		assertEquals(games.length, again.getRecovered().size());
+		for (int i = 0; i < games.length; i++)
+			assertArrayEquals(ChessCodec.encode(games[i]), again.getRecovered().get("room" + i));
+	}
+}
@@ -0,0 +1,86 @@
+package archive;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import model.Chess;
+import model.Material;
+
+public class MaterialSearchTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private GameStore store;
+
+	@Before
+	public void setupStore() throws IOException {
+		StringBuilder pgn = new StringBuilder();
+		for (String name : new String[] { "FiftyMoveDraw", "ImpossibleCheckmate", "Stalemate", "White_Checkmate" }) {
+			pgn.append(new String(Files.readAllBytes(Paths.get("sampleGames/" + name + ".txt"))));
+			pgn.append("\n\n");
+		}
+		File file = folder.newFile("games.store");
+		assertEquals(4, GameStore.importPgn(new StringReader(pgn.toString()), file));
+		store = GameStore.open(file);
+	}
+
+	@After
+	public void closeStore() throws IOException {
+		store.close();
+	}
+
+	@Test
+	public void testStoredGame() {
+		assertEquals(4, store.size());
+		assertEquals(242, store.getPlyCount(0));
+		assertEquals(0, store.getResult(0));
+		assertEquals(1, store.getResult(3));
+
+		Chess chess = new Chess();
+		store.replay(0, chess, 0, store.getPlyCount(0));
+		int lastSpan = store.getSpanCount(0) - 1;
+		assertEquals(Material.of(chess), store.getSpanMaterial(0, lastSpan));
+		assertEquals(242, store.getSpanLastPly(0, lastSpan));
+		assertEquals("KRBvKR", Material.toString(store.getSpanMaterial(0, lastSpan)));
+	}
+
+	@Test
+	public void testMaterialSearch() {
+		MaterialSearch search = new MaterialSearch(store, 2);
+
+		try (MaterialSearch.Results results = search.search(PositionQuery.material("KBvKB"))) {
+			assertTrue(results.hasNext());
+			SearchMatch match = results.next();
+			assertEquals(1, match.getGame());
+			assertEquals(253, match.getPly());
+			assertFalse(results.hasNext());
+		}
+		assertEquals(1, search.count(PositionQuery.material("KRvKRB")));
+		assertEquals(0, search.count(PositionQuery.rookEndgame()));
+	}
+
+	@Test
+	public void testPositionSearch() {
+		MaterialSearch search = new MaterialSearch(store, 2);
+		PositionQuery query = PositionQuery.material("KBPvKP").and(PositionQuery.pawnsOnOneWing());
+
+		try (MaterialSearch.Results results = search.search(query)) {
+			assertTrue(results.hasNext());
+			SearchMatch match = results.next();
+			assertEquals(2, match.getGame());
+			assertTrue(match.getPly() >= 213);
+			assertFalse(results.hasNext());
+		}
+	}
+}
@@ -0,0 +1,80 @@
+package controller;
+
+import static org.junit.Assert.*;
+
+import java.io.StringWriter;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+
+import org.junit.Test;
+
+import view.CountingViewer;
+import view.IChessViewerControl;
+
+public class ActionReplayerTest {
+
+	@Test
+	public void testRecordAndReplay() {
+		StringWriter log = new StringWriter();
+		ActionRecorder recorder = new ActionRecorder(log);
+		Queue<String> answers = new ArrayDeque<>(Arrays.asList("no"));
+		CountingViewer white = new CountingViewer(answers);
+		CountingViewer black = new CountingViewer(answers);
+		DualViewChessControl game = new DualViewChessControl(recorder.record(white), recorder.record(black));
+		IChessViewerControl whiteControl = white.getController();
+		IChessViewerControl blackControl = black.getController();
+
+		whiteControl.click(5, 2, true);
+		whiteControl.click(5, 4, true);
+		blackControl.makeMove(false, "e5");
+		whiteControl.askForDraw(true);
+		whiteControl.makeMove(true, "Nf3");
+		blackControl.makeMove(false, "Qh4??");
+		blackControl.undo(false);
+		blackControl.resign(false);
+
+		List<String> lines = Arrays.asList(log.toString().split("\n"));
+		assertEquals(Arrays.asList("click\tw\te2", "click\tw\te4", "move\tb\te5", "draw\tw\t\tno", "move\tw\tNf3",
+				"move\tb\tQh4??", "undo\tb\t", "resign\tb\t"), lines);
+
+		ActionReplayer replayer = new ActionReplayer(lines);
+		ActionReplayer.Report report = replayer.replay();
+		assertEquals(8, report.getActions());
+		assertEquals(white.getUpDatePieces() + black.getUpDatePieces(), report.getUpDatePieces());
+		assertEquals(white.getRepaints() + black.getRepaints(), report.getRepaints());
+		assertTrue(report.getLatency(50) <= report.getLatency(100));
+		assertTrue(game.hasEnd());
+
+		ActionReplayer.Report twice = replayer.replay(2);
+		assertEquals(16, twice.getActions());
+		assertEquals(2 * report.getUpDatePieces(), twice.getUpDatePieces());
+	}
+
+	@Test
+	public void testPromotionAnswer() {
+		StringWriter log = new StringWriter();
+		ActionRecorder recorder = new ActionRecorder(log);
+		Queue<String> answers = new ArrayDeque<>(Arrays.asList("N"));
+		CountingViewer white = new CountingViewer(answers);
+		CountingViewer black = new CountingViewer(answers);
+		DualViewChessControl game = new DualViewChessControl(recorder.record(white), recorder.record(black));
+		String[] moves = { "h4", "g5", "hxg5", "h6", "gxh6", "Nf6", "h7", "Ng8" };
+		for (int i = 0; i < moves.length; i++)
+			(i % 2 == 0 ? white : black).getController().makeMove(i % 2 == 0, moves[i]);
+		white.getController().click(8, 7, true);
+		white.getController().click(7, 8, true);
+
+		assertTrue(log.toString().endsWith("click\tw\th7\nclick\tw\tg8\tN\n"));
+		assertEquals('N', game.chess.spotAt(7, 8).getPiece().getType());
+
+		ActionReplayer replayer = new ActionReplayer(Arrays.asList(log.toString().split("\n")));
+		assertEquals(10, replayer.replay().getActions());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidAction() {
+		new ActionReplayer(Arrays.asList("jump\tw\te4"));
+	}
+}
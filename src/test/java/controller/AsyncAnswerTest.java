@@ -0,0 +1,164 @@
+package controller;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import view.CountingViewer;
+
+public class AsyncAnswerTest {
+	private AnsweringViewer white;
+	private AnsweringViewer black;
+	private ViewController control;
+
+	/**
+	 * Answers when the test says so.
+	 */
+	private static class AnsweringViewer extends CountingViewer {
+		CompletableFuture<Boolean> draw = new CompletableFuture<>();
+		CompletableFuture<String> promoteTo = new CompletableFuture<>();
+		final List<String> printOuts = new ArrayList<>();
+		String lastPrintOut;
+		long version;
+
+		AnsweringViewer() {
+			super(new ArrayDeque<>());
+		}
+
+		@Override
+		public void printOut(String message) {
+			lastPrintOut = message;
+			printOuts.add(message);
+			super.printOut(message);
+		}
+
+		@Override
+		public void setVersion(long version) {
+			this.version = version;
+		}
+
+		@Override
+		public CompletableFuture<Boolean> askForDrawAsync() {
+			return draw;
+		}
+
+		@Override
+		public CompletableFuture<String> getPromoteToAsync() {
+			return promoteTo;
+		}
+	}
+
+	@Before
+	public void setUp() {
+		white = new AnsweringViewer();
+		black = new AnsweringViewer();
+		control = new DualViewChessControl(white, black);
+	}
+
+	// a white pawn on b7 that can take the rook on a8
+	private void toPromotion() {
+		String[] moves = { "a4", "b5", "axb5", "a6", "bxa6", "Bb7", "axb7", "Nc6" };
+		for (int i = 0; i < moves.length; i++)
+			assertTrue(moves[i], control.makeMove(i % 2 == 0, moves[i]));
+		control.click(2, 7, true);
+		control.click(1, 8, true);
+	}
+
+	@Test
+	public void testPromotionWaits() {
+		toPromotion();
+		assertFalse(control.getRecords().contains("xa8"));
+		assertFalse(control.makeMove(true, "Ra2"));
+		assertEquals("Please choose the piece to promote to", white.lastPrintOut);
+
+		white.promoteTo.complete("N");
+		assertTrue(control.getRecords().contains("b7xa8(N)"));
+		assertTrue(control.makeMove(false, "Qxa8"));
+	}
+
+	@Test
+	public void testPromotionTimesOut() throws InterruptedException {
+		control.setAnswerTimeout(50);
+		toPromotion();
+		for (int i = 0; i < 100 && !control.getRecords().contains("xa8"); i++)
+			Thread.sleep(20);
+		assertTrue(control.getRecords().contains("b7xa8(Q)"));
+		// too late
+		white.promoteTo.complete("N");
+		assertFalse(control.getRecords().contains("(N)"));
+	}
+
+	@Test
+	public void testUndoWithdrawsPromotion() {
+		toPromotion();
+		control.undo(true);
+		white.promoteTo.complete("R");
+		assertFalse(control.getRecords().contains("xa8"));
+	}
+
+	@Test
+	public void testResignWithdrawsPromotion() {
+		toPromotion();
+		control.resign(true);
+		assertTrue(control.hasEnd());
+		int played = control.getRecord().size();
+		white.promoteTo.complete("Q");
+		assertFalse(control.getRecords().contains("xa8"));
+		assertEquals(played, control.getRecord().size());
+	}
+
+	@Test
+	public void testDrawAgreed() {
+		control.askForDraw(true);
+		assertFalse(control.hasEnd());
+		black.draw.complete(true);
+		assertTrue(control.hasEnd());
+	}
+
+	@Test
+	public void testMoveDeclinesDraw() {
+		control.askForDraw(true);
+		assertTrue(control.makeMove(true, "e4"));
+		assertTrue(white.printOuts.contains("Request declined"));
+		black.draw.complete(true);
+		assertFalse(control.hasEnd());
+		control.askForDraw(true);
+		assertEquals("You cannot request for draw again now.", white.lastPrintOut);
+	}
+
+	@Test
+	public void testVersionFollowsTheGame() {
+		control.askForDraw(true);
+		black.draw.complete(false);
+		assertEquals(control.getSnapshot().getVersion(), white.version);
+		// the chosen pawn
+		control.click(5, 2, true);
+		assertEquals(control.getSnapshot().getVersion(), white.version);
+		control.click(5, 4, true);
+		assertEquals(control.getSnapshot().getVersion(), black.version);
+		control.undo(false);
+		assertEquals(control.getSnapshot().getVersion(), black.version);
+		control.resign(true);
+		assertEquals(control.getSnapshot().getVersion(), white.version);
+		control.restart();
+		assertEquals(control.getSnapshot().getVersion(), white.version);
+	}
+
+	@Test
+	public void testAnswersRunOnTheExecutor() {
+		ArrayDeque<Runnable> later = new ArrayDeque<>();
+		control.setExecutor(later::add);
+		control.askForDraw(false);
+		white.draw.complete(true);
+		assertFalse(control.hasEnd());
+		assertEquals(1, later.size());
+		later.poll().run();
+		assertTrue(control.hasEnd());
+	}
+}
@@ -0,0 +1,64 @@
+package controller;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import model.Chess;
+import model.Move;
+import model.MoveCode;
+import view.CountingViewer;
+
+public class GameSnapshotTest {
+
+	private static Chess play(String... moves) {
+		Chess chess = new Chess();
+		for (String move : moves) {
+			Move legal = MoveCode.toMove(chess, MoveCode.parse(move));
+			assertNotNull(move, legal);
+			chess.makeMove(legal);
+		}
+		return chess;
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		// castling, En Passant and a promotion to a knight
+		Chess chess = play("e2e4", "g8f6", "e4e5", "d7d5", "e5d6", "e8d7", "d6c7", "d8e8", "c7b8n", "d7d8",
+				"g1f3", "h7h6", "f1c4", "h6h5", "e1g1");
+		chess.getDrawManager().setRightToRequestDraw(false);
+		File file = File.createTempFile("snapshot", ".game");
+		try {
+			GameSnapshot.of(chess).write(file);
+			assertEquals(4 + 4 + 6 + 2 * 15, file.length());
+			Chess restored = GameSnapshot.read(file).toChess();
+			assertEquals(chess.toFEN(), restored.toFEN());
+			assertEquals(chess.getRecords().toString(), restored.getRecords().toString());
+			assertFalse(restored.getDrawManager().canAskFordraw(false));
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testWakeUp() {
+		CountingViewer white = new CountingViewer(new java.util.ArrayDeque<>());
+		CountingViewer black = new CountingViewer(new java.util.ArrayDeque<>());
+		DualViewChessControl game = new DualViewChessControl(white, black);
+		assertTrue(game.makeMove(true, "e4"));
+		assertTrue(game.makeMove(false, "e5"));
+		assertTrue(game.canHibernate());
+
+		DualViewChessControl woken = new DualViewChessControl(white, black, game.getSnapshot());
+		assertSame(woken, white.getController());
+		assertEquals(game.getRecords(), woken.getRecords());
+		assertEquals(game.getPositionKey(), woken.getPositionKey());
+		assertTrue(woken.makeMove(true, "Nf3"));
+
+		woken.resign(true);
+		assertFalse(woken.canHibernate());
+	}
+}
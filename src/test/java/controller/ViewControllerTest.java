@@ -0,0 +1,93 @@
+package controller;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import view.BoardDelta;
+import view.CountingViewer;
+
+public class ViewControllerTest {
+	private DeltaViewer white;
+	private DeltaViewer black;
+
+	/**
+	 * Keeps the squares of every delta, like "e4P" or "e2-".
+	 */
+	private static class DeltaViewer extends CountingViewer {
+		private final List<List<String>> deltas = new ArrayList<>();
+
+		DeltaViewer() {
+			super(new ArrayDeque<>());
+		}
+
+		@Override
+		public void upDateSquares(BoardDelta changes) {
+			List<String> squares = new ArrayList<>();
+			for (int i = 0; i < changes.size(); i++)
+				squares.add("" + (char) ('a' + changes.getFile(i) - 1) + changes.getRank(i)
+						+ (changes.getType(i) == 0 ? '-' : changes.getType(i)));
+			deltas.add(squares);
+			super.upDateSquares(changes);
+		}
+
+		List<String> last() {
+			return deltas.get(deltas.size() - 1);
+		}
+	}
+
+	@Before
+	public void setUp() {
+		white = new DeltaViewer();
+		black = new DeltaViewer();
+		new DualViewChessControl(white, black);
+	}
+
+	@Test
+	public void testFullBoardOnlyAtStart() {
+		assertEquals(64, white.getUpDatePieces() + white.getClearLabels());
+		assertTrue(white.deltas.isEmpty());
+		white.getController().restart();
+		assertEquals(128, white.getUpDatePieces() + white.getClearLabels());
+	}
+
+	@Test
+	public void testClicks() {
+		white.getController().click(5, 2, true);
+		assertEquals(1, white.deltas.size());
+		assertTrue(white.last().isEmpty());
+		assertTrue(black.deltas.isEmpty());
+
+		white.getController().click(5, 4, true);
+		assertEquals(2, white.deltas.size());
+		assertEquals(1, black.deltas.size());
+		assertEquals("[e2-, e4P]", white.last().toString());
+		assertEquals(white.last(), black.last());
+	}
+
+	private boolean whiteToMove = true;
+
+	private void play(String... moves) {
+		for (String move : moves) {
+			assertTrue(move, (whiteToMove ? white : black).getController().makeMove(whiteToMove, move));
+			whiteToMove = !whiteToMove;
+		}
+	}
+
+	@Test
+	public void testSpecialMoves() {
+		play("e4", "a6", "e5", "d5", "exd6");
+		assertEquals("[e5-, d6P, d5-]", white.last().toString());
+		play("a5", "Nf3", "a4", "Bd3", "a3", "O-O");
+		assertEquals("[e1-, g1K, h1-, f1R]", white.last().toString());
+
+		black.getController().undo(false);
+		assertEquals("[e1K, g1-, h1R, f1-]", black.last().toString());
+		assertEquals(black.last(), white.last());
+	}
+}
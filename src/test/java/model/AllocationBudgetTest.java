@@ -0,0 +1,110 @@
+package model;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import utility.TestUtility;
+
+/**
+ * Replays the sample games and measures the bytes allocated by each step of
+ * the move pipeline on the current thread. A step fails when its average for
+ * one ply goes over the budget of allocation-budget.properties, so a change
+ * that brings back garbage on the hot path is noticed.
+ */
+public class AllocationBudgetTest {
+	private static final String[] GAMES = { "sampleGames/FiftyMoveDraw.txt", "sampleGames/ImpossibleCheckmate.txt",
+			"sampleGames/Stalemate.txt", "sampleGames/ThreeFoldRepetition.txt", "sampleGames/White_Checkmate.txt",
+			"sampleGames/Knight_promotion_1.txt", "sampleGames/Pawn_promotion_1.txt",
+			"sampleGames/White_Short_Castling_success.txt" };
+	// replays before measuring, so the compiled code is measured
+	private static final int WARMUP = 20;
+
+	private static com.sun.management.ThreadMXBean threads;
+	private static List<List<String>> games;
+	private static Properties budgets;
+
+	private interface Step {
+		void run(Chess chess, Move move, String command) throws InvalidMoveException;
+	}
+
+	@BeforeClass
+	public static void setUpClass() throws IOException {
+		Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+		threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+		threads.setThreadAllocatedMemoryEnabled(true);
+		games = new ArrayList<>();
+		for (String game : GAMES)
+			games.add(TestUtility.getMoveString(game));
+		budgets = new Properties();
+		try (InputStream in = AllocationBudgetTest.class.getResourceAsStream("/allocation-budget.properties")) {
+			budgets.load(in);
+		}
+		budgets.putAll(System.getProperties());
+	}
+
+	@Test
+	public void testMakeMove() throws InvalidMoveException {
+		checkBudget("makeMove", (chess, move, command) -> chess.makeMove(move));
+	}
+
+	@Test
+	public void testGetReachableSquares() throws InvalidMoveException {
+		checkBudget("getReachableSquares", (chess, move, command) -> {
+			List<Piece> pieces = chess.getWhoseTurn() ? chess.white : chess.black;
+			for (int i = 0; i < pieces.size(); i++)
+				pieces.get(i).getReachableSquares();
+		});
+	}
+
+	@Test
+	public void testInterpreteMoveCommand() throws InvalidMoveException {
+		checkBudget("interpreteMoveCommand", (chess, move, command) -> chess.interpreteMoveCommand(command));
+	}
+
+	private void checkBudget(String step, Step measured) throws InvalidMoveException {
+		long budget = Long.parseLong(budgets.getProperty("allocation.budget." + step));
+		for (int i = 0; i < WARMUP; i++)
+			replay(measured);
+		long perPly = replay(measured);
+		assertTrue(step + " allocates " + perPly + " bytes per ply, the budget is " + budget, perPly <= budget);
+	}
+
+	/**
+	 * replay all the games, measuring one step before each move is made
+	 *
+	 * @return the average bytes the step allocated for one ply
+	 */
+	private long replay(Step measured) throws InvalidMoveException {
+		long thread = Thread.currentThread().getId();
+		// what measuring nothing costs
+		long overhead = threads.getThreadAllocatedBytes(thread);
+		overhead = threads.getThreadAllocatedBytes(thread) - overhead;
+		long bytes = 0;
+		int plies = 0;
+		for (List<String> game : games) {
+			Chess chess = new Chess();
+			for (String command : game) {
+				Move move = chess.interpreteMoveCommand(command);
+				int made = chess.getRecords().size();
+				long before = threads.getThreadAllocatedBytes(thread);
+				measured.run(chess, move, command);
+				bytes += threads.getThreadAllocatedBytes(thread) - before - overhead;
+				if (chess.getRecords().size() == made)
+					chess.makeMove(move);
+				plies++;
+			}
+		}
+		return bytes / plies;
+	}
+}
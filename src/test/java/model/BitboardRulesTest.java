@@ -0,0 +1,59 @@
+package model;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class BitboardRulesTest {
+	private static final long MAX_NODES = 100000;
+
+	private static long perft(BitboardRules position, int depth) {
+		if (depth == 0)
+			return 1;
+		long count = 0;
+		for (int move : position.legalMoves()) {
+			BitboardRules next = new BitboardRules(position);
+			next.play(move);
+			count += perft(next, depth - 1);
+		}
+		return count;
+	}
+
+	@Test
+	public void testSuite() {
+		for (Perft.Reference reference : Perft.getSuite()) {
+			BitboardRules position = new BitboardRules(reference.getFen());
+			assertEquals(reference.getFen(), position.toFEN());
+			for (int depth = 1; depth <= reference.getMaxDepth() && reference.getCount(depth) <= MAX_NODES; depth++)
+				assertEquals(reference.getFen() + " depth " + depth, reference.getCount(depth), perft(position, depth));
+		}
+	}
+
+	@Test
+	public void testPlay() {
+		BitboardRules position = new BitboardRules();
+		for (String move : new String[] { "e2e4", "d7d5", "e4e5", "f7f5" })
+			position.play(move);
+		assertEquals("rnbqkbnr/ppp1p1pp/8/3pPp2/8/8/PPPP1PPP/RNBQKBNR w KQkq f6 0 3", position.toFEN());
+		position.play("e5f6");
+		assertEquals('P', position.pieceAt(45));
+		assertEquals(0, position.pieceAt(37));
+		position.play("e8f7");
+		assertEquals("rnbq1bnr/ppp1pkpp/5P2/3p4/8/8/PPPP1PPP/RNBQKBNR w KQ - 1 4", position.toFEN());
+	}
+
+	@Test
+	public void testMates() {
+		BitboardRules mate = new BitboardRules("7k/6Q1/6K1/8/8/8/8/8 b - - 0 1");
+		assertTrue(mate.isCheck());
+		assertTrue(mate.isCheckMate());
+		BitboardRules stalemate = new BitboardRules("7k/8/6QK/8/8/8/8/8 b - - 0 1");
+		assertFalse(stalemate.isCheck());
+		assertTrue(stalemate.isStaleMate());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidFEN() {
+		new BitboardRules("4k3/8/8/8/8/8/8/8 w - - 0 1");
+	}
+}
@@ -0,0 +1,100 @@
+package model;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class ChessCodecTest {
+
+	private static Chess play(Chess chess, String... moves) {
+		for (String move : moves) {
+			Move legal = MoveCode.toMove(chess, MoveCode.parse(move));
+			assertNotNull(move, legal);
+			chess.makeMove(legal);
+		}
+		return chess;
+	}
+
+	private static void assertSame(Chess expected, Chess actual) {
+		assertEquals(expected.toFEN(), actual.toFEN());
+		assertEquals(expected.getRecords().toString(), actual.getRecords().toString());
+		assertEquals(expected.hasEnd(), actual.hasEnd());
+		assertEquals(expected.lastMoveDiscript(), actual.lastMoveDiscript());
+		assertEquals(PositionKey.of(expected), PositionKey.of(actual));
+		for (boolean side : new boolean[] { true, false })
+			assertEquals(expected.getDrawManager().canAskFordraw(side), actual.getDrawManager().canAskFordraw(side));
+	}
+
+	@Test
+	public void testStart() {
+		byte[] bytes = ChessCodec.encode(new Chess());
+		assertEquals(6, bytes.length);
+		assertSame(new Chess(), ChessCodec.decode(bytes));
+	}
+
+	@Test
+	public void testChecksAndPromotion() {
+		// a check, En Passant, a promotion to a knight and castling
+		Chess chess = play(new Chess(), "e2e4", "g8f6", "e4e5", "d7d5", "e5d6", "e8d7", "d6c7", "d8e8", "c7b8n",
+				"d7d8", "g1f3", "h7h6", "f1c4", "h6h5", "e1g1");
+		chess.getDrawManager().setRightToRequestDraw(false);
+		byte[] bytes = ChessCodec.encode(chess);
+		assertEquals(6 + 2 * 15, bytes.length);
+		Chess decoded = ChessCodec.decode(bytes);
+		assertSame(chess, decoded);
+		// the game goes on the same
+		play(chess, "h5h4");
+		play(decoded, "h5h4");
+		assertSame(chess, decoded);
+	}
+
+	@Test
+	public void testEnds() {
+		Chess mate = play(new Chess(), "f2f3", "e7e5", "g2g4", "d8h4");
+		assertTrue(mate.hasEnd());
+		assertSame(mate, ChessCodec.decode(ChessCodec.encode(mate)));
+
+		Chess resigned = play(new Chess(), "d2d4");
+		resigned.endGame(Win.BLACKESIGN);
+		Chess decoded = ChessCodec.decode(ChessCodec.encode(resigned));
+		assertEquals(Win.BLACKESIGN, decoded.getRecords().getEndGame());
+		assertSame(resigned, decoded);
+	}
+
+	@Test
+	public void testSetupAndChosen() {
+		Chess chess = play(new Chess("4k3/P7/8/8/8/8/8/4K3 w - - 3 40"), "e1d2", "e8f7");
+		chess.setChosen(chess.spotAt(1, 7).getPiece());
+		Chess decoded = ChessCodec.decode(ChessCodec.encode(chess));
+		assertSame(chess, decoded);
+		assertEquals(decoded.spotAt(1, 7).getPiece(), decoded.getChosen());
+	}
+
+	@Test
+	public void testLongGameDecodes() {
+		// 100 plies of knights going back and forth, the repetitions are no draw until claimed
+		String[] shuffle = { "g1f3", "g8f6", "f3g1", "f6g8" };
+		Chess chess = new Chess();
+		for (int i = 0; i < 100; i++)
+			chess.replayMove(MoveCode.toMove(chess, MoveCode.parse(shuffle[i % 4])));
+		byte[] bytes = ChessCodec.encode(chess);
+		assertEquals(206, bytes.length);
+		assertSame(chess, ChessCodec.decode(bytes));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testIllegalMove() {
+		byte[] bytes = ChessCodec.encode(play(new Chess(), "e2e4"));
+		// e2e4 becomes e2e5
+		int code = MoveCode.parse("e2e5");
+		bytes[bytes.length - 2] = (byte) (code >> 8);
+		bytes[bytes.length - 1] = (byte) code;
+		ChessCodec.decode(bytes);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testTruncated() {
+		byte[] bytes = ChessCodec.encode(play(new Chess(), "e2e4"));
+		ChessCodec.decode(java.util.Arrays.copyOf(bytes, bytes.length - 1));
+	}
+}
@@ -2,8 +2,12 @@ package model;
 
 import static org.junit.Assert.*;
 
+import java.util.Arrays;
+
 import org.junit.Test;
 
+import utility.TestUtility;
+
 public class ChessTest {
 
 	@Test
@@ -198,4 +202,25 @@ public class ChessTest {
 
 		assertFalse(chess.impossibleCheckMate());
 	}
+
+	@Test
+	public void testReset() throws Exception {
+		Chess chess = new Chess();
+		TestUtility.performRecordMoves(chess, "sampleGames/Knight_promotion_1.txt");
+		TestUtility.performRecordMoves(chess, Arrays.asList("a6"));
+		chess.endGame(Win.WHITERESIGN);
+
+		chess.reset();
+		Chess start = new Chess();
+		assertEquals(start.getBoard().getPENRepresentation(), chess.getBoard().getPENRepresentation());
+		assertEquals(PositionKey.of(start), PositionKey.of(chess));
+		assertTrue(chess.getWhoseTurn());
+		assertFalse(chess.hasEnd());
+		assertTrue(chess.getRecords().isEmpty());
+		assertEquals(16, chess.white.size());
+		assertEquals(16, chess.black.size());
+
+		TestUtility.performRecordMoves(chess, "sampleGames/White_Checkmate.txt");
+		assertTrue(chess.hasEnd());
+	}
 }
@@ -0,0 +1,45 @@
+package model;
+
+import static org.junit.Assert.*;
+
+import java.io.FileNotFoundException;
+
+import org.junit.Test;
+
+import utility.TestUtility;
+
+public class MaterialTest {
+
+	@Test
+	public void testStartMaterial() {
+		Chess chess = new Chess();
+
+		assertEquals(Material.START, Material.of(chess));
+		assertEquals("KQRRBBNNPPPPPPPPvKQRRBBNNPPPPPPPP", Material.toString(Material.START));
+	}
+
+	@Test
+	public void testParse() {
+		long material = Material.parse("KPRvKR");
+
+		assertEquals(material, Material.parse("RPvR"));
+		assertEquals("KRPvKR", Material.toString(material));
+		assertEquals(1, Material.count(material, true, 'P'));
+		assertEquals(0, Material.count(material, false, 'P'));
+		assertEquals(2, Material.pieceCount(material, true));
+		assertEquals(Material.parse("KRvKRP"), Material.flip(material));
+	}
+
+	@Test
+	public void testAfterMove() throws FileNotFoundException, InvalidMoveException {
+		Chess chess = new Chess();
+		TestUtility.performRecordMoves(chess, "sampleGames/Knight_promotion_1.txt");
+
+		long material = Material.START;
+		for (Move move : chess.getRecords())
+			material = Material.afterMove(material, move);
+
+		assertEquals(Material.of(chess), material);
+		assertEquals("KQRRBBNNNPPPPPPPvKQRRBBNNPPPPPP", Material.toString(material));
+	}
+}
@@ -0,0 +1,48 @@
+package model;
+
+import static org.junit.Assert.*;
+
+import java.io.FileNotFoundException;
+
+import org.junit.Test;
+
+import utility.TestUtility;
+
+public class MoveCodeTest {
+
+	@Test
+	public void testEncode() throws InvalidMoveException {
+		Chess chess = new Chess();
+		Move move = chess.interpreteMoveCommand("Ng1-f3");
+		int code = MoveCode.encode(move);
+
+		assertEquals(6, MoveCode.getStart(code));
+		assertEquals(21, MoveCode.getEnd(code));
+		assertEquals(0, MoveCode.getPromotion(code));
+		assertEquals("g1f3", MoveCode.toString(code));
+		assertEquals(move, MoveCode.toMove(chess, code));
+	}
+
+	@Test
+	public void testIllegalMove() {
+		Chess chess = new Chess();
+
+		assertNull(MoveCode.toMove(chess, MoveCode.encode(12, 36, (char) 0)));
+		assertNull(MoveCode.toMove(chess, MoveCode.encode(52, 44, (char) 0)));
+		assertNull(MoveCode.toMove(chess, MoveCode.NONE));
+	}
+
+	@Test
+	public void testPromotion() throws FileNotFoundException, InvalidMoveException {
+		Chess chess = new Chess();
+		TestUtility.performRecordMoves(chess, "sampleGames/Pawn_promotion_1.txt");
+		int code = MoveCode.encode(chess.lastMove());
+		chess.undoLastMove();
+
+		assertEquals('Q', MoveCode.getPromotion(code));
+		assertEquals("g7f8q", MoveCode.toString(code));
+		Move move = MoveCode.toMove(chess, code);
+		chess.makeMove(move);
+		TestUtility.assertBoardFile(chess, "sampleBoards/Pawn_promotion_board_1.txt");
+	}
+}
@@ -0,0 +1,87 @@
+package model;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import utility.TestUtility;
+
+public class OpeningsTest {
+
+	private Record play(String... moves) throws InvalidMoveException {
+		Chess chess = new Chess();
+		TestUtility.performRecordMoves(chess, Arrays.asList(moves));
+		return chess.getRecords();
+	}
+
+	@Test
+	public void testTable() {
+		Openings openings = Openings.getDefault();
+		assertTrue(openings.size() > 100);
+		assertEquals(Openings.NONE, openings.getOpening(Openings.ROOT));
+		int e4 = openings.child(Openings.ROOT, MoveCode.encode(12, 28, (char) 0));
+		assertNotEquals(Openings.NONE, e4);
+		assertEquals(Openings.NONE, openings.child(e4, MoveCode.encode(12, 28, (char) 0)));
+	}
+
+	@Test
+	public void testClassify() throws InvalidMoveException {
+		assertNull(new Record().getEco());
+		assertNull(play("e4").getEco());
+
+		Record record = play("e4", "e5", "Nf3", "Nc6", "Bb5");
+		assertEquals("C60", record.getEco());
+		assertEquals("Ruy Lopez", record.getOpeningName());
+
+		// a position without an opening of its own keeps the one before it
+		assertEquals("C60", play("e4", "e5", "Nf3", "Nc6", "Bb5", "a6").getEco());
+		assertEquals("C88", play("e4", "e5", "Nf3", "Nc6", "Bb5", "a6", "Ba4", "Nf6", "O-O", "Be7", "Re1", "b5",
+				"Bb3", "d6").getEco());
+	}
+
+	@Test
+	public void testUndo() throws InvalidMoveException {
+		Chess chess = new Chess();
+		TestUtility.performRecordMoves(chess, Arrays.asList("e4", "c5", "Nf3", "d6"));
+		assertEquals("B50", chess.getRecords().getEco());
+
+		chess.undoLastMove();
+		assertEquals("B27", chess.getRecords().getEco());
+		TestUtility.performRecordMoves(chess, Arrays.asList("e6"));
+		assertEquals("B40", chess.getRecords().getEco());
+		chess.undoLastMove();
+		chess.undoLastMove();
+		chess.undoLastMove();
+		assertEquals("B00", play("e4", "Nc6").getEco());
+		assertNull(chess.getRecords().getEco());
+	}
+
+	@Test
+	public void testTransposition() throws InvalidMoveException {
+		Record record = play("c4", "Nf6", "d4", "e6", "Nc3", "Bb4", "e3");
+		assertEquals("E40", record.getEco());
+		assertEquals("Nimzo-Indian Defense: Rubinstein Variation", record.getOpeningName());
+
+		assertEquals("C44", play("Nf3", "Nc6", "e4", "e5").getEco());
+	}
+
+	@Test
+	public void testLeaveOpenings() throws InvalidMoveException {
+		Record record = play("e4", "e5", "Qh5", "Nc6", "Bc4", "Nf6", "Qxf7");
+		assertEquals("C20", record.getEco());
+		assertEquals("King's Pawn Game", record.getOpeningName());
+	}
+
+	@Test
+	public void testSampleGames() throws Exception {
+		Chess chess = new Chess();
+		TestUtility.performRecordMoves(chess, "sampleGames/White_Checkmate.txt");
+		assertEquals("B18", chess.getRecords().getEco());
+
+		chess = new Chess();
+		TestUtility.performRecordMoves(chess, "sampleGames/Stalemate.txt");
+		assertEquals("E40", chess.getRecords().getEco());
+	}
+}
@@ -0,0 +1,98 @@
+package model;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import utility.TestUtility;
+
+public class PerftTest {
+	// deeper counts are left to Perft.main
+	private static final long MAX_NODES = 100000;
+
+	@Test
+	public void testSuite() {
+		List<Perft.Reference> suite = Perft.getSuite();
+		assertEquals(6, suite.size());
+		for (Perft.Reference reference : suite) {
+			Perft perft = new Perft(4, 1 << 16);
+			for (int depth = 1; depth <= reference.getMaxDepth()
+					&& reference.getCount(depth) <= MAX_NODES; depth++)
+				assertEquals(reference.getFen() + " depth " + depth, reference.getCount(depth),
+						perft.count(new Chess(reference.getFen()), depth));
+		}
+	}
+
+	@Test
+	public void testWithoutTable() {
+		for (Perft.Reference reference : Perft.getSuite())
+			assertEquals(reference.getFen(), reference.getCount(2),
+					new Perft(1, 0).count(new Chess(reference.getFen()), 2));
+	}
+
+	@Test
+	public void testDivide() {
+		Chess chess = new Chess();
+		Map<String, Long> divide = chess.divide(3);
+		assertEquals(20, divide.size());
+		assertEquals(Long.valueOf(600), divide.get("e2e4"));
+		assertEquals(Long.valueOf(440), divide.get("g1f3"));
+		long total = 0;
+		for (long nodes : divide.values())
+			total += nodes;
+		assertEquals(chess.perft(3), total);
+		// the chess is left as it was
+		assertEquals(Perft.getSuite().get(0).getFen(), chess.toFEN());
+	}
+
+	@Test
+	public void testPromotions() {
+		// every promotion counts once for each piece
+		Chess chess = new Chess("4k3/1P6/8/8/8/8/8/4K3 w - - 0 1");
+		assertEquals(9, chess.perft(1));
+		assertEquals(Long.valueOf(1), chess.divide(1).get("b7b8n"));
+	}
+
+	@Test
+	public void testAfterMoves() throws InvalidMoveException {
+		Chess chess = new Chess();
+		TestUtility.performRecordMoves(chess, Arrays.asList("e4", "d5", "e5", "f5"));
+		Chess copy = new Chess(chess.toFEN());
+		assertEquals("rnbqkbnr/ppp1p1pp/8/3pPp2/8/8/PPPP1PPP/RNBQKBNR w KQkq f6 0 3",
+				chess.toFEN());
+		assertEquals(PositionKey.of(chess), PositionKey.of(copy));
+		assertEquals(new Perft(1, 0).count(chess, 3), new Perft(1, 0).count(copy, 3));
+	}
+
+	@Test
+	public void testFEN() {
+		for (Perft.Reference reference : Perft.getSuite()) {
+			assertEquals(reference.getFen(), new Chess(reference.getFen()).toFEN());
+			assertEquals(PositionKey.ofFEN(reference.getFen()), PositionKey.of(new Chess(reference.getFen())));
+		}
+		Chess chess = new Chess("4k3/8/8/8/8/8/8/3BK3 b - - 12 40");
+		assertFalse(chess.getWhoseTurn());
+		assertEquals(40, chess.getRound());
+		assertEquals(12, chess.getHalfmoveClock());
+		assertNull(chess.lastMove());
+		// d1 is a white square
+		assertTrue(((Bishop) chess.spotAt(4, 1).getPiece()).getBishopType());
+	}
+
+	@Test
+	public void testInvalidFEN() {
+		for (String fen : new String[] { "", "8/8/8/8/8/8/8/8 w - - 0 1", "4k3/8/8/8/8/8/8/4K3 x - - 0 1",
+				"4k3/8/8/8/8/8/8/4K4 w - - 0 1", "4k3/8/8/8/8/8/8/4K3 w - e4 0 1", "4k3/8/8/8/8/8/8/4X3 w - - 0 1",
+				"4k3/8/8/8/8/8/8/4K3 w - - zero 1" }) {
+			try {
+				new Chess(fen);
+				fail(fen);
+			} catch (IllegalArgumentException e) {
+			}
+		}
+	}
+}
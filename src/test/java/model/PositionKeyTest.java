@@ -0,0 +1,89 @@
+package model;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import utility.TestUtility;
+
+public class PositionKeyTest {
+
+	private long keyAfter(String... moves) throws InvalidMoveException {
+		Chess chess = new Chess();
+		TestUtility.performRecordMoves(chess, Arrays.asList(moves));
+		return PositionKey.of(chess);
+	}
+
+	@Test
+	public void testSamePosition() throws InvalidMoveException {
+		assertEquals(PositionKey.of(new Chess()), PositionKey.of(new Chess()));
+		assertEquals(keyAfter("Nf3", "Nf6", "Nc3"), keyAfter("Nc3", "Nf6", "Nf3"));
+	}
+
+	@Test
+	public void testSideToMove() throws InvalidMoveException {
+		assertNotEquals(keyAfter("Nf3", "Nf6", "Ng1", "Ng8"), keyAfter("Nf3", "Nf6", "Ng1"));
+		assertEquals(PositionKey.of(new Chess()), keyAfter("Nf3", "Nf6", "Ng1", "Ng8"));
+	}
+
+	@Test
+	public void testCastlingRights() throws InvalidMoveException {
+		Chess chess = new Chess();
+		TestUtility.performRecordMoves(chess, Arrays.asList("e4", "e5", "Ke2", "Ke7", "Ke1", "Ke8"));
+
+		assertFalse(chess.hasCastlingRight(true, true));
+		assertFalse(chess.hasCastlingRight(false, false));
+		assertNotEquals(keyAfter("e4", "e5"), PositionKey.of(chess));
+	}
+
+	@Test
+	public void testEnPassant() throws InvalidMoveException {
+		Chess chess = new Chess();
+		TestUtility.performRecordMoves(chess, Arrays.asList("e4", "a6", "e5", "d5"));
+		assertEquals(4, chess.getEnPassantFile());
+
+		TestUtility.performRecordMoves(chess, Arrays.asList("a3"));
+		assertEquals(0, chess.getEnPassantFile());
+		assertEquals(0, new Chess().getEnPassantFile());
+	}
+
+	@Test
+	public void testFEN() throws InvalidMoveException {
+		assertEquals(PositionKey.of(new Chess()),
+				PositionKey.ofFEN("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1"));
+		// the En Passant square only counts if a pawn can take
+		assertEquals(keyAfter("e4"),
+				PositionKey.ofFEN("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1"));
+		assertEquals(keyAfter("e4", "a6", "e5", "d5"),
+				PositionKey.ofFEN("rnbqkbnr/1pp1pppp/p7/3pP3/8/8/PPPP1PPP/RNBQKBNR w KQkq d6 0 3"));
+		assertNotEquals(keyAfter("e4", "a6", "e5", "d5"),
+				PositionKey.ofFEN("rnbqkbnr/1pp1pppp/p7/3pP3/8/8/PPPP1PPP/RNBQKBNR w KQkq - 0 3"));
+		assertEquals(keyAfter("e4", "e5", "Ke2", "Ke7", "Ke1", "Ke8"),
+				PositionKey.ofFEN("rnbqkbnr/pppp1ppp/8/4p3/4P3/8/PPPP1PPP/RNBQKBNR w - - 4 4"));
+	}
+
+	/**
+	 * the keys given with the Polyglot book format
+	 */
+	@Test
+	public void testPolyglotKeys() throws InvalidMoveException {
+		assertEquals(0x463b96181691fc9cL, PositionKey.of(new Chess()));
+		assertEquals(0x823c9b50fd114196L, keyAfter("e4"));
+		assertEquals(0x0756b94461c50fb0L, keyAfter("e4", "d5"));
+		assertEquals(0x662fafb965db29d4L, keyAfter("e4", "d5", "e5"));
+		assertEquals(0x22a48b5a8e47ff78L, keyAfter("e4", "d5", "e5", "f5"));
+		assertEquals(0x652a607ca3f242c1L, keyAfter("e4", "d5", "e5", "f5", "Ke2"));
+		assertEquals(0x00fdd303c946bdd9L, keyAfter("e4", "d5", "e5", "f5", "Ke2", "Kf7"));
+		assertEquals(0x3c8123ea7b067637L, keyAfter("a4", "b5", "h4", "b4", "c4"));
+		assertEquals(0x5c3f9b829b279560L, keyAfter("a4", "b5", "h4", "b4", "c4", "bxc3", "Ra3"));
+		assertEquals(0x5c3f9b829b279560L,
+				PositionKey.ofFEN("rnbqkbnr/p1pppppp/8/8/P6P/R1p5/1P1PPPP1/1NBQKBNR b Kkq - 0 4"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidFEN() {
+		PositionKey.ofFEN("rnbqkbnr/pppppppp/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1");
+	}
+}
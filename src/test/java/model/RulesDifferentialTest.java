@@ -0,0 +1,58 @@
+package model;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class RulesDifferentialTest {
+
+	/**
+	 * Rules that forget the knight moves to the a- and h-files.
+	 */
+	private static class RimlessRules extends BitboardRules {
+		RimlessRules(String fen) {
+			super(fen);
+		}
+
+		@Override
+		public int[] legalMoves() {
+			return Arrays.stream(super.legalMoves())
+					.filter(move -> Character.toUpperCase(pieceAt(MoveCode.getStart(move))) != 'N'
+							|| MoveCode.getEnd(move) % 8 != 0 && MoveCode.getEnd(move) % 8 != 7)
+					.toArray();
+		}
+	}
+
+	@Test
+	public void testAgree() {
+		RulesDifferential.Report report = new RulesDifferential(2, 200, BitboardRules::new).run(30, 1);
+		assertNull(String.valueOf(report.getMismatch()), report.getMismatch());
+		assertEquals(30, report.getGames());
+		assertTrue(report.getPlies() > 30);
+	}
+
+	@Test
+	public void testShrink() {
+		RulesDifferential.Report report = new RulesDifferential(2, 200, RimlessRules::new).run(30, 1);
+		RulesDifferential.Mismatch mismatch = report.getMismatch();
+		assertNotNull(mismatch);
+		assertTrue(mismatch.getDifference(), mismatch.getDifference().startsWith("moves: only legacy"));
+		// the kings and a single knight of the side to move are left
+		assertTrue(mismatch.getMoves().isEmpty());
+		String board = mismatch.getFen().split(" ")[0];
+		assertEquals(mismatch.getFen(), 3, board.replaceAll("[^A-Za-z]", "").length());
+		assertEquals(mismatch.getFen(), 1, board.replaceAll("[^Nn]", "").length());
+	}
+
+	@Test
+	public void testShrinkTail() {
+		RulesDifferential.Mismatch mismatch = new RulesDifferential(1, 10, RimlessRules::new)
+				.shrink(BitboardRules.START, Arrays.asList("e2e4", "e7e5", "g1f3"), "moves: only legacy [f3h4]");
+		// the difference shows after the last move on its own
+		assertTrue(mismatch.getMoves().isEmpty());
+		assertFalse(new BitboardRules(mismatch.getFen()).getWhoseTurn());
+		assertEquals(mismatch.getFen(), 3, mismatch.getFen().split(" ")[0].replaceAll("[^A-Za-z]", "").length());
+	}
+}
@@ -0,0 +1,106 @@
+package notation;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import model.InvalidMoveException;
+
+public class NotationConverterTest {
+	private static final List<String> RUY_LOPEZ = Arrays.asList("e4", "e5", "Nf3", "Nc6", "Bb5", "a6", "Bxc6",
+			"dxc6", "O-O", "f6", "d4", "exd4", "Nxd4", "c5", "Nb3", "Qxd1", "Rxd1", "Bg4", "f3", "Be6", "Nc3", "Kf7");
+	private static final List<String> LONG_CASTLING = Arrays.asList("d4", "d5", "Nc3", "Nc6", "Bf4", "Bf5", "Qd2",
+			"Qd7", "O-O-O", "O-O-O");
+	private static final List<String> PROMOTION = Arrays.asList("a4", "h5", "a5", "h4", "a6", "h3", "axb7", "hxg2",
+			"bxa8=Q", "gxh1=Q");
+
+	private NotationConverter converter = new NotationConverter();
+
+	@Test
+	public void testSanToUci() throws InvalidMoveException {
+		assertEquals(Arrays.asList("e2e4", "e7e5", "g1f3", "b8c6", "f1b5", "a7a6", "b5c6", "d7c6", "e1g1", "f7f6",
+				"d2d4", "e5d4", "f3d4", "c6c5", "d4b3", "d8d1", "f1d1", "c8g4", "f2f3", "g4e6", "b1c3", "e8f7"),
+				converter.convert(RUY_LOPEZ, Notation.SAN, Notation.UCI));
+		assertEquals(Arrays.asList("a2a4", "h7h5", "a4a5", "h5h4", "a5a6", "h4h3", "a6b7", "h3g2", "b7a8q", "g2h1q"),
+				converter.convert(PROMOTION, Notation.SAN, Notation.UCI));
+		assertEquals("e1c1 e8c8",
+				String.join(" ", converter.convert(LONG_CASTLING, Notation.SAN, Notation.UCI).subList(8, 10)));
+	}
+
+	@Test
+	public void testRoundTrips() throws InvalidMoveException {
+		for (List<String> game : Arrays.asList(RUY_LOPEZ, LONG_CASTLING, PROMOTION)) {
+			for (Notation notation : new Notation[] { Notation.LONG, Notation.UCI }) {
+				List<String> converted = converter.convert(game, Notation.SAN, notation);
+				assertEquals(game, converter.convert(converted, notation, Notation.SAN));
+			}
+			int[] codes = converter.toBinary(game, Notation.SAN);
+			assertEquals(game.size(), codes.length);
+			assertEquals(game, converter.fromBinary(codes, Notation.SAN));
+		}
+	}
+
+	@Test
+	public void testLong() throws InvalidMoveException {
+		List<String> converted = converter.convert(PROMOTION, Notation.SAN, Notation.LONG);
+		assertEquals("a2-a4", converted.get(0));
+		assertEquals("a6xb7", converted.get(6));
+		assertEquals("b7xa8(Q)", converted.get(8));
+	}
+
+	@Test
+	public void testDisambiguation() throws InvalidMoveException {
+		List<String> game = Arrays.asList("Nf3", "h6", "Nd4", "h5", "Nb3", "h4", "d3", "d6", "N1d2", "Nf6", "Nf3",
+				"Nbd7", "c4", "e5", "Nfd4");
+		List<String> uci = converter.convert(game, Notation.SAN, Notation.UCI);
+		assertEquals("b1d2", uci.get(8));
+		assertEquals("b8d7", uci.get(11));
+		assertEquals("f3d4", uci.get(14));
+		assertEquals(game, converter.convert(uci, Notation.UCI, Notation.SAN));
+	}
+
+	@Test
+	public void testCheckAndMate() throws InvalidMoveException {
+		List<String> uci = Arrays.asList("e2e4", "e7e5", "f1c4", "b8c6", "d1h5", "g8f6", "h5f7");
+		assertEquals(Arrays.asList("e4", "e5", "Bc4", "Nc6", "Qh5", "Nf6", "Qxf7#"),
+				converter.convert(uci, Notation.UCI, Notation.SAN));
+		assertEquals("Qh5xf7++", converter.convert(uci, Notation.UCI, Notation.LONG).get(6));
+		assertEquals("Bb5+", converter.convert(Arrays.asList("e4", "d5", "Bb5"), Notation.SAN, Notation.SAN).get(2));
+	}
+
+	@Test(expected = InvalidMoveException.class)
+	public void testIllegalMove() throws InvalidMoveException {
+		converter.convert(Arrays.asList("e2e4", "e2e4"), Notation.UCI, Notation.SAN);
+	}
+
+	@Test
+	public void testStream() throws IOException {
+		String games = "1.e4 e5 2.Nf3 Nc6 1-0\n1. d4 Qd5\n\n1. c4 *\n";
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		int count = converter.convert(new ByteArrayInputStream(games.getBytes(StandardCharsets.UTF_8)), Notation.SAN,
+				out, Notation.UCI);
+
+		assertEquals(4, count);
+		assertEquals("e2e4 e7e5 g1f3 b8c6\n\n\nc2c4\n", new String(out.toByteArray(), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testBinaryStream() throws IOException {
+		String games = "e4 e5 Nf3\nd4\n";
+		ByteArrayOutputStream binary = new ByteArrayOutputStream();
+		converter.convert(new ByteArrayInputStream(games.getBytes(StandardCharsets.UTF_8)), Notation.SAN, binary,
+				Notation.BINARY);
+		assertEquals(2 * (1 + 3) + 2 * (1 + 1), binary.size());
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		converter.convert(new ByteArrayInputStream(binary.toByteArray()), Notation.BINARY, out, Notation.SAN);
+		assertEquals(games, new String(out.toByteArray(), StandardCharsets.UTF_8));
+	}
+}
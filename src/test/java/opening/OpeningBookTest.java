@@ -0,0 +1,101 @@
+package opening;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import model.Chess;
+import model.InvalidMoveException;
+import model.Move;
+import model.MoveCode;
+import utility.TestUtility;
+
+public class OpeningBookTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File bookFile;
+
+	@Before
+	public void buildBook() throws IOException {
+		StringBuilder pgn = new StringBuilder();
+		for (String name : new String[] { "FiftyMoveDraw", "ImpossibleCheckmate", "Stalemate", "White_Checkmate",
+				"ThreeFoldRepetition" }) {
+			pgn.append(new String(Files.readAllBytes(Paths.get("sampleGames/" + name + ".txt"))));
+			pgn.append("\n\n");
+		}
+		OpeningBookBuilder builder = new OpeningBookBuilder(14, 4);
+		assertEquals(5, builder.addAll(new StringReader(pgn.toString())));
+		bookFile = folder.newFile("book.bin");
+		builder.write(bookFile);
+		assertEquals(builder.size() * 16, bookFile.length());
+	}
+
+	private static int weightOf(List<BookMove> moves, String move) {
+		for (BookMove m : moves)
+			if (MoveCode.toString(m.getMove()).equals(move))
+				return m.getWeight();
+		return -1;
+	}
+
+	@Test
+	public void testStartPosition() throws IOException {
+		try (OpeningBook book = OpeningBook.open(bookFile)) {
+			List<BookMove> moves = book.getMoves(new Chess());
+
+			assertEquals(3, moves.size());
+			assertEquals(2, weightOf(moves, "d2d4"));
+			assertEquals(3, weightOf(moves, "e2e4"));
+			assertEquals(1, weightOf(moves, "c2c4"));
+		}
+	}
+
+	@Test
+	public void testTransposition() throws IOException, InvalidMoveException {
+		// reached by 1.d4 Nf6 2.c4 and by 1.c4 Nf6 2.d4
+		Chess chess = new Chess();
+		TestUtility.performRecordMoves(chess, Arrays.asList("d4", "Nf6", "c4", "e6", "Nc3", "Bb4", "e3"));
+
+		try (OpeningBook book = OpeningBook.open(bookFile)) {
+			List<BookMove> moves = book.getMoves(chess);
+			assertEquals(2, moves.size());
+			assertTrue(weightOf(moves, "e8g8") > 0);
+			assertTrue(weightOf(moves, "c7c5") >= 0);
+		}
+	}
+
+	@Test
+	public void testCastling() throws IOException, InvalidMoveException {
+		Chess chess = new Chess();
+		TestUtility.performRecordMoves(chess,
+				Arrays.asList("d4", "Nf6", "c4", "e6", "Nc3", "Bb4", "e3", "O-O", "Bd3", "d5", "Nf3", "c5"));
+
+		try (OpeningBook book = OpeningBook.open(bookFile)) {
+			Move move = book.pickMove(chess, new Random(1));
+			assertEquals("O-O", move.getDoc());
+		}
+	}
+
+	@Test
+	public void testUnknownPosition() throws IOException, InvalidMoveException {
+		Chess chess = new Chess();
+		TestUtility.performRecordMoves(chess, Arrays.asList("a4", "h5"));
+
+		try (OpeningBook book = OpeningBook.open(bookFile)) {
+			assertTrue(book.getMoves(chess).isEmpty());
+			assertNull(book.pickMove(chess, new Random(1)));
+		}
+	}
+}
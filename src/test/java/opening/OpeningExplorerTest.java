@@ -0,0 +1,88 @@
+package opening;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import model.Chess;
+import model.MoveCode;
+import model.PositionKey;
+
+public class OpeningExplorerTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private OpeningExplorer explorer;
+
+	@Before
+	public void buildTable() throws IOException {
+		StringBuilder pgn = new StringBuilder();
+		for (String name : new String[] { "FiftyMoveDraw", "ImpossibleCheckmate", "Stalemate", "White_Checkmate",
+				"ThreeFoldRepetition" }) {
+			pgn.append(new String(Files.readAllBytes(Paths.get("sampleGames/" + name + ".txt"))));
+			pgn.append("\n\n");
+		}
+		OpeningBookBuilder builder = new OpeningBookBuilder(10);
+		builder.addAll(new StringReader(pgn.toString()));
+		File table = folder.newFile("explorer.bin");
+		builder.writeStatistics(table);
+		explorer = OpeningExplorer.open(table, 2);
+		assertEquals(builder.size(), explorer.size());
+	}
+
+	@After
+	public void close() throws IOException {
+		explorer.close();
+	}
+
+	@Test
+	public void testStartPosition() {
+		List<MoveStatistics> moves = explorer.getMoves(PositionKey.of(new Chess()));
+
+		assertEquals(3, moves.size());
+		assertEquals(2, moves.get(0).getGames());
+		assertEquals(1, moves.get(2).getGames());
+		assertEquals("c2c4", MoveCode.toString(moves.get(2).getMove()));
+		for (MoveStatistics move : moves)
+			if (MoveCode.toString(move.getMove()).equals("e2e4")) {
+				assertEquals(1, move.getWins());
+				assertEquals(1, move.getDraws());
+				assertEquals(0, move.getLosses());
+				assertEquals(0.75, move.getScore(), 1e-9);
+			}
+	}
+
+	@Test
+	public void testLookup() {
+		long key = PositionKey.ofFEN("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1");
+		ByteBuffer answer = explorer.lookup(key);
+		String json = StandardCharsets.UTF_8.decode(answer).toString();
+
+		assertTrue(json, json.startsWith("{\"games\":5,\"moves\":[{"));
+		assertTrue(json, json.contains("{\"move\":\"c2c4\",\"games\":1,\"wins\":0,\"draws\":1,\"losses\":0,\"score\":0.5}"));
+		// every caller gets a buffer of its own
+		assertEquals(0, explorer.lookup(key).position());
+		assertEquals(answer.limit(), explorer.lookup(key).remaining());
+	}
+
+	@Test
+	public void testUnknownPosition() {
+		long key = PositionKey.ofFEN("8/8/8/4k3/8/8/8/4K3 w - - 0 1");
+
+		assertTrue(explorer.getMoves(key).isEmpty());
+		assertEquals("{\"games\":0,\"moves\":[]}", StandardCharsets.UTF_8.decode(explorer.lookup(key)).toString());
+	}
+}
@@ -0,0 +1,106 @@
+package viewServer;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import controller.DualViewChessControl;
+
+public class GameRoomTest {
+	private ExecutorService threads;
+	private MemoryChessView white;
+	private MemoryChessView black;
+	private DualViewChessControl game;
+
+	@Before
+	public void setUp() {
+		threads = Executors.newFixedThreadPool(4);
+		white = new MemoryChessView("alice", true);
+		black = new MemoryChessView("bob", false);
+		game = new DualViewChessControl(white, black);
+	}
+
+	@After
+	public void tearDown() {
+		threads.shutdownNow();
+	}
+
+	private static void await(GameRoom room) throws InterruptedException {
+		CountDownLatch done = new CountDownLatch(1);
+		room.execute(done::countDown);
+		assertTrue(done.await(10, TimeUnit.SECONDS));
+	}
+
+	private static void awaitWrites(MemoryChessView view, int writes) throws InterruptedException {
+		for (int i = 0; i < 1000 && view.getWrites() < writes; i++)
+			Thread.sleep(10);
+	}
+
+	@Test
+	public void testBatch() throws InterruptedException {
+		GameRoom room = new GameRoom(threads);
+		room.execute(() -> white.getController().makeMove(true, "e4"));
+		room.execute(() -> black.getController().makeMove(false, "e5"));
+		room.execute(() -> white.getController().makeMove(true, "Nf3"));
+		// nothing is done before the game is there
+		assertEquals(3, room.getWaiting());
+		int writes = white.getWrites();
+		room.start(game);
+		await(room);
+		assertEquals(3, game.getRecord().size());
+		// the three moves are written at once, when the batch ends after the latch
+		awaitWrites(white, writes + 1);
+		awaitWrites(black, writes + 1);
+		await(room);
+		assertEquals(writes + 1, white.getWrites());
+		assertEquals(writes + 1, black.getWrites());
+	}
+
+	@Test
+	public void testOneThreadAtATime() throws InterruptedException {
+		GameRoom room = new GameRoom(threads);
+		room.start(game);
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger overlaps = new AtomicInteger();
+		AtomicInteger done = new AtomicInteger();
+		Thread[] posters = new Thread[4];
+		for (int t = 0; t < posters.length; t++) {
+			posters[t] = new Thread(() -> {
+				for (int i = 0; i < 500; i++) {
+					room.execute(() -> {
+						if (running.incrementAndGet() > 1)
+							overlaps.incrementAndGet();
+						white.getController().click(5, 2, true);
+						running.decrementAndGet();
+						done.incrementAndGet();
+					});
+				}
+			});
+			posters[t].start();
+		}
+		for (Thread poster : posters)
+			poster.join();
+		await(room);
+		assertEquals(2000, done.get());
+		assertEquals(0, overlaps.get());
+	}
+
+	@Test
+	public void testClose() throws InterruptedException {
+		GameRoom room = new GameRoom(threads);
+		room.execute(() -> white.getController().makeMove(true, "e4"));
+		room.close();
+		room.start(game);
+		room.execute(() -> white.getController().makeMove(true, "d4"));
+		assertEquals(0, room.getWaiting());
+		assertEquals(0, game.getRecord().size());
+	}
+}
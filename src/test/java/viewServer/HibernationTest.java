@@ -0,0 +1,157 @@
+package viewServer;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import archive.GameArchive;
+import controller.GameSnapshot;
+
+public class HibernationTest {
+	private File directory;
+	private Server server;
+	private MemoryChessView white;
+	private MemoryChessView black;
+	private GameRoom room;
+
+	@Before
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("hibernation").toFile();
+		server = new Server((GameArchive.Writer) null);
+		server.setHibernation(directory, 0);
+		white = new MemoryChessView("alice", true);
+		black = new MemoryChessView("bob", false);
+		server.openRoom("room", white, black, "alice", "bob");
+		room = server.getRoom("room");
+		assertTrue(white.getController().makeMove(true, "e4"));
+		assertTrue(black.getController().makeMove(false, "c5"));
+	}
+
+	@After
+	public void tearDown() {
+		server.closeRoom("room");
+		directory.delete();
+	}
+
+	private void await() throws InterruptedException {
+		CountDownLatch done = new CountDownLatch(1);
+		room.execute(done::countDown);
+		assertTrue(done.await(10, TimeUnit.SECONDS));
+	}
+
+	/**
+	 * wait until the view shows the game of the room, taken on the room thread: the views are
+	 * flushed when the batch ends, after the actions
+	 * 
+	 * @return the game shown
+	 */
+	private GameSnapshot awaitShown(GameRoom room, MemoryChessView view) throws InterruptedException {
+		AtomicReference<GameSnapshot> shown = new AtomicReference<>();
+		CountDownLatch taken = new CountDownLatch(1);
+		room.snapshot(snapshot -> {
+			shown.set(snapshot);
+			taken.countDown();
+		});
+		assertTrue(taken.await(10, TimeUnit.SECONDS));
+		long version = shown.get().getVersion();
+		for (int i = 0; i < 1000 && view.getVersion() != version; i++)
+			Thread.sleep(10);
+		assertEquals(version, view.getVersion());
+		return shown.get();
+	}
+
+	private void sleep() throws InterruptedException {
+		server.getRooms().sweep(System.currentTimeMillis());
+		for (int i = 0; i < 1000 && !room.isHibernating(); i++)
+			Thread.sleep(5);
+		assertTrue(room.isHibernating());
+	}
+
+	@Test
+	public void testSleepAndWake() throws InterruptedException {
+		sleep();
+		assertNull(server.getGame("room"));
+		assertTrue(white.isHibernating());
+		assertTrue(black.isHibernating());
+		assertEquals(1, server.getRooms().getHibernating());
+		assertTrue(new File(directory, "room.game").exists());
+
+		// the next action wakes the game up first
+		room.execute(() -> white.getController().makeMove(true, "Nf3"));
+		await();
+		GameSnapshot shown = awaitShown(room, white);
+		assertFalse(room.isHibernating());
+		assertFalse(white.isHibernating());
+		assertFalse(new File(directory, "room.game").exists());
+		assertTrue(shown.toChess().getRecords().toString().contains("Ng1-f3"));
+		// the woken game shows the whole board
+		assertEquals('N', white.getWritten().pieces.get(5 * 8 + 5).getType().charAt(0));
+	}
+
+	@Test
+	public void testSleepingRoomIsNotSweptOut() throws InterruptedException {
+		sleep();
+		long day = 24 * 60 * 60 * 1000;
+		assertEquals(0, server.getRooms().sweep(System.currentTimeMillis() + day));
+		assertSame(room, server.getRoom("room"));
+		assertTrue(room.isHibernating());
+		assertTrue(new File(directory, "room.game").exists());
+
+		room.execute(() -> white.getController().makeMove(true, "Nf3"));
+		await();
+		assertTrue(server.getGame("room").getRecords().contains("Ng1-f3"));
+	}
+
+	@Test
+	public void testFinishedGameStaysAwake() throws InterruptedException {
+		room.execute(() -> white.getController().resign(true));
+		await();
+		server.getRooms().sweep(System.currentTimeMillis());
+		await();
+		assertFalse(room.isHibernating());
+		assertNotNull(server.getGame("room"));
+	}
+
+	@Test
+	public void testRoomStartsAsleep() throws InterruptedException {
+		MemoryChessView lazyWhite = new MemoryChessView("carol", true);
+		GameRoom lazy = server.openRoomAsleep("lazy", lazyWhite, new MemoryChessView("dave", false), "carol",
+				"dave");
+		assertNull(server.openRoomAsleep("lazy", new MemoryChessView("carol", true),
+				new MemoryChessView("dave", false), "carol", "dave"));
+		assertTrue(lazy.isHibernating());
+		assertNull(server.getGame("lazy"));
+		assertNull(lazyWhite.getController());
+		int writes = lazyWhite.getWrites();
+
+		CountDownLatch done = new CountDownLatch(1);
+		lazy.execute(() -> {
+			lazyWhite.getController().makeMove(true, "d4");
+			done.countDown();
+		});
+		assertTrue(done.await(10, TimeUnit.SECONDS));
+		GameSnapshot shown = awaitShown(lazy, lazyWhite);
+		assertFalse(lazy.isHibernating());
+		assertTrue(shown.toChess().getRecords().toString().contains("d2-d4"));
+		assertTrue(lazyWhite.getWrites() > writes);
+		server.closeRoom("lazy");
+	}
+
+	@Test
+	public void testCloseSleepingRoom() throws InterruptedException {
+		sleep();
+		server.closeRoom("room");
+		assertTrue(white.isClosed());
+		assertTrue(black.isClosed());
+		assertFalse(new File(directory, "room.game").exists());
+	}
+}
@@ -0,0 +1,135 @@
+package viewServer;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import archive.GameArchive;
+
+public class InMemoryTransportTest {
+	private InMemoryTransport transport;
+	private Server server;
+
+	@Before
+	public void setUp() throws InterruptedException {
+		transport = new InMemoryTransport();
+		server = new Server(transport, (GameArchive.Writer) null);
+		transport.addRoom("room", "alice", "bob");
+		await("room");
+	}
+
+	/**
+	 * wait until the actions sent are carried out; the views are only flushed when the batch ends
+	 */
+	private void await(String roomLoc) throws InterruptedException {
+		assertTrue(transport.awaitDelivered(10, TimeUnit.SECONDS));
+		GameRoom room = server.getRoom(roomLoc);
+		CountDownLatch done = new CountDownLatch(1);
+		room.execute(done::countDown);
+		assertTrue(done.await(10, TimeUnit.SECONDS));
+	}
+
+	private void awaitPiece(boolean whiteOrBlack, int i, int j, String type) throws InterruptedException {
+		for (int n = 0; n < 1000 && !type.equals(pieceAt(transport.getBoard("room", whiteOrBlack), i, j)); n++)
+			Thread.sleep(10);
+	}
+
+	private static String pieceAt(Map<String, Object> board, int i, int j) {
+		return ((PieceData) ((List<?>) board.get("pieces")).get(i * 8 + j)).getType();
+	}
+
+	@Test
+	public void testNewRoomIsShown() {
+		Map<String, Object> white = transport.getBoard("room", true);
+		assertEquals(Boolean.TRUE, white.get("whiteOrBlack"));
+		assertEquals("alice", white.get("player"));
+		// the white king at the bottom of the board of white, at the top of the board of black
+		assertEquals("K", pieceAt(white, 7, 4));
+		assertEquals("K", pieceAt(transport.getBoard("room", false), 0, 3));
+	}
+
+	@Test
+	public void testClicksMove() throws InterruptedException {
+		transport.click("room", true, 6, 4);
+		transport.click("room", true, 4, 4);
+		await("room");
+		assertTrue(server.getGame("room").getRecords().contains("e2-e4"));
+		awaitPiece(true, 4, 4, "P");
+		awaitPiece(false, 3, 3, "P");
+		assertEquals("P", pieceAt(transport.getBoard("room", true), 4, 4));
+		assertEquals("P", pieceAt(transport.getBoard("room", false), 3, 3));
+	}
+
+	@Test
+	public void testOnlyChangedSquaresAreWritten() throws InterruptedException {
+		server.setSquareDeltas(true);
+		transport.addRoom("deltas", "carol", "dave");
+		await("deltas");
+		Map<?, ?> squares = (Map<?, ?>) transport.getBoard("deltas", false).get("squares");
+		assertEquals(64, squares.size());
+		assertNull(transport.getBoard("deltas", false).get("pieces"));
+
+		transport.click("deltas", true, 6, 4);
+		transport.click("deltas", true, 4, 4);
+		await("deltas");
+		// the only write to the board of black after the whole board
+		for (int n = 0; n < 1000
+				&& ((Map<?, ?>) transport.getLastWrite("deltas", false).get("squares")).size() == 64; n++)
+			Thread.sleep(10);
+		assertTrue(server.getGame("deltas").getRecords().contains("e2-e4"));
+		// black sees the pawn leave e2 for e4, and nothing else
+		Map<?, ?> written = (Map<?, ?>) transport.getLastWrite("deltas", false).get("squares");
+		assertEquals(2, written.size());
+		assertNull(((PieceData) written.get(Integer.toString(1 * 8 + 3))).getType());
+		squares = (Map<?, ?>) transport.getBoard("deltas", false).get("squares");
+		assertEquals(64, squares.size());
+		assertEquals("P", ((PieceData) squares.get(Integer.toString(3 * 8 + 3))).getType());
+		server.closeRoom("deltas");
+	}
+
+	@Test
+	public void testDrawIsAsked() throws InterruptedException {
+		ActionData request = new ActionData();
+		request.requestDraw = true;
+		transport.act("room", true, request);
+		await("room");
+		assertEquals("askForDraw", transport.pollQuestion("room", false));
+
+		ActionData answer = new ActionData();
+		answer.agreeDraw = true;
+		transport.act("room", false, answer);
+		await("room");
+		assertTrue(server.getGame("room").hasEnd());
+	}
+
+	@Test
+	public void testCurrentBoardsAreNotWrittenAgain() throws InterruptedException {
+		long writes = transport.getWrites();
+		transport.close();
+		// another server finds the room and its boards showing a new game
+		server = new Server(transport, (GameArchive.Writer) null);
+		assertTrue(transport.awaitDelivered(10, TimeUnit.SECONDS));
+		assertTrue(server.getRoom("room").isHibernating());
+		assertEquals(writes, transport.getWrites());
+
+		transport.click("room", true, 6, 3);
+		transport.click("room", true, 4, 3);
+		await("room");
+		assertTrue(server.getGame("room").getRecords().contains("d2-d4"));
+	}
+
+	@Test
+	public void testRemovedRoomIsClosed() throws InterruptedException {
+		GameRoom room = server.getRoom("room");
+		transport.removeRoom("room");
+		assertTrue(transport.awaitDelivered(10, TimeUnit.SECONDS));
+		assertTrue(room.isClosed());
+		assertNull(server.getRoom("room"));
+	}
+}
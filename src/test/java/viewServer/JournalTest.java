@@ -0,0 +1,212 @@
+package viewServer;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import archive.GameArchive;
+import archive.GameJournal;
+import controller.GameSnapshot;
+import view.IChessViewerControl;
+
+public class JournalTest {
+	private File directory;
+	private final List<GameJournal> journals = new ArrayList<>();
+
+	@Before
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("journal").toFile();
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		for (GameJournal journal : journals)
+			journal.close();
+		for (File file : directory.listFiles())
+			file.delete();
+		directory.delete();
+	}
+
+	/**
+	 * a server on the journal left by the last one, as after a crash
+	 */
+	private Server start() throws IOException {
+		GameJournal journal = new GameJournal(directory);
+		journals.add(journal);
+		return new Server((GameArchive.Writer) null, journal);
+	}
+
+	private static IChessViewerControl open(Server server, String roomLoc) {
+		MemoryChessView white = new MemoryChessView("alice", true);
+		server.openRoom(roomLoc, white, new MemoryChessView("bob", false), "alice", "bob");
+		return white.getController();
+	}
+
+	private void sync() throws IOException {
+		journals.get(journals.size() - 1).sync();
+	}
+
+	/**
+	 * a server on the journal left by the last one, archiving the games
+	 */
+	private Server start(GameArchive.Writer archive) throws IOException {
+		GameJournal journal = new GameJournal(directory);
+		journals.add(journal);
+		return new Server(archive, journal);
+	}
+
+	private static void foolsMate(IChessViewerControl game) {
+		assertTrue(game.makeMove(true, "f3"));
+		assertTrue(game.makeMove(false, "e5"));
+		assertTrue(game.makeMove(true, "g4"));
+		assertTrue(game.makeMove(false, "Qh4#"));
+		assertTrue(game.hasEnd());
+	}
+
+	@Test
+	public void testViewsWaitForTheJournal() throws IOException {
+		AtomicInteger syncs = new AtomicInteger();
+		GameJournal journal = new GameJournal(directory) {
+			@Override
+			public synchronized void sync() throws IOException {
+				super.sync();
+				syncs.incrementAndGet();
+			}
+		};
+		journals.add(journal);
+		Server server = new Server((GameArchive.Writer) null, journal);
+		List<Integer> flushed = new ArrayList<>();
+		MemoryChessView white = new MemoryChessView("alice", true) {
+			@Override
+			public void flush() {
+				flushed.add(syncs.get());
+				super.flush();
+			}
+		};
+		server.openRoom("room", white, new MemoryChessView("bob", false), "alice", "bob");
+		IChessViewerControl game = white.getController();
+		int before = syncs.get();
+		assertTrue(game.makeMove(true, "e4"));
+		// the move was on disk when the view showed it
+		assertEquals(before + 1, (int) flushed.get(flushed.size() - 1));
+		// nothing new to wait for
+		game.click(4, 4, true);
+		assertEquals(before + 1, syncs.get());
+	}
+
+	@Test
+	public void testRoomGoesOnAfterRestart() throws IOException {
+		Server server = start();
+		IChessViewerControl game = open(server, "room");
+		assertTrue(game.makeMove(true, "e4"));
+		assertTrue(game.makeMove(false, "e5"));
+		assertTrue(game.makeMove(true, "Nf3"));
+		game.undo(true);
+		assertTrue(game.makeMove(true, "Bc4"));
+		assertTrue(game.makeMove(false, "Nc6"));
+		String records = server.getGame("room").getRecords();
+		open(server, "new");
+		sync();
+
+		Server restarted = start();
+		IChessViewerControl recovered = open(restarted, "room");
+		assertEquals(records, restarted.getGame("room").getRecords());
+		assertTrue(recovered.makeMove(true, "Qh5"));
+		// the room without a move starts again, like a new one
+		open(restarted, "new");
+		assertEquals(0, restarted.getGame("new").getRecord().size());
+		assertFalse(journals.get(1).getRecovered().containsKey("new"));
+	}
+
+	@Test
+	public void testRecoveredRoomStartsAsleep() throws IOException, InterruptedException {
+		IChessViewerControl game = open(start(), "room");
+		assertTrue(game.makeMove(true, "c4"));
+		sync();
+
+		Server restarted = start();
+		GameRoom room = restarted.openRoomAsleep("room", new MemoryChessView("alice", true),
+				new MemoryChessView("bob", false), "alice", "bob");
+		List<GameSnapshot> taken = new ArrayList<>();
+		room.snapshot(taken::add);
+		assertTrue(room.isHibernating());
+		assertTrue(taken.get(0).toChess().getRecords().toString().contains("c2-c4"));
+
+		CountDownLatch woken = new CountDownLatch(1);
+		room.wakeUp();
+		room.execute(woken::countDown);
+		assertTrue(woken.await(10, TimeUnit.SECONDS));
+		assertTrue(restarted.getGame("room").getRecords().contains("c2-c4"));
+	}
+
+	@Test
+	public void testClosedRoomIsNotRecovered() throws IOException {
+		Server server = start();
+		IChessViewerControl game = open(server, "room");
+		assertTrue(game.makeMove(true, "d4"));
+		server.closeRoom("room");
+		sync();
+
+		assertTrue(start().getGame("room") == null);
+		assertTrue(journals.get(1).getRecovered().isEmpty());
+	}
+
+	@Test
+	public void testArchivedRoomStaysUntilSealed() throws IOException {
+		GameArchive.Writer archive = new GameArchive.Writer(new File(directory, "games.archive"));
+		Server server = start(archive);
+		foolsMate(open(server, "room"));
+		assertNull(server.getGame("room"));
+		sync();
+		// the game is only in the buffer of the archive
+		assertTrue(start().getGame("room") == null);
+		assertTrue(journals.get(1).getRecovered().containsKey("room"));
+
+		archive.seal();
+		sync();
+		archive.close();
+		start();
+		assertFalse(journals.get(2).getRecovered().containsKey("room"));
+	}
+
+	@Test
+	public void testRecoveredEndIsArchivedAgain() throws IOException {
+		foolsMate(open(start(new GameArchive.Writer(new File(directory, "lost.archive"))), "room"));
+		sync();
+
+		// a crash lost the buffer of the archive
+		GameArchive.Writer archive = new GameArchive.Writer(new File(directory, "games.archive"));
+		Server restarted = start(archive);
+		assertNull(restarted.openRoomAsleep("room", new MemoryChessView("alice", true),
+				new MemoryChessView("bob", false), "alice", "bob"));
+		assertNull(restarted.getRooms().get("room"));
+		assertEquals(1, archive.size());
+		archive.close();
+		sync();
+		start();
+		assertTrue(journals.get(2).getRecovered().isEmpty());
+	}
+
+	@Test
+	public void testEndIsRecovered() throws IOException {
+		Server server = start();
+		IChessViewerControl game = open(server, "room");
+		foolsMate(game);
+		sync();
+
+		Server restarted = start();
+		assertTrue(open(restarted, "room").hasEnd());
+		assertTrue(restarted.getGame("room").getRecords().contains("Qd8-h4"));
+	}
+}
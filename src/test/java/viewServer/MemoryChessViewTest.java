@@ -0,0 +1,36 @@
+package viewServer;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import controller.DualViewChessControl;
+
+public class MemoryChessViewTest {
+
+	@Test
+	public void testOneWritePerAction() {
+		MemoryChessView white = new MemoryChessView("alice", true);
+		MemoryChessView black = new MemoryChessView("bob", false);
+		new DualViewChessControl(white, black);
+		// the document is created, then the board and the welcome are written together
+		assertEquals(2, white.getWrites());
+		assertEquals("Welcome to our game. You are white", white.getStatus());
+
+		white.getController().makeMove(true, "e4");
+		assertEquals(3, white.getWrites());
+		assertEquals(3, black.getWrites());
+		assertEquals(black.getStatus(), white.getStatus());
+		assertNotEquals("Welcome to our game. You are black", black.getStatus());
+
+		// selecting a piece only shows the highlights to the one clicking
+		black.getController().click(5, 7, false);
+		assertEquals(4, black.getWrites());
+		assertEquals(3, white.getWrites());
+		assertTrue(black.getWritten().pieces.get(6 * 8 + 3).isHightLight());
+		black.getController().click(5, 5, false);
+		assertEquals(5, black.getWrites());
+		assertEquals(4, white.getWrites());
+		assertFalse(black.getWritten().pieces.get(6 * 8 + 3).isHightLight());
+	}
+}
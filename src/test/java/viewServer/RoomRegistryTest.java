@@ -0,0 +1,84 @@
+package viewServer;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import controller.DualViewChessControl;
+
+public class RoomRegistryTest {
+	private static final long IDLE = 60000;
+	private static final long FINISHED = 1000;
+	private RoomRegistry registry;
+
+	@Before
+	public void setUp() {
+		registry = new RoomRegistry(IDLE, FINISHED);
+	}
+
+	private GameRoom open(String roomLoc) {
+		// the actions run right away on the posting thread
+		GameRoom room = new GameRoom(Runnable::run);
+		MemoryChessView white = new MemoryChessView("alice", true);
+		MemoryChessView black = new MemoryChessView("bob", false);
+		room.setWaker(snapshot -> new DualViewChessControl(white, black, snapshot));
+		room.start(new DualViewChessControl(white, black));
+		assertTrue(registry.open(roomLoc, room));
+		return room;
+	}
+
+	@Test
+	public void testOpenAndClose() {
+		GameRoom room = open("a");
+		assertFalse(registry.open("a", new GameRoom(Runnable::run)));
+		assertSame(room, registry.get("a"));
+		assertSame(room.getGame(), registry.getGame("a"));
+		assertEquals(1, registry.size());
+
+		assertTrue(registry.close("a"));
+		assertFalse(registry.close("a"));
+		assertTrue(room.isClosed());
+		assertTrue(((MemoryChessView) room.getGame().chooesView(true)).isClosed());
+		assertNull(registry.getGame("a"));
+		assertEquals(1, registry.getOpened());
+		assertEquals(1, registry.getClosed());
+		assertEquals(0, registry.getEvicted());
+	}
+
+	@Test
+	public void testSweepPutsIdleToSleep() throws InterruptedException {
+		GameRoom idle = open("idle");
+		open("busy");
+		idle.execute(() -> idle.getGame().makeMove(true, "e4"));
+		long now = idle.getLastActivity() + IDLE;
+		Thread.sleep(5);
+		registry.get("busy").execute(() -> registry.getGame("busy").makeMove(true, "e4"));
+		registry.sweep(now - 1);
+		assertFalse(idle.isHibernating());
+		// the room stays, its game goes
+		assertEquals(0, registry.sweep(now));
+		assertSame(idle, registry.get("idle"));
+		assertTrue(idle.isHibernating());
+		assertNull(registry.getGame("idle"));
+		assertFalse(registry.get("busy").isHibernating());
+		assertEquals(0, registry.getEvicted());
+
+		// and wakes up where it was
+		idle.execute(() -> idle.getGame().makeMove(false, "e5"));
+		assertFalse(idle.isHibernating());
+		assertEquals(2, registry.getGame("idle").getRecord().size());
+	}
+
+	@Test
+	public void testSweepFinishedSooner() {
+		GameRoom room = open("done");
+		open("playing");
+		room.execute(() -> room.getGame().resign(true));
+		assertEquals(1, registry.getFinished());
+		assertEquals(1, registry.sweep(room.getLastActivity() + FINISHED));
+		assertNull(registry.get("done"));
+		assertEquals(1, registry.size());
+		assertTrue(registry.toString().contains("evicted=1"));
+	}
+}
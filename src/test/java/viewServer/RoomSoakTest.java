@@ -0,0 +1,37 @@
+package viewServer;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import archive.GameArchive;
+
+public class RoomSoakTest {
+
+	@Test
+	public void testCloseRoom() {
+		Server server = new Server((GameArchive.Writer) null);
+		MemoryChessView white = new MemoryChessView("alice", true);
+		MemoryChessView black = new MemoryChessView("bob", false);
+		server.openRoom("room", white, black, "alice", "bob");
+		assertEquals(1, server.getGames().size());
+		assertTrue(white.getController().makeMove(true, "e4"));
+		assertTrue(black.getController().makeMove(false, "e5"));
+		assertEquals('P', white.getWritten().pieces.get(4 * 8 + 4).getType().charAt(0));
+
+		server.closeRoom("room");
+		assertTrue(server.getGames().isEmpty());
+		assertTrue(white.isClosed());
+		assertTrue(black.isClosed());
+		// closing twice does nothing
+		server.closeRoom("room");
+	}
+
+	@Test
+	public void testSoak() {
+		RoomSoak.Report report = new RoomSoak(null, 10, 3).run();
+		assertEquals(0, report.getOpenRooms());
+		assertEquals(3, report.getCycleHeap().length);
+		assertTrue(report.toString().contains("bytesPerActiveGame="));
+	}
+}